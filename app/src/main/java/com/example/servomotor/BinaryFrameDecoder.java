@@ -0,0 +1,186 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es el decodificador incremental de tramas binarias (ver BinaryProtocol). Igual que el
+de texto, guarda lo pendiente entre lecturas. Si una trama llega con CRC incorrecto se busca el
+siguiente byte de sincronía dentro de lo ya recibido para recuperar la alineación sin perder tramas
+buenas. Debe usarse desde un único hilo.
+
+Además de las tramas fijas de 6 bytes entiende las tramas de lote (telemetría por lotes): el largo sale
+del encabezado y las muestras se descomprimen a un arreglo primitivo reservado una sola vez, que se
+entrega completo al BatchListener. Un lote con CRC correcto pero datos inconsistentes (varint
+incompleto o que sobra) se cuenta como mal formado.
+ */
+
+public class BinaryFrameDecoder {
+
+    public interface Listener {
+        void onFrame(int type, int sequence, int value);
+    }
+
+    public interface BatchListener {
+        // baseMicros: reloj de la ESP32 (32 bits sin signo). angles se reutiliza, solo vale durante la llamada
+        void onBatch(long baseMicros, int periodMicros, float[] angles, int count);
+    }
+
+    private final Listener listener;
+    private final BatchListener batchListener;
+    private final byte[] frame = new byte[BinaryProtocol.MAX_BATCH_FRAME_SIZE];
+    private final float[] batchAngles = new float[BinaryProtocol.MAX_BATCH_SAMPLES];
+    private int filled = 0;
+    // Posición de lectura dentro del lote que se decodifica
+    private int cursor;
+
+    private volatile long frameCount = 0;
+    private volatile long malformedCount = 0;
+    private volatile long discardedBytes = 0;
+    private volatile long batchCount = 0;
+    private volatile long batchSampleCount = 0;
+
+    public BinaryFrameDecoder(Listener listener) {
+        this(listener, null);
+    }
+
+    // batchListener null: los lotes se validan y se cuentan pero no se entregan
+    public BinaryFrameDecoder(Listener listener, BatchListener batchListener) {
+        this.listener = listener;
+        this.batchListener = batchListener;
+    }
+
+    public void feed(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+
+            if (filled == 0 && !isSync(b)) {
+                discardedBytes++;
+                continue;
+            }
+
+            frame[filled++] = b;
+            // Después de resincronizar puede quedar otra trama completa en lo ya recibido
+            while (filled > 0 && process()) {
+            }
+        }
+    }
+
+    private static boolean isSync(byte b) {
+        return b == BinaryProtocol.SYNC || b == BinaryProtocol.BATCH_SYNC;
+    }
+
+    // true si consumió o descartó bytes, false si faltan bytes para completar la trama
+    private boolean process() {
+        int length = frameLength();
+        if (length == 0 || filled < length) return false;
+
+        boolean valid = length > 0 && (frame[0] == BinaryProtocol.SYNC ? deliverFrame() : deliverBatch(length));
+        if (!valid) {
+            malformedCount++;
+            resync();
+            return true;
+        }
+        frameCount++;
+        filled -= length;
+        System.arraycopy(frame, length, frame, 0, filled);
+        return true;
+    }
+
+    // Tamaño de la trama que empieza en frame[0], 0 si aún no se sabe y -1 si el encabezado es inválido
+    private int frameLength() {
+        if (frame[0] == BinaryProtocol.SYNC) return BinaryProtocol.FRAME_SIZE;
+        if (filled < BinaryProtocol.BATCH_HEADER_SIZE) return 0;
+        int count = frame[1] & 0xFF;
+        int payload = frame[2] & 0xFF;
+        // Al menos un byte por cada varint: tiempo base, periodo y las muestras
+        if (count == 0 || count > BinaryProtocol.MAX_BATCH_SAMPLES || payload < 2 + count) return -1;
+        return BinaryProtocol.BATCH_HEADER_SIZE + payload + 1;
+    }
+
+    private boolean deliverFrame() {
+        if (!BinaryProtocol.isValidFrame(frame, 0)) return false;
+        listener.onFrame(frame[1] & 0xFF, frame[2] & 0xFF, BinaryProtocol.decodeValue(frame, 0));
+        return true;
+    }
+
+    private boolean deliverBatch(int length) {
+        int end = length - 1;
+        if (BinaryProtocol.crc8(frame, 1, end - 1) != (frame[end] & 0xFF)) return false;
+
+        cursor = BinaryProtocol.BATCH_HEADER_SIZE;
+        long baseMicros = readVarint(end);
+        long periodMicros = readVarint(end);
+        if (baseMicros < 0 || periodMicros < 0 || periodMicros > Integer.MAX_VALUE) return false;
+        int count = frame[1] & 0xFF;
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = readVarint(end);
+            if (delta < 0) return false;
+            value += BinaryProtocol.unZigZag((int) delta);
+            batchAngles[i] = BinaryProtocol.centiToDegrees(value);
+        }
+        if (cursor != end) return false;
+
+        batchCount++;
+        batchSampleCount += count;
+        if (batchListener != null) {
+            batchListener.onBatch(baseMicros, (int) periodMicros, batchAngles, count);
+        }
+        return true;
+    }
+
+    // Varint de hasta 32 bits desde cursor, -1 si se corta o es más largo
+    private long readVarint(int end) {
+        long result = 0;
+        int shift = 0;
+        while (cursor < end) {
+            int b = frame[cursor++] & 0xFF;
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result <= 0xFFFFFFFFL ? result : -1;
+            }
+            shift += 7;
+            if (shift > 28) return -1;
+        }
+        return -1;
+    }
+
+    public void reset() {
+        filled = 0;
+    }
+
+    // Descarta el byte de sincronía actual y recorre la trama hasta el siguiente candidato
+    private void resync() {
+        int next = 1;
+        while (next < filled && !isSync(frame[next])) {
+            next++;
+        }
+        discardedBytes += next;
+        System.arraycopy(frame, next, frame, 0, filled - next);
+        filled -= next;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getMalformedCount() {
+        return malformedCount;
+    }
+
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public long getBatchSampleCount() {
+        return batchSampleCount;
+    }
+}
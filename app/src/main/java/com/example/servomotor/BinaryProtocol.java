@@ -0,0 +1,184 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo define el protocolo binario entre la app y la ESP32. Convive con el protocolo de texto
+"ANGLE:"/"POSITION:": la app ofrece el binario en cada conexión (se puede desactivar con
+setBinaryProtocolEnabled) y el texto queda para firmwares que no lo soportan.
+
+Negociación al conectar:
+1. La app envía la línea de texto "HELLO:1".
+2. Si la ESP32 soporta el modo binario responde "PROTO:1" y a partir de ese momento ambas partes
+   usan tramas binarias. Si no responde se sigue usando texto sin hacer nada más, no hay tiempo límite.
+
+Trama binaria de tamaño fijo (6 bytes):
+[0] 0xA5          byte de sincronía
+[1] tipo          0x01 = ANGLE (app -> ESP32), 0x02 = POSITION (ESP32 -> app),
+                  0x03 = CREDIT (ESP32 -> app), 0x04 = ACK (ESP32 -> app),
+                  0x05..0x08 = secuencias de puntos (ver WaypointProtocol)
+[2] secuencia     contador de 8 bits por emisor
+[3] valor alto    ángulo en centésimas de grado, entero de 16 bits con signo, big-endian
+[4] valor bajo
+[5] CRC-8         polinomio 0x07, valor inicial 0x00, calculado sobre los bytes [1..4]
+
+Control de flujo opcional (en texto y en binario): la ESP32 concede créditos con "CREDIT:<n>" o una
+trama CREDIT con n en el valor, y devuelve uno por cada ANGLE que termina de procesar con "ACK" o una
+trama ACK con la secuencia del ANGLE. La app no envía más ángulos que los créditos que tiene. Si la
+ESP32 nunca manda CREDIT, no hay límite por créditos.
+
+Telemetría por lotes (opcional, solo en binario): ya en binario la app envía una trama FEATURES (0x09)
+con los bits que quiere usar en el valor. La ESP32 responde otra trama FEATURES con los bits que acepta y,
+si acepta FEATURE_BATCH_TELEMETRY, puede mandar varias posiciones en una sola trama de tamaño variable.
+Un firmware que no conoce FEATURES la descarta y sigue con tramas POSITION.
+[0] 0xA6          byte de sincronía de lote
+[1] n             muestras, 1..MAX_BATCH_SAMPLES
+[2] largo         bytes de datos, hasta MAX_BATCH_PAYLOAD
+[3..]             datos: varint tiempo base (µs del reloj de la ESP32, 32 bits que dan la vuelta),
+                  varint periodo entre muestras en µs, y n varint zigzag con la diferencia de cada
+                  muestra (centésimas de grado) contra la anterior; la primera va contra 0 y es el valor base
+[3 + largo]       CRC-8 sobre los bytes [1 .. 3 + largo)
+Las muestras están separadas por el mismo periodo, la i sale en base + i * periodo. A 1 kHz con el servo
+quieto una muestra ocupa un byte en lugar de los 6 de POSITION binario o los ~13 de la línea de texto.
+
+No depende de clases de Android para poder probarse en la JVM.
+ */
+
+import java.nio.charset.StandardCharsets;
+
+public final class BinaryProtocol {
+    public static final int VERSION = 1;
+
+    public static final byte SYNC = (byte) 0xA5;
+    public static final int FRAME_SIZE = 6;
+
+    public static final int TYPE_ANGLE = 0x01;
+    public static final int TYPE_POSITION = 0x02;
+    public static final int TYPE_CREDIT = 0x03;
+    public static final int TYPE_ACK = 0x04;
+    public static final int TYPE_SEQUENCE = 0x05;
+    public static final int TYPE_WAYPOINT_TIME = 0x06;
+    public static final int TYPE_WAYPOINT_ANGLE = 0x07;
+    public static final int TYPE_SEQUENCE_STATUS = 0x08;
+    public static final int TYPE_FEATURES = 0x09;
+
+    public static final int FEATURE_BATCH_TELEMETRY = 0x01;
+    public static final byte BATCH_SYNC = (byte) 0xA6;
+    public static final int BATCH_HEADER_SIZE = 3;
+    public static final int MAX_BATCH_SAMPLES = 64;
+    public static final int MAX_BATCH_PAYLOAD = 255;
+    public static final int MAX_BATCH_FRAME_SIZE = BATCH_HEADER_SIZE + MAX_BATCH_PAYLOAD + 1;
+
+    public static final int MIN_CENTI_DEGREES = Short.MIN_VALUE;
+    public static final int MAX_CENTI_DEGREES = Short.MAX_VALUE;
+
+    // Líneas de texto de la negociación
+    public static final byte[] HELLO_LINE = ("HELLO:" + VERSION + "\n").getBytes(StandardCharsets.US_ASCII);
+    public static final byte[] PROTO_PREFIX = {'P', 'R', 'O', 'T', 'O', ':'};
+    // Líneas de texto del control de flujo
+    public static final byte[] CREDIT_PREFIX = {'C', 'R', 'E', 'D', 'I', 'T', ':'};
+    public static final byte[] ACK_LINE = {'A', 'C', 'K'};
+
+    private static final byte[] CRC8_TABLE = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+            }
+            CRC8_TABLE[i] = (byte) crc;
+        }
+    }
+
+    private BinaryProtocol() {
+    }
+
+    public static int crc8(byte[] data, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; i++) {
+            crc = CRC8_TABLE[(crc ^ data[i]) & 0xFF] & 0xFF;
+        }
+        return crc;
+    }
+
+    // Escribe una trama completa en dst, devuelve FRAME_SIZE
+    public static int encodeFrame(int type, int sequence, int centiDegrees, byte[] dst, int offset) {
+        int value = Math.max(MIN_CENTI_DEGREES, Math.min(MAX_CENTI_DEGREES, centiDegrees));
+        dst[offset] = SYNC;
+        dst[offset + 1] = (byte) type;
+        dst[offset + 2] = (byte) sequence;
+        dst[offset + 3] = (byte) (value >> 8);
+        dst[offset + 4] = (byte) value;
+        dst[offset + 5] = (byte) crc8(dst, offset + 1, 4);
+        return FRAME_SIZE;
+    }
+
+    public static int encodeAngle(int sequence, int centiDegrees, byte[] dst, int offset) {
+        return encodeFrame(TYPE_ANGLE, sequence, centiDegrees, dst, offset);
+    }
+
+    // Asume que la trama ya fue validada con isValidFrame
+    public static int decodeValue(byte[] frame, int offset) {
+        return (short) (((frame[offset + 3] & 0xFF) << 8) | (frame[offset + 4] & 0xFF));
+    }
+
+    public static boolean isValidFrame(byte[] frame, int offset) {
+        return frame[offset] == SYNC
+                && (crc8(frame, offset + 1, 4) == (frame[offset + 5] & 0xFF));
+    }
+
+    // Trama de lote con count muestras desde centiDegrees[offset], devuelve su tamaño. dst necesita
+    // MAX_BATCH_FRAME_SIZE bytes libres desde dstOffset
+    public static int encodeBatch(long baseMicros, int periodMicros, int[] centiDegrees, int offset, int count,
+                                  byte[] dst, int dstOffset) {
+        if (count < 1 || count > MAX_BATCH_SAMPLES) {
+            throw new IllegalArgumentException("Muestras por lote fuera de rango: " + count);
+        }
+        int position = writeVarint((int) baseMicros, dst, dstOffset + BATCH_HEADER_SIZE);
+        position = writeVarint(periodMicros, dst, position);
+        int previous = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int value = Math.max(MIN_CENTI_DEGREES, Math.min(MAX_CENTI_DEGREES, centiDegrees[i]));
+            position = writeVarint(zigZag(value - previous), dst, position);
+            previous = value;
+        }
+        // Con valores de 16 bits cada diferencia ocupa a lo más 3 bytes, nunca se pasa del máximo
+        int payload = position - dstOffset - BATCH_HEADER_SIZE;
+        dst[dstOffset] = BATCH_SYNC;
+        dst[dstOffset + 1] = (byte) count;
+        dst[dstOffset + 2] = (byte) payload;
+        dst[position] = (byte) crc8(dst, dstOffset + 1, position - dstOffset - 1);
+        return position + 1 - dstOffset;
+    }
+
+    // Varint sin signo de 32 bits, 7 bits por byte empezando por los bajos. Devuelve la posición siguiente
+    public static int writeVarint(int value, byte[] dst, int offset) {
+        while ((value & ~0x7F) != 0) {
+            dst[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[offset++] = (byte) value;
+        return offset;
+    }
+
+    // Las diferencias pequeñas, positivas o negativas, quedan como números pequeños sin signo
+    public static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static float centiToDegrees(int centiDegrees) {
+        return centiDegrees / 100f;
+    }
+
+    public static int degreesToCenti(float degrees) {
+        return Math.round(degrees * 100f);
+    }
+}
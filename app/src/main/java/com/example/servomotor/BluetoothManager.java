@@ -15,8 +15,8 @@ import android.Manifest;
 import android.app.Activity;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
@@ -25,44 +25,164 @@ import android.util.Log;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BluetoothManager {
     private static final String TAG = "BluetoothManager";
     private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
     private static final String ESP32_NAME = "ServoController_ESP32";
+    public static final String CONTROLLER_NAME_PREFIX = "ServoController";
+    private static final int IO_THREADS = 4;
+    private static final String SESSIONS_DIR = "sessions";
+    public static final String SESSION_EXTENSION = ".srv";
+    private static final int MAX_SESSIONS = 20;
+    private static final String PREFS_NAME = "servo_link";
+    private static final String KEY_LAST_ADDRESS = "last_device_address";
+    private static final int DISPLAY_STORE_CAPACITY = 1 << 12;
+    public static final String METRIC_RECONNECTS = "link.reconnects";
+    public static final String METRIC_CONNECTED = "link.connected";
+    public static final String METRIC_QUEUE_DEPTH = "link.queue_depth";
+    public static final String METRIC_LINK_LOSSES = "link.losses";
+    public static final String METRIC_UI_TELEMETRY_FRAMES = "ui.telemetry_frames";
 
     // Request codes para permisos
     public static final int REQUEST_BLUETOOTH_PERMISSIONS = 1001;
 
     private Context context;
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothSocket bluetoothSocket;
     private BluetoothDevice esp32Device;
-    private OutputStream outputStream;
-    private InputStream inputStream;
-    private Thread readThread;
-    private boolean isConnected = false;
+    // Si no es null las conexiones van a la ESP32 simulada en lugar de RFCOMM
+    private volatile Esp32Simulator simulator;
+    private volatile ServoLink servoLink;
+    private final TelemetryStore telemetryStore = new TelemetryStore();
+    private final TelemetryStore commandStore = new TelemetryStore();
+    // Posiciones ya filtradas, solo las que cambian lo que se muestra. El historial crudo sigue en telemetryStore
+    private final TelemetryStore displayStore = new TelemetryStore(DISPLAY_STORE_CAPACITY);
+    private volatile TelemetryFilter telemetryFilter = TelemetryFilterChain.createDefault();
+    private volatile boolean filterResetPending = false;
+    // Solo los usa el hilo que entrega posiciones (lectura del enlace o reproducción)
+    private float lastDisplayedAngle = Float.NaN;
+    private volatile long filteredSampleCount = 0;
+    private volatile long suppressedUpdateCount = 0;
+    private final LatencyTracker latencyTracker = new LatencyTracker(new LatencyHistogram());
+    private final StepResponseAnalyzer stepAnalyzer = new StepResponseAnalyzer();
+    private final ScheduledThreadPoolExecutor ioExecutor;
+    private final ConnectionSupervisor supervisor;
+    private final SetpointStreamer setpointStreamer;
+    private final ServoLinkPool linkPool;
+    private volatile SessionRecorder sessionRecorder;
+    private volatile boolean sessionRecordingEnabled = true;
+    private final SessionReplayer sessionReplayer;
+    private final WaypointUploader waypointUploader;
+    private volatile WaypointUploader.Listener waypointListener;
+    private volatile boolean replayDrivesDevice = false;
+    private volatile MotionProfile.Shape profileShape = MotionProfile.Shape.S_CURVE;
+    private volatile float maxVelocity = MotionProfile.DEFAULT_MAX_VELOCITY;
+    private volatile float maxAcceleration = MotionProfile.DEFAULT_MAX_ACCELERATION;
+    // Tasa máxima de ángulos hacia la ESP32, 0 sin límite
+    private volatile double commandRatePerSecond = CommandWriter.DEFAULT_RATE_PER_SECOND;
+    private volatile double commandBurst = CommandWriter.DEFAULT_BURST;
+    private final SharedPreferences preferences;
+    private final TelemetryFrameDispatcher frameDispatcher;
+    private volatile boolean frameAlignedDelivery = true;
+    // Se cambian desde el hilo principal y se leen en createLink, en los hilos del supervisor
+    private volatile boolean binaryProtocolEnabled = true;
+    private volatile boolean batchTelemetryEnabled = true;
+    // Métricas de todo el camino Bluetooth, sobreviven a las reconexiones
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final MetricsRegistry.Counter reconnectMetric = metrics.counter(METRIC_RECONNECTS);
+    private volatile boolean everConnected = false;
 
     private BluetoothListener listener;
     private Handler mainHandler;
 
     public interface BluetoothListener {
         void onConnectionChanged(boolean connected);
-        void onDataReceived(String data);
+        void onConnectionStateChanged(ConnectionState state); // CONNECTING / RECONNECTING para mostrar el progreso
+        void onTelemetryFrame(TelemetryBatch batch); // siempre en el hilo principal
+        void onDataReceived(String data); // líneas que no son POSITION
         void onError(String error);
         void onPermissionRequired(); // callback para solicitar permisos. Es de suma importancia el que se manejen correctamente los posibles errores en tiempo de ejecución.
     }
 
+    public interface SessionAnalysisListener {
+        // En el hilo principal, con la suma de todas las sesiones que se pudieron leer
+        void onSessionsAnalyzed(StepResponseAnalyzer result, int fileCount);
+    }
+
     public BluetoothManager(Context context, BluetoothListener listener) {
         this.context = context;
         this.listener = listener;
         this.mainHandler = new Handler(Looper.getMainLooper());
         this.bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.ioExecutor = createIoExecutor();
+        this.supervisor = new ConnectionSupervisor(this::createLink, linkListener, new ReconnectPolicy(), ioExecutor);
+        // Los movimientos y las reproducciones duran segundos o minutos, corren en su propio hilo para no
+        // dejar sin hilos de E/S al lector, al escritor y a los tiempos límite
+        this.setpointStreamer = new SetpointStreamer(this::sendSetpoint, null);
+        this.linkPool = new ServoLinkPool(ioExecutor, poolListener);
+        this.sessionReplayer = new SessionReplayer(replaySink, null);
+        this.waypointUploader = new WaypointUploader(this::submitToLink, ioExecutor, waypointEvents);
+        this.frameDispatcher = new TelemetryFrameDispatcher(displayStore, batch -> {
+            if (this.listener != null) {
+                this.listener.onTelemetryFrame(batch);
+            }
+        });
+        registerMetrics();
+    }
+
+    // Los contadores del enlace los incrementan ServoLink y CommandWriter, aquí se agregan las tasas y los
+    // indicadores que se leen de la conexión vigente
+    private void registerMetrics() {
+        metrics.rate(ServoLink.METRIC_BYTES_IN);
+        metrics.rate(ServoLink.METRIC_FRAMES_IN);
+        metrics.rate(ServoLink.METRIC_READ_WAKEUPS);
+        metrics.counter(ServoLink.METRIC_PARSE_ERRORS);
+        metrics.rate(CommandWriter.METRIC_BYTES_OUT);
+        metrics.rate(CommandWriter.METRIC_FRAMES_OUT);
+        metrics.gauge(METRIC_CONNECTED, () -> isConnected() ? 1 : 0);
+        metrics.gauge(METRIC_QUEUE_DEPTH, () -> {
+            CommandWriter writer = getCommandWriter();
+            return writer != null ? writer.getQueueDepth() : 0;
+        });
+        metrics.gauge(METRIC_LINK_LOSSES, supervisor::getLinkLossCount);
+        metrics.gauge(METRIC_UI_TELEMETRY_FRAMES, frameDispatcher::getFrameCount);
+    }
+
+    // Un solo grupo de hilos para todo el E/S: intentos de conexión, tiempo límite, lector y escritor,
+    // más tareas cortas (mantenimiento de SessionRecorder, tiempos de espera de WaypointUploader).
+    // Con un enlace activo hay dos hilos ocupados (lector y escritor) y durante un intento uno queda
+    // bloqueado en connect() mientras otro vigila el tiempo, cuatro alcanzan para ambos casos. Nada que
+    // dure más que eso corre aquí: los movimientos, las reproducciones y el análisis de sesiones usan su
+    // propio hilo, y ServoLinkPool suma dos por canal. Los hilos libres se cierran solos y todo se detiene
+    // en release()
+    private static ScheduledThreadPoolExecutor createIoExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(IO_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "ServoIO-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     public boolean isBluetoothAvailable() {
@@ -142,15 +262,19 @@ public class BluetoothManager {
             return false;
         }
 
-        try {
-            Set<BluetoothDevice> pairedDevices = bluetoothAdapter.getBondedDevices();
+        // La telemetría real vuelve a ser la única que escribe en el historial
+        sessionReplayer.stop();
 
-            for (BluetoothDevice device : pairedDevices) {
-                String deviceName = device.getName();
-                if (ESP32_NAME.equals(deviceName)) {
-                    esp32Device = device;
-                    break;
-                }
+        // Ya hay una conexión activa, en curso o esperando para reconectar
+        if (supervisor.isActive()) {
+            return true;
+        }
+        simulator = null;
+
+        try {
+            esp32Device = findCachedDevice();
+            if (esp32Device == null) {
+                esp32Device = findDeviceByName();
             }
 
             if (esp32Device == null) {
@@ -158,8 +282,8 @@ public class BluetoothManager {
                 return false;
             }
 
-            // Conectar en un hilo separado, mantiene el control de sockets
-            new Thread(this::connectToDevice).start();
+            // Los intentos, el tiempo límite y la reconexión corren en los hilos del supervisor
+            supervisor.start();
             return true;
 
         } catch (SecurityException e) {
@@ -172,123 +296,807 @@ public class BluetoothManager {
         }
     }
 
-    private void connectToDevice() {
+    // La última dirección que conectó bien evita recorrer los dispositivos emparejados por nombre
+    private BluetoothDevice findCachedDevice() {
+        String address = preferences.getString(KEY_LAST_ADDRESS, null);
+        if (address == null || !BluetoothAdapter.checkBluetoothAddress(address)) {
+            return null;
+        }
+
+        BluetoothDevice device = bluetoothAdapter.getRemoteDevice(address);
+        if (device.getBondState() != BluetoothDevice.BOND_BONDED) {
+            // Se desvinculó desde la última vez
+            forgetCachedDevice();
+            return null;
+        }
+        return device;
+    }
+
+    private BluetoothDevice findDeviceByName() {
+        Set<BluetoothDevice> pairedDevices = bluetoothAdapter.getBondedDevices();
+
+        for (BluetoothDevice device : pairedDevices) {
+            String deviceName = device.getName();
+            if (ESP32_NAME.equals(deviceName)) {
+                return device;
+            }
+        }
+        return null;
+    }
+
+    // Agrega un canal por cada controlador emparejado cuyo nombre empiece con el prefijo y los conecta a
+    // todos. Es independiente del enlace principal. Devuelve cuántos canales hay en el grupo
+    public int connectControllers(String namePrefix) {
         if (!hasBluetoothPermissions()) {
-            notifyError("Permisos de Bluetooth no otorgados");
+            if (listener != null) {
+                listener.onPermissionRequired();
+            }
+            return 0;
+        }
+
+        try {
+            for (BluetoothDevice device : bluetoothAdapter.getBondedDevices()) {
+                String deviceName = device.getName();
+                String address = device.getAddress();
+                if (deviceName != null && deviceName.startsWith(namePrefix) && linkPool.getChannel(address) == null) {
+                    linkPool.addChannel(address, () -> new RfcommTransport(device, MY_UUID));
+                }
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "SecurityException: " + e.getMessage());
+            notifyError("Permisos de Bluetooth insuficientes");
+            return 0;
+        }
+
+        linkPool.setBinaryProtocolEnabled(binaryProtocolEnabled);
+        linkPool.connectAll();
+        return linkPool.getChannelCount();
+    }
+
+    // Llega desde los hilos de E/S, la telemetría de cada canal queda en su propio historial
+    private final ServoLinkPool.Listener poolListener = new ServoLinkPool.Listener() {
+        @Override
+        public void onChannelStateChanged(String channelId, ConnectionState state) {
+            Log.d(TAG, "Canal " + channelId + ": " + state);
+        }
+
+        @Override
+        public void onChannelPosition(String channelId, float angle) {
+        }
+
+        @Override
+        public void onChannelError(String channelId, String error) {
+            Log.e(TAG, "Canal " + channelId + ": " + error);
+            notifyError(channelId + ": " + error);
+        }
+    };
+
+    // Cada conexión se graba en su propio archivo dentro de files/sessions, se conservan las últimas 20
+    private void startSessionRecording(ServoLink link) {
+        if (!sessionRecordingEnabled) return;
+
+        File dir = getSessionsDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "No se pudo crear la carpeta de sesiones");
             return;
         }
+        pruneSessions(MAX_SESSIONS - 1);
+
+        String name = "session-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS", Locale.US).format(new Date())
+                + SESSION_EXTENSION;
+        try {
+            SessionRecorder recorder = SessionRecorder.create(new File(dir, name), ioExecutor);
+            closeRecorderAsync(sessionRecorder);
+            sessionRecorder = recorder;
+            link.setSessionRecorder(recorder);
+        } catch (IOException e) {
+            // Sin grabación la conexión sigue funcionando igual
+            Log.e(TAG, "No se pudo iniciar la grabación de la sesión: " + e.getMessage());
+        }
+    }
+
+    private void stopSessionRecording() {
+        SessionRecorder recorder = sessionRecorder;
+        sessionRecorder = null;
+        ServoLink link = servoLink;
+        if (link != null) {
+            link.setSessionRecorder(null);
+        }
+        closeRecorderAsync(recorder);
+    }
 
+    // onDisconnected puede llegar en el hilo principal, el cierre escribe en disco y se hace en los hilos de E/S
+    private void closeRecorderAsync(SessionRecorder recorder) {
+        if (recorder == null) return;
+        Runnable close = () -> {
+            try {
+                recorder.close();
+                Log.d(TAG, "Sesión guardada: " + recorder.getFile().getName() + ", registros: "
+                        + recorder.getRecordCount() + ", descartados: " + recorder.getDroppedCount());
+            } catch (IOException e) {
+                Log.e(TAG, "Error al cerrar la sesión: " + e.getMessage());
+            }
+        };
         try {
-            bluetoothSocket = esp32Device.createRfcommSocketToServiceRecord(MY_UUID);
-            bluetoothSocket.connect();
+            ioExecutor.execute(close);
+        } catch (RejectedExecutionException e) {
+            close.run();
+        }
+    }
+
+    public File getSessionsDir() {
+        return new File(context.getFilesDir(), SESSIONS_DIR);
+    }
+
+    // Sesiones grabadas, la más reciente primero (el nombre lleva la fecha)
+    public File[] listSessions() {
+        File[] files = getSessionsDir().listFiles((dir, name) -> name.endsWith(SESSION_EXTENSION));
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> b.getName().compareTo(a.getName()));
+        return files;
+    }
+
+    private void pruneSessions(int keep) {
+        File[] sessions = listSessions();
+        for (int i = keep; i < sessions.length; i++) {
+            if (!sessions[i].delete()) {
+                Log.d(TAG, "No se pudo borrar la sesión " + sessions[i].getName());
+            }
+        }
+    }
 
-            outputStream = bluetoothSocket.getOutputStream();
-            inputStream = bluetoothSocket.getInputStream();
+    public void setSessionRecordingEnabled(boolean enabled) {
+        sessionRecordingEnabled = enabled;
+    }
+
+    private void forgetCachedDevice() {
+        preferences.edit().remove(KEY_LAST_ADDRESS).apply();
+    }
+
+    // Pruebas de carga sin hardware: el mismo supervisor, enlace y UI, pero contra una ESP32 simulada
+    // (ver Esp32Simulator). No necesita Bluetooth ni permisos
+    public boolean connectToSimulator(Esp32Simulator sim) {
+        sessionReplayer.stop();
+        if (supervisor.isActive()) {
+            return true;
+        }
+        simulator = sim;
+        sim.start();
+        supervisor.start();
+        return true;
+    }
+
+    public boolean isUsingSimulator() {
+        return simulator != null;
+    }
+
+    // Se llama en los hilos del supervisor, una vez por intento
+    private ServoLink createLink(ServoLink.Listener linkEvents) {
+        Esp32Simulator sim = simulator;
+        Transport transport = sim != null ? sim.connectPiped() : createRfcommTransport();
 
-            isConnected = true;
+        ServoLink link = new ServoLink(transport, linkEvents, ioExecutor);
+        link.setBinaryProtocolEnabled(binaryProtocolEnabled);
+        link.setBatchTelemetryEnabled(batchTelemetryEnabled);
+        link.setTelemetryStore(telemetryStore);
+        link.setCommandStore(commandStore);
+        link.setLatencyTracker(latencyTracker);
+        link.setStepAnalyzer(stepAnalyzer);
+        link.setCommandRateLimiter(createRateLimiter());
+        link.setWaypointUploader(waypointUploader);
+        link.setMetricsRegistry(metrics);
+        servoLink = link;
+        return link;
+    }
+
+    private Transport createRfcommTransport() {
+        if (!hasBluetoothPermissions()) {
+            throw new SecurityException("Permisos de Bluetooth no otorgados");
+        }
+
+        // Un descubrimiento activo hace mucho más lenta la conexión RFCOMM
+        try {
+            bluetoothAdapter.cancelDiscovery();
+        } catch (SecurityException e) {
+            Log.d(TAG, "No se pudo cancelar el descubrimiento: " + e.getMessage());
+        }
+        return new RfcommTransport(esp32Device, MY_UUID);
+    }
 
+    // Llega desde los hilos de E/S del enlace y del supervisor, todo se pasa al hilo principal
+    private final ConnectionSupervisor.Listener linkListener = new ConnectionSupervisor.Listener() {
+        @Override
+        public void onConnected() {
+            if (everConnected) {
+                reconnectMetric.increment();
+            }
+            everConnected = true;
+            // El filtro no debe arrastrar el valor de la conexión anterior
+            filterResetPending = true;
+            ServoLink link = servoLink;
+            if (link != null) {
+                Log.d(TAG, "Conectado al ESP32 por " + link.getTransport().getName());
+                if (link.getTransport() instanceof RfcommTransport) {
+                    String address = ((RfcommTransport) link.getTransport()).getDevice().getAddress();
+                    preferences.edit().putString(KEY_LAST_ADDRESS, address).apply();
+                }
+                startSessionRecording(link);
+            }
+            notifyConnectionChanged(true);
+        }
+
+        @Override
+        public void onStateChanged(ConnectionState state) {
+            // Los avisos pueden llegar en desorden desde hilos distintos, se lee el estado vigente al atenderlo
             mainHandler.post(() -> {
                 if (listener != null) {
-                    listener.onConnectionChanged(true);
+                    listener.onConnectionStateChanged(supervisor.getState());
                 }
             });
+        }
 
-            startReadThread();
-            Log.d(TAG, "Conectado al ESP32");
+        @Override
+        public void onConnectFailed(Exception error, long retryDelayMillis) {
+            if (retryDelayMillis >= 0) {
+                Log.d(TAG, "Intento de conexión fallido (" + error.getMessage() + "), reintento en "
+                        + retryDelayMillis + " ms");
+                return;
+            }
 
-        } catch (SecurityException e) {
-            Log.e(TAG, "SecurityException al conectar: " + e.getMessage());
-            notifyError("Permisos insuficientes para conectar");
-            if (listener != null) {
-                mainHandler.post(() -> listener.onPermissionRequired());
+            if (error instanceof SecurityException) {
+                Log.e(TAG, "SecurityException al conectar: " + error.getMessage());
+                notifyError("Permisos insuficientes para conectar");
+                if (listener != null) {
+                    mainHandler.post(() -> listener.onPermissionRequired());
+                }
+            } else {
+                Log.e(TAG, "Error al conectar: " + error.getMessage());
+                notifyError("Error al conectar: " + error.getMessage());
+                // La dirección guardada puede ser de otro equipo, la próxima vez se busca por nombre
+                forgetCachedDevice();
             }
-        } catch (IOException e) {
-            Log.e(TAG, "Error al conectar: " + e.getMessage());
-            notifyError("Error al conectar: " + e.getMessage());
-            disconnect();
-        }
-    }
-
-    private void startReadThread() {
-        readThread = new Thread(() -> {
-            byte[] buffer = new byte[1024];
-            int bytes;
-
-            while (isConnected) {
-                try {
-                    bytes = inputStream.read(buffer);
-                    String receivedData = new String(buffer, 0, bytes).trim();
-
-                    mainHandler.post(() -> {
-                        if (listener != null) {
-                            listener.onDataReceived(receivedData);
-                        }
-                    });
-
-                } catch (IOException e) {
-                    if (isConnected) {
-                        Log.e(TAG, "Error al leer datos: " + e.getMessage());
-                        notifyError("Conexión perdida");
-                        disconnect();
-                    }
-                    break;
+            notifyConnectionChanged(false);
+        }
+
+        @Override
+        public void onDisconnected() {
+            waypointUploader.onLinkLost();
+            stopSessionRecording();
+            logLinkStats();
+            notifyConnectionChanged(false);
+            Log.d(TAG, "Desconectado del ESP32");
+        }
+
+        @Override
+        public void onPosition(float angle) {
+            deliverPosition(telemetryStore.getLatestTimestamp(), angle);
+        }
+
+        @Override
+        public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+            deliverPositionBatch(timestampsNanos, angles, count);
+        }
+
+        @Override
+        public void onLine(String line) {
+            mainHandler.post(() -> {
+                if (listener != null) {
+                    listener.onDataReceived(line);
                 }
+            });
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+            Log.d(TAG, "Protocolo binario negociado, versión " + version);
+        }
+
+        @Override
+        public void onError(String error) {
+            Log.e(TAG, error);
+            notifyError(error);
+        }
+    };
+
+    // La muestra ya está en telemetryStore, se avisa a la UI igual para telemetría real y reproducida.
+    // Se filtra aquí, en el hilo que la recibe, y si el valor a mostrar no cambia la UI no se entera
+    private void deliverPosition(long timestamp, float angle) {
+        if (filterForDisplay(timestamp, angle)) {
+            notifyDisplay();
+        }
+    }
+
+    // Un lote se filtra muestra por muestra con sus propios tiempos, pero la UI recibe un solo aviso
+    private void deliverPositionBatch(long[] timestamps, float[] angles, int count) {
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            changed |= filterForDisplay(timestamps[i], angles[i]);
+        }
+        if (changed) {
+            notifyDisplay();
+        }
+    }
+
+    // true si el valor filtrado cambia lo que se muestra, en ese caso queda en displayStore
+    private boolean filterForDisplay(long timestamp, float angle) {
+        TelemetryFilter filter = telemetryFilter;
+        if (filterResetPending) {
+            filterResetPending = false;
+            if (filter != null) filter.reset();
+            lastDisplayedAngle = Float.NaN;
+        }
+        filteredSampleCount++;
+        if (filter != null) {
+            angle = filter.filter(timestamp, angle);
+        }
+        if (angle == lastDisplayedAngle) {
+            suppressedUpdateCount++;
+            return false;
+        }
+        lastDisplayedAngle = angle;
+        displayStore.append(timestamp, angle);
+        return true;
+    }
+
+    private void notifyDisplay() {
+        if (frameAlignedDelivery) {
+            // Una sola actualización de la UI por cuadro sin importar cuántas muestras lleguen
+            frameDispatcher.onSampleAvailable();
+            return;
+        }
+
+        TelemetryBatch batch = TelemetryBatch.single(displayStore.getLatestTimestamp(), lastDisplayedAngle);
+        mainHandler.post(() -> {
+            if (listener != null) {
+                listener.onTelemetryFrame(batch);
             }
         });
-        readThread.start();
     }
 
-    public void sendAngle(int angle) {
-        if (!isConnected || outputStream == null) {
+    // Reproduce una sesión grabada a la velocidad indicada (SessionReplayer.MAX_SPEED sin esperas).
+    // driveDevice false: revisión sin conexión, comandos y posiciones van a los historiales y a la UI
+    // como si llegaran en vivo. driveDevice true: solo se reenvían los comandos a la ESP32 conectada y
+    // la posición que se ve es la real
+    public boolean replaySession(File file, float speed, boolean driveDevice) {
+        if (driveDevice && !isConnected()) {
             notifyError("No hay conexión Bluetooth");
-            return;
+            return false;
+        }
+        if (!driveDevice && isConnectionActive()) {
+            // El historial de telemetría admite un solo escritor, el hilo de lectura del enlace
+            notifyError("Desconecta antes de revisar una sesión");
+            return false;
         }
 
-        new Thread(() -> {
+        replayDrivesDevice = driveDevice;
+        if (!driveDevice) {
+            filterResetPending = true;
+        }
+        ioExecutor.execute(() -> {
             try {
-                String command = "ANGLE:" + angle + "\n";
-                outputStream.write(command.getBytes());
-                outputStream.flush();
-                Log.d(TAG, "Enviado: " + command.trim());
+                SessionReader session = SessionReader.open(file);
+                Log.d(TAG, "Reproduciendo " + file.getName() + ": " + session.getRecordCount()
+                        + " registros, " + (session.getDurationNanos() / 1_000_000) + " ms");
+                sessionReplayer.start(session, speed);
             } catch (IOException e) {
-                Log.e(TAG, "Error al enviar datos: " + e.getMessage());
-                notifyError("Error al enviar datos");
+                Log.e(TAG, "No se pudo leer la sesión: " + e.getMessage());
+                notifyError("No se pudo leer la sesión: " + e.getMessage());
             }
-        }).start();
+        });
+        return true;
     }
 
-    public void disconnect() {
-        isConnected = false;
+    public void stopReplay() {
+        sessionReplayer.stop();
+    }
 
-        if (readThread != null) {
-            readThread.interrupt();
-        }
+    public boolean isReplaying() {
+        return sessionReplayer.isRunning();
+    }
 
-        try {
-            if (outputStream != null) {
-                outputStream.close();
+    public SessionReplayer getSessionReplayer() {
+        return sessionReplayer;
+    }
+
+    // Llega desde el hilo de la reproducción, que es el único escritor de los historiales mientras no hay conexión
+    private final SessionReplayer.Sink replaySink = new SessionReplayer.Sink() {
+        @Override
+        public void onReplayCommand(long replayNanos, float angle) {
+            if (replayDrivesDevice) {
+                ServoLink link = servoLink;
+                if (link != null && link.isConnected()) {
+                    link.sendAngleCenti(BinaryProtocol.degreesToCenti(angle));
+                } else {
+                    sessionReplayer.stop();
+                }
+                return;
             }
-            if (inputStream != null) {
-                inputStream.close();
+            synchronized (commandStore) {
+                commandStore.append(replayNanos, angle);
             }
-            if (bluetoothSocket != null) {
-                bluetoothSocket.close();
+            stepAnalyzer.onCommand(replayNanos, angle);
+        }
+
+        @Override
+        public void onReplayPosition(long replayNanos, float angle) {
+            if (replayDrivesDevice) return;
+            telemetryStore.append(replayNanos, angle);
+            stepAnalyzer.onPosition(replayNanos, angle);
+            deliverPosition(replayNanos, angle);
+        }
+
+        @Override
+        public void onReplayFinished(boolean completed) {
+            Log.d(TAG, "Reproducción " + (completed ? "terminada" : "detenida") + ": "
+                    + sessionReplayer.getLastRunRecords() + " registros a "
+                    + Math.round(sessionReplayer.getLastRunRecordsPerSecond()) + " por segundo, retraso "
+                    + sessionReplayer.getLagHistogram().summary());
+        }
+    };
+
+    public void sendAngle(int angle) {
+        ServoLink link = servoLink;
+        if (link == null || !link.isConnected()) {
+            notifyError("No hay conexión Bluetooth");
+            return;
+        }
+
+        // Un ángulo manual (seekbar) tiene prioridad sobre el movimiento perfilado en curso
+        setpointStreamer.stop();
+        // No bloquea, si el escritor aún no envió el ángulo anterior este lo reemplaza
+        link.sendAngle(angle);
+    }
+
+    // Carga una secuencia para que la ESP32 la ejecute con su propio reloj: retraso en ms desde el punto
+    // anterior y ángulo en grados de cada punto. Reemplaza la secuencia anterior. listener recibe los
+    // avisos en el hilo principal, puede ser null
+    public boolean uploadWaypoints(int[] delaysMillis, float[] angles, WaypointUploader.Listener listener) {
+        ServoLink link = servoLink;
+        CommandWriter writer = link != null ? link.getCommandWriter() : null;
+        if (writer == null || !link.isConnected()) {
+            notifyError("No hay conexión Bluetooth");
+            return false;
+        }
+
+        int[] centiDegrees = new int[angles.length];
+        for (int i = 0; i < angles.length; i++) {
+            centiDegrees[i] = BinaryProtocol.degreesToCenti(angles[i]);
+        }
+        waypointListener = listener;
+        try {
+            waypointUploader.upload(delaysMillis, centiDegrees, writer.isBinaryMode());
+        } catch (IllegalArgumentException e) {
+            notifyError("Secuencia inválida: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    // Una sola orden por acción, la ESP32 lleva los tiempos
+    public boolean startWaypoints() {
+        // Los puntos del streamer competirían con la secuencia
+        setpointStreamer.stop();
+        return waypointUploader.start();
+    }
+
+    public boolean pauseWaypoints() {
+        return waypointUploader.pause();
+    }
+
+    public boolean resumeWaypoints() {
+        return waypointUploader.resume();
+    }
+
+    public boolean abortWaypoints() {
+        return waypointUploader.abort();
+    }
+
+    public WaypointUploader getWaypointUploader() {
+        return waypointUploader;
+    }
+
+    private boolean submitToLink(byte[] data) {
+        ServoLink link = servoLink;
+        return link != null && link.submitFrame(data);
+    }
+
+    // Desde el hilo de lectura, de la UI o del tiempo límite, con el candado del uploader tomado
+    private final WaypointUploader.Listener waypointEvents = new WaypointUploader.Listener() {
+        @Override
+        public void onStateChanged(WaypointUploader.State state) {
+            Log.d(TAG, "Secuencia: " + state);
+            if (state == WaypointUploader.State.READY) {
+                Log.d(TAG, "Carga de secuencia: " + waypointUploader.getUploadTimeHistogram().summary()
+                        + ", bloques reenviados " + waypointUploader.getRetransmittedChunkCount());
             }
-        } catch (IOException e) {
-            Log.e(TAG, "Error al cerrar conexión: " + e.getMessage());
+            mainHandler.post(() -> {
+                WaypointUploader.Listener current = waypointListener;
+                if (current != null) {
+                    current.onStateChanged(state);
+                }
+            });
         }
 
-        mainHandler.post(() -> {
-            if (listener != null) {
-                listener.onConnectionChanged(false);
+        @Override
+        public void onUploadProgress(int acknowledged, int total) {
+            mainHandler.post(() -> {
+                WaypointUploader.Listener current = waypointListener;
+                if (current != null) {
+                    current.onUploadProgress(acknowledged, total);
+                }
+            });
+        }
+
+        @Override
+        public void onError(String error) {
+            Log.e(TAG, "Secuencia: " + error);
+            mainHandler.post(() -> {
+                WaypointUploader.Listener current = waypointListener;
+                if (current != null) {
+                    current.onError(error);
+                }
+            });
+        }
+    };
+
+    // Lleva el servo al ángulo siguiendo un perfil de movimiento, en lugar de un solo salto
+    public void moveToAngle(int angle) {
+        ServoLink link = servoLink;
+        if (link == null || !link.isConnected()) {
+            notifyError("No hay conexión Bluetooth");
+            return;
+        }
+
+        float start = estimateCurrentAngle();
+        if (Float.isNaN(start)) {
+            // Sin posición conocida no hay desde dónde trazar el perfil
+            link.sendAngle(angle);
+            return;
+        }
+        setpointStreamer.start(new MotionProfile(profileShape, start, angle, maxVelocity, maxAcceleration));
+    }
+
+    // Punto de partida del perfil: el punto en curso si hay un movimiento, si no la última posición
+    // reportada y, a falta de telemetría, el último comando
+    private float estimateCurrentAngle() {
+        if (setpointStreamer.isMoving()) {
+            float setpoint = setpointStreamer.getLastSetpoint();
+            if (!Float.isNaN(setpoint)) return setpoint;
+        }
+        float position = telemetryStore.getLatestValue();
+        if (!Float.isNaN(position)) return position;
+        return commandStore.getLatestValue();
+    }
+
+    // Desde el hilo del streamer, una vez por periodo
+    private void sendSetpoint(float angle) {
+        ServoLink link = servoLink;
+        if (link == null || !link.isConnected()) {
+            setpointStreamer.stop();
+            return;
+        }
+        link.sendAngleCenti(BinaryProtocol.degreesToCenti(angle));
+    }
+
+    public void setMotionProfile(MotionProfile.Shape shape, float maxVelocity, float maxAcceleration) {
+        // Se valida aquí para no fallar después en el hilo del streamer
+        new MotionProfile(shape, 0, 0, maxVelocity, maxAcceleration);
+        this.profileShape = shape;
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+    }
+
+    public ServoLinkPool getLinkPool() {
+        return linkPool;
+    }
+
+    public SetpointStreamer getSetpointStreamer() {
+        return setpointStreamer;
+    }
+
+    public ServoLink getServoLink() {
+        return servoLink;
+    }
+
+    // true (predeterminado): la telemetría se agrupa y se entrega una vez por cuadro de pantalla.
+    // false: cada muestra se entrega por separado, como se hacía antes
+    public void setFrameAlignedDelivery(boolean enabled) {
+        frameAlignedDelivery = enabled;
+    }
+
+    // Filtro de la posición que se muestra, null para mostrar la lectura cruda. Se cambia desde cualquier
+    // hilo, el de lectura toma la nueva cadena desde su estado inicial
+    public void setTelemetryFilter(TelemetryFilter filter) {
+        telemetryFilter = filter;
+        filterResetPending = true;
+    }
+
+    public TelemetryFilter getTelemetryFilter() {
+        return telemetryFilter;
+    }
+
+    // Posiciones que pasaron por el filtro y las que no cambiaron lo que se muestra
+    public long getFilteredSampleCount() {
+        return filteredSampleCount;
+    }
+
+    public long getSuppressedUpdateCount() {
+        return suppressedUpdateCount;
+    }
+
+    // Contadores, tasas e indicadores del camino Bluetooth para el panel de depuración y el volcado JSON
+    public MetricsRegistry getMetricsRegistry() {
+        return metrics;
+    }
+
+    public TelemetryFrameDispatcher getFrameDispatcher() {
+        return frameDispatcher;
+    }
+
+    // Historial de posiciones recibidas, se conserva entre reconexiones
+    public TelemetryStore getTelemetryStore() {
+        return telemetryStore;
+    }
+
+    // Ángulos enviados, se conservan entre reconexiones
+    public TelemetryStore getCommandStore() {
+        return commandStore;
+    }
+
+    // Latencia comando → posición, acumulada entre reconexiones
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    // Respuesta a cada escalón comandado, en vivo y en las sesiones revisadas sin conexión
+    public StepResponseAnalyzer getStepAnalyzer() {
+        return stepAnalyzer;
+    }
+
+    // Analiza todas las sesiones grabadas repartiéndolas entre los núcleos. Es trabajo de CPU, así que
+    // usa un pool propio del tamaño del procesador en lugar de ocupar los hilos de E/S. Quien espera el
+    // resultado también va en un hilo aparte, bloquea hasta que termina la última sesión
+    public void analyzeRecordedSessions(SessionAnalysisListener analysisListener) {
+        new Thread(() -> {
+            List<File> files = Arrays.asList(listSessions());
+            int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                long start = System.nanoTime();
+                StepResponseAnalyzer result = StepResponseAnalyzer.analyzeSessions(files, pool);
+                Log.d(TAG, "Análisis de " + result.getSessionCount() + "/" + files.size() + " sesiones en "
+                        + ((System.nanoTime() - start) / 1_000_000) + " ms con " + threads + " hilos");
+                mainHandler.post(() -> analysisListener.onSessionsAnalyzed(result, files.size()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pool.shutdownNow();
             }
-        });
+        }, "SessionAnalysis").start();
+    }
+
+    private TokenBucket createRateLimiter() {
+        double rate = commandRatePerSecond;
+        return rate > 0 ? new TokenBucket(rate, commandBurst) : null;
+    }
+
+    // Ángulos por segundo y ráfaga hacia la ESP32, se aplica también a la conexión abierta. 0 sin límite
+    public void setCommandRateLimit(double ratePerSecond, double burst) {
+        commandRatePerSecond = ratePerSecond;
+        commandBurst = burst;
+        ServoLink link = servoLink;
+        if (link != null) {
+            link.setCommandRateLimiter(createRateLimiter());
+        }
+    }
+
+    // Escritor de la conexión actual, null si nunca se conectó
+    public CommandWriter getCommandWriter() {
+        ServoLink link = servoLink;
+        return link != null ? link.getCommandWriter() : null;
+    }
+
+    // Solo tiene efecto en la siguiente conexión
+    public void setBinaryProtocolEnabled(boolean enabled) {
+        binaryProtocolEnabled = enabled;
+    }
+
+    public boolean isBinaryProtocolEnabled() {
+        return binaryProtocolEnabled;
+    }
+
+    // Pide telemetría por lotes en modo binario, solo tiene efecto en la siguiente conexión
+    public void setBatchTelemetryEnabled(boolean enabled) {
+        batchTelemetryEnabled = enabled;
+    }
+
+    public boolean isBatchTelemetryEnabled() {
+        return batchTelemetryEnabled;
+    }
+
+    // Desconexión pedida por el usuario, también cancela los intentos de reconexión pendientes
+    public void disconnect() {
+        boolean wasConnected = isConnected();
+        setpointStreamer.stop();
+        supervisor.stop();
+        if (!wasConnected) {
+            // Si estaba conectado el aviso a la UI llega por onDisconnected
+            notifyConnectionChanged(false);
+        }
+    }
 
-        Log.d(TAG, "Desconectado del ESP32");
+    // Cuando la actividad se destruye: desconecta y detiene los hilos de E/S, el manager ya no se puede usar
+    public void release() {
+        sessionReplayer.stop();
+        setpointStreamer.stop();
+        supervisor.stop();
+        linkPool.shutdown();
+        // El cierre queda en la cola y shutdown() todavía lo ejecuta
+        stopSessionRecording();
+        frameDispatcher.cancel();
+        ioExecutor.shutdown();
+    }
+
+    // true mientras esté conectado, conectando o esperando para reconectar
+    public boolean isConnectionActive() {
+        return supervisor.isActive();
+    }
+
+    public ConnectionSupervisor getSupervisor() {
+        return supervisor;
     }
 
     public boolean isConnected() {
-        return isConnected;
+        ServoLink link = servoLink;
+        return link != null && link.isConnected();
+    }
+
+    private void logLinkStats() {
+        ServoLink link = servoLink;
+        if (link == null) return;
+
+        CommandWriter writer = link.getCommandWriter();
+        if (writer != null) {
+            Log.d(TAG, "Comandos enviados: " + writer.getSentCount()
+                    + ", coalescidos: " + writer.getCoalescedCount());
+            Log.d(TAG, "Control de flujo: limitados por tasa " + writer.getRateLimitedCount()
+                    + ", sin créditos " + writer.getCreditStalledCount()
+                    + ", créditos vencidos " + writer.getCreditTimeoutCount()
+                    + ", espera en cola " + writer.getQueueDelayHistogram().summary());
+        }
+        ProtocolDecoder decoder = link.getProtocolDecoder();
+        if (decoder != null) {
+            Log.d(TAG, "Tramas recibidas: " + decoder.getFrameCount()
+                    + ", mal formadas: " + decoder.getMalformedCount()
+                    + ", lotes: " + decoder.getBatchCount()
+                    + " con " + decoder.getBatchSampleCount() + " muestras"
+                    + ", perdidas entre lotes: " + link.getLostBatchSampleCount());
+        }
+        Log.d(TAG, "Cuadros de telemetría: " + frameDispatcher.getFrameCount()
+                + ", muestras agrupadas: " + frameDispatcher.getCollapsedCount());
+        Log.d(TAG, "Latencia comando → posición: " + latencyTracker.getHistogram().summary());
+        Log.d(TAG, "Respuesta al escalón: " + stepAnalyzer.summary());
+        Log.d(TAG, "Intentos de conexión: " + supervisor.getAttemptCount()
+                + ", fallidos: " + supervisor.getFailureCount()
+                + ", tiempo agotado: " + supervisor.getTimeoutCount()
+                + ", enlaces perdidos: " + supervisor.getLinkLossCount());
+        Log.d(TAG, "Tiempo de conexión: " + supervisor.getConnectTimeHistogram().summary()
+                + ", recuperación: " + supervisor.getRecoveryTimeHistogram().summary());
+        Log.d(TAG, "Métricas: " + metrics.toJson(System.nanoTime()));
+        Log.d(TAG, "Puntos de trayectoria: " + setpointStreamer.getSetpointCount()
+                + ", plazos perdidos: " + setpointStreamer.getMissedDeadlineCount()
+                + ", jitter: " + setpointStreamer.getJitterHistogram().summary());
+        for (ServoLinkPool.ChannelStats stats : linkPool.snapshotStats()) {
+            Log.d(TAG, "Canal " + stats);
+        }
+    }
+
+    private void notifyConnectionChanged(boolean connected) {
+        mainHandler.post(() -> {
+            if (listener != null) {
+                listener.onConnectionChanged(connected);
+            }
+        });
     }
 
     private void notifyError(String error) {
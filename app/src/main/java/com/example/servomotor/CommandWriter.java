@@ -0,0 +1,433 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es el escritor de comandos hacia la ESP32. Antes se creaba un hilo nuevo por cada
+llamada a sendAngle, lo que al arrastrar el seekbar generaba cientos de hilos escribiendo sobre
+el mismo OutputStream sin orden alguno. Ahora existe un único hilo escritor de larga vida que
+toma los comandos de un slot atómico donde solo sobrevive el ángulo más reciente (los ángulos
+viejos ya no importan, se descartan y se cuentan como "coalescidos").
+
+Además existe una cola acotada para tramas que NO deben fusionarse (comandos de control), si la
+cola se llena la trama se descarta y se cuenta.
+
+El ángulo se guarda en centésimas de grado. En modo texto se redondea a grados enteros y en modo
+binario (ver BinaryProtocol) se envía tal cual.
+
+Control de flujo, solo para los ángulos (las tramas de la cola son pocas y de control):
+- un TokenBucket opcional limita cuántos ángulos por segundo salen, con una ráfaga corta permitida.
+- si la ESP32 concede créditos (ver BinaryProtocol) no se envía un ángulo sin crédito. Si pasa
+  creditTimeoutNanos sin créditos nuevos se asume un ACK perdido y se envía igual.
+Mientras se espera, el ángulo sigue en el slot y los que llegan lo reemplazan, así lo que sale después es
+siempre el más reciente y nunca se acumulan comandos viejos en el socket. Se cuenta cuántas veces se
+retuvo un ángulo por cada motivo y cuánto esperó cada uno desde que entró al slot.
+
+El ciclo de escritura corre en su propio hilo o, si se pasa un Executor, en un hilo de ese Executor
+(BluetoothManager comparte uno para toda la E/S y así no se crean hilos por conexión).
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class CommandWriter {
+    private static final int NO_PENDING = Integer.MIN_VALUE;
+    private static final byte[] ANGLE_PREFIX = {'A', 'N', 'G', 'L', 'E', ':'};
+
+    public static final int DEFAULT_BACKLOG = 32;
+    public static final double DEFAULT_RATE_PER_SECOND = 100;
+    public static final double DEFAULT_BURST = 8;
+    public static final int MAX_CREDITS = 255;
+    public static final long DEFAULT_CREDIT_TIMEOUT_NANOS = 1_000_000_000L;
+    // Tamaño máximo de un comando ANGLE codificado: prefijo + signo + 10 dígitos + salto de línea
+    public static final int MAX_ANGLE_COMMAND_LENGTH = ANGLE_PREFIX.length + 12;
+
+    // Nombres en el MetricsRegistry, suman todas las conexiones que compartan el registro
+    public static final String METRIC_BYTES_OUT = "link.bytes_out";
+    public static final String METRIC_FRAMES_OUT = "link.frames_out";
+
+    public interface ErrorListener {
+        void onWriteError(IOException e);
+    }
+
+    private final OutputStream outputStream;
+    private final ErrorListener errorListener;
+    private final AtomicInteger pendingAngle = new AtomicInteger(NO_PENDING);
+    private final ArrayBlockingQueue<byte[]> backlog;
+    private final Executor executor;
+    private final byte[] encodeBuffer = new byte[Math.max(MAX_ANGLE_COMMAND_LENGTH, BinaryProtocol.FRAME_SIZE)];
+    private int sequence = 0;
+    private volatile boolean binaryMode = false;
+
+    // Control de flujo. creditsEnabled se activa con el primer CREDIT de la ESP32
+    private volatile TokenBucket rateLimiter;
+    private volatile boolean creditsEnabled = false;
+    private final AtomicInteger credits = new AtomicInteger();
+    private volatile long creditTimeoutNanos = DEFAULT_CREDIT_TIMEOUT_NANOS;
+    private volatile long lastCreditNanos;
+    // Momento en que el ángulo pendiente entró al slot vacío
+    private volatile long pendingSinceNanos;
+    // Solo el hilo escritor: el ángulo pendiente ya se contó como retenido
+    private boolean holding = false;
+
+    // Contadores, se leen desde cualquier hilo
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong sentAngleCount = new AtomicLong();
+    private final AtomicLong ackedCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong creditStalledCount = new AtomicLong();
+    private final AtomicLong creditTimeoutCount = new AtomicLong();
+    private final LatencyHistogram queueDelayHistogram = new LatencyHistogram();
+    // Del MetricsRegistry, null si no hay registro
+    private volatile MetricsRegistry.Counter bytesOutMetric;
+    private volatile MetricsRegistry.Counter framesOutMetric;
+
+    private volatile boolean running = false;
+    // Una vez detenido no vuelve a arrancar, aunque start() llegue tarde desde otro hilo
+    private boolean stopped = false;
+    private volatile Thread writerThread;
+
+    public CommandWriter(OutputStream outputStream, ErrorListener errorListener) {
+        this(outputStream, errorListener, DEFAULT_BACKLOG);
+    }
+
+    public CommandWriter(OutputStream outputStream, ErrorListener errorListener, int backlogCapacity) {
+        this(outputStream, errorListener, backlogCapacity, null);
+    }
+
+    // executor null: se crea un hilo propio
+    public CommandWriter(OutputStream outputStream, ErrorListener errorListener, int backlogCapacity, Executor executor) {
+        this.outputStream = outputStream;
+        this.errorListener = errorListener;
+        this.backlog = new ArrayBlockingQueue<>(backlogCapacity);
+        this.executor = executor;
+    }
+
+    public synchronized void start() {
+        if (running || stopped) return;
+        running = true;
+        if (executor == null) {
+            Thread thread = new Thread(this::runLoop, "CommandWriter");
+            writerThread = thread;
+            thread.start();
+        } else {
+            executor.execute(this::runLoop);
+        }
+    }
+
+    // No espera a que el hilo termine, si está bloqueado en write() lo libera el cierre del stream
+    public synchronized void stop() {
+        stopped = true;
+        running = false;
+        Thread thread = writerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void runLoop() {
+        writerThread = Thread.currentThread();
+        try {
+            writeLoop();
+        } finally {
+            writerThread = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Cambia la codificación de los ángulos, las tramas de la cola se envían tal cual
+    public void setBinaryMode(boolean binaryMode) {
+        this.binaryMode = binaryMode;
+    }
+
+    public boolean isBinaryMode() {
+        return binaryMode;
+    }
+
+    // El último ángulo gana, si había uno pendiente sin enviar se reemplaza
+    public void submitAngle(int angle) {
+        submitAngleCenti(angle * 100);
+    }
+
+    public void submitAngleCenti(int centiDegrees) {
+        if (centiDegrees == NO_PENDING) {
+            throw new IllegalArgumentException("Ángulo fuera de rango: " + centiDegrees);
+        }
+        if (pendingAngle.get() == NO_PENDING) {
+            pendingSinceNanos = System.nanoTime();
+        }
+        int previous = pendingAngle.getAndSet(centiDegrees);
+        if (previous != NO_PENDING) {
+            coalescedCount.incrementAndGet();
+        }
+        wakeUp();
+    }
+
+    // Tramas que se envían tal cual y en orden, devuelve false si la cola está llena
+    public boolean submitFrame(byte[] frame) {
+        if (!backlog.offer(frame)) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        wakeUp();
+        return true;
+    }
+
+    // null para no limitar la tasa, puede cambiarse con la conexión abierta
+    public void setRateLimiter(TokenBucket limiter) {
+        rateLimiter = limiter;
+        wakeUp();
+    }
+
+    public TokenBucket getRateLimiter() {
+        return rateLimiter;
+    }
+
+    // Cuenta bytes y tramas escritas en el registro, null para dejar de contar
+    public void setMetricsRegistry(MetricsRegistry registry) {
+        bytesOutMetric = registry != null ? registry.counter(METRIC_BYTES_OUT) : null;
+        framesOutMetric = registry != null ? registry.counter(METRIC_FRAMES_OUT) : null;
+    }
+
+    private void recordWrite(int bytes) {
+        MetricsRegistry.Counter bytesOut = bytesOutMetric;
+        MetricsRegistry.Counter framesOut = framesOutMetric;
+        if (bytesOut != null) bytesOut.add(bytes);
+        if (framesOut != null) framesOut.increment();
+    }
+
+    // Desde el hilo de lectura, cuando la ESP32 concede créditos con CREDIT. Activa el control por créditos
+    public void addCredits(int granted) {
+        creditsEnabled = true;
+        returnCredits(granted);
+    }
+
+    // Cada ACK devuelve el crédito del ángulo que confirma. Sin un CREDIT previo solo se cuenta: un
+    // firmware que confirma pero nunca concede créditos no debe quedar en modo pare y espere
+    public void onAck() {
+        ackedCount.incrementAndGet();
+        if (creditsEnabled) {
+            returnCredits(1);
+        }
+    }
+
+    private void returnCredits(int granted) {
+        lastCreditNanos = System.nanoTime();
+        int current;
+        do {
+            current = credits.get();
+        } while (!credits.compareAndSet(current, Math.min(MAX_CREDITS, current + granted)));
+        wakeUp();
+    }
+
+    public void setCreditTimeoutNanos(long nanos) {
+        creditTimeoutNanos = nanos;
+    }
+
+    private void wakeUp() {
+        Thread thread = writerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (running) {
+                boolean wrote = false;
+
+                // Primero las tramas de control para respetar su orden respecto al ángulo
+                byte[] frame;
+                while ((frame = backlog.poll()) != null) {
+                    outputStream.write(frame);
+                    sentCount.incrementAndGet();
+                    recordWrite(frame.length);
+                    wrote = true;
+                }
+
+                long throttleNanos = 0;
+                if (pendingAngle.get() != NO_PENDING) {
+                    long now = System.nanoTime();
+                    throttleNanos = throttleNanos(now);
+                    if (throttleNanos == 0) {
+                        writeAngle(pendingAngle.getAndSet(NO_PENDING), now);
+                        wrote = true;
+                    }
+                }
+
+                if (wrote) {
+                    outputStream.flush();
+                } else if (throttleNanos > 0) {
+                    // Despierta al cumplirse la espera o antes si llegan créditos
+                    LockSupport.parkNanos(this, throttleNanos);
+                } else {
+                    // No hay trabajo, se duerme hasta que llegue un comando (submitAngle hace unpark)
+                    LockSupport.park(this);
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                running = false;
+                if (errorListener != null) {
+                    errorListener.onWriteError(e);
+                }
+            }
+        }
+    }
+
+    // 0 si el ángulo pendiente puede salir ya (y gasta su crédito y su ficha), si no cuánto esperar
+    private long throttleNanos(long now) {
+        if (creditsEnabled && credits.get() <= 0) {
+            long sinceCredit = now - lastCreditNanos;
+            long timeout = creditTimeoutNanos;
+            if (sinceCredit < timeout) {
+                if (!holding) {
+                    holding = true;
+                    creditStalledCount.incrementAndGet();
+                }
+                return timeout - sinceCredit;
+            }
+            // Se perdió un ACK o la ESP32 se reinició, se presta un crédito para no quedar trabado
+            creditTimeoutCount.incrementAndGet();
+            lastCreditNanos = now;
+            credits.incrementAndGet();
+        }
+
+        TokenBucket limiter = rateLimiter;
+        if (limiter != null && !limiter.tryAcquire(now)) {
+            if (!holding) {
+                holding = true;
+                rateLimitedCount.incrementAndGet();
+            }
+            return Math.max(1, limiter.nanosUntilAvailable(now));
+        }
+
+        if (creditsEnabled) {
+            credits.decrementAndGet();
+        }
+        holding = false;
+        return 0;
+    }
+
+    private void writeAngle(int centiDegrees, long now) throws IOException {
+        int length;
+        if (binaryMode) {
+            length = BinaryProtocol.encodeAngle(sequence, centiDegrees, encodeBuffer, 0);
+            sequence = (sequence + 1) & 0xFF;
+        } else {
+            length = encodeAngle(roundCentiToDegrees(centiDegrees), encodeBuffer, 0);
+        }
+        outputStream.write(encodeBuffer, 0, length);
+        sentCount.incrementAndGet();
+        sentAngleCount.incrementAndGet();
+        recordWrite(length);
+        queueDelayHistogram.recordNanos(now - pendingSinceNanos);
+    }
+
+    private static int roundCentiToDegrees(int centiDegrees) {
+        return centiDegrees >= 0 ? (centiDegrees + 50) / 100 : (centiDegrees - 50) / 100;
+    }
+
+    // Codifica "ANGLE:<angle>\n" en ASCII sin crear Strings, devuelve la cantidad de bytes escritos
+    public static int encodeAngle(int angle, byte[] dst, int offset) {
+        int pos = offset;
+        for (byte b : ANGLE_PREFIX) {
+            dst[pos++] = b;
+        }
+
+        long value = angle;
+        if (value < 0) {
+            dst[pos++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[pos + i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        pos += digits;
+
+        dst[pos++] = '\n';
+        return pos - offset;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int getBacklogSize() {
+        return backlog.size();
+    }
+
+    // Lo que espera para salir: tramas en la cola más el ángulo del slot
+    public int getQueueDepth() {
+        return backlog.size() + (pendingAngle.get() != NO_PENDING ? 1 : 0);
+    }
+
+    // Ángulos enviados que la ESP32 todavía no confirmó, 0 sin control por créditos
+    public long getInFlightCount() {
+        if (!creditsEnabled) return 0;
+        return Math.max(0, sentAngleCount.get() - ackedCount.get());
+    }
+
+    public boolean isCreditFlowControlActive() {
+        return creditsEnabled;
+    }
+
+    public int getCredits() {
+        return credits.get();
+    }
+
+    public long getSentAngleCount() {
+        return sentAngleCount.get();
+    }
+
+    // ACK recibidos, con o sin control por créditos
+    public long getAckedCount() {
+        return ackedCount.get();
+    }
+
+    // Veces que un ángulo tuvo que esperar por el limitador de tasa
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    // Veces que un ángulo tuvo que esperar por falta de créditos
+    public long getCreditStalledCount() {
+        return creditStalledCount.get();
+    }
+
+    public long getCreditTimeoutCount() {
+        return creditTimeoutCount.get();
+    }
+
+    // Tiempo de cada ángulo enviado desde que entró al slot vacío hasta que se escribió
+    public LatencyHistogram getQueueDelayHistogram() {
+        return queueDelayHistogram;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo define los estados de la conexión que maneja ConnectionSupervisor:
+
+IDLE          sin conexión y sin intentos pendientes (estado inicial o tras desconectar a mano)
+CONNECTING    hay un intento de conexión en curso
+CONNECTED     el enlace está abierto
+RECONNECTING  el enlace se perdió o un intento falló, se espera el siguiente intento
+ */
+
+public enum ConnectionState {
+    IDLE,
+    CONNECTING,
+    CONNECTED,
+    RECONNECTING
+}
@@ -0,0 +1,390 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo maneja el ciclo de vida de la conexión: conectar, detectar la pérdida del enlace y
+reconectar solo. Antes connect() bloqueaba un hilo suelto sin límite de tiempo y, si el enlace se caía,
+había que volver a tocar el botón.
+
+- Cada intento crea un ServoLink nuevo con el LinkFactory (un Transport solo se abre una vez).
+- Cada intento tiene un tiempo límite: si el transporte no abrió a tiempo se cierra desde otro hilo,
+  lo que cancela el connect() bloqueado. Funciona igual con RFCOMM, TCP o el transporte en memoria.
+- Si el enlace se pierde (y no fue por stop()) se reintenta con espera exponencial con jitter
+  (ReconnectPolicy). La primera conexión pedida por el usuario solo se intenta INITIAL_CONNECT_ATTEMPTS
+  veces para no dejarlo esperando si la ESP32 está apagada.
+- Se mide la duración de cada conexión exitosa y el tiempo de recuperación (desde que se perdió el
+  enlace hasta que volvió) en histogramas, además de contadores de intentos, fallos y tiempos agotados.
+
+El estado vive en una sola referencia atómica a una sesión inmutable (generación, estado y enlace
+actual) y cada transición es un compareAndSet sobre ella, sin candados. start() y stop() cambian la
+generación, así cualquier intento, tiempo límite o callback de un enlace viejo pierde el CAS y no hace
+nada. Solo el hilo que gana una transición toca la política de reintentos y las marcas de tiempo.
+
+Los intentos y los tiempos límite corren en un ScheduledExecutorService que normalmente pertenece a
+BluetoothManager (el mismo donde corren el lector y el escritor); necesita al menos dos hilos libres,
+uno puede quedar bloqueado en connect() mientras el otro vigila el tiempo. onStateChanged puede llegar
+desde cualquier hilo y dos avisos casi simultáneos pueden llegar en desorden; quien lo reciba debe
+consultar getState() si necesita el estado vigente.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConnectionSupervisor {
+    public static final long DEFAULT_CONNECT_TIMEOUT_MS = 4000;
+    public static final int INITIAL_CONNECT_ATTEMPTS = 3;
+
+    public interface LinkFactory {
+        // Crea el enlace sin conectarlo, los eventos deben ir al listener recibido
+        ServoLink create(ServoLink.Listener listener) throws IOException;
+    }
+
+    public interface Listener extends ServoLink.Listener {
+        void onStateChanged(ConnectionState state);
+
+        // retryDelayMillis < 0 si ya no se va a reintentar
+        void onConnectFailed(Exception error, long retryDelayMillis);
+    }
+
+    // Foto inmutable del estado, se reemplaza completa en cada transición
+    private static final class Session {
+        final int generation;
+        final ConnectionState state;
+        final ServoLink link;
+
+        Session(int generation, ConnectionState state, ServoLink link) {
+            this.generation = generation;
+            this.state = state;
+            this.link = link;
+        }
+    }
+
+    private final LinkFactory linkFactory;
+    private final Listener listener;
+    private final ReconnectPolicy policy;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final AtomicReference<Session> session =
+            new AtomicReference<>(new Session(0, ConnectionState.IDLE, null));
+    private volatile long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MS;
+    private volatile boolean autoReconnect = true;
+
+    // Solo las escribe el hilo que ganó la transición correspondiente
+    private volatile boolean everConnected;
+    private volatile int initialFailures;
+    private volatile long outageStartNanos;
+    private volatile long attemptStartNanos;
+
+    private final LatencyHistogram connectTimeHistogram = new LatencyHistogram();
+    private final LatencyHistogram recoveryTimeHistogram = new LatencyHistogram();
+    private final AtomicLong attemptCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong linkLossCount = new AtomicLong();
+
+    public ConnectionSupervisor(LinkFactory linkFactory, Listener listener) {
+        this(linkFactory, listener, new ReconnectPolicy());
+    }
+
+    // Con executor propio, para pruebas o uso fuera de BluetoothManager
+    public ConnectionSupervisor(LinkFactory linkFactory, Listener listener, ReconnectPolicy policy) {
+        this(linkFactory, listener, policy, createExecutor(), true);
+    }
+
+    // El executor es de quien lo pasa, shutdown() no lo detiene
+    public ConnectionSupervisor(LinkFactory linkFactory, Listener listener, ReconnectPolicy policy,
+                                ScheduledExecutorService executor) {
+        this(linkFactory, listener, policy, executor, false);
+    }
+
+    private ConnectionSupervisor(LinkFactory linkFactory, Listener listener, ReconnectPolicy policy,
+                                 ScheduledExecutorService executor, boolean ownsExecutor) {
+        this.linkFactory = linkFactory;
+        this.listener = listener;
+        this.policy = policy;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, "ServoLink-Connect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setKeepAliveTime(10, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // No hace nada si ya hay una conexión activa o en curso
+    public void start() {
+        Session current = session.get();
+        if (current.state != ConnectionState.IDLE) return;
+
+        Session next = new Session(current.generation + 1, ConnectionState.CONNECTING, null);
+        if (!session.compareAndSet(current, next)) return;
+
+        policy.reset();
+        everConnected = false;
+        initialFailures = 0;
+        outageStartNanos = System.nanoTime();
+        listener.onStateChanged(ConnectionState.CONNECTING);
+        schedule(next.generation, 0);
+    }
+
+    // Desconexión pedida por el usuario: invalida los intentos pendientes y no reconecta. Idempotente
+    public void stop() {
+        while (true) {
+            Session current = session.get();
+            if (current.state == ConnectionState.IDLE && current.link == null) return;
+
+            Session next = new Session(current.generation + 1, ConnectionState.IDLE, null);
+            if (session.compareAndSet(current, next)) {
+                listener.onStateChanged(ConnectionState.IDLE);
+                // Si el enlace está conectando, cerrar el transporte cancela el connect()
+                if (current.link != null) {
+                    current.link.disconnect();
+                }
+                return;
+            }
+        }
+    }
+
+    // Detiene la conexión y, si el executor es propio, también sus hilos
+    public void shutdown() {
+        stop();
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void schedule(int generation, long delayMillis) {
+        executor.schedule(() -> attempt(generation), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void attempt(int generation) {
+        Session waiting = session.get();
+        if (waiting.generation != generation) return;
+        if (waiting.state == ConnectionState.RECONNECTING) {
+            Session connecting = new Session(generation, ConnectionState.CONNECTING, null);
+            if (!session.compareAndSet(waiting, connecting)) return;
+            listener.onStateChanged(ConnectionState.CONNECTING);
+        } else if (waiting.state != ConnectionState.CONNECTING || waiting.link != null) {
+            return;
+        }
+        attemptStartNanos = System.nanoTime();
+        attemptCount.incrementAndGet();
+
+        LinkListener linkListener = new LinkListener(generation);
+        ServoLink link;
+        try {
+            link = linkFactory.create(linkListener);
+        } catch (IOException | RuntimeException e) {
+            attemptFailed(generation, null, e);
+            return;
+        }
+        linkListener.link = link;
+
+        Session connecting = session.get();
+        if (connecting.generation != generation || connecting.state != ConnectionState.CONNECTING
+                || !session.compareAndSet(connecting, new Session(generation, ConnectionState.CONNECTING, link))) {
+            return;
+        }
+
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        ScheduledFuture<?> watchdog = executor.schedule(() -> {
+            if (link.getState() != ServoLink.State.CONNECTED) {
+                timedOut.set(true);
+                link.disconnect();
+            }
+        }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            link.connect();
+        } catch (IOException | RuntimeException e) {
+            Exception error = e;
+            if (timedOut.get()) {
+                timeoutCount.incrementAndGet();
+                error = new IOException("Tiempo de conexión agotado (" + connectTimeoutMillis + " ms)", e);
+            }
+            attemptFailed(generation, link, error);
+            return;
+        } finally {
+            watchdog.cancel(false);
+        }
+    }
+
+    // Si stop() ya cambió la generación el CAS falla y el fallo se ignora
+    private void attemptFailed(int generation, ServoLink link, Exception error) {
+        Session current = session.get();
+        if (current.generation != generation || current.state != ConnectionState.CONNECTING
+                || current.link != link) {
+            return;
+        }
+
+        long retryDelay;
+        if (error instanceof SecurityException || !autoReconnect) {
+            retryDelay = -1;
+        } else if (!everConnected && initialFailures + 1 >= INITIAL_CONNECT_ATTEMPTS) {
+            retryDelay = -1;
+        } else {
+            retryDelay = policy.nextDelayMillis();
+        }
+
+        ConnectionState nextState = retryDelay < 0 ? ConnectionState.IDLE : ConnectionState.RECONNECTING;
+        if (!session.compareAndSet(current, new Session(generation, nextState, null))) return;
+
+        failureCount.incrementAndGet();
+        if (!everConnected) {
+            initialFailures++;
+        }
+        listener.onStateChanged(nextState);
+        if (retryDelay >= 0) {
+            schedule(generation, retryDelay);
+        }
+        listener.onConnectFailed(error, retryDelay);
+    }
+
+    // Recibe los eventos de un enlace concreto, los de enlaces de generaciones viejas no cambian el estado
+    private final class LinkListener implements ServoLink.Listener {
+        private static final int NOT_REPORTED = 0;
+        private static final int CONNECTED_REPORTED = 1;
+        private static final int DISCONNECTED = 2;
+
+        private final int linkGeneration;
+        volatile ServoLink link;
+        // onConnected y onDisconnected se reenvían en pareja: sin conexión avisada no hay desconexión
+        private final AtomicInteger reported = new AtomicInteger(NOT_REPORTED);
+
+        LinkListener(int linkGeneration) {
+            this.linkGeneration = linkGeneration;
+        }
+
+        @Override
+        public void onConnected() {
+            Session current = session.get();
+            if (current.generation == linkGeneration && current.link == link
+                    && current.state == ConnectionState.CONNECTING
+                    && session.compareAndSet(current, new Session(linkGeneration, ConnectionState.CONNECTED, link))
+                    // Falla si el enlace ya se cerró, por ejemplo un stop() justo después del CAS
+                    && reported.compareAndSet(NOT_REPORTED, CONNECTED_REPORTED)) {
+                long now = System.nanoTime();
+                connectTimeHistogram.recordNanos(now - attemptStartNanos);
+                if (everConnected) {
+                    recoveryTimeHistogram.recordNanos(now - outageStartNanos);
+                }
+                everConnected = true;
+                policy.reset();
+                listener.onStateChanged(ConnectionState.CONNECTED);
+                listener.onConnected();
+            }
+            // Si stop() ganó mientras connect() volvía el enlace ya se cerró, no se avisa
+        }
+
+        @Override
+        public void onDisconnected() {
+            if (reported.getAndSet(DISCONNECTED) == CONNECTED_REPORTED) {
+                listener.onDisconnected();
+            }
+
+            Session current = session.get();
+            if (current.generation != linkGeneration || current.link == null || current.link != link) return;
+
+            long retryDelay = autoReconnect ? policy.nextDelayMillis() : -1;
+            ConnectionState nextState = retryDelay < 0 ? ConnectionState.IDLE : ConnectionState.RECONNECTING;
+            if (!session.compareAndSet(current, new Session(linkGeneration, nextState, null))) return;
+
+            linkLossCount.incrementAndGet();
+            outageStartNanos = System.nanoTime();
+            listener.onStateChanged(nextState);
+            if (retryDelay >= 0) {
+                schedule(linkGeneration, retryDelay);
+            }
+        }
+
+        @Override
+        public void onPosition(float angle) {
+            listener.onPosition(angle);
+        }
+
+        @Override
+        public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+            listener.onPositionBatch(timestampsNanos, angles, count);
+        }
+
+        @Override
+        public void onLine(String line) {
+            listener.onLine(line);
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+            listener.onBinaryNegotiated(version);
+        }
+
+        @Override
+        public void onError(String error) {
+            listener.onError(error);
+        }
+    }
+
+    // Tiempo máximo para abrir el transporte en cada intento
+    public void setConnectTimeoutMillis(long millis) {
+        connectTimeoutMillis = millis;
+    }
+
+    public void setAutoReconnect(boolean enabled) {
+        autoReconnect = enabled;
+    }
+
+    public ConnectionState getState() {
+        return session.get().state;
+    }
+
+    // true mientras esté conectado, conectando o esperando para reconectar
+    public boolean isActive() {
+        return session.get().state != ConnectionState.IDLE;
+    }
+
+    public ServoLink getCurrentLink() {
+        return session.get().link;
+    }
+
+    public LatencyHistogram getConnectTimeHistogram() {
+        return connectTimeHistogram;
+    }
+
+    public LatencyHistogram getRecoveryTimeHistogram() {
+        return recoveryTimeHistogram;
+    }
+
+    public long getAttemptCount() {
+        return attemptCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getLinkLossCount() {
+        return linkLossCount.get();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es el modelo de movimiento de la aguja: un resorte con amortiguamiento crítico, que llega
+al objetivo lo más rápido posible sin pasarse. Antes la aguja avanzaba un 10% de la distancia por
+cada cuadro, así que se movía al doble de velocidad en una pantalla de 120 Hz que en una de 60 Hz.
+
+Aquí se usa la solución exacta de la ecuación del resorte en función del tiempo transcurrido:
+    x(t) = objetivo + (c1 + c2 t) e^(-w t),  c1 = x0 - objetivo,  c2 = v0 + w c1
+por lo que el resultado no depende de cuántos cuadros haya en medio. Cambiar el objetivo a mitad del
+movimiento conserva posición y velocidad, así que el cambio es suave.
+
+No depende de Android, GaugeAnimator lo conecta con los cuadros de pantalla.
+ */
+
+public class CriticallyDampedSpring {
+    public static final float DEFAULT_SETTLE_TIME_MS = 500f;
+
+    private float value;
+    private float velocity = 0f;
+    private float target;
+    private float omega;
+    private float positionThreshold = 0.05f;
+    private float velocityThreshold = 0.5f;
+
+    public CriticallyDampedSpring(float initialValue) {
+        value = initialValue;
+        target = initialValue;
+        setSettleTimeMs(DEFAULT_SETTLE_TIME_MS);
+    }
+
+    // Tiempo aproximado para recorrer el ~99% de un salto partiendo del reposo
+    public void setSettleTimeMs(float settleTimeMs) {
+        // Con amortiguamiento crítico el error cae al 1% en t ~ 6.64 / w
+        omega = 6.64f / (Math.max(1f, settleTimeMs) / 1000f);
+    }
+
+    // Umbrales por debajo de los cuales se considera que ya llegó (en unidades del valor y por segundo)
+    public void setThresholds(float position, float velocityPerSecond) {
+        positionThreshold = position;
+        velocityThreshold = velocityPerSecond;
+    }
+
+    public void setTarget(float newTarget) {
+        target = newTarget;
+    }
+
+    // Coloca el valor sin animación
+    public void snapTo(float newValue) {
+        value = newValue;
+        target = newValue;
+        velocity = 0f;
+    }
+
+    // Avanza dtNanos, devuelve true si al terminar el paso ya está en reposo sobre el objetivo
+    public boolean step(long dtNanos) {
+        if (dtNanos > 0) {
+            float t = dtNanos / 1_000_000_000f;
+            float c1 = value - target;
+            float c2 = velocity + omega * c1;
+            float decay = (float) Math.exp(-omega * t);
+
+            value = target + (c1 + c2 * t) * decay;
+            velocity = (c2 - omega * (c1 + c2 * t)) * decay;
+        }
+
+        if (isSettled()) {
+            value = target;
+            velocity = 0f;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isSettled() {
+        return Math.abs(value - target) < positionThreshold && Math.abs(velocity) < velocityThreshold;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public float getVelocity() {
+        return velocity;
+    }
+
+    public float getTarget() {
+        return target;
+    }
+}
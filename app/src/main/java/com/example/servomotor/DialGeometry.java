@@ -0,0 +1,56 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo contiene la matemática del dial del tacómetro (paso de valor a ángulo en pantalla y de
+coordenadas polares a cartesianas). Se separó de TachometerView para poder medirla con JMH en la JVM.
+
+Las graduaciones y sus etiquetas no cambian mientras no cambie el tamaño de la vista, por eso
+computeGraduations se llama una sola vez desde onSizeChanged y onDraw solo dibuja lo ya calculado.
+ */
+
+public final class DialGeometry {
+
+    private DialGeometry() {
+    }
+
+    // Ángulo en pantalla (grados, sentido horario desde el eje X) para un valor del rango [0, maxValue]
+    public static float valueToDialDegrees(float value, float maxValue, float startAngle, float sweepAngle) {
+        return startAngle + (value / maxValue) * sweepAngle;
+    }
+
+    // Calcula las graduaciones cada tickStep unidades entre 0 y maxValue:
+    // - outLines: x0, y0, x1, y1 por graduación (formato de Canvas.drawLines), de innerRadius a outerRadius
+    // - outLabels: x, y por graduación, a labelRadius del centro
+    // Devuelve la cantidad de graduaciones
+    public static int computeGraduations(float centerX, float centerY, float maxValue, int tickStep,
+                                         float startAngle, float sweepAngle,
+                                         float innerRadius, float outerRadius, float labelRadius,
+                                         float[] outLines, float[] outLabels) {
+        int count = 0;
+        for (int value = 0; value <= maxValue; value += tickStep) {
+            float angle = valueToDialDegrees(value, maxValue, startAngle, sweepAngle);
+            polarToCartesian(centerX, centerY, innerRadius, angle, outLines, count * 4);
+            polarToCartesian(centerX, centerY, outerRadius, angle, outLines, count * 4 + 2);
+            polarToCartesian(centerX, centerY, labelRadius, angle, outLabels, count * 2);
+            count++;
+        }
+        return count;
+    }
+
+    public static int graduationCount(float maxValue, int tickStep) {
+        return (int) (maxValue / tickStep) + 1;
+    }
+
+    // Escribe en out[offset] y out[offset + 1] el punto a distancia radius del centro
+    public static void polarToCartesian(float centerX, float centerY, float radius, float degrees,
+                                        float[] out, int offset) {
+        double radian = Math.toRadians(degrees);
+        out[offset] = centerX + radius * (float) Math.cos(radian);
+        out[offset + 1] = centerY + radius * (float) Math.sin(radian);
+    }
+}
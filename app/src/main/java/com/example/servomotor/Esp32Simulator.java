@@ -0,0 +1,935 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es una ESP32 simulada para probar la app y medir sin hardware. Habla el mismo protocolo que
+el firmware: "ANGLE:<n>" y "POSITION:<n>" en texto, la negociación HELLO/PROTO con tramas binarias si se
+activa, el control de flujo CREDIT/ACK si se le da una ventana de créditos, la telemetría por lotes si
+se le da un tamaño de lote y la carga y reproducción de secuencias de puntos de WaypointProtocol (las
+órdenes de secuencia se atienden al llegar, sin latencia de ida).
+
+Modelo del servo (un hilo, integra con el tiempo real transcurrido):
+- velocidad máxima de giro (slew rate) en °/s hacia el último ángulo comandado.
+- banda muerta: si el error es menor no se mueve, como el potenciómetro de un servo real.
+- ruido gaussiano en la posición reportada.
+- la telemetría sale a una frecuencia fija, de 10 Hz a varios kHz, con plazos absolutos.
+
+Defectos del enlace, configurables en cualquier momento:
+- latencia y jitter en cada sentido, sin reordenar (como un enlace serie).
+- tramas partidas en varios write() y mensajes juntados en uno solo (ventana de agrupación).
+- muestras de telemetría perdidas (lotes enteros con telemetría por lotes), enlace congelado por un tiempo (stall) y conexión cortada.
+
+La simulación es un "dispositivo": el servo sigue en su lugar entre conexiones. Se conecta con
+connectPiped() (sirve directo como TransportFactory del supervisor) o por TCP con listen(), y una conexión
+nueva reemplaza a la anterior como pasa con RFCOMM. No depende de Android, corre igual en pruebas de la JVM
+o dentro de la app en compilaciones de depuración.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class Esp32Simulator {
+    public static final float DEFAULT_SLEW_RATE = 300f;
+    public static final float DEFAULT_DEADBAND = 0.5f;
+    public static final float DEFAULT_NOISE = 0.2f;
+    public static final int DEFAULT_TELEMETRY_HZ = 50;
+    public static final int MIN_TELEMETRY_HZ = 10;
+    public static final int MAX_TELEMETRY_HZ = 10_000;
+    public static final float MIN_ANGLE = 0f;
+    public static final float MAX_ANGLE = 180f;
+    // La física se integra al menos a esta frecuencia aunque la telemetría sea más lenta
+    private static final long PHYSICS_PERIOD_NANOS = 1_000_000L;
+    private static final int MAX_LINE_LENGTH = 64;
+
+    // Modelo
+    private volatile float slewRate = DEFAULT_SLEW_RATE;
+    private volatile float deadband = DEFAULT_DEADBAND;
+    private volatile float noise = DEFAULT_NOISE;
+    private volatile int telemetryHz = DEFAULT_TELEMETRY_HZ;
+
+    // Enlace
+    private volatile long latencyNanos = 0;
+    private volatile long jitterNanos = 0;
+    private volatile long mergeWindowNanos = 0;
+    private volatile float splitProbability = 0f;
+    private volatile float dropProbability = 0f;
+    private volatile long stalledUntilNanos = 0;
+    private volatile boolean binarySupported = false;
+    private volatile int creditWindow = 0;
+    private volatile int batchSamples = 0;
+
+    // Estado del servo, solo lo modifica el hilo de física
+    private final Random physicsRandom;
+    private final long seed;
+    // Origen del reloj en µs que viaja en los lotes
+    private final long epochNanos = System.nanoTime();
+    private volatile float position;
+    private volatile float target;
+    private final DelayLine commands = new DelayLine();
+    private final WaypointSequence waypoints = new WaypointSequence();
+
+    private volatile boolean running = false;
+    private volatile Thread physicsThread;
+    private volatile Connection connection;
+    private volatile ServerSocket serverSocket;
+
+    // Contadores
+    private final AtomicLong commandCount = new AtomicLong();
+    private final AtomicLong sampleCount = new AtomicLong();
+    private final AtomicLong droppedSampleCount = new AtomicLong();
+    private final AtomicLong missedTelemetryCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong malformedCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+
+    public Esp32Simulator() {
+        this(System.nanoTime(), 90f);
+    }
+
+    // Con la misma semilla el ruido y los defectos del enlace se repiten
+    public Esp32Simulator(long seed, float initialAngle) {
+        this.seed = seed;
+        this.physicsRandom = new Random(seed);
+        this.position = initialAngle;
+        this.target = initialAngle;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        Thread thread = new Thread(this::physicsLoop, "Esp32Sim-Physics");
+        thread.setDaemon(true);
+        physicsThread = thread;
+        thread.start();
+    }
+
+    // Detiene la física, cierra la conexión y el servidor TCP
+    public synchronized void stop() {
+        running = false;
+        Thread thread = physicsThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        dropConnection();
+        ServerSocket server = serverSocket;
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Devuelve el extremo de la app de un par en memoria; el otro queda conectado a la simulación
+    public PipedTransport connectPiped() {
+        PipedTransport[] pair = PipedTransport.createPair();
+        attach(pair[1]);
+        return pair[0];
+    }
+
+    // Acepta conexiones TCP (port 0: uno libre) y devuelve el puerto. Cada conexión reemplaza a la anterior
+    public int listen(int port) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.bind(new InetSocketAddress("127.0.0.1", port));
+        serverSocket = server;
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    socket.setTcpNoDelay(true);
+                    attach(new SocketTransport(socket));
+                } catch (IOException e) {
+                    // El servidor se cerró o falló una conexión, se sigue aceptando mientras esté abierto
+                }
+            }
+        }, "Esp32Sim-Accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    // Usa un extremo ya creado (por ejemplo el lado "device" de un PipedTransport)
+    public void attach(Transport transport) {
+        Connection previous;
+        Connection next = new Connection(transport, seed + connectionCount.incrementAndGet());
+        synchronized (this) {
+            previous = connection;
+            connection = next;
+        }
+        if (previous != null) {
+            previous.close();
+        }
+        next.start();
+    }
+
+    // Corta la conexión como si la ESP32 se hubiera apagado, la app lee fin de stream
+    public void dropConnection() {
+        Connection current;
+        synchronized (this) {
+            current = connection;
+            connection = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    // Congela la salida: nada llega a la app durante ese tiempo, después sale todo junto
+    public void stall(long millis) {
+        stalledUntilNanos = System.nanoTime() + millis * 1_000_000L;
+    }
+
+    private void physicsLoop() {
+        long last = System.nanoTime();
+        long nextTelemetry = last;
+        while (running) {
+            long now = System.nanoTime();
+            applyDueCommands(now);
+            applyDueWaypoint(now);
+            step((now - last) / 1e9f);
+            last = now;
+
+            long period = 1_000_000_000L / telemetryHz;
+            if (now >= nextTelemetry) {
+                emitPosition(now);
+                nextTelemetry += period;
+                if (now - nextTelemetry > period) {
+                    // Muy atrasado (el hilo no corrió a tiempo), se salta en lugar de soltar una ráfaga
+                    missedTelemetryCount.incrementAndGet();
+                    nextTelemetry = now + period;
+                }
+            }
+
+            long wait = Math.min(nextTelemetry - System.nanoTime(), PHYSICS_PERIOD_NANOS);
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    private void applyDueCommands(long now) {
+        DelayLine.Entry command;
+        while ((command = commands.pollDue(now)) != null) {
+            target = Math.max(MIN_ANGLE, Math.min(MAX_ANGLE, command.value));
+            Connection current = connection;
+            if (current != null && creditWindow > 0) {
+                current.sendAck(command.sequence, now);
+            }
+        }
+    }
+
+    private void applyDueWaypoint(long now) {
+        float angle = waypoints.pollDue(now);
+        if (Float.isNaN(angle)) return;
+        target = Math.max(MIN_ANGLE, Math.min(MAX_ANGLE, angle));
+        if (!waypoints.isPlaying()) {
+            Connection current = connection;
+            if (current != null) {
+                current.sendSequenceStatus(WaypointProtocol.STATUS_DONE, waypoints.getWaypointCount(), now);
+            }
+        }
+    }
+
+    private void step(float dt) {
+        float error = target - position;
+        if (Math.abs(error) <= deadband) return;
+        float maxStep = slewRate * dt;
+        position += Math.abs(error) <= maxStep ? error : Math.signum(error) * maxStep;
+    }
+
+    private void emitPosition(long now) {
+        Connection current = connection;
+        if (current == null) return;
+        float reported = position + (float) physicsRandom.nextGaussian() * noise;
+        current.sendPosition(Math.max(MIN_ANGLE, Math.min(MAX_ANGLE, reported)), now);
+    }
+
+    // Retraso de un sentido del enlace, sin adelantar a lo que salió antes
+    private long dueTime(long now, long previousDue, Random random) {
+        long jitter = jitterNanos;
+        long due = now + latencyNanos + (jitter > 0 ? (long) (random.nextDouble() * jitter) : 0);
+        return Math.max(due, previousDue);
+    }
+
+    // Una conexión con sus hilos de lectura y de envío
+    private final class Connection {
+        private final Transport transport;
+        private final Random random;
+        private final DelayLine outbound = new DelayLine();
+        private final byte[] frame = new byte[BinaryProtocol.FRAME_SIZE];
+        private volatile boolean closed = false;
+        private volatile Thread senderThread;
+        // Protegidos por this
+        private boolean binaryMode = false;
+        private int sequence = 0;
+        private long lastOutboundDue = 0;
+        private long lastInboundDue = 0;
+        // Retraso de la trama WAYPOINT_TIME que espera su WAYPOINT_ANGLE, solo el hilo lector
+        private int pendingWaypointSequence = -1;
+        private int pendingWaypointDelay;
+        // Lote en armado, protegido por this. batchSize 0: una trama POSITION por muestra
+        private int batchSize = 0;
+        private final int[] batchCenti = new int[BinaryProtocol.MAX_BATCH_SAMPLES];
+        private int batchFilled = 0;
+        private long batchBaseNanos;
+
+        Connection(Transport transport, long seed) {
+            this.transport = transport;
+            this.random = new Random(seed);
+        }
+
+        void start() {
+            try {
+                transport.open();
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            int credits = creditWindow;
+            if (credits > 0) {
+                enqueue(("CREDIT:" + credits + "\n").getBytes(StandardCharsets.US_ASCII), System.nanoTime());
+            }
+            Thread reader = new Thread(this::readLoop, "Esp32Sim-Reader");
+            reader.setDaemon(true);
+            reader.start();
+            Thread sender = new Thread(this::sendLoop, "Esp32Sim-Sender");
+            sender.setDaemon(true);
+            senderThread = sender;
+            sender.start();
+        }
+
+        void close() {
+            closed = true;
+            synchronized (Esp32Simulator.this) {
+                if (connection == this) {
+                    connection = null;
+                }
+            }
+            LockSupport.unpark(senderThread);
+            try {
+                transport.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        synchronized void sendPosition(float angle, long now) {
+            if (closed) return;
+            if (batchSize > 0) {
+                addToBatch(angle, now);
+                return;
+            }
+            if (random.nextFloat() < dropProbability) {
+                droppedSampleCount.incrementAndGet();
+                return;
+            }
+            byte[] data;
+            if (binaryMode) {
+                data = new byte[BinaryProtocol.FRAME_SIZE];
+                BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_POSITION, sequence, BinaryProtocol.degreesToCenti(angle), data, 0);
+                sequence = (sequence + 1) & 0xFF;
+            } else {
+                data = ("POSITION:" + Math.round(angle) + "\n").getBytes(StandardCharsets.US_ASCII);
+            }
+            sampleCount.incrementAndGet();
+            enqueue(data, now);
+        }
+
+        // Con el lote lleno sale una sola trama, si se descarta se pierden todas sus muestras
+        private void addToBatch(float angle, long now) {
+            if (batchFilled == 0) {
+                batchBaseNanos = now;
+            }
+            batchCenti[batchFilled++] = BinaryProtocol.degreesToCenti(angle);
+            sampleCount.incrementAndGet();
+            if (batchFilled < batchSize) return;
+
+            int count = batchFilled;
+            batchFilled = 0;
+            if (random.nextFloat() < dropProbability) {
+                droppedSampleCount.addAndGet(count);
+                return;
+            }
+            byte[] buffer = new byte[BinaryProtocol.MAX_BATCH_FRAME_SIZE];
+            int length = BinaryProtocol.encodeBatch((batchBaseNanos - epochNanos) / 1000L, 1_000_000 / telemetryHz,
+                    batchCenti, 0, count, buffer, 0);
+            byte[] data = new byte[length];
+            System.arraycopy(buffer, 0, data, 0, length);
+            enqueue(data, now);
+        }
+
+        // Acepta los lotes si están habilitados en el simulador y responde con lo aceptado
+        synchronized void negotiateFeatures(int requested, long now) {
+            int samples = batchSamples;
+            int accepted = samples > 0 ? requested & BinaryProtocol.FEATURE_BATCH_TELEMETRY : 0;
+            byte[] data = new byte[BinaryProtocol.FRAME_SIZE];
+            BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_FEATURES, 0, accepted, data, 0);
+            enqueue(data, now);
+            batchSize = accepted != 0 ? samples : 0;
+            batchFilled = 0;
+        }
+
+        synchronized void sendAck(int commandSequence, long now) {
+            byte[] data;
+            if (binaryMode) {
+                data = new byte[BinaryProtocol.FRAME_SIZE];
+                BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_ACK, commandSequence, 0, data, 0);
+            } else {
+                data = new byte[]{'A', 'C', 'K', '\n'};
+            }
+            enqueue(data, now);
+        }
+
+        synchronized void sendSequenceStatus(int status, int value, long now) {
+            byte[] data;
+            if (binaryMode) {
+                data = new byte[BinaryProtocol.FRAME_SIZE];
+                BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_SEQUENCE_STATUS, status, value, data, 0);
+            } else {
+                String prefix = status == WaypointProtocol.STATUS_ACK ? "SEQ_ACK:"
+                        : status == WaypointProtocol.STATUS_NAK ? "SEQ_NAK:"
+                        : status == WaypointProtocol.STATUS_DONE ? "SEQ_DONE:" : "SEQ_REJECT:";
+                data = (prefix + value + "\n").getBytes(StandardCharsets.US_ASCII);
+            }
+            enqueue(data, now);
+        }
+
+        private void reply(int response, long now) {
+            if (response != WaypointSequence.NO_RESPONSE) {
+                sendSequenceStatus(response >>> 16, response & 0xFFFF, now);
+            }
+        }
+
+        // El PROTO:1 sale en texto y todo lo que se encole después ya va en binario
+        synchronized void switchToBinary(long now) {
+            enqueue(("PROTO:" + BinaryProtocol.VERSION + "\n").getBytes(StandardCharsets.US_ASCII), now);
+            binaryMode = true;
+        }
+
+        private synchronized void enqueue(byte[] data, long now) {
+            if (closed) return;
+            lastOutboundDue = dueTime(now, lastOutboundDue, random);
+            outbound.add(data, 0, 0, lastOutboundDue);
+            LockSupport.unpark(senderThread);
+        }
+
+        private synchronized void receiveCommand(float angle, int commandSequence, long now) {
+            commandCount.incrementAndGet();
+            lastInboundDue = dueTime(now, lastInboundDue, random);
+            commands.add(null, angle, commandSequence, lastInboundDue);
+        }
+
+        private void sendLoop() {
+            try {
+                OutputStream out = transport.getOutputStream();
+                byte[] buffer = new byte[4096];
+                while (!closed) {
+                    long now = System.nanoTime();
+                    long wait = Math.max(outbound.nanosUntilDue(now), stalledUntilNanos - now);
+                    if (wait > 0) {
+                        LockSupport.parkNanos(this, Math.min(wait, 50_000_000L));
+                        continue;
+                    }
+                    // Ventana de agrupación: lo que se vuelva pendiente en ese tiempo sale en el mismo write()
+                    long merge = mergeWindowNanos;
+                    if (merge > 0) {
+                        LockSupport.parkNanos(this, merge);
+                        now = System.nanoTime();
+                    }
+
+                    int length = 0;
+                    DelayLine.Entry entry;
+                    while ((entry = outbound.pollDue(now)) != null) {
+                        if (length + entry.data.length > buffer.length) {
+                            writeChunks(out, buffer, length);
+                            length = 0;
+                        }
+                        System.arraycopy(entry.data, 0, buffer, length, entry.data.length);
+                        length += entry.data.length;
+                    }
+                    if (length > 0) {
+                        writeChunks(out, buffer, length);
+                    }
+                }
+            } catch (IOException e) {
+                // La app cerró o se cortó la conexión
+            } finally {
+                close();
+            }
+        }
+
+        // Con splitProbability el bloque se parte en varios write() separados por una pausa breve
+        private void writeChunks(OutputStream out, byte[] buffer, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                int chunk = length - offset;
+                if (chunk > 1 && random.nextFloat() < splitProbability) {
+                    chunk = 1 + random.nextInt(chunk - 1);
+                }
+                out.write(buffer, offset, chunk);
+                out.flush();
+                writeCount.incrementAndGet();
+                bytesSent.addAndGet(chunk);
+                offset += chunk;
+                if (offset < length) {
+                    LockSupport.parkNanos(this, 100_000L);
+                }
+            }
+        }
+
+        private void readLoop() {
+            byte[] buffer = new byte[1024];
+            byte[] line = new byte[MAX_LINE_LENGTH];
+            int lineLength = 0;
+            int frameLength = 0;
+            try {
+                InputStream in = transport.getInputStream();
+                int read;
+                while (!closed && (read = in.read(buffer)) >= 0) {
+                    long now = System.nanoTime();
+                    for (int i = 0; i < read; i++) {
+                        byte b = buffer[i];
+                        if (frameLength > 0 || (b == BinaryProtocol.SYNC && lineLength == 0 && isBinaryMode())) {
+                            frame[frameLength++] = b;
+                            if (frameLength == BinaryProtocol.FRAME_SIZE) {
+                                handleFrame(now);
+                                frameLength = 0;
+                            }
+                        } else if (b == '\n') {
+                            handleLine(line, lineLength, now);
+                            lineLength = 0;
+                        } else if (b != '\r') {
+                            if (lineLength == MAX_LINE_LENGTH) {
+                                malformedCount.incrementAndGet();
+                                lineLength = 0;
+                            }
+                            line[lineLength++] = b;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Conexión cerrada
+            } finally {
+                close();
+            }
+        }
+
+        private synchronized boolean isBinaryMode() {
+            return binaryMode;
+        }
+
+        private void handleFrame(long now) {
+            if (!BinaryProtocol.isValidFrame(frame, 0)) {
+                malformedCount.incrementAndGet();
+                return;
+            }
+            int type = frame[1] & 0xFF;
+            int frameSequence = frame[2] & 0xFF;
+            int value = BinaryProtocol.decodeValue(frame, 0);
+            switch (type) {
+                case BinaryProtocol.TYPE_ANGLE:
+                    receiveCommand(BinaryProtocol.centiToDegrees(value), frameSequence, now);
+                    break;
+                case BinaryProtocol.TYPE_SEQUENCE:
+                    reply(waypoints.onOp(frameSequence, value, now), now);
+                    break;
+                case BinaryProtocol.TYPE_WAYPOINT_TIME:
+                    pendingWaypointSequence = frameSequence;
+                    pendingWaypointDelay = value;
+                    break;
+                case BinaryProtocol.TYPE_WAYPOINT_ANGLE:
+                    if (pendingWaypointSequence != frameSequence) {
+                        // Se perdió la trama de tiempo, el punto queda como hueco y la secuencia pide reenvío
+                        reply(waypoints.onGap(), now);
+                    } else {
+                        reply(waypoints.onWaypoint(waypoints.resolveIndex(frameSequence), pendingWaypointDelay, value), now);
+                    }
+                    pendingWaypointSequence = -1;
+                    break;
+                case BinaryProtocol.TYPE_FEATURES:
+                    negotiateFeatures(value, now);
+                    break;
+                default:
+                    malformedCount.incrementAndGet();
+                    break;
+            }
+        }
+
+        private void handleLine(byte[] line, int length, long now) {
+            String text = new String(line, 0, length, StandardCharsets.US_ASCII);
+            if (text.startsWith("ANGLE:")) {
+                try {
+                    receiveCommand(Integer.parseInt(text.substring(6)), -1, now);
+                } catch (NumberFormatException e) {
+                    malformedCount.incrementAndGet();
+                }
+            } else if (text.startsWith("WP:") || text.startsWith("SEQ:")) {
+                handleSequenceLine(text, now);
+            } else if (text.equals("HELLO:" + BinaryProtocol.VERSION)) {
+                if (binarySupported) {
+                    switchToBinary(now);
+                }
+            } else if (length > 0) {
+                malformedCount.incrementAndGet();
+            }
+        }
+
+        private void handleSequenceLine(String text, long now) {
+            try {
+                if (text.startsWith("WP:")) {
+                    String[] fields = text.substring(3).split(",");
+                    reply(waypoints.onWaypoint(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                            Integer.parseInt(fields[2])), now);
+                    return;
+                }
+                String[] fields = text.substring(4).split(",");
+                for (int op = WaypointProtocol.OP_BEGIN; op <= WaypointProtocol.OP_ABORT; op++) {
+                    if (WaypointProtocol.opName(op).equals(fields[0])) {
+                        int value = fields.length > 1 ? Integer.parseInt(fields[1]) : 0;
+                        reply(waypoints.onOp(op, value, now), now);
+                        return;
+                    }
+                }
+                malformedCount.incrementAndGet();
+            } catch (RuntimeException e) {
+                malformedCount.incrementAndGet();
+            }
+        }
+    }
+
+    // Secuencia de puntos del lado de la ESP32, tal como la describe WaypointProtocol. La cargan los
+    // hilos lectores y la reproduce el hilo de física. Las respuestas se devuelven como (estado << 16) | valor
+    private static final class WaypointSequence {
+        static final int NO_RESPONSE = -1;
+
+        private int[] delaysMillis = new int[0];
+        private int[] centiDegrees = new int[0];
+        private int received = 0;
+        private boolean complete = false;
+        private boolean nakSent = false;
+        private boolean playing = false;
+        private boolean paused = false;
+        private int next = 0;
+        private long nextDueNanos;
+        private long pausedRemainingNanos;
+
+        private static int response(int status, int value) {
+            return (status << 16) | (value & 0xFFFF);
+        }
+
+        synchronized int onOp(int op, int value, long now) {
+            switch (op) {
+                case WaypointProtocol.OP_BEGIN:
+                    playing = false;
+                    complete = false;
+                    if (value < 1 || value > WaypointProtocol.MAX_WAYPOINTS) {
+                        delaysMillis = new int[0];
+                        centiDegrees = new int[0];
+                        return response(WaypointProtocol.STATUS_REJECT, op);
+                    }
+                    delaysMillis = new int[value];
+                    centiDegrees = new int[value];
+                    received = 0;
+                    next = 0;
+                    nakSent = false;
+                    return NO_RESPONSE;
+                case WaypointProtocol.OP_START:
+                    if (!complete) return response(WaypointProtocol.STATUS_REJECT, op);
+                    playing = true;
+                    paused = false;
+                    next = 0;
+                    nextDueNanos = now + delaysMillis[0] * 1_000_000L;
+                    return NO_RESPONSE;
+                case WaypointProtocol.OP_PAUSE:
+                    if (!playing || paused) return response(WaypointProtocol.STATUS_REJECT, op);
+                    paused = true;
+                    pausedRemainingNanos = Math.max(0, nextDueNanos - now);
+                    return NO_RESPONSE;
+                case WaypointProtocol.OP_RESUME:
+                    if (!playing || !paused) return response(WaypointProtocol.STATUS_REJECT, op);
+                    paused = false;
+                    nextDueNanos = now + pausedRemainingNanos;
+                    return NO_RESPONSE;
+                case WaypointProtocol.OP_ABORT:
+                    playing = false;
+                    if (!complete) {
+                        // Carga a medias, se descarta
+                        delaysMillis = new int[0];
+                        centiDegrees = new int[0];
+                    }
+                    return NO_RESPONSE;
+                default:
+                    return response(WaypointProtocol.STATUS_REJECT, op);
+            }
+        }
+
+        synchronized int resolveIndex(int frameSequence) {
+            return WaypointProtocol.resolveIndex(frameSequence, received);
+        }
+
+        synchronized int onWaypoint(int index, int delayMillis, int centi) {
+            int count = delaysMillis.length;
+            if (count == 0 || index < 0 || index >= count) {
+                return response(WaypointProtocol.STATUS_REJECT, WaypointProtocol.OP_BEGIN);
+            }
+            if (index < received) {
+                // Repetido: si cierra un bloque se vuelve a confirmar por si el ACK se perdió
+                boolean closesChunk = (index + 1) % WaypointProtocol.CHUNK_SIZE == 0 || index == count - 1;
+                return closesChunk ? response(WaypointProtocol.STATUS_ACK, (received - 1) / WaypointProtocol.CHUNK_SIZE) : NO_RESPONSE;
+            }
+            if (index > received) {
+                return onGap();
+            }
+            delaysMillis[index] = delayMillis;
+            centiDegrees[index] = centi;
+            received++;
+            nakSent = false;
+            if (received == count) {
+                complete = true;
+            }
+            if (received % WaypointProtocol.CHUNK_SIZE == 0 || received == count) {
+                return response(WaypointProtocol.STATUS_ACK, (received - 1) / WaypointProtocol.CHUNK_SIZE);
+            }
+            return NO_RESPONSE;
+        }
+
+        // Se descarta lo que sigue hasta que llegue el punto esperado, un solo NAK por hueco
+        synchronized int onGap() {
+            if (nakSent || delaysMillis.length == 0 || complete) return NO_RESPONSE;
+            nakSent = true;
+            return response(WaypointProtocol.STATUS_NAK, received / WaypointProtocol.CHUNK_SIZE);
+        }
+
+        // Ángulo del punto que vence, NaN si no hay. Al salir el último deja de reproducir
+        synchronized float pollDue(long now) {
+            if (!playing || paused || now < nextDueNanos) return Float.NaN;
+            float angle = BinaryProtocol.centiToDegrees(centiDegrees[next]);
+            next++;
+            if (next == centiDegrees.length) {
+                playing = false;
+            } else {
+                nextDueNanos += delaysMillis[next] * 1_000_000L;
+            }
+            return angle;
+        }
+
+        synchronized boolean isPlaying() {
+            return playing;
+        }
+
+        synchronized boolean isPaused() {
+            return playing && paused;
+        }
+
+        synchronized int getWaypointCount() {
+            return complete ? delaysMillis.length : 0;
+        }
+
+        synchronized int getExecutedCount() {
+            return playing || complete ? next : 0;
+        }
+    }
+
+    // Cola FIFO con momento de entrega, el orden de llegada ya respeta los tiempos (no se reordena)
+    private static final class DelayLine {
+        static final class Entry {
+            final byte[] data;
+            final float value;
+            final int sequence;
+            final long due;
+
+            Entry(byte[] data, float value, int sequence, long due) {
+                this.data = data;
+                this.value = value;
+                this.sequence = sequence;
+                this.due = due;
+            }
+        }
+
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+        synchronized void add(byte[] data, float value, int sequence, long due) {
+            entries.addLast(new Entry(data, value, sequence, due));
+        }
+
+        synchronized Entry pollDue(long now) {
+            Entry head = entries.peekFirst();
+            if (head == null || head.due > now) return null;
+            return entries.pollFirst();
+        }
+
+        // Long.MAX_VALUE si está vacía
+        synchronized long nanosUntilDue(long now) {
+            Entry head = entries.peekFirst();
+            return head == null ? Long.MAX_VALUE : head.due - now;
+        }
+    }
+
+    // Socket aceptado por listen(), ya está conectado
+    private static final class SocketTransport implements Transport {
+        private final Socket socket;
+
+        SocketTransport(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        @Override
+        public String getName() {
+            return "Simulador " + socket.getRemoteSocketAddress();
+        }
+    }
+
+    public void setSlewRate(float degreesPerSecond) {
+        slewRate = degreesPerSecond;
+    }
+
+    public void setDeadband(float degrees) {
+        deadband = degrees;
+    }
+
+    public void setNoise(float degrees) {
+        noise = degrees;
+    }
+
+    public void setTelemetryHz(int hz) {
+        if (hz < MIN_TELEMETRY_HZ || hz > MAX_TELEMETRY_HZ) {
+            throw new IllegalArgumentException("Frecuencia fuera de rango: " + hz);
+        }
+        telemetryHz = hz;
+    }
+
+    public int getTelemetryHz() {
+        return telemetryHz;
+    }
+
+    // Latencia base y jitter máximo (uniforme) de cada sentido del enlace
+    public void setLinkLatency(long latencyMillis, long jitterMillis) {
+        latencyNanos = latencyMillis * 1_000_000L;
+        jitterNanos = jitterMillis * 1_000_000L;
+    }
+
+    public void setMergeWindowMicros(long micros) {
+        mergeWindowNanos = micros * 1000L;
+    }
+
+    public void setSplitProbability(float probability) {
+        splitProbability = probability;
+    }
+
+    public void setDropProbability(float probability) {
+        dropProbability = probability;
+    }
+
+    // Responde PROTO:1 a la negociación, solo afecta a conexiones que aún no negociaron
+    public void setBinarySupported(boolean supported) {
+        binarySupported = supported;
+    }
+
+    // Muestras por lote si la app pide telemetría por lotes, 0 para seguir con una trama POSITION por
+    // muestra. Solo afecta a conexiones que aún no negociaron
+    public void setBatchTelemetry(int samples) {
+        if (samples < 0 || samples > BinaryProtocol.MAX_BATCH_SAMPLES) {
+            throw new IllegalArgumentException("Muestras por lote fuera de rango: " + samples);
+        }
+        batchSamples = samples;
+    }
+
+    // Créditos que se anuncian al conectar, 0 sin control de flujo. Vale para la siguiente conexión
+    public void setCreditWindow(int credits) {
+        creditWindow = credits;
+    }
+
+    public float getPosition() {
+        return position;
+    }
+
+    public float getTarget() {
+        return target;
+    }
+
+    // Puntos de la secuencia cargada completa, 0 si no hay
+    public int getLoadedWaypointCount() {
+        return waypoints.getWaypointCount();
+    }
+
+    // Puntos ya ejecutados de la última reproducción
+    public int getExecutedWaypointCount() {
+        return waypoints.getExecutedCount();
+    }
+
+    public boolean isSequencePlaying() {
+        return waypoints.isPlaying();
+    }
+
+    public boolean isSequencePaused() {
+        return waypoints.isPaused();
+    }
+
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    public long getSampleCount() {
+        return sampleCount.get();
+    }
+
+    public long getDroppedSampleCount() {
+        return droppedSampleCount.get();
+    }
+
+    public long getMissedTelemetryCount() {
+        return missedTelemetryCount.get();
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getMalformedCount() {
+        return malformedCount.get();
+    }
+
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+}
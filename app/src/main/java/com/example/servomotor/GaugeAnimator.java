@@ -0,0 +1,92 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo anima el valor de un indicador (la aguja del tacómetro u otro que se agregue) usando el
+tiempo real de cada cuadro que entrega el Choreographer y el resorte de CriticallyDampedSpring. Pide
+cuadros solo mientras hay movimiento: en cuanto el resorte se asienta deja de agendar callbacks y la
+vista deja de redibujarse. Debe usarse desde el hilo principal.
+ */
+
+import android.view.Choreographer;
+
+public class GaugeAnimator implements Choreographer.FrameCallback {
+
+    public interface Listener {
+        void onAnimationValue(float value);
+    }
+
+    private final CriticallyDampedSpring spring;
+    private final Listener listener;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private boolean running = false;
+    private long lastFrameTimeNanos = 0;
+
+    public GaugeAnimator(float initialValue, Listener listener) {
+        this.spring = new CriticallyDampedSpring(initialValue);
+        this.listener = listener;
+    }
+
+    // Cambia el destino, si ya había una animación en curso continúa desde la posición y velocidad actuales
+    public void animateTo(float target) {
+        spring.setTarget(target);
+        if (!running && !spring.isSettled()) {
+            running = true;
+            lastFrameTimeNanos = 0;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    public void snapTo(float value) {
+        cancel();
+        spring.snapTo(value);
+        listener.onAnimationValue(value);
+    }
+
+    public void cancel() {
+        if (running) {
+            choreographer.removeFrameCallback(this);
+            running = false;
+        }
+    }
+
+    public void setSettleTimeMs(float settleTimeMs) {
+        spring.setSettleTimeMs(settleTimeMs);
+    }
+
+    public void setThresholds(float position, float velocityPerSecond) {
+        spring.setThresholds(position, velocityPerSecond);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // El primer cuadro solo toma la referencia de tiempo
+        long dt = lastFrameTimeNanos == 0 ? 0 : frameTimeNanos - lastFrameTimeNanos;
+        lastFrameTimeNanos = frameTimeNanos;
+
+        boolean settled = spring.step(dt);
+        listener.onAnimationValue(spring.getValue());
+
+        if (settled) {
+            running = false;
+        } else {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public float getValue() {
+        return spring.getValue();
+    }
+
+    public float getTarget() {
+        return spring.getTarget();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es un histograma de latencias con memoria fija. Los valores se guardan en microsegundos en
+cubetas logarítmicas: cada potencia de dos se divide en 8 subcubetas, así el error de cualquier
+percentil es menor a 12.5% sin importar si la latencia es de 200 µs o de 3 s. Son 200 cubetas (hasta
+unos 134 segundos, lo que pase de ahí cae en la última), sin objetos por muestra.
+
+Cualquier hilo puede registrar y leer al mismo tiempo (AtomicLongArray y AtomicLong). Los percentiles
+devuelven el límite superior de la cubeta, acotado por el máximo real.
+ */
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 26;
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    public static final long MAX_TRACKABLE_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) micros = 0;
+        counts.incrementAndGet(bucketIndex(Math.min(micros, MAX_TRACKABLE_MICROS)));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    // Los primeros 8 valores tienen su propia cubeta, después 8 por cada potencia de dos
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Mayor valor en microsegundos que cae en la cubeta
+    public static long bucketUpperMicros(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getBucketSamples(int index) {
+        return counts.get(index);
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public double getMeanMicros() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalMicros.get() / count;
+    }
+
+    // percentile entre 0 y 100, 0 si no hay muestras
+    public long getPercentileMicros(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperMicros(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    // Suma las muestras de otro histograma, para juntar resultados calculados en hilos separados
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalMicros.addAndGet(other.totalMicros.get());
+
+        long otherMax = other.maxMicros.get();
+        long max = maxMicros.get();
+        while (otherMax > max && !maxMicros.compareAndSet(max, otherMax)) {
+            max = maxMicros.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    // Una línea con los percentiles principales en milisegundos
+    public String summary() {
+        return String.format(Locale.US, "n=%d p50=%.1f p90=%.1f p99=%.1f max=%.1f ms",
+                getCount(),
+                getPercentileMicros(50) / 1000.0,
+                getPercentileMicros(90) / 1000.0,
+                getPercentileMicros(99) / 1000.0,
+                getMaxMicros() / 1000.0);
+    }
+
+    // Cubetas con muestras en formato CSV, para exportar y graficar fuera de la app
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder("upper_us,count\n");
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                sb.append(bucketUpperMicros(i)).append(',').append(count).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
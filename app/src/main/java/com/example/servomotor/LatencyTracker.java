@@ -0,0 +1,110 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo mide cuánto tarda un comando ANGLE en volver como POSITION. La ESP32 no devuelve ningún
+identificador del comando, así que cada comando se marca con su ángulo y el momento en que se entregó al
+escritor, y se da por respondido con la primera posición recibida que quede dentro de la tolerancia. La
+latencia va desde que el comando entra a la cola hasta que se lee la posición, incluye la cola, RFCOMM,
+el firmware, el movimiento del servo y el viaje de regreso.
+
+Solo hay un comando pendiente a la vez. Si llega otro antes de la respuesta el anterior se cuenta como
+reemplazado (al arrastrar el seekbar solo se mide el último). Los comandos cuyo ángulo ya coincide con
+la última posición no se miden, porque responderían con la siguiente muestra sin que nada se mueva.
+ */
+
+public class LatencyTracker {
+    public static final float DEFAULT_TOLERANCE_DEGREES = 2f;
+    public static final long DEFAULT_TIMEOUT_NANOS = 2_000_000_000L;
+
+    private final LatencyHistogram histogram;
+    private volatile float toleranceDegrees = DEFAULT_TOLERANCE_DEGREES;
+    private volatile long timeoutNanos = DEFAULT_TIMEOUT_NANOS;
+
+    // Protegido por this
+    private boolean pending = false;
+    private float pendingTarget;
+    private long pendingSentNanos;
+    private float lastPosition = Float.NaN;
+
+    private volatile long supersededCount = 0;
+    private volatile long timedOutCount = 0;
+    private volatile long skippedCount = 0;
+
+    public LatencyTracker(LatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
+    // Desde el hilo que envía el comando
+    public synchronized void onCommand(long sentNanos, float target) {
+        if (pending) {
+            if (sentNanos - pendingSentNanos > timeoutNanos) {
+                timedOutCount++;
+            } else {
+                supersededCount++;
+            }
+            pending = false;
+        }
+
+        if (!Float.isNaN(lastPosition) && Math.abs(lastPosition - target) <= toleranceDegrees) {
+            skippedCount++;
+            return;
+        }
+        pending = true;
+        pendingTarget = target;
+        pendingSentNanos = sentNanos;
+    }
+
+    // Desde el hilo de lectura, con el tiempo en que se leyó la muestra
+    public synchronized void onTelemetry(long receivedNanos, float position) {
+        lastPosition = position;
+        // La muestra se leyó antes de enviar el comando
+        if (!pending || receivedNanos < pendingSentNanos) return;
+
+        long elapsed = receivedNanos - pendingSentNanos;
+        if (elapsed > timeoutNanos) {
+            timedOutCount++;
+            pending = false;
+        } else if (Math.abs(position - pendingTarget) <= toleranceDegrees) {
+            histogram.recordNanos(elapsed);
+            pending = false;
+        }
+    }
+
+    public void setToleranceDegrees(float degrees) {
+        toleranceDegrees = degrees;
+    }
+
+    public void setTimeoutNanos(long nanos) {
+        timeoutNanos = nanos;
+    }
+
+    public synchronized void reset() {
+        pending = false;
+        lastPosition = Float.NaN;
+        supersededCount = 0;
+        timedOutCount = 0;
+        skippedCount = 0;
+        histogram.reset();
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getSupersededCount() {
+        return supersededCount;
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es el decodificador de tramas de texto que llegan desde la ESP32. Antes se asumía que
+cada inputStream.read() traía exactamente un mensaje, cosa que no es cierta con RFCOMM: una línea
+puede llegar partida en dos lecturas o varias líneas pueden llegar juntas en una sola.
+
+El decodificador trabaja directamente sobre los bytes, guarda lo que quedó pendiente entre lecturas
+y convierte "POSITION:<int>" a un entero sin crear Strings. Debe usarse desde un único hilo (el de
+lectura), los contadores sí pueden consultarse desde cualquier hilo.
+ */
+
+public class LineFrameDecoder {
+    public static final int DEFAULT_MAX_LINE_LENGTH = 128;
+
+    private static final byte[] POSITION_PREFIX = {'P', 'O', 'S', 'I', 'T', 'I', 'O', 'N', ':'};
+
+    public interface Listener {
+        void onPosition(int angle);
+
+        // Líneas completas que no son POSITION, el buffer solo es válido durante la llamada
+        void onLine(byte[] buffer, int offset, int length);
+    }
+
+    private final Listener listener;
+    private final byte[] line;
+    private int lineLength = 0;
+    private boolean discarding = false;
+    private boolean stopRequested = false;
+
+    // Solo el hilo de lectura los escribe
+    private volatile long frameCount = 0;
+    private volatile long malformedCount = 0;
+
+    public LineFrameDecoder(Listener listener) {
+        this(listener, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    public LineFrameDecoder(Listener listener, int maxLineLength) {
+        this.listener = listener;
+        this.line = new byte[maxLineLength];
+    }
+
+    // Devuelve cuántos bytes se consumieron, es menor que length solo si se llamó a stopAfterLine()
+    public int feed(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+
+            if (b == '\n' || b == '\r') {
+                if (discarding) {
+                    // Se terminó la línea demasiado larga, se cuenta una sola vez
+                    discarding = false;
+                    malformedCount++;
+                } else if (lineLength > 0) {
+                    dispatchLine();
+                }
+                lineLength = 0;
+
+                if (stopRequested) {
+                    stopRequested = false;
+                    return i + 1 - offset;
+                }
+                continue;
+            }
+
+            if (discarding) continue;
+
+            if (lineLength == line.length) {
+                discarding = true;
+                lineLength = 0;
+                continue;
+            }
+            line[lineLength++] = b;
+        }
+        return length;
+    }
+
+    // Llamado desde el listener: deja de consumir bytes al terminar la línea actual, se usa cuando
+    // lo que sigue en el stream ya no es texto (por ejemplo tras negociar el protocolo binario)
+    public void stopAfterLine() {
+        stopRequested = true;
+    }
+
+    // Descarta lo pendiente, por ejemplo al reconectar
+    public void reset() {
+        lineLength = 0;
+        discarding = false;
+        stopRequested = false;
+    }
+
+    private void dispatchLine() {
+        int start = 0;
+        int end = lineLength;
+
+        // Equivalente al trim() que se hacía antes
+        while (start < end && line[start] <= ' ') start++;
+        while (end > start && line[end - 1] <= ' ') end--;
+        if (start == end) return;
+
+        frameCount++;
+
+        if (!startsWith(line, start, end, POSITION_PREFIX)) {
+            listener.onLine(line, start, end - start);
+            return;
+        }
+
+        int pos = start + POSITION_PREFIX.length;
+        while (pos < end && line[pos] == ' ') pos++;
+
+        boolean negative = false;
+        if (pos < end && (line[pos] == '-' || line[pos] == '+')) {
+            negative = line[pos] == '-';
+            pos++;
+        }
+
+        if (pos == end) {
+            malformedCount++;
+            return;
+        }
+
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = line[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                malformedCount++;
+                return;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                malformedCount++;
+                return;
+            }
+        }
+
+        listener.onPosition((int) (negative ? -value : value));
+    }
+
+    private static boolean startsWith(byte[] data, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[start + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getMalformedCount() {
+        return malformedCount;
+    }
+}
@@ -37,19 +37,29 @@ import androidx.core.content.ContextCompat;
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.hardware.display.DisplayManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.Display;
 import android.view.View;
 import android.widget.Button;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.File;
+
 public class MainActivity extends AppCompatActivity implements BluetoothManager.BluetoothListener {
 
+    private static final String TAG = "MainActivity";
     private static final int REQUEST_ENABLE_BT = 1;
     private static final int REQUEST_BLUETOOTH_PERMISSIONS = 2;
+    private static final long DEBUG_REFRESH_MS = 500;
+    private static final int SWEEP_STEP_DEGREES = 5;
+    private static final int SWEEP_STEP_MS = 50;
 
     // UI Components
     private Button btnConnect;
@@ -58,11 +68,24 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
     private View statusIndicator;
     private SeekBar seekBarAngle;
     private TachometerView tachometerView;
+    private StripChartView stripChartView;
     private Button btn0, btn45, btn90, btn135, btn180;
+    private View cardHeader;
+    private View cardDebug;
+    private TextView tvDebugOverlay;
+    private Button btnResetLatency;
+    private Button btnExportLatency;
+    private Button btnReplay;
+    private Button btnSequence;
 
     // Bluetooth
     private BluetoothManager bluetoothManager;
+    private Esp32Simulator simulator;
+    private boolean startSequenceWhenReady = false;
     private boolean isUpdatingFromESP32 = false;
+    // Panel de depuración: informe detallado o métricas del registro
+    private UiFrameMonitor frameMonitor;
+    private boolean showMetrics = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -74,11 +97,20 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
 
         // Inicializar Bluetooth Manager
         bluetoothManager = new BluetoothManager(this, this);
+        stripChartView.setStores(bluetoothManager.getCommandStore(), bluetoothManager.getTelemetryStore());
+        frameMonitor = new UiFrameMonitor(bluetoothManager.getMetricsRegistry(), getRefreshRate());
 
         // Verificar permisos y configurar Bluetooth
         initializeBluetooth();
     }
 
+    // Pantalla principal por DisplayManager, getDefaultDisplay() está obsoleto. 0 si no se conoce
+    private float getRefreshRate() {
+        DisplayManager displayManager = (DisplayManager) getSystemService(DISPLAY_SERVICE);
+        Display display = displayManager != null ? displayManager.getDisplay(Display.DEFAULT_DISPLAY) : null;
+        return display != null ? display.getRefreshRate() : 0f;
+    }
+
     private void initializeViews() {
         btnConnect = findViewById(R.id.btnConnect);
         tvConnectionStatus = findViewById(R.id.tvConnectionStatus);
@@ -86,16 +118,32 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
         statusIndicator = findViewById(R.id.statusIndicator);
         seekBarAngle = findViewById(R.id.seekBarAngle);
         tachometerView = findViewById(R.id.tachometerView);
+        stripChartView = findViewById(R.id.stripChartView);
 
         btn0 = findViewById(R.id.btn0);
         btn45 = findViewById(R.id.btn45);
         btn90 = findViewById(R.id.btn90);
         btn135 = findViewById(R.id.btn135);
         btn180 = findViewById(R.id.btn180);
+
+        cardHeader = findViewById(R.id.cardHeader);
+        cardDebug = findViewById(R.id.cardDebug);
+        tvDebugOverlay = findViewById(R.id.tvDebugOverlay);
+        btnResetLatency = findViewById(R.id.btnResetLatency);
+        btnExportLatency = findViewById(R.id.btnExportLatency);
+        btnReplay = findViewById(R.id.btnReplay);
+        btnSequence = findViewById(R.id.btnSequence);
     }
 
     private void setupListeners() {
         btnConnect.setOnClickListener(v -> toggleBluetoothConnection());
+        // Solo en compilaciones de depuración: pulsación larga conecta a una ESP32 simulada
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            btnConnect.setOnLongClickListener(v -> {
+                connectToSimulator();
+                return true;
+            });
+        }
 
         // SeekBar listener
         seekBarAngle.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
@@ -119,6 +167,271 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
         btn90.setOnClickListener(v -> setPresetAngle(90));
         btn135.setOnClickListener(v -> setPresetAngle(135));
         btn180.setOnClickListener(v -> setPresetAngle(180));
+
+        // Panel de depuración oculto, se abre y se cierra con una pulsación larga sobre el encabezado
+        cardHeader.setOnLongClickListener(v -> {
+            toggleDebugOverlay();
+            return true;
+        });
+        btnResetLatency.setOnClickListener(v -> {
+            bluetoothManager.getLatencyTracker().reset();
+            bluetoothManager.getSetpointStreamer().resetStats();
+            bluetoothManager.getSessionReplayer().resetStats();
+            bluetoothManager.getWaypointUploader().resetStats();
+            bluetoothManager.getStepAnalyzer().reset();
+            bluetoothManager.getMetricsRegistry().reset();
+            refreshDebugOverlay.run();
+        });
+        // Toque sobre el texto: alterna entre el informe y las métricas. Pulsación larga: comparte las métricas en JSON
+        tvDebugOverlay.setOnClickListener(v -> {
+            showMetrics = !showMetrics;
+            refreshDebugOverlay.run();
+        });
+        tvDebugOverlay.setOnLongClickListener(v -> {
+            exportMetrics();
+            return true;
+        });
+        btnExportLatency.setOnClickListener(v -> exportLatency());
+        // Con pulsación larga se analizan todas las sesiones grabadas y se comparte el resultado
+        btnExportLatency.setOnLongClickListener(v -> {
+            showToast("Analizando sesiones...");
+            bluetoothManager.analyzeRecordedSessions(this::shareSessionAnalysis);
+            return true;
+        });
+
+        // Reproduce la última sesión a velocidad real, con pulsación larga lo más rápido posible
+        btnReplay.setOnClickListener(v -> replayLatestSession(1f));
+        btnReplay.setOnLongClickListener(v -> {
+            replayLatestSession(SessionReplayer.MAX_SPEED);
+            return true;
+        });
+
+        // Toque: carga un barrido de prueba y lo inicia, o pausa y reanuda el que corre. Pulsación larga: aborta
+        btnSequence.setOnClickListener(v -> toggleSequence());
+        btnSequence.setOnLongClickListener(v -> {
+            if (bluetoothManager.abortWaypoints()) {
+                showToast("Secuencia abortada");
+            }
+            return true;
+        });
+    }
+
+    private void toggleSequence() {
+        switch (bluetoothManager.getWaypointUploader().getState()) {
+            case READY:
+                bluetoothManager.startWaypoints();
+                break;
+            case PLAYING:
+                bluetoothManager.pauseWaypoints();
+                break;
+            case PAUSED:
+                bluetoothManager.resumeWaypoints();
+                break;
+            case UPLOADING:
+                break;
+            default:
+                uploadSweep();
+                break;
+        }
+    }
+
+    // Barrido de 0° a 180° y de regreso en pasos de 5°, la ESP32 lo ejecuta sin esperar al teléfono
+    private void uploadSweep() {
+        int steps = 180 / SWEEP_STEP_DEGREES;
+        int count = steps * 2 + 1;
+        int[] delays = new int[count];
+        float[] angles = new float[count];
+        for (int i = 0; i < count; i++) {
+            delays[i] = i == 0 ? 0 : SWEEP_STEP_MS;
+            angles[i] = (i <= steps ? i : 2 * steps - i) * SWEEP_STEP_DEGREES;
+        }
+        startSequenceWhenReady = true;
+        if (bluetoothManager.uploadWaypoints(delays, angles, waypointListener)) {
+            showToast("Cargando secuencia de " + count + " puntos");
+        }
+    }
+
+    // Ya en el hilo principal
+    private final WaypointUploader.Listener waypointListener = new WaypointUploader.Listener() {
+        @Override
+        public void onStateChanged(WaypointUploader.State state) {
+            btnSequence.setText(state == WaypointUploader.State.PLAYING ? "Pausar"
+                    : state == WaypointUploader.State.PAUSED ? "Seguir" : "Secuencia");
+            if (state == WaypointUploader.State.READY && startSequenceWhenReady) {
+                startSequenceWhenReady = false;
+                bluetoothManager.startWaypoints();
+            } else if (state == WaypointUploader.State.FAILED || state == WaypointUploader.State.IDLE) {
+                startSequenceWhenReady = false;
+            }
+        }
+
+        @Override
+        public void onUploadProgress(int acknowledged, int total) {
+            btnSequence.setText(acknowledged + "/" + total);
+        }
+
+        @Override
+        public void onError(String error) {
+            showToast(error);
+        }
+    };
+
+    // Sin conexión se revisa en el tacómetro y la gráfica; conectado se repiten los comandos en la ESP32
+    private void replayLatestSession(float speed) {
+        if (bluetoothManager.isReplaying()) {
+            bluetoothManager.stopReplay();
+            return;
+        }
+
+        File[] sessions = bluetoothManager.listSessions();
+        boolean driveDevice = bluetoothManager.isConnected();
+        // Conectado, la sesión en curso es la primera de la lista y se repite la anterior
+        int index = driveDevice ? 1 : 0;
+        if (sessions.length <= index) {
+            showToast("No hay sesiones grabadas");
+            return;
+        }
+        if (bluetoothManager.replaySession(sessions[index], speed, driveDevice)) {
+            showToast("Reproduciendo " + sessions[index].getName());
+        }
+    }
+
+    private void toggleDebugOverlay() {
+        if (cardDebug.getVisibility() == View.VISIBLE) {
+            cardDebug.setVisibility(View.GONE);
+            tvDebugOverlay.removeCallbacks(refreshDebugOverlay);
+            frameMonitor.stop();
+        } else {
+            cardDebug.setVisibility(View.VISIBLE);
+            frameMonitor.start();
+            refreshDebugOverlay.run();
+        }
+    }
+
+    // Se actualiza cada medio segundo solo mientras el panel está visible
+    private final Runnable refreshDebugOverlay = new Runnable() {
+        @Override
+        public void run() {
+            tvDebugOverlay.setText(showMetrics ? buildMetricsReport() : buildLatencyReport());
+            tvDebugOverlay.removeCallbacks(this);
+            if (cardDebug.getVisibility() == View.VISIBLE) {
+                tvDebugOverlay.postDelayed(this, DEBUG_REFRESH_MS);
+            }
+        }
+    };
+
+    private String buildMetricsReport() {
+        return "Métricas (cuadros medidos con el panel abierto)\n"
+                + bluetoothManager.getMetricsRegistry().summary(System.nanoTime());
+    }
+
+    private String buildLatencyReport() {
+        LatencyTracker tracker = bluetoothManager.getLatencyTracker();
+        ConnectionSupervisor supervisor = bluetoothManager.getSupervisor();
+        SetpointStreamer streamer = bluetoothManager.getSetpointStreamer();
+        SessionReplayer replayer = bluetoothManager.getSessionReplayer();
+        StepResponseAnalyzer analyzer = bluetoothManager.getStepAnalyzer();
+        StepResponseAnalyzer.StepResult lastStep = analyzer.getLastResult();
+        TelemetryFilter filter = bluetoothManager.getTelemetryFilter();
+        return "Latencia comando → posición\n"
+                + tracker.getHistogram().summary() + "\n"
+                + "reemplazados=" + tracker.getSupersededCount()
+                + " sin respuesta=" + tracker.getTimedOutCount()
+                + " omitidos=" + tracker.getSkippedCount() + "\n"
+                + buildFlowControlReport()
+                + buildTelemetryFormatReport()
+                + "Filtro " + (filter != null ? filter : "sin filtro")
+                + " muestras=" + bluetoothManager.getFilteredSampleCount()
+                + " suprimidas=" + bluetoothManager.getSuppressedUpdateCount() + "\n"
+                + "Conexión " + supervisor.getConnectTimeHistogram().summary() + "\n"
+                + "Recuperación " + supervisor.getRecoveryTimeHistogram().summary() + "\n"
+                + "intentos=" + supervisor.getAttemptCount()
+                + " fallidos=" + supervisor.getFailureCount()
+                + " tiempo agotado=" + supervisor.getTimeoutCount()
+                + " perdidos=" + supervisor.getLinkLossCount() + "\n"
+                + "Trayectoria " + streamer.getRateHz() + " Hz jitter " + streamer.getJitterHistogram().summary() + "\n"
+                + "puntos=" + streamer.getSetpointCount()
+                + " plazos perdidos=" + streamer.getMissedDeadlineCount()
+                + " completos=" + streamer.getCompletedCount()
+                + " cancelados=" + streamer.getCancelledCount() + "\n"
+                + "Reproducción " + (replayer.isRunning() ? "en curso" : "detenida")
+                + " registros=" + replayer.getReplayedCount()
+                + " última=" + Math.round(replayer.getLastRunRecordsPerSecond()) + "/s\n"
+                + "retraso " + replayer.getLagHistogram().summary() + "\n"
+                + buildSequenceReport()
+                + "Respuesta al escalón\n" + analyzer.summary()
+                + (lastStep != null ? "\núltimo " + lastStep : "");
+    }
+
+    // Cola de envío y retenciones del control de flujo de la conexión actual
+    private String buildFlowControlReport() {
+        CommandWriter writer = bluetoothManager.getCommandWriter();
+        if (writer == null) return "";
+        return "Envío cola=" + writer.getQueueDepth()
+                + " en vuelo=" + writer.getInFlightCount()
+                + " créditos=" + (writer.isCreditFlowControlActive() ? writer.getCredits() : "-")
+                + " coalescidos=" + writer.getCoalescedCount() + "\n"
+                + "limitados=" + writer.getRateLimitedCount()
+                + " sin créditos=" + writer.getCreditStalledCount()
+                + " vencidos=" + writer.getCreditTimeoutCount() + "\n"
+                + "espera " + writer.getQueueDelayHistogram().summary() + "\n";
+    }
+
+    // Formato de la telemetría que llega por la conexión actual
+    private String buildTelemetryFormatReport() {
+        ServoLink link = bluetoothManager.getServoLink();
+        ProtocolDecoder decoder = link != null ? link.getProtocolDecoder() : null;
+        if (decoder == null) return "";
+        return "Telemetría " + (link.isBatchTelemetryActive() ? "por lotes" : decoder.isBinaryMode() ? "binaria" : "texto")
+                + " tramas=" + decoder.getFrameCount()
+                + " lotes=" + decoder.getBatchCount()
+                + " muestras en lotes=" + decoder.getBatchSampleCount()
+                + " perdidas=" + link.getLostBatchSampleCount() + "\n";
+    }
+
+    private String buildSequenceReport() {
+        WaypointUploader uploader = bluetoothManager.getWaypointUploader();
+        return "Secuencia " + uploader.getState()
+                + " puntos=" + uploader.getWaypointCount()
+                + " cargas=" + uploader.getUploadCount()
+                + " bloques=" + uploader.getChunkSentCount()
+                + " reenviados=" + uploader.getRetransmittedChunkCount() + "\n"
+                + "nak=" + uploader.getNakCount()
+                + " vencidos=" + uploader.getTimeoutCount()
+                + " completas=" + uploader.getCompletedPlaybackCount() + "\n"
+                + "ack " + uploader.getAckLatencyHistogram().summary() + "\n"
+                + "carga " + uploader.getUploadTimeHistogram().summary() + "\n";
+    }
+
+    // Comparte el resumen y las cubetas del histograma como texto (CSV)
+    private void exportLatency() {
+        Intent share = new Intent(Intent.ACTION_SEND);
+        share.setType("text/plain");
+        share.putExtra(Intent.EXTRA_SUBJECT, "Latencia ServoMotor");
+        share.putExtra(Intent.EXTRA_TEXT, buildLatencyReport() + "\n\n"
+                + bluetoothManager.getLatencyTracker().getHistogram().toCsv());
+        startActivity(Intent.createChooser(share, "Exportar latencia"));
+    }
+
+    private void exportMetrics() {
+        Intent share = new Intent(Intent.ACTION_SEND);
+        share.setType("application/json");
+        share.putExtra(Intent.EXTRA_SUBJECT, "Métricas ServoMotor");
+        share.putExtra(Intent.EXTRA_TEXT, bluetoothManager.getMetricsRegistry().toJson(System.nanoTime()));
+        startActivity(Intent.createChooser(share, "Exportar métricas"));
+    }
+
+    private void shareSessionAnalysis(StepResponseAnalyzer result, int fileCount) {
+        if (fileCount == 0) {
+            showToast("No hay sesiones grabadas");
+            return;
+        }
+        Intent share = new Intent(Intent.ACTION_SEND);
+        share.setType("text/plain");
+        share.putExtra(Intent.EXTRA_SUBJECT, "Respuesta al escalón ServoMotor");
+        share.putExtra(Intent.EXTRA_TEXT, result.getSessionCount() + " de " + fileCount + " sesiones\n"
+                + result.summary() + "\n\nEstablecimiento\n" + result.getSettlingTimeHistogram().toCsv());
+        startActivity(Intent.createChooser(share, "Exportar análisis"));
     }
 
     private void initializeBluetooth() {
@@ -154,13 +467,14 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
     }
 
     private void toggleBluetoothConnection() {
-        // Verificar permisos antes de intentar conectar
-        if (!bluetoothManager.hasBluetoothPermissions()) {
+        // Verificar permisos antes de intentar conectar (desconectar del simulador no los necesita)
+        if (!bluetoothManager.isConnectionActive() && !bluetoothManager.hasBluetoothPermissions()) {
             bluetoothManager.requestBluetoothPermissions();
             return;
         }
 
-        if (bluetoothManager.isConnected()) {
+        // También cancela una conexión en curso o una reconexión pendiente
+        if (bluetoothManager.isConnectionActive()) {
             bluetoothManager.disconnect();
         } else {
             if (!bluetoothManager.isBluetoothEnabled()) {
@@ -180,10 +494,33 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
         }
     }
 
+    // Enlace parecido a RFCOMM: 20 ms de latencia con jitter, lecturas partidas y protocolo binario
+    private void connectToSimulator() {
+        if (bluetoothManager.isConnectionActive()) return;
+        if (simulator == null) {
+            simulator = new Esp32Simulator();
+            simulator.setLinkLatency(20, 15);
+            simulator.setSplitProbability(0.1f);
+            simulator.setBinarySupported(true);
+        }
+        btnConnect.setEnabled(false);
+        btnConnect.setText("Conectando...");
+        bluetoothManager.connectToSimulator(simulator);
+        showToast("Conectando a la ESP32 simulada");
+    }
+
     private void setPresetAngle(int angle) {
-        updateAngle(angle);
-        // Animar el seekbar
+        tvCurrentAngle.setText(angle + "°");
+        // Animar el seekbar, setProgress no cuenta como cambio del usuario y no envía nada
         seekBarAngle.setProgress(angle);
+
+        if (bluetoothManager.isConnected()) {
+            // Movimiento suave a frecuencia fija, la aguja sigue la posición reportada
+            bluetoothManager.moveToAngle(angle);
+            stripChartView.invalidate();
+        } else {
+            tachometerView.setAngle(angle);
+        }
     }
 
     private void updateAngle(int angle) {
@@ -194,6 +531,7 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
         // Enviar comando al ESP32
         if (bluetoothManager.isConnected()) {
             bluetoothManager.sendAngle(angle);
+            stripChartView.invalidate();
         }
     }
 
@@ -219,26 +557,42 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
         });
     }
 
+    @Override
+    public void onConnectionStateChanged(ConnectionState state) {
+        // CONNECTED e IDLE ya se muestran en onConnectionChanged
+        if (state == ConnectionState.RECONNECTING) {
+            tvConnectionStatus.setText("Reconectando...");
+            tvConnectionStatus.setTextColor(ContextCompat.getColor(this, android.R.color.holo_orange_dark));
+            btnConnect.setText("Cancelar");
+            btnConnect.setEnabled(true);
+        } else if (state == ConnectionState.CONNECTING) {
+            tvConnectionStatus.setText("Conectando...");
+            tvConnectionStatus.setTextColor(ContextCompat.getColor(this, android.R.color.holo_orange_dark));
+        }
+    }
+
+    @Override
+    public void onTelemetryFrame(TelemetryBatch batch) {
+        // Ya llega en el hilo principal, agrupada por cuadro, solo interesa el último valor
+        float angle = batch.getLatestValue();
+        if (Float.isNaN(angle)) return;
+
+        isUpdatingFromESP32 = true;
+
+        // Actualizar UI con la posición del potenciómetro, en modo binario llega con decimales
+        int roundedAngle = Math.round(angle);
+        tvCurrentAngle.setText(roundedAngle + "°");
+        tachometerView.setAngle(angle);
+        seekBarAngle.setProgress(roundedAngle);
+        stripChartView.invalidate();
+
+        isUpdatingFromESP32 = false;
+    }
+
     @Override
     public void onDataReceived(String data) {
-        runOnUiThread(() -> {
-            // Procesar datos recibidos del ESP32
-            if (data.startsWith("POSITION:")) {
-                try {
-                    int angle = Integer.parseInt(data.substring(9));
-                    isUpdatingFromESP32 = true;
-
-                    // Actualizar UI con la posición del potenciómetro
-                    tvCurrentAngle.setText(angle + "°");
-                    tachometerView.setAngle(angle);
-                    seekBarAngle.setProgress(angle);
-
-                    isUpdatingFromESP32 = false;
-                } catch (NumberFormatException e) {
-                    // Ignorar datos mal formateados
-                }
-            }
-        });
+        // Las posiciones ya llegan decodificadas por onTelemetryFrame, aquí solo quedan otros mensajes
+        Log.d(TAG, "Mensaje de la ESP32: " + data);
     }
 
     @Override
@@ -313,14 +667,31 @@ public class MainActivity extends AppCompatActivity implements BluetoothManager.
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        tvDebugOverlay.removeCallbacks(refreshDebugOverlay);
+        if (frameMonitor != null) {
+            frameMonitor.stop();
+        }
         if (bluetoothManager != null) {
-            bluetoothManager.disconnect();
+            bluetoothManager.release();
+        }
+        if (simulator != null) {
+            simulator.stop();
         }
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // En segundo plano no hay cuadros que medir
+        frameMonitor.stop();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
+        if (cardDebug.getVisibility() == View.VISIBLE) {
+            frameMonitor.start();
+        }
         // Verificar estado de Bluetooth al volver a la actividad
         if (bluetoothManager != null && bluetoothManager.hasBluetoothPermissions()) {
             if (!bluetoothManager.isBluetoothEnabled()) {
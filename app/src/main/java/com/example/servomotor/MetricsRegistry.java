@@ -0,0 +1,207 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es un registro de métricas para saber qué pasa en el enlace sin conectar un depurador. Antes
+solo había mensajes de Log y contadores sueltos en cada clase, que se pierden al reconectar porque cada
+conexión crea su propio ServoLink y su CommandWriter.
+
+Hay tres tipos de métrica, cada una con un nombre con puntos ("link.bytes_in"):
+- Counter: contador que solo sube (AtomicLong), lo incrementa el hilo que produce el evento.
+- Gauge: valor instantáneo que se lee al momento de consultar (largo de una cola, estado).
+- Rate: eventos por segundo de un contador, calculado al consultar con lo que subió desde la consulta
+  anterior. La primera consulta que pasa el intervalo mínimo gana el compareAndSet y recalcula, las
+  demás devuelven el último valor.
+
+Nada toma candados: registrar y consultar pueden pasar desde cualquier hilo al mismo tiempo. Pedir dos
+veces el mismo nombre devuelve la misma métrica, así quien produce los eventos y quien los muestra no
+necesitan compartir referencias. summary() arma el texto del panel de depuración y toJson() el volcado
+que se comparte. No depende de Android.
+ */
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MetricsRegistry {
+    // Con intervalos más cortos la tasa salta con cada ráfaga de lecturas
+    public static final long MIN_RATE_INTERVAL_NANOS = 250_000_000L;
+
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        void reset() {
+            value.set(0);
+        }
+    }
+
+    public interface Gauge {
+        // Se llama desde el hilo que consulta, debe ser barato y no bloquear
+        long read();
+    }
+
+    public static final class Rate {
+        private final Counter counter;
+        private final AtomicLong lastNanos;
+        private volatile long lastValue;
+        private volatile double perSecond = 0;
+
+        Rate(Counter counter, long nowNanos) {
+            this.counter = counter;
+            this.lastNanos = new AtomicLong(nowNanos);
+            this.lastValue = counter.get();
+        }
+
+        // Eventos por segundo desde la muestra anterior, se recalcula como mucho cada MIN_RATE_INTERVAL_NANOS
+        public double sample(long nowNanos) {
+            long previous = lastNanos.get();
+            long elapsed = nowNanos - previous;
+            if (elapsed >= MIN_RATE_INTERVAL_NANOS && lastNanos.compareAndSet(previous, nowNanos)) {
+                long value = counter.get();
+                perSecond = Math.max(0, value - lastValue) * 1e9 / elapsed;
+                lastValue = value;
+            }
+            return perSecond;
+        }
+
+        public double get() {
+            return perSecond;
+        }
+
+        void reset(long nowNanos) {
+            lastValue = counter.get();
+            lastNanos.set(nowNanos);
+            perSecond = 0;
+        }
+    }
+
+    // Ordenados por nombre, así el panel y el volcado salen siempre en el mismo orden
+    private final ConcurrentSkipListMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Rate> rates = new ConcurrentSkipListMap<>();
+    private final long createdNanos = System.nanoTime();
+
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter != null) return counter;
+        Counter created = new Counter();
+        Counter existing = counters.putIfAbsent(name, created);
+        return existing != null ? existing : created;
+    }
+
+    // Un nombre ya registrado se reemplaza, por ejemplo al cambiar el objeto que se observa
+    public void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    // Tasa del contador con ese nombre, se crea el contador si no existe
+    public Rate rate(String counterName) {
+        Rate rate = rates.get(counterName);
+        if (rate != null) return rate;
+        Rate created = new Rate(counter(counterName), System.nanoTime());
+        Rate existing = rates.putIfAbsent(counterName, created);
+        return existing != null ? existing : created;
+    }
+
+    // 0 si el contador no existe
+    public long getCount(String name) {
+        Counter counter = counters.get(name);
+        return counter != null ? counter.get() : 0;
+    }
+
+    // Long.MIN_VALUE si el indicador no existe
+    public long readGauge(String name) {
+        Gauge gauge = gauges.get(name);
+        return gauge != null ? gauge.read() : Long.MIN_VALUE;
+    }
+
+    // Los contadores vuelven a 0 y las tasas empiezan de nuevo, los indicadores no cambian
+    public void reset() {
+        long now = System.nanoTime();
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Rate rate : rates.values()) {
+            rate.reset(now);
+        }
+    }
+
+    // Una línea por contador con su tasa si tiene, y una por indicador
+    public String summary(long nowNanos) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            text.append(entry.getKey()).append(' ').append(entry.getValue().get());
+            Rate rate = rates.get(entry.getKey());
+            if (rate != null) {
+                text.append(String.format(Locale.US, " (%.1f/s)", rate.sample(nowNanos)));
+            }
+            text.append('\n');
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            text.append(entry.getKey()).append(' ').append(entry.getValue().read()).append('\n');
+        }
+        return text.toString();
+    }
+
+    // {"uptime_ms":n,"counters":{...},"gauges":{...},"rates":{...}}, las tasas en eventos por segundo
+    public String toJson(long nowNanos) {
+        StringBuilder json = new StringBuilder(64 + 48 * (counters.size() + gauges.size() + rates.size()));
+        json.append("{\"uptime_ms\":").append((nowNanos - createdNanos) / 1_000_000L);
+
+        json.append(",\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            first = appendKey(json, entry.getKey(), first);
+            json.append(entry.getValue().get());
+        }
+
+        json.append("},\"gauges\":{");
+        first = true;
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            first = appendKey(json, entry.getKey(), first);
+            json.append(entry.getValue().read());
+        }
+
+        json.append("},\"rates\":{");
+        first = true;
+        for (Map.Entry<String, Rate> entry : rates.entrySet()) {
+            first = appendKey(json, entry.getKey(), first);
+            json.append(String.format(Locale.US, "%.3f", entry.getValue().sample(nowNanos)));
+        }
+        return json.append("}}").toString();
+    }
+
+    private static boolean appendKey(StringBuilder json, String name, boolean first) {
+        if (!first) json.append(',');
+        json.append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append("\":");
+        return false;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo reduce una serie del TelemetryStore a una columna por pixel para dibujarla. Cuando hay
+muchas más muestras que pixeles, de cada columna se guardan el primer y último valor y el mínimo y el
+máximo; así los picos y las oscilaciones se siguen viendo aunque se descarten casi todas las muestras.
+
+Las columnas están alineadas al tiempo absoluto (t / duración de columna) y viven en un arreglo
+circular, por lo que en cada cuadro solo se procesan las muestras nuevas. Dibujar una ventana de horas
+cuesta lo mismo que una de segundos; solo al cambiar el tamaño o la ventana se vuelve a recorrer el
+historial completo. Los segmentos se escriben en un arreglo reservado de antemano en el formato de
+Canvas.drawLines, sin crear objetos por cuadro. Debe usarse desde un único hilo (el de la UI).
+
+Con stepped = true la serie se dibuja como escalones (mantiene el último valor hasta el siguiente),
+que es lo correcto para los ángulos comandados.
+ */
+
+import java.util.Arrays;
+
+public class MinMaxDecimator {
+    private static final int SCRATCH_SIZE = 512;
+    private static final long NO_COLUMN = Long.MIN_VALUE;
+
+    private final TelemetryStore store;
+    private final boolean stepped;
+    private final long[] scratchTimestamps = new long[SCRATCH_SIZE];
+    private final float[] scratchValues = new float[SCRATCH_SIZE];
+
+    private int columns = 0;
+    private long columnNanos = 1;
+    private long[] slotColumn = new long[0];
+    private float[] columnFirst = new float[0];
+    private float[] columnLast = new float[0];
+    private float[] columnMin = new float[0];
+    private float[] columnMax = new float[0];
+
+    // Siguiente muestra por procesar, -1 obliga a recorrer de nuevo el historial de la ventana
+    private long nextSequence = -1;
+    // Último valor de la columna más nueva que ya salió del arreglo, para los escalones
+    private long evictedColumn = NO_COLUMN;
+    private float evictedValue = Float.NaN;
+
+    public MinMaxDecimator(TelemetryStore store, boolean stepped) {
+        this.store = store;
+        this.stepped = stepped;
+    }
+
+    // Cantidad de floats que necesita el arreglo de salida de buildLines
+    public static int lineBufferSize(int columns) {
+        return columns * 12 + 4;
+    }
+
+    public void configure(int columns, long windowNanos) {
+        long newColumnNanos = Math.max(1, windowNanos / Math.max(1, columns));
+        if (columns == this.columns && newColumnNanos == columnNanos) return;
+
+        if (columns != this.columns) {
+            slotColumn = new long[columns];
+            columnFirst = new float[columns];
+            columnLast = new float[columns];
+            columnMin = new float[columns];
+            columnMax = new float[columns];
+            this.columns = columns;
+        }
+        columnNanos = newColumnNanos;
+        nextSequence = -1;
+    }
+
+    // Procesa las muestras que llegaron desde la última llamada
+    public void update(long nowNanos) {
+        if (columns == 0) return;
+
+        long end = store.getWriteSequence();
+        long oldest = store.getOldestSequence();
+        if (nextSequence < 0 || nextSequence < oldest) {
+            rescan(nowNanos, oldest, end);
+        }
+
+        while (nextSequence < end) {
+            long chunkEnd = Math.min(end, nextSequence + SCRATCH_SIZE);
+            int count = store.readRange(nextSequence, chunkEnd, scratchTimestamps, scratchValues, 0);
+            for (int i = 0; i < count; i++) {
+                ingest(scratchTimestamps[i], scratchValues[i]);
+            }
+            nextSequence = chunkEnd;
+        }
+    }
+
+    private void rescan(long nowNanos, long oldest, long end) {
+        Arrays.fill(slotColumn, NO_COLUMN);
+        long windowStart = nowNanos - columnNanos * columns;
+        nextSequence = store.lowerBound(oldest, end, windowStart);
+
+        evictedColumn = NO_COLUMN;
+        evictedValue = Float.NaN;
+        // El valor vigente al inicio de la ventana es el de la muestra anterior
+        if (nextSequence > oldest) {
+            int count = store.readRange(nextSequence - 1, nextSequence, scratchTimestamps, scratchValues, 0);
+            if (count == 1) {
+                evictedColumn = floorDiv(scratchTimestamps[0], columnNanos);
+                evictedValue = scratchValues[0];
+            }
+        }
+    }
+
+    private void ingest(long timestampNanos, float value) {
+        long column = floorDiv(timestampNanos, columnNanos);
+        int slot = floorMod(column, columns);
+        long previous = slotColumn[slot];
+
+        if (previous == column) {
+            columnLast[slot] = value;
+            if (value < columnMin[slot]) columnMin[slot] = value;
+            if (value > columnMax[slot]) columnMax[slot] = value;
+            return;
+        }
+
+        if (previous != NO_COLUMN && previous < column && previous > evictedColumn) {
+            evictedColumn = previous;
+            evictedValue = columnLast[slot];
+        }
+        slotColumn[slot] = column;
+        columnFirst[slot] = value;
+        columnLast[slot] = value;
+        columnMin[slot] = value;
+        columnMax[slot] = value;
+    }
+
+    // Escribe en out los segmentos de la ventana que termina en nowNanos, devuelve cuántos floats usó
+    public int buildLines(long nowNanos, float left, float top, float width, float height,
+                          float minValue, float maxValue, float[] out) {
+        if (columns == 0) return 0;
+
+        long lastColumn = floorDiv(nowNanos, columnNanos);
+        long firstColumn = lastColumn - columns + 1;
+        float columnWidth = width / columns;
+        float scale = height / (maxValue - minValue);
+        int n = 0;
+
+        float prevX = Float.NaN;
+        float prevY = Float.NaN;
+        if (stepped) {
+            float held = valueBefore(firstColumn);
+            if (!Float.isNaN(held)) {
+                prevX = left;
+                prevY = toY(held, top, height, minValue, scale);
+            }
+        }
+
+        for (int k = 0; k < columns; k++) {
+            long column = firstColumn + k;
+            int slot = floorMod(column, columns);
+            if (slotColumn[slot] != column) continue;
+
+            float x = left + (k + 0.5f) * columnWidth;
+            float yFirst = toY(columnFirst[slot], top, height, minValue, scale);
+
+            if (!Float.isNaN(prevX)) {
+                if (stepped) {
+                    n = segment(out, n, prevX, prevY, x, prevY);
+                    n = segment(out, n, x, prevY, x, yFirst);
+                } else {
+                    n = segment(out, n, prevX, prevY, x, yFirst);
+                }
+            }
+
+            if (columnMin[slot] != columnMax[slot]) {
+                n = segment(out, n, x, toY(columnMin[slot], top, height, minValue, scale),
+                        x, toY(columnMax[slot], top, height, minValue, scale));
+            }
+
+            prevX = x;
+            prevY = toY(columnLast[slot], top, height, minValue, scale);
+        }
+
+        if (stepped && !Float.isNaN(prevX)) {
+            n = segment(out, n, prevX, prevY, left + width, prevY);
+        }
+        return n;
+    }
+
+    // Último valor conocido antes de la columna indicada
+    private float valueBefore(long column) {
+        long best = evictedColumn < column ? evictedColumn : NO_COLUMN;
+        float value = best != NO_COLUMN ? evictedValue : Float.NaN;
+        for (int slot = 0; slot < columns; slot++) {
+            long c = slotColumn[slot];
+            if (c != NO_COLUMN && c < column && c > best) {
+                best = c;
+                value = columnLast[slot];
+            }
+        }
+        return value;
+    }
+
+    private static float toY(float value, float top, float height, float minValue, float scale) {
+        float y = top + height - (value - minValue) * scale;
+        return Math.max(top, Math.min(top + height, y));
+    }
+
+    private static int segment(float[] out, int n, float x0, float y0, float x1, float y1) {
+        out[n] = x0;
+        out[n + 1] = y0;
+        out[n + 2] = x1;
+        out[n + 3] = y1;
+        return n + 4;
+    }
+
+    // Math.floorDiv y Math.floorMod requieren API 24
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) q--;
+        return q;
+    }
+
+    private static int floorMod(long x, int y) {
+        int mod = (int) (x % y);
+        return mod < 0 ? mod + y : mod;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+}
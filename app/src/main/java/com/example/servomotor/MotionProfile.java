@@ -0,0 +1,134 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo calcula el perfil de movimiento de un desplazamiento de un ángulo a otro con velocidad y
+aceleración máximas. Antes los botones de ángulos predefinidos mandaban el ángulo final de golpe y el
+servo saltaba a toda velocidad, con un tirón al arrancar y otro al frenar.
+
+Hay dos formas:
+- TRAPEZOIDAL: acelera con aceleración constante, avanza a velocidad constante y frena igual. La
+  velocidad es un trapecio (o un triángulo si la distancia no alcanza para llegar a la velocidad máxima).
+  La aceleración cambia de golpe en las esquinas.
+- S_CURVE: la aceleración sube y baja como una onda seno al cuadrado, a(t) = aMax sin²(pi t / Ta), así
+  la aceleración (y el tirón) no tienen saltos. La aceleración media de cada rampa es aMax / 2, por eso
+  las rampas duran el doble que en el trapezoidal y el movimiento tarda un poco más.
+
+En ambos casos cada rampa recorre vPico * Ta / 2, lo que permite resolver los tiempos igual para las dos
+formas y solo cambiar la función de posición dentro de la rampa. El frenado es la rampa de aceleración
+reflejada en el tiempo. Es inmutable y no depende de Android.
+ */
+
+public class MotionProfile {
+    public static final float DEFAULT_MAX_VELOCITY = 180f;     // grados por segundo
+    public static final float DEFAULT_MAX_ACCELERATION = 720f; // grados por segundo²
+
+    public enum Shape { TRAPEZOIDAL, S_CURVE }
+
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final Shape shape;
+    private final float start;
+    private final float end;
+    private final double distance;
+    private final double direction;
+    private final double peakVelocity;
+    private final double rampSeconds;
+    private final double cruiseSeconds;
+    private final double durationSeconds;
+
+    public MotionProfile(Shape shape, float start, float end, float maxVelocity, float maxAcceleration) {
+        if (!(maxVelocity > 0) || !(maxAcceleration > 0)) {
+            throw new IllegalArgumentException("Límites inválidos: " + maxVelocity + ", " + maxAcceleration);
+        }
+        this.shape = shape;
+        this.start = start;
+        this.end = end;
+        this.distance = Math.abs((double) end - start);
+        this.direction = end >= start ? 1 : -1;
+
+        // Aceleración equivalente de la rampa: la onda seno² promedia la mitad del pico
+        double rampAcceleration = shape == Shape.S_CURVE ? maxAcceleration / 2.0 : maxAcceleration;
+        double velocity = maxVelocity;
+        if (distance < velocity * velocity / rampAcceleration) {
+            // No alcanza la velocidad máxima: perfil triangular
+            velocity = Math.sqrt(distance * rampAcceleration);
+        }
+        this.peakVelocity = velocity;
+        this.rampSeconds = velocity > 0 ? velocity / rampAcceleration : 0;
+        this.cruiseSeconds = velocity > 0 ? (distance - velocity * rampSeconds) / velocity : 0;
+        this.durationSeconds = 2 * rampSeconds + cruiseSeconds;
+    }
+
+    // Posición en grados a los tSeconds de iniciar, fuera del intervalo se queda en los extremos
+    public float positionAt(double tSeconds) {
+        if (tSeconds <= 0) return start;
+        if (tSeconds >= durationSeconds) return end;
+
+        double travelled;
+        if (tSeconds < rampSeconds) {
+            travelled = rampDistance(tSeconds);
+        } else if (tSeconds <= rampSeconds + cruiseSeconds) {
+            travelled = peakVelocity * rampSeconds / 2 + peakVelocity * (tSeconds - rampSeconds);
+        } else {
+            travelled = distance - rampDistance(durationSeconds - tSeconds);
+        }
+        return (float) (start + direction * travelled);
+    }
+
+    // Velocidad con signo en grados por segundo
+    public float velocityAt(double tSeconds) {
+        if (tSeconds <= 0 || tSeconds >= durationSeconds) return 0;
+
+        double speed;
+        if (tSeconds < rampSeconds) {
+            speed = rampVelocity(tSeconds);
+        } else if (tSeconds <= rampSeconds + cruiseSeconds) {
+            speed = peakVelocity;
+        } else {
+            speed = rampVelocity(durationSeconds - tSeconds);
+        }
+        return (float) (direction * speed);
+    }
+
+    // Distancia recorrida t segundos después de empezar la rampa de aceleración
+    private double rampDistance(double t) {
+        double u = t / rampSeconds;
+        if (shape == Shape.TRAPEZOIDAL) {
+            return peakVelocity * rampSeconds * u * u / 2;
+        }
+        return peakVelocity * rampSeconds * (u * u / 2 + (Math.cos(TWO_PI * u) - 1) / (TWO_PI * TWO_PI));
+    }
+
+    private double rampVelocity(double t) {
+        double u = t / rampSeconds;
+        if (shape == Shape.TRAPEZOIDAL) {
+            return peakVelocity * u;
+        }
+        return peakVelocity * (u - Math.sin(TWO_PI * u) / TWO_PI);
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    public float getStart() {
+        return start;
+    }
+
+    public float getEnd() {
+        return end;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public double getPeakVelocity() {
+        return peakVelocity;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es un transporte en memoria. createPair() devuelve dos extremos conectados entre sí: lo
+que se escribe en uno se lee en el otro. El extremo 0 es para la app y el 1 para quien haga de ESP32
+(una prueba o un simulador).
+
+No se usan PipedInputStream/PipedOutputStream de java.io porque fallan con "Write end dead" cuando el
+hilo que escribió por última vez termina, cosa normal en pruebas. Cada sentido es un buffer circular
+acotado: si se llena, la escritura se bloquea igual que un socket real.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class PipedTransport implements Transport {
+    public static final int DEFAULT_PIPE_CAPACITY = 64 * 1024;
+
+    private final String name;
+    private final Pipe incoming;
+    private final Pipe outgoing;
+
+    private PipedTransport(String name, Pipe incoming, Pipe outgoing) {
+        this.name = name;
+        this.incoming = incoming;
+        this.outgoing = outgoing;
+    }
+
+    public static PipedTransport[] createPair() {
+        return createPair(DEFAULT_PIPE_CAPACITY);
+    }
+
+    public static PipedTransport[] createPair(int capacity) {
+        Pipe toDevice = new Pipe(capacity);
+        Pipe toApp = new Pipe(capacity);
+        return new PipedTransport[]{
+                new PipedTransport("Piped app", toApp, toDevice),
+                new PipedTransport("Piped device", toDevice, toApp)
+        };
+    }
+
+    @Override
+    public void open() throws IOException {
+        if (incoming.isClosed() || outgoing.isClosed()) {
+            throw new IOException("Transporte en memoria cerrado");
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return incoming.inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outgoing.outputStream;
+    }
+
+    // Cierra ambos sentidos, el otro extremo lee fin de stream
+    @Override
+    public void close() {
+        incoming.close();
+        outgoing.close();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    private static final class Pipe {
+        private final byte[] buffer;
+        private int readPos = 0;
+        private int size = 0;
+        private boolean closed = false;
+
+        final InputStream inputStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                int n = read(single, 0, 1);
+                return n < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return Pipe.this.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                synchronized (Pipe.this) {
+                    return size;
+                }
+            }
+
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+
+        final OutputStream outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Pipe.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+
+        Pipe(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            try {
+                while (size == 0 && !closed) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Lectura interrumpida", e);
+            }
+            if (size == 0) return -1;
+
+            int count = Math.min(len, size);
+            int first = Math.min(count, buffer.length - readPos);
+            System.arraycopy(buffer, readPos, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, count - first);
+            readPos = (readPos + count) % buffer.length;
+            size -= count;
+            notifyAll();
+            return count;
+        }
+
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            try {
+                while (len > 0) {
+                    while (size == buffer.length && !closed) {
+                        wait();
+                    }
+                    if (closed) {
+                        throw new IOException("Transporte en memoria cerrado");
+                    }
+
+                    int writePos = (readPos + size) % buffer.length;
+                    int count = Math.min(len, Math.min(buffer.length - size, buffer.length - writePos));
+                    System.arraycopy(b, off, buffer, writePos, count);
+                    size += count;
+                    off += count;
+                    len -= count;
+                    notifyAll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Escritura interrumpida", e);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+    }
+}
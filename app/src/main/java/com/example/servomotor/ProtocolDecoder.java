@@ -0,0 +1,184 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo une los dos decodificadores: empieza en modo texto y, si la ESP32 responde "PROTO:1"
+a la negociación (ver BinaryProtocol), todo lo que llegue después de esa línea se decodifica como
+tramas binarias. Las posiciones se entregan en grados con decimales ya que el modo binario trae
+centésimas de grado. Los créditos y confirmaciones del control de flujo y las respuestas de la carga de
+secuencias (ver WaypointProtocol) se reconocen en los dos modos. Los lotes de telemetría solo existen en
+binario y se entregan enteros, sin pasar muestra por muestra por onPosition.
+Debe usarse desde el hilo de lectura.
+ */
+
+public class ProtocolDecoder {
+
+    public interface Listener {
+        void onPosition(float angle);
+
+        // Líneas de texto que no son parte del protocolo, el buffer solo es válido durante la llamada
+        void onLine(byte[] buffer, int offset, int length);
+
+        void onBinaryNegotiated(int version);
+
+        // La ESP32 concede más créditos para enviar ángulos
+        void onCredit(int credits);
+
+        // La ESP32 terminó de procesar un ANGLE, sequence es -1 en modo texto
+        void onAck(int sequence);
+
+        // Respuesta a la carga o reproducción de una secuencia, status es un WaypointProtocol.STATUS_*
+        void onSequenceStatus(int status, int value);
+
+        // Bits de BinaryProtocol.FEATURE_* que la ESP32 aceptó
+        void onFeatures(int features);
+
+        // Lote de telemetría, angles se reutiliza y solo es válido durante la llamada
+        void onPositionBatch(long baseMicros, int periodMicros, float[] angles, int count);
+    }
+
+    private final Listener listener;
+    private final LineFrameDecoder lineDecoder;
+    private final BinaryFrameDecoder binaryDecoder;
+    private volatile boolean binaryMode = false;
+
+    public ProtocolDecoder(Listener listener) {
+        this.listener = listener;
+        this.lineDecoder = new LineFrameDecoder(new LineFrameDecoder.Listener() {
+            @Override
+            public void onPosition(int angle) {
+                ProtocolDecoder.this.listener.onPosition(angle);
+            }
+
+            @Override
+            public void onLine(byte[] buffer, int offset, int length) {
+                handleLine(buffer, offset, length);
+            }
+        });
+        this.binaryDecoder = new BinaryFrameDecoder((type, sequence, value) -> {
+            if (type == BinaryProtocol.TYPE_POSITION) {
+                ProtocolDecoder.this.listener.onPosition(BinaryProtocol.centiToDegrees(value));
+            } else if (type == BinaryProtocol.TYPE_CREDIT) {
+                if (value > 0) {
+                    ProtocolDecoder.this.listener.onCredit(value);
+                }
+            } else if (type == BinaryProtocol.TYPE_ACK) {
+                ProtocolDecoder.this.listener.onAck(sequence);
+            } else if (type == BinaryProtocol.TYPE_SEQUENCE_STATUS) {
+                ProtocolDecoder.this.listener.onSequenceStatus(sequence, value);
+            } else if (type == BinaryProtocol.TYPE_FEATURES) {
+                ProtocolDecoder.this.listener.onFeatures(value);
+            }
+        }, (baseMicros, periodMicros, angles, count) ->
+                ProtocolDecoder.this.listener.onPositionBatch(baseMicros, periodMicros, angles, count));
+    }
+
+    public void feed(byte[] buffer, int offset, int length) {
+        if (binaryMode) {
+            binaryDecoder.feed(buffer, offset, length);
+            return;
+        }
+
+        int consumed = lineDecoder.feed(buffer, offset, length);
+        if (consumed < length) {
+            // Se cambió a binario a mitad de la lectura, el resto ya son tramas binarias
+            binaryDecoder.feed(buffer, offset + consumed, length - consumed);
+        }
+    }
+
+    private void handleLine(byte[] buffer, int offset, int length) {
+        if (matches(BinaryProtocol.ACK_LINE, buffer, offset, length)) {
+            listener.onAck(-1);
+            return;
+        }
+        int credits = parseNumber(BinaryProtocol.CREDIT_PREFIX, buffer, offset, length);
+        if (credits > 0) {
+            listener.onCredit(credits);
+            return;
+        }
+
+        if (handleSequenceStatus(buffer, offset, length)) {
+            return;
+        }
+
+        int version = parseNumber(BinaryProtocol.PROTO_PREFIX, buffer, offset, length);
+        if (version < 0) {
+            listener.onLine(buffer, offset, length);
+            return;
+        }
+
+        if (version == BinaryProtocol.VERSION) {
+            binaryMode = true;
+            lineDecoder.stopAfterLine();
+            listener.onBinaryNegotiated(version);
+        } else {
+            // Versión desconocida, se queda en texto
+            listener.onLine(buffer, offset, length);
+        }
+    }
+
+    private boolean handleSequenceStatus(byte[] buffer, int offset, int length) {
+        if (length < WaypointProtocol.ACK_PREFIX.length || buffer[offset] != 'S') return false;
+        int value;
+        if ((value = parseNumber(WaypointProtocol.ACK_PREFIX, buffer, offset, length)) >= 0) {
+            listener.onSequenceStatus(WaypointProtocol.STATUS_ACK, value);
+        } else if ((value = parseNumber(WaypointProtocol.NAK_PREFIX, buffer, offset, length)) >= 0) {
+            listener.onSequenceStatus(WaypointProtocol.STATUS_NAK, value);
+        } else if ((value = parseNumber(WaypointProtocol.DONE_PREFIX, buffer, offset, length)) >= 0) {
+            listener.onSequenceStatus(WaypointProtocol.STATUS_DONE, value);
+        } else if ((value = parseNumber(WaypointProtocol.REJECT_PREFIX, buffer, offset, length)) >= 0) {
+            listener.onSequenceStatus(WaypointProtocol.STATUS_REJECT, value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] expected, byte[] buffer, int offset, int length) {
+        if (length != expected.length) return false;
+        for (int i = 0; i < length; i++) {
+            if (buffer[offset + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    // Devuelve n de "<prefijo><n>" ("PROTO:1", "CREDIT:4") o -1 si la línea no tiene esa forma
+    private static int parseNumber(byte[] prefix, byte[] buffer, int offset, int length) {
+        if (length <= prefix.length) return -1;
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) return -1;
+        }
+
+        int value = 0;
+        for (int i = offset + prefix.length; i < offset + length; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9 || value > 1000) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    public boolean isBinaryMode() {
+        return binaryMode;
+    }
+
+    public long getFrameCount() {
+        return lineDecoder.getFrameCount() + binaryDecoder.getFrameCount();
+    }
+
+    public long getMalformedCount() {
+        return lineDecoder.getMalformedCount() + binaryDecoder.getMalformedCount();
+    }
+
+    public long getBatchCount() {
+        return binaryDecoder.getBatchCount();
+    }
+
+    public long getBatchSampleCount() {
+        return binaryDecoder.getBatchSampleCount();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo calcula cuánto esperar entre intentos de reconexión: espera exponencial (base, 2x, 4x...)
+con tope, y con jitter para que varios teléfonos o enlaces no reintenten todos al mismo tiempo. Se usa
+"equal jitter": la mitad del retardo es fija y la otra mitad aleatoria, así el primer reintento llega
+en pocos cientos de milisegundos pero nunca en cero.
+
+Después de maxAttempts intentos fallidos seguidos nextDelayMillis() devuelve -1 y se deja de reintentar.
+reset() se llama en cuanto una conexión tiene éxito. Los métodos son synchronized porque
+ConnectionSupervisor ya no tiene candado propio y los puede llamar desde hilos distintos.
+ */
+
+import java.util.Random;
+
+public class ReconnectPolicy {
+    public static final long DEFAULT_BASE_DELAY_MS = 200;
+    public static final long DEFAULT_MAX_DELAY_MS = 10_000;
+    public static final int DEFAULT_MAX_ATTEMPTS = 30;
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+    private final Random random;
+    private int attempt = 0;
+
+    public ReconnectPolicy() {
+        this(DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_MAX_ATTEMPTS, new Random());
+    }
+
+    public ReconnectPolicy(long baseDelayMillis, long maxDelayMillis, int maxAttempts, Random random) {
+        if (baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Retardos inválidos: " + baseDelayMillis + ", " + maxDelayMillis);
+        }
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.random = random;
+    }
+
+    // Retardo antes del siguiente intento, -1 si ya se agotaron los intentos
+    public synchronized long nextDelayMillis() {
+        if (attempt >= maxAttempts) return -1;
+
+        // El desplazamiento se acota para no desbordar con muchos intentos
+        int shift = Math.min(attempt, 30);
+        long delay = Math.min(maxDelayMillis, baseDelayMillis << shift);
+        attempt++;
+
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half + 1));
+    }
+
+    public synchronized void reset() {
+        attempt = 0;
+    }
+
+    public synchronized int getAttempt() {
+        return attempt;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es el transporte Bluetooth clásico (RFCOMM / SPP) hacia la ESP32. Es lo que antes hacía
+directamente BluetoothManager con el BluetoothSocket. Los permisos deben verificarse antes de abrir,
+si faltan se propaga la SecurityException.
+
+BluetoothSocket.connect() no tiene tiempo límite, la única forma de cancelarlo es cerrar el socket desde
+otro hilo (ConnectionSupervisor lo hace al agotarse el tiempo). Si close() llega antes de que exista el
+socket, open() lo detecta y no se queda conectando.
+ */
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+public class RfcommTransport implements Transport {
+    private final BluetoothDevice device;
+    private final UUID serviceUuid;
+    private volatile BluetoothSocket socket;
+    private volatile boolean closed = false;
+
+    public RfcommTransport(BluetoothDevice device, UUID serviceUuid) {
+        this.device = device;
+        this.serviceUuid = serviceUuid;
+    }
+
+    @Override
+    public void open() throws IOException {
+        BluetoothSocket newSocket = device.createRfcommSocketToServiceRecord(serviceUuid);
+        socket = newSocket;
+        if (closed) {
+            newSocket.close();
+            throw new IOException("Transporte cerrado antes de conectar");
+        }
+        newSocket.connect();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return requireSocket().getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return requireSocket().getOutputStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        BluetoothSocket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "RFCOMM " + device.getAddress();
+    }
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    private BluetoothSocket requireSocket() throws IOException {
+        BluetoothSocket current = socket;
+        if (current == null) {
+            throw new IOException("El transporte no está abierto");
+        }
+        return current;
+    }
+}
@@ -0,0 +1,521 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es el enlace con un controlador de servo sobre cualquier Transport. Contiene lo que antes
+vivía dentro de BluetoothManager: abrir la conexión, el hilo de lectura con el decodificador, el hilo
+escritor de comandos y la negociación del protocolo binario.
+
+No usa clases de Android, así que todo el camino de envío y recepción puede probarse y medirse en una
+JVM normal con PipedTransport o TcpTransport. Los callbacks del Listener se llaman desde los hilos de
+E/S, quien los reciba debe pasarlos al hilo que necesite (BluetoothManager usa el Handler principal).
+
+El ciclo de vida es una máquina de estados atómica que solo avanza: NEW → CONNECTING → CONNECTED →
+CLOSED. connect() y disconnect() pueden llamarse desde cualquier hilo y al mismo tiempo: el primero que
+pasa a CLOSED es el único que detiene el escritor, cierra el transporte y avisa onDisconnected. Si
+disconnect() llega mientras el transporte se abre, connect() falla en lugar de dejar un enlace a medias.
+El hilo lector y el escritor corren en el Executor recibido o, si no hay, en hilos propios.
+
+Telemetría por lotes: ya en binario se pide FEATURE_BATCH_TELEMETRY. Cada lote trae el tiempo de la
+ESP32 en µs, que se pasa al reloj del teléfono con un desfase estimado: el menor (llegada - tiempo de la
+ESP32) visto hasta ahora, porque el retraso del enlace nunca es negativo, y que se deja subir despacio
+(MAX_CLOCK_DRIFT_PPM) por si los dos relojes no avanzan igual. Así las muestras de un lote quedan
+separadas por su periodo real y no todas con el tiempo de la lectura. Si entre dos lotes falta tiempo se
+cuentan las muestras perdidas.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ServoLink {
+    public static final int READ_BUFFER_SIZE = 1024;
+    // Cuánto puede adelantarse el reloj de la ESP32 respecto al del teléfono, en partes por millón
+    public static final long MAX_CLOCK_DRIFT_PPM = 100;
+
+    // Nombres en el MetricsRegistry, suman todas las conexiones que compartan el registro
+    public static final String METRIC_BYTES_IN = "link.bytes_in";
+    public static final String METRIC_FRAMES_IN = "link.frames_in";
+    public static final String METRIC_PARSE_ERRORS = "link.parse_errors";
+    public static final String METRIC_READ_WAKEUPS = "link.read_wakeups";
+
+    public enum State {
+        NEW,
+        CONNECTING,
+        CONNECTED,
+        CLOSED
+    }
+
+    public interface Listener {
+        void onConnected();
+
+        // Se llama una sola vez por conexión, ya sea por disconnect() o por pérdida del enlace
+        void onDisconnected();
+
+        void onPosition(float angle);
+
+        // Lote de telemetría ya guardado en el historial. Los arreglos se reutilizan, solo valen durante la llamada
+        void onPositionBatch(long[] timestampsNanos, float[] angles, int count);
+
+        void onLine(String line);
+
+        void onBinaryNegotiated(int version);
+
+        void onError(String error);
+    }
+
+    private final Transport transport;
+    private final Listener listener;
+
+    private final Executor ioExecutor;
+    private final AtomicReference<State> state = new AtomicReference<>(State.NEW);
+    private volatile boolean binaryProtocolEnabled = true;
+    private volatile boolean batchTelemetryEnabled = true;
+    private volatile boolean batchTelemetryActive = false;
+    private volatile TelemetryStore telemetryStore;
+    private volatile TelemetryStore commandStore;
+    private volatile LatencyTracker latencyTracker;
+    private volatile StepResponseAnalyzer stepAnalyzer;
+    private volatile SessionRecorder sessionRecorder;
+    private volatile TokenBucket commandRateLimiter;
+    private volatile WaypointUploader waypointUploader;
+    private volatile MetricsRegistry metricsRegistry;
+    // Momento de la lectura en curso, todas las muestras de un mismo bloque comparten el tiempo
+    private long readTimestampNanos;
+    // Estado de los lotes, solo los toca el hilo de lectura
+    private final long[] batchTimestamps = new long[BinaryProtocol.MAX_BATCH_SAMPLES];
+    private boolean deviceClockSynced = false;
+    private long lastBatchDeviceMicros;
+    private long expectedDeviceMicros;
+    private long clockOffsetNanos;
+    private long clockOffsetUpdateNanos;
+    private long lastBatchTimestampNanos = Long.MIN_VALUE;
+    private volatile long lostBatchSampleCount = 0;
+    private volatile CommandWriter commandWriter;
+    private volatile ProtocolDecoder protocolDecoder;
+
+    public ServoLink(Transport transport, Listener listener) {
+        this(transport, listener, null);
+    }
+
+    // ioExecutor null: el lector y el escritor usan hilos propios
+    public ServoLink(Transport transport, Listener listener, Executor ioExecutor) {
+        this.transport = transport;
+        this.listener = listener;
+        this.ioExecutor = ioExecutor;
+    }
+
+    // Bloquea mientras se abre el transporte, no debe llamarse desde el hilo principal.
+    // Cada enlace se conecta una sola vez, para reconectar se crea otro.
+    public void connect() throws IOException {
+        if (!state.compareAndSet(State.NEW, State.CONNECTING)) {
+            if (state.get() == State.CLOSED) {
+                throw new IOException("Conexión cancelada");
+            }
+            throw new IllegalStateException("El enlace ya se conectó, para reconectar se crea uno nuevo");
+        }
+
+        OutputStream outputStream;
+        InputStream inputStream;
+        try {
+            transport.open();
+            outputStream = transport.getOutputStream();
+            inputStream = transport.getInputStream();
+        } catch (IOException | RuntimeException e) {
+            disconnect();
+            throw e;
+        }
+
+        // Un solo hilo escritor durante toda la conexión
+        commandWriter = new CommandWriter(outputStream, e -> {
+            if (isConnected()) {
+                listener.onError("Error al enviar datos: " + e.getMessage());
+                disconnect();
+            }
+        }, CommandWriter.DEFAULT_BACKLOG, ioExecutor);
+        commandWriter.setRateLimiter(commandRateLimiter);
+        commandWriter.setMetricsRegistry(metricsRegistry);
+        protocolDecoder = new ProtocolDecoder(decoderListener);
+
+        commandWriter.start();
+        startReader(inputStream);
+
+        if (!state.compareAndSet(State.CONNECTING, State.CONNECTED)) {
+            // disconnect() llegó mientras se abría el transporte, el escritor pudo no existir todavía en
+            // ese momento y el transporte pudo terminar de abrirse después de cerrarlo
+            commandWriter.stop();
+            try {
+                transport.close();
+            } catch (IOException ignored) {
+            }
+            throw new IOException("Conexión cancelada");
+        }
+        listener.onConnected();
+
+        if (binaryProtocolEnabled) {
+            // Se ofrece el modo binario, si la ESP32 no responde se sigue en texto
+            commandWriter.submitFrame(BinaryProtocol.HELLO_LINE);
+        }
+    }
+
+    private final ProtocolDecoder.Listener decoderListener = new ProtocolDecoder.Listener() {
+        @Override
+        public void onPosition(float angle) {
+            TelemetryStore store = telemetryStore;
+            if (store != null) {
+                store.append(readTimestampNanos, angle);
+            }
+            LatencyTracker tracker = latencyTracker;
+            if (tracker != null) {
+                tracker.onTelemetry(readTimestampNanos, angle);
+            }
+            StepResponseAnalyzer analyzer = stepAnalyzer;
+            if (analyzer != null) {
+                analyzer.onPosition(readTimestampNanos, angle);
+            }
+            SessionRecorder recorder = sessionRecorder;
+            if (recorder != null) {
+                recorder.recordPosition(readTimestampNanos, angle);
+            }
+            listener.onPosition(angle);
+        }
+
+        @Override
+        public void onPositionBatch(long baseMicros, int periodMicros, float[] angles, int count) {
+            long[] timestamps = batchTimestamps;
+            toHostTimestamps(baseMicros, periodMicros, count, timestamps);
+            TelemetryStore store = telemetryStore;
+            if (store != null) {
+                store.appendAll(timestamps, angles, 0, count);
+            }
+            LatencyTracker tracker = latencyTracker;
+            StepResponseAnalyzer analyzer = stepAnalyzer;
+            SessionRecorder recorder = sessionRecorder;
+            if (tracker != null || analyzer != null || recorder != null) {
+                for (int i = 0; i < count; i++) {
+                    if (tracker != null) tracker.onTelemetry(timestamps[i], angles[i]);
+                    if (analyzer != null) analyzer.onPosition(timestamps[i], angles[i]);
+                    if (recorder != null) recorder.recordPosition(timestamps[i], angles[i]);
+                }
+            }
+            listener.onPositionBatch(timestamps, angles, count);
+        }
+
+        @Override
+        public void onLine(byte[] buffer, int offset, int length) {
+            listener.onLine(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+            commandWriter.setBinaryMode(true);
+            if (batchTelemetryEnabled) {
+                byte[] frame = new byte[BinaryProtocol.FRAME_SIZE];
+                BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_FEATURES, 0, BinaryProtocol.FEATURE_BATCH_TELEMETRY, frame, 0);
+                commandWriter.submitFrame(frame);
+            }
+            listener.onBinaryNegotiated(version);
+        }
+
+        @Override
+        public void onFeatures(int features) {
+            batchTelemetryActive = (features & BinaryProtocol.FEATURE_BATCH_TELEMETRY) != 0;
+        }
+
+        @Override
+        public void onCredit(int credits) {
+            commandWriter.addCredits(credits);
+        }
+
+        @Override
+        public void onAck(int sequence) {
+            commandWriter.onAck();
+        }
+
+        @Override
+        public void onSequenceStatus(int status, int value) {
+            WaypointUploader uploader = waypointUploader;
+            if (uploader != null) {
+                uploader.onStatus(status, value);
+            }
+        }
+    };
+
+    // Tiempos del teléfono para las count muestras de un lote, en orden y nunca después de la lectura
+    private void toHostTimestamps(long baseMicros, int periodMicros, int count, long[] timestamps) {
+        long deviceMicros;
+        if (!deviceClockSynced) {
+            deviceMicros = baseMicros;
+        } else {
+            // El reloj de 32 bits da la vuelta cada ~71 minutos, se sigue por la diferencia con el lote anterior
+            deviceMicros = lastBatchDeviceMicros + (int) (baseMicros - lastBatchDeviceMicros);
+            long missing = deviceMicros - expectedDeviceMicros;
+            if (periodMicros > 0 && missing > periodMicros / 2) {
+                lostBatchSampleCount += (missing + periodMicros / 2) / periodMicros;
+            }
+        }
+        lastBatchDeviceMicros = deviceMicros;
+        expectedDeviceMicros = deviceMicros + (long) count * periodMicros;
+
+        long lastSampleNanos = (deviceMicros + (long) (count - 1) * periodMicros) * 1000L;
+        long observedOffset = readTimestampNanos - lastSampleNanos;
+        if (!deviceClockSynced) {
+            deviceClockSynced = true;
+            clockOffsetNanos = observedOffset;
+        } else {
+            long allowedDrift = (readTimestampNanos - clockOffsetUpdateNanos) / 1_000_000L * MAX_CLOCK_DRIFT_PPM;
+            clockOffsetNanos = Math.min(observedOffset, clockOffsetNanos + Math.max(0, allowedDrift));
+        }
+        clockOffsetUpdateNanos = readTimestampNanos;
+
+        for (int i = 0; i < count; i++) {
+            long timestamp = (deviceMicros + (long) i * periodMicros) * 1000L + clockOffsetNanos;
+            timestamp = Math.min(Math.max(timestamp, lastBatchTimestampNanos), readTimestampNanos);
+            timestamps[i] = timestamp;
+            lastBatchTimestampNanos = timestamp;
+        }
+    }
+
+    private void startReader(InputStream inputStream) {
+        ProtocolDecoder decoder = protocolDecoder;
+        MetricsRegistry registry = metricsRegistry;
+        Runnable readLoop = () -> {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int bytes;
+            // Las métricas se toman al conectar, cada lectura suma lo que avanzó el decodificador
+            MetricsRegistry.Counter bytesIn = registry != null ? registry.counter(METRIC_BYTES_IN) : null;
+            MetricsRegistry.Counter readWakeups = registry != null ? registry.counter(METRIC_READ_WAKEUPS) : null;
+            MetricsRegistry.Counter framesIn = registry != null ? registry.counter(METRIC_FRAMES_IN) : null;
+            MetricsRegistry.Counter parseErrors = registry != null ? registry.counter(METRIC_PARSE_ERRORS) : null;
+            long countedFrames = 0;
+            long countedErrors = 0;
+
+            while (state.get() != State.CLOSED) {
+                try {
+                    bytes = inputStream.read(buffer);
+                    if (bytes < 0) {
+                        throw new IOException("Fin del stream");
+                    }
+                    readTimestampNanos = System.nanoTime();
+                    decoder.feed(buffer, 0, bytes);
+
+                    if (registry != null) {
+                        readWakeups.increment();
+                        bytesIn.add(bytes);
+                        long frames = decoder.getFrameCount();
+                        long errors = decoder.getMalformedCount();
+                        framesIn.add(frames - countedFrames);
+                        parseErrors.add(errors - countedErrors);
+                        countedFrames = frames;
+                        countedErrors = errors;
+                    }
+
+                } catch (IOException e) {
+                    // Si ya estaba cerrado fue un disconnect() normal, no un error
+                    if (state.get() == State.CONNECTED) {
+                        listener.onError("Conexión perdida");
+                    }
+                    disconnect();
+                    break;
+                }
+            }
+        };
+
+        if (ioExecutor == null) {
+            new Thread(readLoop, "ServoLink-Reader").start();
+        } else {
+            ioExecutor.execute(readLoop);
+        }
+    }
+
+    public void sendAngle(int angle) {
+        CommandWriter writer = commandWriter;
+        if (isConnected() && writer != null) {
+            recordCommand(angle);
+            writer.submitAngle(angle);
+        }
+    }
+
+    public void sendAngleCenti(int centiDegrees) {
+        CommandWriter writer = commandWriter;
+        if (isConnected() && writer != null) {
+            recordCommand(BinaryProtocol.centiToDegrees(centiDegrees));
+            writer.submitAngleCenti(centiDegrees);
+        }
+    }
+
+    // Los comandos pueden llegar de varios hilos, se serializan para respetar el único escritor del store
+    private void recordCommand(float angle) {
+        long now = System.nanoTime();
+        TelemetryStore store = commandStore;
+        if (store != null) {
+            synchronized (store) {
+                store.append(now, angle);
+            }
+        }
+        LatencyTracker tracker = latencyTracker;
+        if (tracker != null) {
+            tracker.onCommand(now, angle);
+        }
+        StepResponseAnalyzer analyzer = stepAnalyzer;
+        if (analyzer != null) {
+            analyzer.onCommand(now, angle);
+        }
+        SessionRecorder recorder = sessionRecorder;
+        if (recorder != null) {
+            recorder.recordCommand(now, angle);
+        }
+    }
+
+    // Idempotente y seguro entre hilos. El cierre del transporte libera al lector bloqueado en read()
+    public void disconnect() {
+        State previous = state.getAndSet(State.CLOSED);
+        if (previous == State.CLOSED) return;
+
+        CommandWriter writer = commandWriter;
+        if (writer != null) {
+            writer.stop();
+        }
+
+        try {
+            transport.close();
+        } catch (IOException e) {
+            listener.onError("Error al cerrar conexión: " + e.getMessage());
+        }
+
+        if (previous == State.CONNECTED) {
+            listener.onDisconnected();
+        }
+    }
+
+    public boolean isConnected() {
+        return state.get() == State.CONNECTED;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    // Solo tiene efecto en la siguiente llamada a connect()
+    public void setBinaryProtocolEnabled(boolean enabled) {
+        binaryProtocolEnabled = enabled;
+    }
+
+    // Pide telemetría por lotes al negociar el modo binario. Solo tiene efecto en la siguiente llamada a connect()
+    public void setBatchTelemetryEnabled(boolean enabled) {
+        batchTelemetryEnabled = enabled;
+    }
+
+    // true si la ESP32 aceptó mandar lotes en esta conexión
+    public boolean isBatchTelemetryActive() {
+        return batchTelemetryActive;
+    }
+
+    // Muestras que faltaron entre lotes según el reloj de la ESP32 (lotes perdidos o descartados)
+    public long getLostBatchSampleCount() {
+        return lostBatchSampleCount;
+    }
+
+    // Historial donde el hilo de lectura guarda cada posición recibida, puede compartirse entre
+    // conexiones sucesivas pero solo un enlace a la vez debe escribir en él
+    public void setTelemetryStore(TelemetryStore store) {
+        telemetryStore = store;
+    }
+
+    public TelemetryStore getTelemetryStore() {
+        return telemetryStore;
+    }
+
+    // Historial de ángulos comandados, se guarda al momento de entregarlos al escritor
+    public void setCommandStore(TelemetryStore store) {
+        commandStore = store;
+    }
+
+    public TelemetryStore getCommandStore() {
+        return commandStore;
+    }
+
+    // Mide el tiempo entre cada comando y la posición que lo confirma
+    public void setLatencyTracker(LatencyTracker tracker) {
+        latencyTracker = tracker;
+    }
+
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    // Mide subida, establecimiento y sobrepaso de cada escalón comandado
+    public void setStepAnalyzer(StepResponseAnalyzer analyzer) {
+        stepAnalyzer = analyzer;
+    }
+
+    public StepResponseAnalyzer getStepAnalyzer() {
+        return stepAnalyzer;
+    }
+
+    // Recibe las respuestas de la ESP32 a la carga y reproducción de secuencias
+    public void setWaypointUploader(WaypointUploader uploader) {
+        this.waypointUploader = uploader;
+    }
+
+    public WaypointUploader getWaypointUploader() {
+        return waypointUploader;
+    }
+
+    // Registro donde se cuentan bytes, tramas, errores y lecturas, null para no contar. Solo tiene efecto
+    // en la siguiente llamada a connect()
+    public void setMetricsRegistry(MetricsRegistry registry) {
+        metricsRegistry = registry;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    // Bytes de control que deben salir tal cual y en orden (ver CommandWriter.submitFrame)
+    public boolean submitFrame(byte[] data) {
+        CommandWriter writer = commandWriter;
+        return isConnected() && writer != null && writer.submitFrame(data);
+    }
+
+    // Graba comandos y posiciones en disco, null para dejar de grabar. Cerrarlo es tarea de quien lo pasa
+    public void setSessionRecorder(SessionRecorder recorder) {
+        sessionRecorder = recorder;
+    }
+
+    public SessionRecorder getSessionRecorder() {
+        return sessionRecorder;
+    }
+
+    // Limita cuántos ángulos por segundo salen hacia el controlador, null sin límite
+    public void setCommandRateLimiter(TokenBucket limiter) {
+        commandRateLimiter = limiter;
+        CommandWriter writer = commandWriter;
+        if (writer != null) {
+            writer.setRateLimiter(limiter);
+        }
+    }
+
+    public TokenBucket getCommandRateLimiter() {
+        return commandRateLimiter;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public CommandWriter getCommandWriter() {
+        return commandWriter;
+    }
+
+    public ProtocolDecoder getProtocolDecoder() {
+        return protocolDecoder;
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo maneja varias ESP32 al mismo tiempo. BluetoothManager solo conoce un dispositivo (el de
+nombre ServoController_ESP32), pero en un banco de pruebas puede haber varios controladores.
+
+Cada canal tiene un identificador (la dirección MAC o un nombre cualquiera en las pruebas) y su propio
+ConnectionSupervisor, así cada enlace se conecta, se pierde y se reconecta por su cuenta. También tiene
+su propio historial de telemetría y su LatencyTracker.
+
+Todos los canales comparten el mismo ScheduledThreadPoolExecutor. Los sockets RFCOMM solo ofrecen
+streams bloqueantes, así que cada enlace conectado ocupa dos hilos del grupo (lector y escritor);
+al agregar un canal el grupo crece en dos hilos y al quitarlo se reduce. No se crean hilos sueltos.
+
+sendSynchronized() manda un ángulo distinto a cada canal en una sola llamada: todos los ángulos se
+dejan en el slot de su escritor (no bloquea) antes de volver, así los servos reciben sus puntos con
+diferencias de microsegundos en la app; el resto depende del enlace de cada uno.
+
+snapshotStats() devuelve por canal los comandos y muestras por segundo desde la consulta anterior y la
+latencia comando → posición.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ServoLinkPool {
+    public static final int CHANNEL_HISTORY_CAPACITY = 1 << 14;
+    private static final int THREADS_PER_CHANNEL = 2;
+
+    public interface TransportFactory {
+        // Un transporte nuevo por intento, un Transport solo se abre una vez
+        Transport create() throws IOException;
+    }
+
+    public interface Listener {
+        // Todos llegan desde hilos de E/S
+        void onChannelStateChanged(String channelId, ConnectionState state);
+
+        void onChannelPosition(String channelId, float angle);
+
+        void onChannelError(String channelId, String error);
+    }
+
+    // Contadores de un canal en un momento dado, las tasas son desde la consulta anterior
+    public static final class ChannelStats {
+        public final String channelId;
+        public final ConnectionState state;
+        public final long commandsSent;
+        public final long samplesReceived;
+        public final double commandsPerSecond;
+        public final double samplesPerSecond;
+        public final long reconnects;
+        public final String latencySummary;
+
+        ChannelStats(String channelId, ConnectionState state, long commandsSent, long samplesReceived,
+                     double commandsPerSecond, double samplesPerSecond, long reconnects, String latencySummary) {
+            this.channelId = channelId;
+            this.state = state;
+            this.commandsSent = commandsSent;
+            this.samplesReceived = samplesReceived;
+            this.commandsPerSecond = commandsPerSecond;
+            this.samplesPerSecond = samplesPerSecond;
+            this.reconnects = reconnects;
+            this.latencySummary = latencySummary;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %s cmd=%d (%.1f/s) pos=%d (%.1f/s) reconexiones=%d latencia %s",
+                    channelId, state, commandsSent, commandsPerSecond, samplesReceived, samplesPerSecond,
+                    reconnects, latencySummary);
+        }
+    }
+
+    public final class Channel {
+        private final String id;
+        private final TransportFactory transportFactory;
+        private final ConnectionSupervisor supervisor;
+        private final TelemetryStore telemetryStore = new TelemetryStore(CHANNEL_HISTORY_CAPACITY);
+        private final LatencyTracker latencyTracker = new LatencyTracker(new LatencyHistogram());
+        private final AtomicLong commandCount = new AtomicLong();
+
+        // Solo los toca snapshotStats, que está sincronizado
+        private long lastCommands;
+        private long lastSamples;
+        private long lastStatsNanos = System.nanoTime();
+
+        Channel(String id, TransportFactory transportFactory) {
+            this.id = id;
+            this.transportFactory = transportFactory;
+            this.supervisor = new ConnectionSupervisor(this::createLink, new ChannelListener(this),
+                    new ReconnectPolicy(), executor);
+        }
+
+        private ServoLink createLink(ServoLink.Listener linkEvents) throws IOException {
+            ServoLink link = new ServoLink(transportFactory.create(), linkEvents, executor);
+            link.setBinaryProtocolEnabled(binaryProtocolEnabled);
+            link.setTelemetryStore(telemetryStore);
+            link.setLatencyTracker(latencyTracker);
+            return link;
+        }
+
+        // false si el canal no está conectado
+        public boolean sendAngleCenti(int centiDegrees) {
+            ServoLink link = supervisor.getCurrentLink();
+            if (link == null || !link.isConnected()) return false;
+            link.sendAngleCenti(centiDegrees);
+            commandCount.incrementAndGet();
+            return true;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public ConnectionState getState() {
+            return supervisor.getState();
+        }
+
+        public boolean isConnected() {
+            return supervisor.getState() == ConnectionState.CONNECTED;
+        }
+
+        public ConnectionSupervisor getSupervisor() {
+            return supervisor;
+        }
+
+        public TelemetryStore getTelemetryStore() {
+            return telemetryStore;
+        }
+
+        public LatencyTracker getLatencyTracker() {
+            return latencyTracker;
+        }
+
+        synchronized ChannelStats snapshotStats(long nowNanos) {
+            long commands = commandCount.get();
+            long samples = telemetryStore.getWriteSequence();
+            double seconds = Math.max(1e-9, (nowNanos - lastStatsNanos) / 1e9);
+            ChannelStats stats = new ChannelStats(id, supervisor.getState(), commands, samples,
+                    (commands - lastCommands) / seconds, (samples - lastSamples) / seconds,
+                    supervisor.getLinkLossCount(), latencyTracker.getHistogram().summary());
+            lastCommands = commands;
+            lastSamples = samples;
+            lastStatsNanos = nowNanos;
+            return stats;
+        }
+    }
+
+    // Reenvía los eventos de un canal al listener del grupo con su identificador
+    private final class ChannelListener implements ConnectionSupervisor.Listener {
+        private final Channel channel;
+
+        ChannelListener(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void onStateChanged(ConnectionState state) {
+            listener.onChannelStateChanged(channel.id, state);
+        }
+
+        @Override
+        public void onConnectFailed(Exception error, long retryDelayMillis) {
+            if (retryDelayMillis < 0) {
+                listener.onChannelError(channel.id, "Error al conectar: " + error.getMessage());
+            }
+        }
+
+        @Override
+        public void onConnected() {
+        }
+
+        @Override
+        public void onDisconnected() {
+        }
+
+        @Override
+        public void onPosition(float angle) {
+            listener.onChannelPosition(channel.id, angle);
+        }
+
+        @Override
+        public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+            for (int i = 0; i < count; i++) {
+                listener.onChannelPosition(channel.id, angles[i]);
+            }
+        }
+
+        @Override
+        public void onLine(String line) {
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+        }
+
+        @Override
+        public void onError(String error) {
+            listener.onChannelError(channel.id, error);
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Listener listener;
+    private final int baseThreads;
+    private final CopyOnWriteArrayList<Channel> channels = new CopyOnWriteArrayList<>();
+    private volatile boolean binaryProtocolEnabled = true;
+
+    // El executor es de quien lo pasa, sus hilos base quedan para el resto de la app
+    public ServoLinkPool(ScheduledThreadPoolExecutor executor, Listener listener) {
+        this.executor = executor;
+        this.listener = listener;
+        this.baseThreads = executor.getCorePoolSize();
+    }
+
+    // El identificador no se puede repetir. El canal no se conecta hasta llamar connect o connectAll
+    public synchronized Channel addChannel(String channelId, TransportFactory transportFactory) {
+        if (getChannel(channelId) != null) {
+            throw new IllegalArgumentException("Canal repetido: " + channelId);
+        }
+        Channel channel = new Channel(channelId, transportFactory);
+        channels.add(channel);
+        resizeExecutor();
+        return channel;
+    }
+
+    // Desconecta el canal y lo quita, devuelve false si no existía
+    public synchronized boolean removeChannel(String channelId) {
+        Channel channel = getChannel(channelId);
+        if (channel == null) return false;
+        channel.supervisor.stop();
+        channels.remove(channel);
+        resizeExecutor();
+        return true;
+    }
+
+    private void resizeExecutor() {
+        executor.setCorePoolSize(baseThreads + THREADS_PER_CHANNEL * channels.size());
+    }
+
+    public Channel getChannel(String channelId) {
+        for (Channel channel : channels) {
+            if (channel.id.equals(channelId)) return channel;
+        }
+        return null;
+    }
+
+    public List<Channel> getChannels() {
+        return new ArrayList<>(channels);
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    public void connectAll() {
+        for (Channel channel : channels) {
+            channel.supervisor.start();
+        }
+    }
+
+    public void disconnectAll() {
+        for (Channel channel : channels) {
+            channel.supervisor.stop();
+        }
+    }
+
+    public int getConnectedCount() {
+        int connected = 0;
+        for (Channel channel : channels) {
+            if (channel.isConnected()) connected++;
+        }
+        return connected;
+    }
+
+    // Un ángulo por canal, en el mismo orden. Devuelve cuántos canales lo recibieron
+    public int sendSynchronized(String[] channelIds, float[] angles) {
+        if (channelIds.length != angles.length) {
+            throw new IllegalArgumentException("Se esperaban " + channelIds.length + " ángulos, llegaron " + angles.length);
+        }
+        int delivered = 0;
+        for (int i = 0; i < channelIds.length; i++) {
+            Channel channel = getChannel(channelIds[i]);
+            if (channel != null && channel.sendAngleCenti(BinaryProtocol.degreesToCenti(angles[i]))) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    // El mismo ángulo a todos los canales conectados
+    public int broadcastAngle(float angle) {
+        int centiDegrees = BinaryProtocol.degreesToCenti(angle);
+        int delivered = 0;
+        for (Channel channel : channels) {
+            if (channel.sendAngleCenti(centiDegrees)) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    public List<ChannelStats> snapshotStats() {
+        long now = System.nanoTime();
+        List<ChannelStats> stats = new ArrayList<>(channels.size());
+        for (Channel channel : channels) {
+            stats.add(channel.snapshotStats(now));
+        }
+        return stats;
+    }
+
+    public void setBinaryProtocolEnabled(boolean enabled) {
+        binaryProtocolEnabled = enabled;
+    }
+
+    // Desconecta todo y devuelve los hilos extra al executor, el grupo queda vacío
+    public synchronized void shutdown() {
+        for (Channel channel : channels) {
+            channel.supervisor.stop();
+        }
+        channels.clear();
+        resizeExecutor();
+    }
+}
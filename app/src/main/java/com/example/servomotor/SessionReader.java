@@ -0,0 +1,175 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo lee una sesión grabada por SessionRecorder. Si la sesión se cerró bien el encabezado trae
+la cantidad de registros; si no (la app murió a mitad de la grabación) se recorren todos los registros
+del archivo y se conservan solo los que tienen marca y suma de verificación correctas. Así un final
+incompleto, un bloque preasignado sin usar o un registro descartado no rompen la lectura.
+
+Los registros válidos se copian a arreglos primitivos (tiempo relativo, valor y tipo), ordenados por
+tiempo: comandos y posiciones se graban desde hilos distintos y pueden quedar ligeramente
+desordenados en el archivo.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class SessionReader {
+    private final long startWallClockMillis;
+    private final boolean cleanlyClosed;
+    private final long scannedRecords;
+    private final long skippedRecords;
+    private final long[] timestampsNanos;
+    private final float[] values;
+    private final byte[] types;
+
+    private SessionReader(long startWallClockMillis, boolean cleanlyClosed, long scannedRecords,
+                          long[] timestampsNanos, float[] values, byte[] types) {
+        this.startWallClockMillis = startWallClockMillis;
+        this.cleanlyClosed = cleanlyClosed;
+        this.scannedRecords = scannedRecords;
+        this.skippedRecords = scannedRecords - timestampsNanos.length;
+        this.timestampsNanos = timestampsNanos;
+        this.values = values;
+        this.types = types;
+    }
+
+    public static SessionReader open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < SessionRecorder.HEADER_SIZE) {
+                throw new IOException("Archivo de sesión incompleto: " + file.getName());
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] magic = new byte[SessionRecorder.MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, SessionRecorder.MAGIC)) {
+                throw new IOException("No es un archivo de sesión: " + file.getName());
+            }
+            int version = buffer.getInt();
+            int recordSize = buffer.getInt();
+            if (version != SessionRecorder.VERSION || recordSize != SessionRecorder.RECORD_SIZE) {
+                throw new IOException("Versión de sesión no soportada: " + version);
+            }
+            long startMillis = buffer.getLong();
+            long headerCount = buffer.getLong();
+
+            // Los bytes sueltos al final son un registro a medio escribir
+            long available = (size - SessionRecorder.HEADER_SIZE) / SessionRecorder.RECORD_SIZE;
+            boolean clean = headerCount >= 0 && headerCount <= available;
+            long scanned = clean ? headerCount : available;
+            if (scanned > Integer.MAX_VALUE) {
+                throw new IOException("Sesión demasiado grande: " + scanned + " registros");
+            }
+
+            int valid = 0;
+            long[] timestamps = new long[(int) scanned];
+            float[] samples = new float[(int) scanned];
+            byte[] recordTypes = new byte[(int) scanned];
+            long lastValidIndex = -1;
+            for (int i = 0; i < scanned; i++) {
+                int offset = SessionRecorder.HEADER_SIZE + i * SessionRecorder.RECORD_SIZE;
+                if (!SessionRecorder.isValidRecord(buffer, offset)) continue;
+                timestamps[valid] = buffer.getLong(offset);
+                samples[valid] = buffer.getFloat(offset + 8);
+                recordTypes[valid] = buffer.get(offset + 12);
+                valid++;
+                lastValidIndex = i;
+            }
+            // Lo que sigue al último registro válido es espacio sin usar, no cuenta como omitido
+            if (!clean) {
+                scanned = lastValidIndex + 1;
+            }
+
+            long[] outTimestamps = Arrays.copyOf(timestamps, valid);
+            float[] outValues = Arrays.copyOf(samples, valid);
+            byte[] outTypes = Arrays.copyOf(recordTypes, valid);
+            sortByTime(outTimestamps, outValues, outTypes);
+            return new SessionReader(startMillis, clean, scanned, outTimestamps, outValues, outTypes);
+        }
+    }
+
+    // Casi siempre ya viene ordenado, una inserción cuesta O(n) en ese caso
+    private static void sortByTime(long[] timestamps, float[] values, byte[] types) {
+        for (int i = 1; i < timestamps.length; i++) {
+            long t = timestamps[i];
+            if (t >= timestamps[i - 1]) continue;
+            float v = values[i];
+            byte type = types[i];
+            int j = i - 1;
+            while (j >= 0 && timestamps[j] > t) {
+                timestamps[j + 1] = timestamps[j];
+                values[j + 1] = values[j];
+                types[j + 1] = types[j];
+                j--;
+            }
+            timestamps[j + 1] = t;
+            values[j + 1] = v;
+            types[j + 1] = type;
+        }
+    }
+
+    public int getRecordCount() {
+        return timestampsNanos.length;
+    }
+
+    // Nanosegundos desde el inicio de la sesión
+    public long getTimestampNanos(int index) {
+        return timestampsNanos[index];
+    }
+
+    public float getValue(int index) {
+        return values[index];
+    }
+
+    public byte getType(int index) {
+        return types[index];
+    }
+
+    public boolean isCommand(int index) {
+        return types[index] == SessionRecorder.TYPE_COMMAND;
+    }
+
+    public long getDurationNanos() {
+        int count = timestampsNanos.length;
+        return count == 0 ? 0 : timestampsNanos[count - 1] - timestampsNanos[0];
+    }
+
+    public int countType(byte type) {
+        int count = 0;
+        for (byte t : types) {
+            if (t == type) count++;
+        }
+        return count;
+    }
+
+    public long getStartWallClockMillis() {
+        return startWallClockMillis;
+    }
+
+    // false si la grabación no llegó a cerrarse y se recuperó recorriendo los registros
+    public boolean isCleanlyClosed() {
+        return cleanlyClosed;
+    }
+
+    // Registros recorridos hasta el último válido
+    public long getScannedRecords() {
+        return scannedRecords;
+    }
+
+    // Registros dañados o vacíos antes del último válido
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo guarda cada sesión (comandos enviados y posiciones recibidas) en un archivo binario de solo
+agregar. La app no guardaba nada, al cerrar la conexión se perdía todo.
+
+Formato (big endian):
+- Encabezado de 32 bytes: "SERVOREC", versión (int), tamaño de registro (int), hora de inicio en
+  milisegundos (long) y cantidad de registros (long, -1 mientras se está grabando).
+- Registros de 16 bytes: tiempo en nanosegundos desde el inicio (long), valor en grados (float),
+  tipo (1 comando, 2 posición), marca 0x5A y una suma de verificación de 16 bits.
+
+El archivo se escribe a través de un MappedByteBuffer, así grabar una muestra es solo escribir 16 bytes
+en memoria, sin llamadas al sistema ni candados: cada hilo reserva su lugar con un contador atómico y
+escribe en su posición. Esto permite llamarlo desde el hilo de lectura de ServoLink a cualquier tasa.
+El archivo crece por bloques de 1 MB que mapea por adelantado una tarea periódica, que también hace
+force() de los bloques modificados cada 500 ms. Si la tarea se atrasara y un registro cayera en un
+bloque todavía sin mapear se descarta y se cuenta, nunca se bloquea al hilo que graba.
+
+Al cerrar se escribe la cantidad de registros en el encabezado y se recorta el espacio sobrante. Si la
+app muere antes, el encabezado queda en -1 y SessionReader (o recover()) recorre los registros y se
+queda con los válidos: la marca y la suma de verificación descartan el final incompleto y los bloques
+vacíos.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SessionRecorder {
+    public static final byte[] MAGIC = "SERVOREC".getBytes(StandardCharsets.US_ASCII);
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 16;
+    public static final int COUNT_OFFSET = 24;
+    public static final long COUNT_UNKNOWN = -1;
+
+    public static final byte TYPE_COMMAND = 1;
+    public static final byte TYPE_POSITION = 2;
+    static final byte RECORD_MARKER = 0x5A;
+
+    public static final int DEFAULT_CHUNK_RECORDS = 1 << 16;
+    public static final long FORCE_INTERVAL_MS = 500;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int chunkRecords;
+    private final long startNanos;
+
+    // Solo la tarea periódica agrega bloques, los hilos que graban solo leen el arreglo
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    private final AtomicLong nextRecord = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong forceCount = new AtomicLong();
+    private final AtomicInteger writersInFlight = new AtomicInteger();
+    private volatile boolean closed = false;
+    private long forcedRecords = 0;
+    private ScheduledFuture<?> maintenanceTask;
+
+    private SessionRecorder(File file, int chunkRecords, long startNanos) throws IOException {
+        this.file = file;
+        this.chunkRecords = chunkRecords;
+        this.startNanos = startNanos;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+    }
+
+    // Crea el archivo (lo reemplaza si existía) y programa la tarea de mantenimiento en el scheduler
+    public static SessionRecorder create(File file, ScheduledExecutorService scheduler) throws IOException {
+        return create(file, scheduler, DEFAULT_CHUNK_RECORDS);
+    }
+
+    public static SessionRecorder create(File file, ScheduledExecutorService scheduler, int chunkRecords)
+            throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, chunkRecords, System.nanoTime());
+        try {
+            recorder.channel.truncate(0);
+            recorder.writeHeader(System.currentTimeMillis());
+            // Dos bloques listos de inicio, la tarea mantiene siempre uno de reserva
+            recorder.mapChunk(0);
+            recorder.mapChunk(1);
+        } catch (IOException e) {
+            recorder.randomAccessFile.close();
+            throw e;
+        }
+        recorder.maintenanceTask = scheduler.scheduleWithFixedDelay(recorder::maintain,
+                FORCE_INTERVAL_MS, FORCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return recorder;
+    }
+
+    private void writeHeader(long startMillis) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(RECORD_SIZE);
+        header.putLong(startMillis);
+        header.putLong(COUNT_UNKNOWN);
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    private void mapChunk(int index) throws IOException {
+        long position = HEADER_SIZE + (long) index * chunkRecords * RECORD_SIZE;
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) chunkRecords * RECORD_SIZE);
+        MappedByteBuffer[] current = chunks;
+        MappedByteBuffer[] grown = new MappedByteBuffer[index + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[index] = chunk;
+        chunks = grown;
+    }
+
+    // nanos con el mismo reloj que System.nanoTime
+    public void recordCommand(long nanos, float angle) {
+        record(TYPE_COMMAND, nanos, angle);
+    }
+
+    public void recordPosition(long nanos, float angle) {
+        record(TYPE_POSITION, nanos, angle);
+    }
+
+    private void record(byte type, long nanos, float value) {
+        writersInFlight.incrementAndGet();
+        try {
+            if (closed) return;
+
+            long index = nextRecord.getAndIncrement();
+            int chunkIndex = (int) (index / chunkRecords);
+            MappedByteBuffer[] mapped = chunks;
+            if (chunkIndex >= mapped.length) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            encode(mapped[chunkIndex], (int) (index % chunkRecords) * RECORD_SIZE, nanos - startNanos, value, type);
+        } finally {
+            writersInFlight.decrementAndGet();
+        }
+    }
+
+    // Escrituras absolutas: no tocan la posición del buffer, varios hilos pueden escribir a la vez
+    static void encode(ByteBuffer buffer, int offset, long relativeNanos, float value, byte type) {
+        int valueBits = Float.floatToRawIntBits(value);
+        buffer.putLong(offset, relativeNanos);
+        buffer.putInt(offset + 8, valueBits);
+        buffer.put(offset + 12, type);
+        buffer.putShort(offset + 14, checksum(relativeNanos, valueBits, type));
+        // La marca va al final, un registro sin marca se considera vacío
+        buffer.put(offset + 13, RECORD_MARKER);
+    }
+
+    static short checksum(long relativeNanos, int valueBits, byte type) {
+        long h = relativeNanos * 0x9E3779B97F4A7C15L;
+        h ^= (valueBits & 0xFFFFFFFFL) * 0xC2B2AE3D27D4EB4FL;
+        h ^= type * 0x165667B19E3779F9L;
+        h ^= h >>> 32;
+        h ^= h >>> 16;
+        return (short) h;
+    }
+
+    static boolean isValidRecord(ByteBuffer buffer, int offset) {
+        byte type = buffer.get(offset + 12);
+        if (buffer.get(offset + 13) != RECORD_MARKER || (type != TYPE_COMMAND && type != TYPE_POSITION)) {
+            return false;
+        }
+        return buffer.getShort(offset + 14) == checksum(buffer.getLong(offset), buffer.getInt(offset + 8), type);
+    }
+
+    // Tarea periódica: mapea el siguiente bloque con anticipación y hace force() de lo nuevo
+    private synchronized void maintain() {
+        if (closed) return;
+        try {
+            long written = nextRecord.get();
+            int neededChunks = (int) (written / chunkRecords) + 2;
+            while (chunks.length < neededChunks) {
+                mapChunk(chunks.length);
+            }
+            forceWritten(written);
+        } catch (IOException e) {
+            // Sin espacio en disco u otro error: se deja de grabar pero la sesión de control sigue
+            closed = true;
+        }
+    }
+
+    private void forceWritten(long written) {
+        if (written == forcedRecords) return;
+        MappedByteBuffer[] mapped = chunks;
+        int first = (int) (forcedRecords / chunkRecords);
+        int last = (int) Math.min(mapped.length - 1, (written - 1) / chunkRecords);
+        for (int i = first; i <= last; i++) {
+            mapped[i].force();
+        }
+        forcedRecords = written;
+        forceCount.incrementAndGet();
+    }
+
+    // Fuerza ahora lo grabado hasta el momento, por ejemplo antes de compartir el archivo
+    public synchronized void flush() {
+        if (closed) return;
+        forceWritten(nextRecord.get());
+    }
+
+    // Escribe la cantidad de registros, recorta el sobrante y cierra. Idempotente
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) return;
+        closed = true;
+        if (maintenanceTask != null) {
+            maintenanceTask.cancel(false);
+        }
+        // Los hilos que ya reservaron un lugar terminan en nanosegundos
+        while (writersInFlight.get() > 0) {
+            Thread.yield();
+        }
+
+        try {
+            long written = Math.min(nextRecord.get(), (long) chunks.length * chunkRecords);
+            forceWritten(written);
+            // Puede haber huecos de registros descartados, se cuenta solo lo válido
+            long valid = countValid(written);
+            ByteBuffer count = ByteBuffer.allocate(8);
+            count.putLong(0, valid == written ? written : COUNT_UNKNOWN);
+            channel.write(count, COUNT_OFFSET);
+            channel.truncate(HEADER_SIZE + written * RECORD_SIZE);
+            channel.force(true);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private long countValid(long written) {
+        MappedByteBuffer[] mapped = chunks;
+        long valid = 0;
+        for (long i = 0; i < written; i++) {
+            if (isValidRecord(mapped[(int) (i / chunkRecords)], (int) (i % chunkRecords) * RECORD_SIZE)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    // Repara una sesión que no se cerró: deja solo hasta el último registro válido y escribe la
+    // cantidad en el encabezado. Devuelve cuántos registros quedaron
+    public static long recover(File file) throws IOException {
+        SessionReader reader = SessionReader.open(file);
+        long count = reader.getRecordCount();
+        if (reader.isCleanlyClosed() && reader.getSkippedRecords() == 0) {
+            return count;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel fileChannel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            long readPosition = HEADER_SIZE;
+            long writePosition = HEADER_SIZE;
+            long end = HEADER_SIZE + reader.getScannedRecords() * RECORD_SIZE;
+            // Compacta: los registros válidos se copian sobre los huecos
+            while (readPosition < end) {
+                buffer.clear();
+                fileChannel.read(buffer, readPosition);
+                if (isValidRecord(buffer, 0)) {
+                    if (writePosition != readPosition) {
+                        buffer.flip();
+                        fileChannel.write(buffer, writePosition);
+                    }
+                    writePosition += RECORD_SIZE;
+                }
+                readPosition += RECORD_SIZE;
+            }
+            fileChannel.truncate(writePosition);
+            ByteBuffer countBuffer = ByteBuffer.allocate(8);
+            countBuffer.putLong(0, count);
+            fileChannel.write(countBuffer, COUNT_OFFSET);
+            fileChannel.force(true);
+        }
+        return count;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getRecordCount() {
+        return nextRecord.get() - droppedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getForceCount() {
+        return forceCount.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo reproduce una sesión grabada (SessionReader) respetando los tiempos originales:
+- a velocidad real (1x) o acelerada (Nx): el registro i se entrega en inicio + (t_i - t_0) / N,
+  durmiendo con LockSupport.parkNanos hasta cada plazo, igual que SetpointStreamer.
+- lo más rápido posible (MAX_SPEED): sin esperas, sirve como prueba de rendimiento de todo el camino
+  de la telemetría hasta la UI.
+
+Cada registro llega al Sink con el tiempo en que se reprodujo en el reloj actual (System.nanoTime), así
+la gráfica de historial lo dibuja como si estuviera llegando en vivo. Quien lo use decide qué hacer con
+comandos y posiciones: BluetoothManager los mete en los mismos historiales y en el mismo despachador de
+cuadros que la telemetría real, o reenvía los comandos a la ESP32.
+
+Una reproducción nueva reemplaza a la anterior y un solo hilo entrega a la vez. Se mide cuántos registros
+por segundo se entregaron y el retraso de cada uno respecto a su plazo. No depende de Android.
+ */
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+public class SessionReplayer {
+    public static final float MAX_SPEED = Float.POSITIVE_INFINITY;
+
+    public interface Sink {
+        // Desde el hilo de la reproducción, replayNanos en el reloj de System.nanoTime
+        void onReplayCommand(long replayNanos, float angle);
+
+        void onReplayPosition(long replayNanos, float angle);
+
+        // completed false si se detuvo o la reemplazó otra reproducción
+        void onReplayFinished(boolean completed);
+    }
+
+    private static final class Replay {
+        final SessionReader session;
+        final float speed;
+
+        Replay(SessionReader session, float speed) {
+            this.session = session;
+            this.speed = speed;
+        }
+    }
+
+    private final Sink sink;
+    private final Executor executor;
+    private final AtomicReference<Replay> current = new AtomicReference<>();
+    private volatile Thread replayThread;
+
+    private final LatencyHistogram lagHistogram = new LatencyHistogram();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private volatile long lastRunRecords;
+    private volatile long lastRunNanos;
+
+    // executor null: un hilo nuevo por reproducción
+    public SessionReplayer(Sink sink, Executor executor) {
+        this.sink = sink;
+        this.executor = executor;
+    }
+
+    // speed > 0, MAX_SPEED para no esperar entre registros
+    public void start(SessionReader session, float speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Velocidad inválida: " + speed);
+        }
+        Replay replay = new Replay(session, speed);
+        Replay previous = current.getAndSet(replay);
+        if (previous != null) {
+            LockSupport.unpark(replayThread);
+        }
+
+        Runnable task = () -> run(replay);
+        if (executor == null) {
+            new Thread(task, "SessionReplayer").start();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    public void stop() {
+        if (current.getAndSet(null) != null) {
+            LockSupport.unpark(replayThread);
+        }
+    }
+
+    public boolean isRunning() {
+        return current.get() != null;
+    }
+
+    private void run(Replay replay) {
+        // La reproducción anterior suelta el hilo en cuanto ve que la reemplazaron
+        synchronized (this) {
+            if (current.get() != replay) {
+                sink.onReplayFinished(false);
+                return;
+            }
+            replayThread = Thread.currentThread();
+            try {
+                replay(replay);
+            } finally {
+                replayThread = null;
+            }
+        }
+    }
+
+    private void replay(Replay replay) {
+        SessionReader session = replay.session;
+        int count = session.getRecordCount();
+        boolean unlimited = Float.isInfinite(replay.speed);
+        long startNanos = System.nanoTime();
+        long firstTimestamp = count > 0 ? session.getTimestampNanos(0) : 0;
+
+        int i = 0;
+        while (i < count && current.get() == replay) {
+            long due = startNanos + (long) ((session.getTimestampNanos(i) - firstTimestamp) / (double) replay.speed);
+            long now = System.nanoTime();
+            if (unlimited) {
+                due = now;
+            } else if (due > now) {
+                // Puede despertar antes (stop, reemplazo o falso despertar), se vuelve a revisar
+                LockSupport.parkNanos(this, due - now);
+                continue;
+            }
+
+            lagHistogram.recordNanos(now - due);
+            if (session.isCommand(i)) {
+                sink.onReplayCommand(due, session.getValue(i));
+            } else {
+                sink.onReplayPosition(due, session.getValue(i));
+            }
+            replayedCount.incrementAndGet();
+            i++;
+        }
+
+        lastRunRecords = i;
+        lastRunNanos = System.nanoTime() - startNanos;
+        boolean completed = current.compareAndSet(replay, null) && i == count;
+        sink.onReplayFinished(completed);
+    }
+
+    // Registros por segundo de la última reproducción terminada
+    public double getLastRunRecordsPerSecond() {
+        long nanos = lastRunNanos;
+        return nanos == 0 ? 0 : lastRunRecords * 1e9 / nanos;
+    }
+
+    public long getLastRunRecords() {
+        return lastRunRecords;
+    }
+
+    public long getLastRunNanos() {
+        return lastRunNanos;
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    // Retraso de cada registro respecto a su plazo
+    public LatencyHistogram getLagHistogram() {
+        return lagHistogram;
+    }
+
+    public void resetStats() {
+        lagHistogram.reset();
+        replayedCount.set(0);
+    }
+}
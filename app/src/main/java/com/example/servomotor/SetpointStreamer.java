@@ -0,0 +1,214 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo reproduce un MotionProfile enviando puntos intermedios a frecuencia fija (50 Hz por
+omisión). En lugar de un solo comando con el ángulo final, la ESP32 recibe una posición nueva en cada
+periodo y el servo sigue la curva suave del perfil. El uso del enlace es predecible: un comando por
+periodo, sin importar la distancia.
+
+Los tiempos se manejan con plazos absolutos: el punto k se envía en inicio + k * periodo, y el punto
+se evalúa en ese tiempo teórico, no en el tiempo en que el hilo despertó, así la secuencia de puntos
+no depende del retraso del hilo. Entre puntos el hilo duerme con LockSupport.parkNanos hasta el
+siguiente plazo. Se registra:
+- jitter: cuánto tarde se envió cada punto respecto a su plazo, en un LatencyHistogram.
+- plazos perdidos: si el hilo se retrasó más de un periodo completo, los puntos atrasados no se
+  envían (el siguiente ya los reemplaza) y se cuentan.
+
+El último punto siempre es exactamente el ángulo final. Un movimiento nuevo reemplaza al que esté en
+curso y un solo hilo envía a la vez, así no se mezclan puntos de dos perfiles. Corre en un hilo propio o
+en el Executor que se pase (BluetoothManager usa un hilo propio, un movimiento largo no debe ocupar
+uno de los hilos de E/S). No depende de Android.
+ */
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+public class SetpointStreamer {
+    public static final int DEFAULT_RATE_HZ = 50;
+
+    public interface Sink {
+        // Desde el hilo del streamer, no debe bloquear
+        void onSetpoint(float angleDegrees);
+    }
+
+    private static final class Move {
+        final MotionProfile profile;
+
+        Move(MotionProfile profile) {
+            this.profile = profile;
+        }
+    }
+
+    private final Sink sink;
+    private final Executor executor;
+    private volatile long periodNanos = 1_000_000_000L / DEFAULT_RATE_HZ;
+
+    private final AtomicReference<Move> currentMove = new AtomicReference<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Thread streamThread;
+    private volatile float lastSetpoint = Float.NaN;
+
+    private final LatencyHistogram jitterHistogram = new LatencyHistogram();
+    private final AtomicLong setpointCount = new AtomicLong();
+    private final AtomicLong missedDeadlineCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    // executor null: se crea un hilo por cada racha de movimientos
+    public SetpointStreamer(Sink sink, Executor executor) {
+        this.sink = sink;
+        this.executor = executor;
+    }
+
+    public void setRateHz(int rateHz) {
+        if (rateHz <= 0 || rateHz > 1000) {
+            throw new IllegalArgumentException("Frecuencia inválida: " + rateHz);
+        }
+        periodNanos = 1_000_000_000L / rateHz;
+    }
+
+    public int getRateHz() {
+        return (int) (1_000_000_000L / periodNanos);
+    }
+
+    // Empieza a reproducir el perfil, reemplazando el movimiento en curso
+    public void start(MotionProfile profile) {
+        Move previous = currentMove.getAndSet(new Move(profile));
+        if (previous != null) {
+            cancelledCount.incrementAndGet();
+        }
+
+        if (running.compareAndSet(false, true)) {
+            if (executor == null) {
+                new Thread(this::runLoop, "SetpointStreamer").start();
+            } else {
+                executor.execute(this::runLoop);
+            }
+        } else {
+            // El hilo que ya corre toma el movimiento nuevo en cuanto despierta
+            LockSupport.unpark(streamThread);
+        }
+    }
+
+    // Detiene el movimiento en curso, el servo se queda en el último punto enviado
+    public void stop() {
+        Move previous = currentMove.getAndSet(null);
+        if (previous != null) {
+            cancelledCount.incrementAndGet();
+        }
+        LockSupport.unpark(streamThread);
+    }
+
+    public boolean isMoving() {
+        return currentMove.get() != null;
+    }
+
+    // Último punto enviado, NaN si todavía no se envía ninguno
+    public float getLastSetpoint() {
+        return lastSetpoint;
+    }
+
+    private void runLoop() {
+        streamThread = Thread.currentThread();
+        boolean finished = false;
+        try {
+            while (true) {
+                Move move = currentMove.get();
+                if (move == null) {
+                    streamThread = null;
+                    running.set(false);
+                    // start() pudo llegar justo antes de apagar la bandera y no haber lanzado otro hilo
+                    if (currentMove.get() == null || !running.compareAndSet(false, true)) {
+                        finished = true;
+                        return;
+                    }
+                    streamThread = Thread.currentThread();
+                    continue;
+                }
+                stream(move);
+            }
+        } finally {
+            if (!finished) {
+                // El Sink lanzó una excepción, se descarta el movimiento para que start() pueda volver a lanzar
+                streamThread = null;
+                currentMove.set(null);
+                running.set(false);
+            }
+        }
+    }
+
+    private void stream(Move move) {
+        MotionProfile profile = move.profile;
+        long period = periodNanos;
+        long startNanos = System.nanoTime();
+        long deadline = startNanos;
+
+        while (currentMove.get() == move) {
+            long now = System.nanoTime();
+            long remaining = deadline - now;
+            if (remaining > 0) {
+                // Puede despertar antes (unpark o falso despertar), por eso se vuelve a revisar
+                LockSupport.parkNanos(this, remaining);
+                continue;
+            }
+
+            jitterHistogram.recordNanos(now - deadline);
+            double t = (deadline - startNanos) / 1e9;
+            float setpoint = profile.positionAt(t);
+            sink.onSetpoint(setpoint);
+            lastSetpoint = setpoint;
+            setpointCount.incrementAndGet();
+
+            if (t >= profile.getDurationSeconds()) {
+                if (currentMove.compareAndSet(move, null)) {
+                    completedCount.incrementAndGet();
+                }
+                return;
+            }
+
+            deadline += period;
+            long behind = System.nanoTime() - deadline;
+            if (behind >= period) {
+                long skipped = behind / period;
+                missedDeadlineCount.addAndGet(skipped);
+                deadline += skipped * period;
+            }
+        }
+    }
+
+    public LatencyHistogram getJitterHistogram() {
+        return jitterHistogram;
+    }
+
+    public long getSetpointCount() {
+        return setpointCount.get();
+    }
+
+    public long getMissedDeadlineCount() {
+        return missedDeadlineCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    public void resetStats() {
+        jitterHistogram.reset();
+        setpointCount.set(0);
+        missedDeadlineCount.set(0);
+        completedCount.set(0);
+        cancelledCount.set(0);
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo mide la respuesta del servo a cada escalón comandado, en una sola pasada y con memoria fija
+sin importar cuánto dure la sesión. Un escalón empieza con cada comando que se aleja al menos
+minStepDegrees del objetivo anterior, y va desde la última posición conocida hasta el nuevo objetivo.
+Por cada uno se calcula:
+- retraso de seguimiento: tiempo hasta cubrir el 50% del escalón.
+- tiempo de subida: del 10% al 90% del escalón.
+- sobrepaso: cuánto pasa del objetivo, en % del escalón.
+- tiempo de establecimiento: desde el comando hasta entrar en la banda (2% del escalón, mínimo
+  DEFAULT_MIN_BAND_DEGREES) sin volver a salir, si se queda ahí al menos settleHoldNanos.
+- error en estado estable: promedio de (objetivo - posición) desde que entró a la banda.
+
+El escalón termina cuando llega otro comando (si no se había establecido cuenta como reemplazado, como
+las trayectorias de SetpointStreamer o al arrastrar el seekbar) o cuando pasan maxStepNanos. Solo los
+establecidos entran a los histogramas; todos se cuentan.
+
+Sirve igual en vivo (ServoLink lo llama desde el hilo que envía y desde el lector, como LatencyTracker)
+que sobre sesiones grabadas con analyze(). analyzeSessions() reparte los archivos entre los hilos del
+ExecutorService y junta los resultados con merge(). No depende de Android.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class StepResponseAnalyzer {
+    public static final float DEFAULT_MIN_STEP_DEGREES = 2f;
+    public static final float SETTLING_BAND_FRACTION = 0.02f;
+    public static final float DEFAULT_MIN_BAND_DEGREES = 1f;
+    public static final long DEFAULT_SETTLE_HOLD_NANOS = 100_000_000L;
+    public static final long DEFAULT_MAX_STEP_NANOS = 3_000_000_000L;
+
+    public enum Outcome {
+        SETTLED,
+        // Llegó otro comando antes de establecerse
+        SUPERSEDED,
+        // Pasaron maxStepNanos sin establecerse
+        UNSETTLED
+    }
+
+    public static final class StepResult {
+        public final float startAngle;
+        public final float targetAngle;
+        public final Outcome outcome;
+        // -1 si no llegó al punto correspondiente
+        public final long trackingLagNanos;
+        public final long riseTimeNanos;
+        public final long settlingTimeNanos;
+        public final float overshootPercent;
+        // NaN si no se estableció
+        public final float steadyStateError;
+
+        StepResult(float startAngle, float targetAngle, Outcome outcome, long trackingLagNanos,
+                   long riseTimeNanos, long settlingTimeNanos, float overshootPercent, float steadyStateError) {
+            this.startAngle = startAngle;
+            this.targetAngle = targetAngle;
+            this.outcome = outcome;
+            this.trackingLagNanos = trackingLagNanos;
+            this.riseTimeNanos = riseTimeNanos;
+            this.settlingTimeNanos = settlingTimeNanos;
+            this.overshootPercent = overshootPercent;
+            this.steadyStateError = steadyStateError;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.1f° → %.1f° %s retraso=%.1f subida=%.1f establecimiento=%.1f ms"
+                            + " sobrepaso=%.1f%% error=%.2f°",
+                    startAngle, targetAngle, outcome, millis(trackingLagNanos), millis(riseTimeNanos),
+                    millis(settlingTimeNanos), overshootPercent, steadyStateError);
+        }
+
+        private static double millis(long nanos) {
+            return nanos < 0 ? Double.NaN : nanos / 1e6;
+        }
+    }
+
+    public interface Listener {
+        // Desde el hilo que cerró el escalón (lector o el que envía el comando)
+        void onStep(StepResult result);
+    }
+
+    private volatile float minStepDegrees = DEFAULT_MIN_STEP_DEGREES;
+    private volatile float minBandDegrees = DEFAULT_MIN_BAND_DEGREES;
+    private volatile long settleHoldNanos = DEFAULT_SETTLE_HOLD_NANOS;
+    private volatile long maxStepNanos = DEFAULT_MAX_STEP_NANOS;
+    private volatile Listener listener;
+
+    // Escalón en curso, protegido por this
+    private boolean active = false;
+    private float lastPosition = Float.NaN;
+    private float target = Float.NaN;
+    private float startAngle;
+    private float amplitude;
+    private float band;
+    private long startNanos;
+    private long lastSampleNanos;
+    private long t10Nanos;
+    private long t50Nanos;
+    private long t90Nanos;
+    private float peakProgress;
+    private long bandEnteredNanos;
+    private double bandErrorSum;
+    private long bandErrorCount;
+
+    // Resultados acumulados, protegidos por this salvo los histogramas
+    private final LatencyHistogram trackingLagHistogram = new LatencyHistogram();
+    private final LatencyHistogram riseTimeHistogram = new LatencyHistogram();
+    private final LatencyHistogram settlingTimeHistogram = new LatencyHistogram();
+    private long stepCount;
+    private long settledCount;
+    private long supersededCount;
+    private long unsettledCount;
+    private double overshootSum;
+    private float maxOvershootPercent;
+    private double absErrorSum;
+    private long sessionCount;
+    private volatile StepResult lastResult;
+
+    public synchronized void onCommand(long sentNanos, float angle) {
+        if (!Float.isNaN(target) && Math.abs(angle - target) < minStepDegrees) return;
+
+        if (active) {
+            finishStep(false);
+        }
+        target = angle;
+        // Sin posición conocida no hay de dónde medir el escalón
+        if (Float.isNaN(lastPosition) || Math.abs(angle - lastPosition) < minStepDegrees) return;
+
+        active = true;
+        startAngle = lastPosition;
+        amplitude = angle - lastPosition;
+        band = Math.max(Math.abs(amplitude) * SETTLING_BAND_FRACTION, minBandDegrees);
+        startNanos = sentNanos;
+        lastSampleNanos = sentNanos;
+        t10Nanos = -1;
+        t50Nanos = -1;
+        t90Nanos = -1;
+        peakProgress = 0;
+        bandEnteredNanos = -1;
+        bandErrorSum = 0;
+        bandErrorCount = 0;
+    }
+
+    public synchronized void onPosition(long receivedNanos, float position) {
+        lastPosition = position;
+        // La muestra se leyó antes del comando
+        if (!active || receivedNanos < startNanos) return;
+
+        long elapsed = receivedNanos - startNanos;
+        if (elapsed > maxStepNanos) {
+            finishStep(true);
+            return;
+        }
+        lastSampleNanos = receivedNanos;
+
+        // Avance normalizado hacia el objetivo, igual para escalones de subida y de bajada
+        float progress = (position - startAngle) / amplitude;
+        if (t10Nanos < 0 && progress >= 0.1f) t10Nanos = receivedNanos;
+        if (t50Nanos < 0 && progress >= 0.5f) t50Nanos = receivedNanos;
+        if (t90Nanos < 0 && progress >= 0.9f) t90Nanos = receivedNanos;
+        if (progress > peakProgress) peakProgress = progress;
+
+        float error = target - position;
+        if (Math.abs(error) <= band) {
+            if (bandEnteredNanos < 0) {
+                bandEnteredNanos = receivedNanos;
+            }
+            bandErrorSum += error;
+            bandErrorCount++;
+        } else {
+            bandEnteredNanos = -1;
+            bandErrorSum = 0;
+            bandErrorCount = 0;
+        }
+    }
+
+    // Cierra el escalón en curso, al terminar una sesión o antes de leer los resultados
+    public synchronized void finish() {
+        if (active) {
+            finishStep(true);
+        }
+    }
+
+    private void finishStep(boolean expired) {
+        active = false;
+        boolean settled = bandEnteredNanos >= 0 && lastSampleNanos - bandEnteredNanos >= settleHoldNanos;
+        Outcome outcome = settled ? Outcome.SETTLED : expired ? Outcome.UNSETTLED : Outcome.SUPERSEDED;
+
+        long lag = t50Nanos < 0 ? -1 : t50Nanos - startNanos;
+        long rise = t10Nanos < 0 || t90Nanos < 0 ? -1 : t90Nanos - t10Nanos;
+        long settling = settled ? bandEnteredNanos - startNanos : -1;
+        float overshoot = Math.max(0f, peakProgress - 1f) * 100f;
+        float error = settled ? (float) (bandErrorSum / bandErrorCount) : Float.NaN;
+
+        stepCount++;
+        if (settled) {
+            settledCount++;
+            // Con un error final dentro de la banda mínima puede establecerse sin pasar por el 50% o el 90%
+            if (lag >= 0) {
+                trackingLagHistogram.recordNanos(lag);
+            }
+            if (rise >= 0) {
+                riseTimeHistogram.recordNanos(rise);
+            }
+            settlingTimeHistogram.recordNanos(settling);
+            overshootSum += overshoot;
+            maxOvershootPercent = Math.max(maxOvershootPercent, overshoot);
+            absErrorSum += Math.abs(error);
+        } else if (expired) {
+            unsettledCount++;
+        } else {
+            supersededCount++;
+        }
+
+        StepResult result = new StepResult(startAngle, target, outcome, lag, rise, settling, overshoot, error);
+        lastResult = result;
+        Listener l = listener;
+        if (l != null) {
+            l.onStep(result);
+        }
+    }
+
+    // Pasa toda una sesión grabada por un analizador nuevo
+    public static StepResponseAnalyzer analyze(SessionReader session) {
+        StepResponseAnalyzer analyzer = new StepResponseAnalyzer();
+        analyzer.feed(session);
+        return analyzer;
+    }
+
+    public void feed(SessionReader session) {
+        int count = session.getRecordCount();
+        for (int i = 0; i < count; i++) {
+            if (session.isCommand(i)) {
+                onCommand(session.getTimestampNanos(i), session.getValue(i));
+            } else {
+                onPosition(session.getTimestampNanos(i), session.getValue(i));
+            }
+        }
+        synchronized (this) {
+            finish();
+            // Cada sesión empieza sin posición ni objetivo previos
+            lastPosition = Float.NaN;
+            target = Float.NaN;
+            sessionCount++;
+        }
+    }
+
+    // Un archivo por tarea en el executor, los que no se pueden leer se omiten. Devuelve la suma de todos
+    public static StepResponseAnalyzer analyzeSessions(List<File> files, ExecutorService executor)
+            throws InterruptedException {
+        List<Callable<StepResponseAnalyzer>> tasks = new ArrayList<>(files.size());
+        for (File file : files) {
+            tasks.add(() -> analyze(SessionReader.open(file)));
+        }
+
+        StepResponseAnalyzer total = new StepResponseAnalyzer();
+        for (Future<StepResponseAnalyzer> future : executor.invokeAll(tasks)) {
+            try {
+                total.merge(future.get());
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof IOException)) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        return total;
+    }
+
+    // Suma los resultados de otro analizador (no su escalón en curso)
+    public void merge(StepResponseAnalyzer other) {
+        long otherSteps, otherSettled, otherSuperseded, otherUnsettled, otherSessions;
+        double otherOvershootSum, otherAbsErrorSum;
+        float otherMaxOvershoot;
+        synchronized (other) {
+            otherSteps = other.stepCount;
+            otherSettled = other.settledCount;
+            otherSuperseded = other.supersededCount;
+            otherUnsettled = other.unsettledCount;
+            otherSessions = other.sessionCount;
+            otherOvershootSum = other.overshootSum;
+            otherAbsErrorSum = other.absErrorSum;
+            otherMaxOvershoot = other.maxOvershootPercent;
+        }
+        synchronized (this) {
+            stepCount += otherSteps;
+            settledCount += otherSettled;
+            supersededCount += otherSuperseded;
+            unsettledCount += otherUnsettled;
+            sessionCount += otherSessions;
+            overshootSum += otherOvershootSum;
+            absErrorSum += otherAbsErrorSum;
+            maxOvershootPercent = Math.max(maxOvershootPercent, otherMaxOvershoot);
+        }
+        trackingLagHistogram.add(other.trackingLagHistogram);
+        riseTimeHistogram.add(other.riseTimeHistogram);
+        settlingTimeHistogram.add(other.settlingTimeHistogram);
+    }
+
+    public synchronized void reset() {
+        active = false;
+        lastPosition = Float.NaN;
+        target = Float.NaN;
+        stepCount = 0;
+        settledCount = 0;
+        supersededCount = 0;
+        unsettledCount = 0;
+        overshootSum = 0;
+        maxOvershootPercent = 0;
+        absErrorSum = 0;
+        sessionCount = 0;
+        lastResult = null;
+        trackingLagHistogram.reset();
+        riseTimeHistogram.reset();
+        settlingTimeHistogram.reset();
+    }
+
+    // Varias líneas con los totales, para el panel de depuración y la exportación
+    public synchronized String summary() {
+        return String.format(Locale.US, "escalones=%d establecidos=%d reemplazados=%d sin establecer=%d\n"
+                        + "retraso %s\nsubida %s\nestablecimiento %s\n"
+                        + "sobrepaso medio=%.1f%% máx=%.1f%% error medio=%.2f°",
+                stepCount, settledCount, supersededCount, unsettledCount,
+                trackingLagHistogram.summary(), riseTimeHistogram.summary(), settlingTimeHistogram.summary(),
+                getMeanOvershootPercent(), maxOvershootPercent, getMeanAbsSteadyStateError());
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void setMinStepDegrees(float degrees) {
+        minStepDegrees = degrees;
+    }
+
+    public void setMinBandDegrees(float degrees) {
+        minBandDegrees = degrees;
+    }
+
+    public void setSettleHoldNanos(long nanos) {
+        settleHoldNanos = nanos;
+    }
+
+    public void setMaxStepNanos(long nanos) {
+        maxStepNanos = nanos;
+    }
+
+    public StepResult getLastResult() {
+        return lastResult;
+    }
+
+    public LatencyHistogram getTrackingLagHistogram() {
+        return trackingLagHistogram;
+    }
+
+    public LatencyHistogram getRiseTimeHistogram() {
+        return riseTimeHistogram;
+    }
+
+    public LatencyHistogram getSettlingTimeHistogram() {
+        return settlingTimeHistogram;
+    }
+
+    public synchronized long getStepCount() {
+        return stepCount;
+    }
+
+    public synchronized long getSettledCount() {
+        return settledCount;
+    }
+
+    public synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    public synchronized long getUnsettledCount() {
+        return unsettledCount;
+    }
+
+    public synchronized long getSessionCount() {
+        return sessionCount;
+    }
+
+    public synchronized float getMaxOvershootPercent() {
+        return maxOvershootPercent;
+    }
+
+    public synchronized double getMeanOvershootPercent() {
+        return settledCount == 0 ? 0 : overshootSum / settledCount;
+    }
+
+    public synchronized double getMeanAbsSteadyStateError() {
+        return settledCount == 0 ? 0 : absErrorSum / settledCount;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es una gráfica que se desplaza con el tiempo y muestra el ángulo comandado contra la
+POSITION que reporta la ESP32 en una ventana configurable (10 s por defecto). Sirve para ver el retraso
+con el que el servo sigue a los comandos y si oscila, cosa que el tacómetro no deja ver.
+
+Las dos series salen directamente de sus TelemetryStore y se reducen con MinMaxDecimator a una columna
+por pixel, así el costo de cada cuadro depende del ancho de la vista y no de cuántas muestras hay en la
+ventana. Los arreglos de segmentos se reservan en onSizeChanged y onDraw no asigna memoria. Mientras
+haya datos dentro de la ventana la vista se repinta en cada cuadro para que la gráfica avance.
+ */
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.util.concurrent.TimeUnit;
+
+public class StripChartView extends View {
+    private static final float MIN_VALUE = 0;
+    private static final float MAX_VALUE = 180;
+    private static final int GRID_STEP = 45;
+    private static final int GRID_COUNT = (int) (MAX_VALUE / GRID_STEP) + 1;
+    private static final long DEFAULT_WINDOW_SECONDS = 10;
+
+    private Paint paintGrid;
+    private Paint paintCommanded;
+    private Paint paintReported;
+
+    private MinMaxDecimator commandedDecimator;
+    private MinMaxDecimator reportedDecimator;
+    private TelemetryStore commandedStore;
+    private TelemetryStore reportedStore;
+    private long windowNanos = TimeUnit.SECONDS.toNanos(DEFAULT_WINDOW_SECONDS);
+
+    private final float[] gridLines = new float[GRID_COUNT * 4];
+    private float[] commandedLines = new float[0];
+    private float[] reportedLines = new float[0];
+    private float plotLeft;
+    private float plotTop;
+    private float plotWidth;
+    private float plotHeight;
+
+    public StripChartView(Context context) {
+        super(context);
+        init();
+    }
+
+    public StripChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    private void init() {
+        paintGrid = new Paint();
+        paintGrid.setColor(Color.parseColor("#E0E0E0"));
+        paintGrid.setStrokeWidth(1);
+        paintCommanded = new Paint();
+        paintCommanded.setColor(Color.parseColor("#6C0C91"));
+        paintCommanded.setStyle(Paint.Style.STROKE);
+        paintCommanded.setStrokeWidth(3);
+        paintCommanded.setAntiAlias(true);
+        paintReported = new Paint();
+        paintReported.setColor(Color.parseColor("#E74C3C"));
+        paintReported.setStyle(Paint.Style.STROKE);
+        paintReported.setStrokeWidth(3);
+        paintReported.setAntiAlias(true);
+    }
+
+    // commanded: ángulos enviados, reported: POSITION recibidas. Cualquiera puede ser null
+    public void setStores(TelemetryStore commanded, TelemetryStore reported) {
+        commandedStore = commanded;
+        reportedStore = reported;
+        commandedDecimator = commanded != null ? new MinMaxDecimator(commanded, true) : null;
+        reportedDecimator = reported != null ? new MinMaxDecimator(reported, false) : null;
+        configureDecimators();
+        invalidate();
+    }
+
+    public void setWindowSeconds(long seconds) {
+        windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, seconds));
+        configureDecimators();
+        invalidate();
+    }
+
+    public long getWindowSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(windowNanos);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        plotLeft = getPaddingLeft();
+        plotTop = getPaddingTop();
+        plotWidth = Math.max(0, w - getPaddingLeft() - getPaddingRight());
+        plotHeight = Math.max(0, h - getPaddingTop() - getPaddingBottom());
+
+        for (int i = 0; i < GRID_COUNT; i++) {
+            float y = plotTop + plotHeight - (i * GRID_STEP - MIN_VALUE) / (MAX_VALUE - MIN_VALUE) * plotHeight;
+            gridLines[i * 4] = plotLeft;
+            gridLines[i * 4 + 1] = y;
+            gridLines[i * 4 + 2] = plotLeft + plotWidth;
+            gridLines[i * 4 + 3] = y;
+        }
+
+        int columns = (int) plotWidth;
+        int size = MinMaxDecimator.lineBufferSize(columns);
+        commandedLines = new float[size];
+        reportedLines = new float[size];
+        configureDecimators();
+    }
+
+    // Una columna por pixel de ancho
+    private void configureDecimators() {
+        int columns = (int) plotWidth;
+        if (columns <= 0) return;
+        if (commandedDecimator != null) commandedDecimator.configure(columns, windowNanos);
+        if (reportedDecimator != null) reportedDecimator.configure(columns, windowNanos);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        canvas.drawLines(gridLines, paintGrid);
+        if (plotWidth <= 0 || plotHeight <= 0) return;
+
+        long now = System.nanoTime();
+        drawSeries(canvas, commandedDecimator, commandedLines, paintCommanded, now);
+        drawSeries(canvas, reportedDecimator, reportedLines, paintReported, now);
+
+        if (hasRecentData(now)) {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    private void drawSeries(Canvas canvas, MinMaxDecimator decimator, float[] lines, Paint paint, long now) {
+        if (decimator == null) return;
+        decimator.update(now);
+        int count = decimator.buildLines(now, plotLeft, plotTop, plotWidth, plotHeight, MIN_VALUE, MAX_VALUE, lines);
+        if (count > 0) {
+            canvas.drawLines(lines, 0, count, paint);
+        }
+    }
+
+    // Se sigue repintando mientras alguna serie tenga muestras dentro de la ventana
+    private boolean hasRecentData(long now) {
+        TelemetryStore store = reportedStore;
+        if (store != null && store.getWriteSequence() > 0 && now - store.getLatestTimestamp() < windowNanos) {
+            return true;
+        }
+        store = commandedStore;
+        return store != null && store.getWriteSequence() > 0 && now - store.getLatestTimestamp() < windowNanos;
+    }
+}
@@ -12,7 +12,16 @@ Se hace como extends ya que lo que se busca es que tenga dinamismo al interactua
 internos de la app y todos aquellos recibidos desde el dispositivo esp32, con el potenciometro.
  */
 
+/*
+El dibujo se hace en dos capas. La parte fija (arco de fondo y etiquetas) se pinta una sola vez en un
+Bitmap que se reconstruye únicamente si cambia el tamaño o el tema; en cada cuadro solo se dibuja ese
+Bitmap más lo que se mueve: el arco de progreso, las marcas (van encima del progreso, como antes, y ya
+están precalculadas), la aguja y el centro.
+ */
+
 import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -26,12 +35,34 @@ public class TachometerView extends View {
     private Paint paintNeedle;
     private Paint paintCenter;
     private Paint paintText;
+    private Paint paintGraduation;
     private RectF rectF;
+    private Bitmap dialLayer;
+    private boolean dialLayerDirty = true;
+    private int uiMode;
+    private final float[] point = new float[2];
 
     private float currentAngle = 90;
-    private float targetAngle = 90;
+    private GaugeAnimator needleAnimator;
     private static final float START_ANGLE = 135;
     private static final float SWEEP_ANGLE = 270;
+    private static final float MAX_VALUE = 180;
+    private static final int TICK_STEP = 30;
+    private static final int TICK_COUNT = DialGeometry.graduationCount(MAX_VALUE, TICK_STEP);
+
+    // Geometría del dial, se calcula en onSizeChanged para que onDraw no haga trigonometría ni asigne memoria
+    private static final String[] TICK_LABELS = new String[TICK_COUNT];
+    private final float[] tickLines = new float[TICK_COUNT * 4];
+    private final float[] tickLabels = new float[TICK_COUNT * 2];
+    private float centerX;
+    private float centerY;
+    private float radius;
+
+    static {
+        for (int i = 0; i < TICK_COUNT; i++) {
+            TICK_LABELS[i] = String.valueOf(i * TICK_STEP);
+        }
+    }
 
     public TachometerView(Context context) {
         super(context);
@@ -71,73 +102,127 @@ public class TachometerView extends View {
         paintText.setTextSize(24);
         paintText.setAntiAlias(true);
         paintText.setTextAlign(Paint.Align.CENTER);
+        paintGraduation = new Paint();
+        paintGraduation.setColor(Color.parseColor("#BDC3C7"));
+        paintGraduation.setStrokeWidth(2);
+        paintGraduation.setAntiAlias(true);
 
         rectF = new RectF();
+        uiMode = getResources().getConfiguration().uiMode;
+
+        // La aguja se mueve según el tiempo real y no según la cantidad de cuadros
+        needleAnimator = new GaugeAnimator(currentAngle, value -> {
+            currentAngle = value;
+            invalidate();
+        });
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        // Se conservan las divisiones enteras del cálculo original
+        int r = Math.min(w, h) / 2 - 40;
+        centerX = w / 2;
+        centerY = h / 2;
+        radius = r;
+
+        rectF.set(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+        DialGeometry.computeGraduations(centerX, centerY, MAX_VALUE, TICK_STEP, START_ANGLE, SWEEP_ANGLE,
+                radius - 15, radius, radius + 25, tickLines, tickLabels);
+        invalidateDialLayer();
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // Cambio de tema claro/oscuro
+        if (newConfig.uiMode != uiMode) {
+            uiMode = newConfig.uiMode;
+            invalidateDialLayer();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        needleAnimator.cancel();
+        if (dialLayer != null) {
+            dialLayer.recycle();
+            dialLayer = null;
+        }
+        dialLayerDirty = true;
+    }
+
+    // Fuerza a repintar la capa fija en el siguiente cuadro, por ejemplo si cambian los colores
+    public void invalidateDialLayer() {
+        dialLayerDirty = true;
+        invalidate();
+    }
 
+    private void rebuildDialLayer() {
         int width = getWidth();
         int height = getHeight();
-        int radius = Math.min(width, height) / 2 - 40;
-        int centerX = width / 2;
-        int centerY = height / 2;
+        if (width <= 0 || height <= 0) return;
+
+        // Se reutiliza el Bitmap si el tamaño no cambió
+        if (dialLayer == null || dialLayer.getWidth() != width || dialLayer.getHeight() != height) {
+            if (dialLayer != null) {
+                dialLayer.recycle();
+            }
+            dialLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            dialLayer.eraseColor(Color.TRANSPARENT);
+        }
 
-        rectF.set(centerX - radius, centerY - radius,
-                centerX + radius, centerY + radius);
+        Canvas layerCanvas = new Canvas(dialLayer);
+        layerCanvas.drawArc(rectF, START_ANGLE, SWEEP_ANGLE, false, paintArc);
+        drawLabels(layerCanvas);
+        dialLayerDirty = false;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
 
-        canvas.drawArc(rectF, START_ANGLE, SWEEP_ANGLE, false, paintArc);
-        float progressAngle = (currentAngle / 180f) * SWEEP_ANGLE;
+        if (dialLayerDirty || dialLayer == null) {
+            rebuildDialLayer();
+        }
+        if (dialLayer != null) {
+            canvas.drawBitmap(dialLayer, 0, 0, null);
+        }
 
+        float progressAngle = (currentAngle / MAX_VALUE) * SWEEP_ANGLE;
         canvas.drawArc(rectF, START_ANGLE, progressAngle, false, paintProgress);
-        drawGraduations(canvas, centerX, centerY, radius);
-        drawNeedle(canvas, centerX, centerY, radius - 30);
+        canvas.drawLines(tickLines, paintGraduation);
+        drawNeedle(canvas, radius - 30);
         canvas.drawCircle(centerX, centerY, 12, paintCenter);
+    }
 
-        if (Math.abs(currentAngle - targetAngle) > 0.5f) {
-            currentAngle += (targetAngle - currentAngle) * 0.1f;
-            invalidate();
+    private void drawLabels(Canvas canvas) {
+        for (int i = 0; i < TICK_COUNT; i++) {
+            canvas.drawText(TICK_LABELS[i], tickLabels[i * 2], tickLabels[i * 2 + 1] + 8, paintText);
         }
     }
 
-    private void drawGraduations(Canvas canvas, int centerX, int centerY, int radius) {
-        Paint gradPaint = new Paint();
-        gradPaint.setColor(Color.parseColor("#BDC3C7"));
-        gradPaint.setStrokeWidth(2);
-        gradPaint.setAntiAlias(true);
-
-        for (int i = 0; i <= 180; i += 30) {
-            float angle = START_ANGLE + (i / 180f) * SWEEP_ANGLE;
-            float radian = (float) Math.toRadians(angle);
-
-            float startX = centerX + (radius - 15) * (float) Math.cos(radian);
-            float startY = centerY + (radius - 15) * (float) Math.sin(radian);
-            float endX = centerX + radius * (float) Math.cos(radian);
-            float endY = centerY + radius * (float) Math.sin(radian);
+    private void drawNeedle(Canvas canvas, float needleRadius) {
+        float angle = DialGeometry.valueToDialDegrees(currentAngle, MAX_VALUE, START_ANGLE, SWEEP_ANGLE);
+        DialGeometry.polarToCartesian(centerX, centerY, needleRadius, angle, point, 0);
 
-            canvas.drawLine(startX, startY, endX, endY, gradPaint);
-
-            float textX = centerX + (radius + 25) * (float) Math.cos(radian);
-            float textY = centerY + (radius + 25) * (float) Math.sin(radian) + 8;
-            canvas.drawText(String.valueOf(i), textX, textY, paintText);
-        }
+        canvas.drawLine(centerX, centerY, point[0], point[1], paintNeedle);
     }
 
-    private void drawNeedle(Canvas canvas, int centerX, int centerY, int radius) {
-        float angle = START_ANGLE + (currentAngle / 180f) * SWEEP_ANGLE;
-        float radian = (float) Math.toRadians(angle);
-
-        float endX = centerX + radius * (float) Math.cos(radian);
-        float endY = centerY + radius * (float) Math.sin(radian);
+    public void setAngle(float angle) {
+        needleAnimator.animateTo(Math.max(0, Math.min(MAX_VALUE, angle)));
+    }
 
-        canvas.drawLine(centerX, centerY, endX, endY, paintNeedle);
+    // Coloca la aguja sin animación
+    public void setAngleImmediate(float angle) {
+        needleAnimator.snapTo(Math.max(0, Math.min(MAX_VALUE, angle)));
     }
 
-    public void setAngle(float angle) {
-        targetAngle = Math.max(0, Math.min(180, angle));
-        invalidate();
+    public GaugeAnimator getNeedleAnimator() {
+        return needleAnimator;
     }
 
     public float getCurrentAngle() {
@@ -0,0 +1,63 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es un transporte TCP. Sirve para hablar con un simulador de la ESP32 corriendo en la
+misma máquina (localhost) y así probar el envío y la recepción en la JVM a tasas mucho más altas de
+las que produce un teléfono. Se desactiva Nagle para que cada comando salga sin esperar.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+public class TcpTransport implements Transport {
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 3000;
+
+    private final String host;
+    private final int port;
+    private final int connectTimeoutMs;
+    private final Socket socket = new Socket();
+
+    public TcpTransport(String host, int port) {
+        this(host, port, DEFAULT_CONNECT_TIMEOUT_MS);
+    }
+
+    public TcpTransport(String host, int port, int connectTimeoutMs) {
+        this.host = host;
+        this.port = port;
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    @Override
+    public void open() throws IOException {
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    @Override
+    public String getName() {
+        return "TCP " + host + ":" + port;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es el lote de muestras que se entrega a la UI en cada actualización: el último valor
+(lo único que necesitan el tacómetro y el seekbar) y las muestras que llegaron desde la entrega
+anterior, de la más vieja a la más nueva. El objeto se reutiliza entre cuadros, por lo que solo es
+válido durante el callback que lo recibe.
+ */
+
+public class TelemetryBatch {
+    private final long[] timestamps;
+    private final float[] values;
+    private int count = 0;
+    private long totalSamples = 0;
+
+    public TelemetryBatch(int capacity) {
+        timestamps = new long[capacity];
+        values = new float[capacity];
+    }
+
+    // Lote de una sola muestra, para la entrega directa sin agrupar
+    public static TelemetryBatch single(long timestampNanos, float value) {
+        TelemetryBatch batch = new TelemetryBatch(1);
+        batch.timestamps[0] = timestampNanos;
+        batch.values[0] = value;
+        batch.count = 1;
+        batch.totalSamples = 1;
+        return batch;
+    }
+
+    // Copia del historial las muestras [fromSequence, toSequence), si son más que la capacidad se
+    // quedan las más nuevas
+    void fill(TelemetryStore store, long fromSequence, long toSequence) {
+        totalSamples = toSequence - fromSequence;
+        count = store.readRange(fromSequence, toSequence, timestamps, values, 0);
+    }
+
+    // Cantidad de muestras disponibles en los arreglos
+    public int getCount() {
+        return count;
+    }
+
+    // Muestras que llegaron desde la entrega anterior, puede ser mayor que getCount()
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public float getValue(int index) {
+        return values[index];
+    }
+
+    public float getLatestValue() {
+        return count == 0 ? Float.NaN : values[count - 1];
+    }
+
+    public long getLatestTimestamp() {
+        return count == 0 ? 0 : timestamps[count - 1];
+    }
+}
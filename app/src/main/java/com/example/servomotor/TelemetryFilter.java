@@ -0,0 +1,259 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo define una etapa de filtrado para la POSITION que llega de la ESP32 y las etapas
+disponibles. El potenciómetro trae ruido de uno o dos grados y sin filtrar la aguja del tacómetro y el
+seekbar tiemblan y se redibujan aunque el servo esté quieto.
+
+Las etapas se encadenan con TelemetryFilterChain y corren en el hilo de lectura antes de entregar el
+valor a la UI, una muestra a la vez y en orden. Todas guardan su estado en primitivos y arreglos
+reservados en el constructor, filter() no asigna memoria. No son seguras entre hilos: cada etapa
+pertenece al hilo que la alimenta.
+
+- Median: mediana de las últimas N muestras, quita picos aislados sin retrasar los escalones más de N/2.
+- Ema: promedio exponencial con constante de tiempo, no depende de la tasa de telemetría.
+- OneEuro: paso bajo cuyo corte sube con la velocidad, suave en reposo y con poco retraso al moverse.
+- Kalman: Kalman de una dimensión con modelo de posición constante.
+- Deadband: retiene el valor mientras el cambio sea menor al umbral, así no se avisa a la UI por ruido.
+ */
+
+public interface TelemetryFilter {
+
+    // timestampNanos en el reloj de System.nanoTime, no decreciente entre llamadas
+    float filter(long timestampNanos, float value);
+
+    // Olvida el estado, la siguiente muestra se toma como la primera
+    void reset();
+
+    final class Median implements TelemetryFilter {
+        private final float[] window;
+        private final float[] sorted;
+        private int count = 0;
+        private int next = 0;
+
+        public Median(int size) {
+            if (size < 1 || size % 2 == 0) {
+                throw new IllegalArgumentException("La ventana de la mediana debe ser impar: " + size);
+            }
+            window = new float[size];
+            sorted = new float[size];
+        }
+
+        @Override
+        public float filter(long timestampNanos, float value) {
+            if (count == window.length) {
+                // Se saca del arreglo ordenado la muestra más vieja
+                float oldest = window[next];
+                int index = 0;
+                while (index < count - 1 && sorted[index] != oldest) index++;
+                System.arraycopy(sorted, index + 1, sorted, index, count - 1 - index);
+                count--;
+            }
+            int index = count - 1;
+            while (index >= 0 && sorted[index] > value) {
+                sorted[index + 1] = sorted[index];
+                index--;
+            }
+            sorted[index + 1] = value;
+            count++;
+            window[next] = value;
+            next = (next + 1) % window.length;
+
+            int middle = count / 2;
+            return count % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2f;
+        }
+
+        @Override
+        public void reset() {
+            count = 0;
+            next = 0;
+        }
+
+        @Override
+        public String toString() {
+            return "mediana(" + window.length + ")";
+        }
+    }
+
+    final class Ema implements TelemetryFilter {
+        private final double timeConstantNanos;
+        private float state;
+        private long lastNanos;
+        private boolean started = false;
+
+        public Ema(double timeConstantMillis) {
+            if (!(timeConstantMillis > 0)) {
+                throw new IllegalArgumentException("Constante de tiempo inválida: " + timeConstantMillis);
+            }
+            this.timeConstantNanos = timeConstantMillis * 1e6;
+        }
+
+        @Override
+        public float filter(long timestampNanos, float value) {
+            if (!started) {
+                started = true;
+                state = value;
+                lastNanos = timestampNanos;
+                return state;
+            }
+            long elapsed = timestampNanos - lastNanos;
+            if (elapsed <= 0) return state;
+            lastNanos = timestampNanos;
+            double alpha = 1 - Math.exp(-elapsed / timeConstantNanos);
+            state += (float) (alpha * (value - state));
+            return state;
+        }
+
+        @Override
+        public void reset() {
+            started = false;
+        }
+
+        @Override
+        public String toString() {
+            return "ema(" + Math.round(timeConstantNanos / 1e6) + " ms)";
+        }
+    }
+
+    final class OneEuro implements TelemetryFilter {
+        private final double minCutoffHz;
+        private final double beta;
+        private final double derivativeCutoffHz;
+        private float state;
+        private double velocity;
+        private long lastNanos;
+        private boolean started = false;
+
+        // minCutoffHz: corte en reposo. beta: cuánto sube el corte por cada °/s de velocidad
+        public OneEuro(double minCutoffHz, double beta, double derivativeCutoffHz) {
+            if (!(minCutoffHz > 0) || !(beta >= 0) || !(derivativeCutoffHz > 0)) {
+                throw new IllegalArgumentException("Parámetros inválidos: " + minCutoffHz + ", " + beta + ", " + derivativeCutoffHz);
+            }
+            this.minCutoffHz = minCutoffHz;
+            this.beta = beta;
+            this.derivativeCutoffHz = derivativeCutoffHz;
+        }
+
+        private static double alpha(double cutoffHz, double seconds) {
+            double tau = 1 / (2 * Math.PI * cutoffHz);
+            return seconds / (seconds + tau);
+        }
+
+        @Override
+        public float filter(long timestampNanos, float value) {
+            if (!started) {
+                started = true;
+                state = value;
+                velocity = 0;
+                lastNanos = timestampNanos;
+                return state;
+            }
+            long elapsed = timestampNanos - lastNanos;
+            if (elapsed <= 0) return state;
+            lastNanos = timestampNanos;
+            double seconds = elapsed / 1e9;
+
+            // La velocidad también se suaviza, si no el ruido abriría el corte
+            double rawVelocity = (value - state) / seconds;
+            velocity += alpha(derivativeCutoffHz, seconds) * (rawVelocity - velocity);
+            double cutoff = minCutoffHz + beta * Math.abs(velocity);
+            state += (float) (alpha(cutoff, seconds) * (value - state));
+            return state;
+        }
+
+        @Override
+        public void reset() {
+            started = false;
+        }
+
+        @Override
+        public String toString() {
+            return "one-euro(" + minCutoffHz + " Hz, β " + beta + ")";
+        }
+    }
+
+    final class Kalman implements TelemetryFilter {
+        private final double processNoise;
+        private final double measurementNoise;
+        private double estimate;
+        private double variance;
+        private long lastNanos;
+        private boolean started = false;
+
+        // processNoise en °²/s: cuánto puede moverse el servo sin avisar. measurementNoise en °²: varianza del potenciómetro
+        public Kalman(double processNoise, double measurementNoise) {
+            if (!(processNoise > 0) || !(measurementNoise > 0)) {
+                throw new IllegalArgumentException("Varianzas inválidas: " + processNoise + ", " + measurementNoise);
+            }
+            this.processNoise = processNoise;
+            this.measurementNoise = measurementNoise;
+        }
+
+        @Override
+        public float filter(long timestampNanos, float value) {
+            if (!started) {
+                started = true;
+                estimate = value;
+                variance = measurementNoise;
+                lastNanos = timestampNanos;
+                return value;
+            }
+            long elapsed = timestampNanos - lastNanos;
+            if (elapsed > 0) {
+                lastNanos = timestampNanos;
+                variance += processNoise * elapsed / 1e9;
+            }
+            double gain = variance / (variance + measurementNoise);
+            estimate += gain * (value - estimate);
+            variance *= 1 - gain;
+            return (float) estimate;
+        }
+
+        @Override
+        public void reset() {
+            started = false;
+        }
+
+        @Override
+        public String toString() {
+            return "kalman(q " + processNoise + ", r " + measurementNoise + ")";
+        }
+    }
+
+    final class Deadband implements TelemetryFilter {
+        private final float threshold;
+        private float held;
+        private boolean started = false;
+
+        public Deadband(float threshold) {
+            if (!(threshold >= 0)) {
+                throw new IllegalArgumentException("Umbral inválido: " + threshold);
+            }
+            this.threshold = threshold;
+        }
+
+        @Override
+        public float filter(long timestampNanos, float value) {
+            if (!started || Math.abs(value - held) >= threshold) {
+                started = true;
+                held = value;
+            }
+            return held;
+        }
+
+        @Override
+        public void reset() {
+            started = false;
+        }
+
+        @Override
+        public String toString() {
+            return "banda muerta(" + threshold + "°)";
+        }
+    }
+}
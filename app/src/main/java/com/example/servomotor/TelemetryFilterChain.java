@@ -0,0 +1,67 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo encadena etapas de TelemetryFilter: la salida de cada una es la entrada de la siguiente.
+El orden importa, la mediana va primero para que un pico no llegue a los filtros suaves y la banda
+muerta va al final para decidir sobre el valor ya suavizado.
+
+La cadena por defecto (mediana de 5, one-euro y banda muerta de medio grado) deja la aguja quieta con
+el servo en reposo y sigue un escalón con unos pocos milisegundos de retraso. Las etapas se copian a un
+arreglo al construir la cadena, filter() solo las recorre.
+ */
+
+public class TelemetryFilterChain implements TelemetryFilter {
+    public static final int DEFAULT_MEDIAN_WINDOW = 5;
+    public static final double DEFAULT_MIN_CUTOFF_HZ = 1.0;
+    public static final double DEFAULT_BETA = 0.05;
+    public static final double DEFAULT_DERIVATIVE_CUTOFF_HZ = 1.0;
+    public static final float DEFAULT_DEADBAND = 0.5f;
+
+    private final TelemetryFilter[] stages;
+
+    public TelemetryFilterChain(TelemetryFilter... stages) {
+        this.stages = stages.clone();
+    }
+
+    public static TelemetryFilterChain createDefault() {
+        return new TelemetryFilterChain(
+                new TelemetryFilter.Median(DEFAULT_MEDIAN_WINDOW),
+                new TelemetryFilter.OneEuro(DEFAULT_MIN_CUTOFF_HZ, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF_HZ),
+                new TelemetryFilter.Deadband(DEFAULT_DEADBAND));
+    }
+
+    @Override
+    public float filter(long timestampNanos, float value) {
+        for (TelemetryFilter stage : stages) {
+            value = stage.filter(timestampNanos, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        for (TelemetryFilter stage : stages) {
+            stage.reset();
+        }
+    }
+
+    public int getStageCount() {
+        return stages.length;
+    }
+
+    @Override
+    public String toString() {
+        if (stages.length == 0) return "sin filtro";
+        StringBuilder builder = new StringBuilder();
+        for (TelemetryFilter stage : stages) {
+            if (builder.length() > 0) builder.append(" → ");
+            builder.append(stage);
+        }
+        return builder.toString();
+    }
+}
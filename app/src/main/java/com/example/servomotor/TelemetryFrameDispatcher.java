@@ -0,0 +1,84 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo agrupa la telemetría por cuadro de pantalla. Antes cada lectura publicaba una lambda en
+el Handler principal y a tasas altas se inundaba el looper y se redibujaban el tacómetro, el seekbar y
+el texto muchas más veces de las que la pantalla puede mostrar.
+
+Ahora el hilo de lectura solo avisa que hay muestras nuevas (ya guardadas en el TelemetryStore). El
+primer aviso de cada cuadro agenda un callback del Choreographer y los siguientes no hacen nada. En el
+vsync se arma un solo lote con todo lo que llegó y se entrega una única vez a la UI.
+ */
+
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TelemetryFrameDispatcher implements Choreographer.FrameCallback {
+    public static final int MAX_BATCH_SIZE = 256;
+
+    public interface Listener {
+        void onTelemetryFrame(TelemetryBatch batch);
+    }
+
+    private final TelemetryStore store;
+    private final Listener listener;
+    private final Choreographer choreographer;
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private final TelemetryBatch batch = new TelemetryBatch(MAX_BATCH_SIZE);
+
+    // Solo se usan en el hilo principal
+    private long deliveredSequence;
+    private volatile long frameCount = 0;
+    private volatile long collapsedCount = 0;
+
+    // Debe crearse en el hilo principal, que es donde se toma el Choreographer
+    public TelemetryFrameDispatcher(TelemetryStore store, Listener listener) {
+        this.store = store;
+        this.listener = listener;
+        this.choreographer = Choreographer.getInstance();
+        this.deliveredSequence = store.getWriteSequence();
+    }
+
+    // Llamado desde el hilo de lectura después de guardar la muestra en el store
+    public void onSampleAvailable() {
+        if (frameScheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // Lo que llegue a partir de aquí agenda el siguiente cuadro
+        frameScheduled.set(false);
+
+        long end = store.getWriteSequence();
+        if (end == deliveredSequence) return;
+
+        batch.fill(store, deliveredSequence, end);
+        collapsedCount += batch.getTotalSamples() - 1;
+        frameCount++;
+        deliveredSequence = end;
+
+        listener.onTelemetryFrame(batch);
+    }
+
+    public void cancel() {
+        choreographer.removeFrameCallback(this);
+        frameScheduled.set(false);
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    // Muestras que no generaron una actualización propia de la UI
+    public long getCollapsedCount() {
+        return collapsedCount;
+    }
+}
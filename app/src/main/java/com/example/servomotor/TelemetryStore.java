@@ -0,0 +1,174 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo guarda el historial de muestras POSITION con su marca de tiempo. Antes cada valor se
+mostraba y se perdía. Se usan dos arreglos primitivos en forma de buffer circular (long[] para el
+tiempo y float[] para el ángulo) de capacidad fija, así no hay objetos por muestra ni boxing y la
+memoria ocupada se conoce de antemano: 12 bytes por muestra.
+
+Un solo hilo escribe (el de lectura del enlace) y cualquier cantidad de hilos puede leer. El escritor
+publica cada muestra incrementando un contador volatile, también las de un lote, así nunca pisa más que
+la posición reservada para la muestra en curso; los lectores copian lo que necesitan y al terminar
+vuelven a leer el contador para descartar las muestras que el escritor pudo haber pisado mientras
+copiaban (las más viejas). Los tiempos son de System.nanoTime() y nunca decrecen, por eso las
+consultas por rango de tiempo usan búsqueda binaria.
+
+Para que esa segunda lectura sirva, las lecturas de la copia deben terminar antes que ella. Una lectura
+volatile no lo asegura (las anteriores pueden moverse después, sobre todo en ARM) y VarHandle.loadLoadFence
+recién existe en la API 33, así que antes de releer el contador el lector escribe un campo volatile: tanto
+ART como HotSpot ponen una barrera completa en cada escritura volatile, lo que ordena las lecturas
+anteriores. Es lo que indica el JSR-133 Cookbook, no una garantía del modelo de memoria en sí; si algún
+runtime no lo cumpliera, un lector muy atrasado podría recibir alguna muestra recién pisada.
+ */
+
+public class TelemetryStore {
+    // 2^19 muestras = 6 MB, más de una hora a 100 Hz
+    public static final int DEFAULT_CAPACITY = 1 << 19;
+
+    private final int capacity;
+    private final int mask;
+    private final long[] timestamps;
+    private final float[] values;
+
+    // Total de muestras escritas desde el inicio, la siguiente se escribe en writeSequence & mask
+    private volatile long writeSequence = 0;
+    // Solo la escriben los lectores, como barrera entre la copia y la validación
+    private volatile int readFence;
+
+    public TelemetryStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // La capacidad se redondea a la siguiente potencia de dos
+    public TelemetryStore(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacidad inválida: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.values = new float[size];
+    }
+
+    // Solo debe llamarse desde el hilo escritor
+    public void append(long timestampNanos, float value) {
+        long sequence = writeSequence;
+        int index = (int) (sequence & mask);
+        timestamps[index] = timestampNanos;
+        values[index] = value;
+        writeSequence = sequence + 1;
+    }
+
+    // Solo debe llamarse desde el hilo escritor, para bloques de muestras ya decodificadas. Cada muestra
+    // se publica al escribirla: publicar el lote al final pisaría muestras que los lectores creen válidas
+    public void appendAll(long[] timestampsNanos, float[] samples, int offset, int count) {
+        long sequence = writeSequence;
+        for (int i = 0; i < count; i++) {
+            int index = (int) (sequence & mask);
+            timestamps[index] = timestampsNanos[offset + i];
+            values[index] = samples[offset + i];
+            writeSequence = ++sequence;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getWriteSequence() {
+        return writeSequence;
+    }
+
+    // Se reserva una posición para la muestra que el escritor pueda estar escribiendo
+    public int size() {
+        return (int) Math.min(writeSequence, capacity - 1);
+    }
+
+    // Secuencia de la muestra más vieja que todavía puede leerse
+    public long getOldestSequence() {
+        return Math.max(0, writeSequence - capacity + 1);
+    }
+
+    // NaN si todavía no hay muestras
+    public float getLatestValue() {
+        long sequence = writeSequence;
+        if (sequence == 0) return Float.NaN;
+        return values[(int) ((sequence - 1) & mask)];
+    }
+
+    public long getLatestTimestamp() {
+        long sequence = writeSequence;
+        if (sequence == 0) return 0;
+        return timestamps[(int) ((sequence - 1) & mask)];
+    }
+
+    // Copia las últimas muestras (hasta outTimestamps.length) de la más vieja a la más nueva
+    public int snapshot(long[] outTimestamps, float[] outValues) {
+        long end = writeSequence;
+        return copyRange(end - outTimestamps.length, end, outTimestamps, outValues, 0);
+    }
+
+    // Copia las muestras con secuencia en [fromSequence, toSequence), devuelve cuántas quedaron válidas.
+    // Si parte del rango ya fue sobrescrito solo se devuelve lo que sigue disponible.
+    public int readRange(long fromSequence, long toSequence, long[] outTimestamps, float[] outValues, int outOffset) {
+        long end = Math.min(toSequence, writeSequence);
+        long start = Math.max(fromSequence, end - (outTimestamps.length - outOffset));
+        return copyRange(start, end, outTimestamps, outValues, outOffset);
+    }
+
+    // Muestras con tiempo en [fromNanos, toNanos), las más nuevas si no caben en los arreglos
+    public int queryTimeRange(long fromNanos, long toNanos, long[] outTimestamps, float[] outValues) {
+        long end = writeSequence;
+        long oldest = Math.max(0, end - capacity + 1);
+        long first = lowerBound(oldest, end, fromNanos);
+        long last = lowerBound(first, end, toNanos);
+        return readRange(first, last, outTimestamps, outValues, 0);
+    }
+
+    // Primera secuencia en [from, to) cuyo tiempo es >= timeNanos
+    public long lowerBound(long from, long to, long timeNanos) {
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (timestamps[(int) (mid & mask)] < timeNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int copyRange(long start, long end, long[] outTimestamps, float[] outValues, int outOffset) {
+        long oldest = Math.max(0, end - capacity + 1);
+        if (start < oldest) start = oldest;
+        if (start >= end) return 0;
+
+        int count = (int) (end - start);
+        int from = (int) (start & mask);
+        int first = Math.min(count, capacity - from);
+        System.arraycopy(timestamps, from, outTimestamps, outOffset, first);
+        System.arraycopy(values, from, outValues, outOffset, first);
+        System.arraycopy(timestamps, 0, outTimestamps, outOffset + first, count - first);
+        System.arraycopy(values, 0, outValues, outOffset + first, count - first);
+
+        // Lo que el escritor alcanzó a pisar mientras se copiaba se descarta. La escritura volatile impide
+        // que las lecturas de la copia queden después de la del contador
+        readFence = count;
+        long stillValid = Math.max(0, writeSequence - capacity + 1);
+        if (start < stillValid) {
+            int lost = (int) Math.min(count, stillValid - start);
+            count -= lost;
+            System.arraycopy(outTimestamps, outOffset + lost, outTimestamps, outOffset, count);
+            System.arraycopy(outValues, outOffset + lost, outValues, outOffset, count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo es un limitador de tasa por cubeta de fichas. La cubeta se llena a ratePerSecond fichas por
+segundo hasta un máximo de burst, y cada comando gasta una. Así se permite una ráfaga corta (un toque a
+un preset justo después de soltar el seekbar) sin pasar de la tasa promedio que aguantan RFCOMM y el
+firmware.
+
+El relleno se calcula con el tiempo que recibe cada llamada, no hay hilos ni temporizadores. La tasa
+puede cambiarse desde cualquier hilo, los métodos están sincronizados aunque en la práctica solo el hilo
+escritor de CommandWriter consume fichas. No depende de Android.
+ */
+
+public class TokenBucket {
+    private double ratePerSecond;
+    private double burst;
+    private double tokens;
+    private long lastRefillNanos;
+    private boolean started = false;
+
+    public TokenBucket(double ratePerSecond, double burst) {
+        setRate(ratePerSecond, burst);
+        tokens = this.burst;
+    }
+
+    public synchronized void setRate(double ratePerSecond, double burst) {
+        if (!(ratePerSecond > 0) || !(burst >= 1)) {
+            throw new IllegalArgumentException("Tasa o ráfaga inválida: " + ratePerSecond + ", " + burst);
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        tokens = Math.min(tokens, burst);
+    }
+
+    // Gasta una ficha si hay, nowNanos en el reloj de System.nanoTime
+    public synchronized boolean tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    // Cuánto falta para tener una ficha, 0 si ya hay
+    public synchronized long nanosUntilAvailable(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) return 0;
+        return (long) Math.ceil((1 - tokens) * 1e9 / ratePerSecond);
+    }
+
+    private void refill(long nowNanos) {
+        if (!started) {
+            started = true;
+            lastRefillNanos = nowNanos;
+            return;
+        }
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed <= 0) return;
+        tokens = Math.min(burst, tokens + elapsed * ratePerSecond / 1e9);
+        lastRefillNanos = nowNanos;
+    }
+
+    public synchronized double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public synchronized double getBurst() {
+        return burst;
+    }
+}
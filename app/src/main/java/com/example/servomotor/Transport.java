@@ -0,0 +1,37 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo define el medio físico por el que viajan los comandos y la telemetría. Antes todo estaba
+amarrado a BluetoothSocket/RFCOMM y no había forma de medir nada fuera del teléfono. Con esta
+interfaz el mismo ServoLink funciona sobre:
+
+- RfcommTransport: el socket Bluetooth real hacia la ESP32.
+- PipedTransport: un par de extremos en memoria, útil para pruebas en la JVM.
+- TcpTransport: un socket TCP, por ejemplo hacia localhost para pruebas de carga.
+
+Cada instancia se abre una sola vez, para reconectar se crea una nueva.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface Transport {
+
+    // Bloquea hasta que el enlace queda establecido
+    void open() throws IOException;
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    // Debe poder llamarse más de una vez y desde cualquier hilo, libera lecturas y escrituras bloqueadas
+    void close() throws IOException;
+
+    String getName();
+}
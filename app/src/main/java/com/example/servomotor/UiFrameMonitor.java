@@ -0,0 +1,71 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo cuenta los cuadros que dibuja el hilo principal y los que se pierden. Se engancha al
+Choreographer en cada vsync: si entre dos cuadros pasaron varios periodos de la pantalla, los del medio
+se cuentan como perdidos (el hilo principal estuvo ocupado y la pantalla repitió la imagen anterior).
+
+Pedir un callback en cada vsync mantiene despierto el Choreographer aunque nada cambie, así que solo corre
+entre start() y stop(). MainActivity lo tiene encendido mientras el panel de depuración está visible.
+Debe usarse desde el hilo principal.
+ */
+
+import android.view.Choreographer;
+
+public class UiFrameMonitor implements Choreographer.FrameCallback {
+    public static final String METRIC_FRAMES_RENDERED = "ui.frames_rendered";
+    public static final String METRIC_FRAMES_DROPPED = "ui.frames_dropped";
+
+    private final Choreographer choreographer;
+    private final MetricsRegistry.Counter rendered;
+    private final MetricsRegistry.Counter dropped;
+    private final long framePeriodNanos;
+    private boolean running = false;
+    private long lastFrameNanos = 0;
+
+    // refreshRateHz de Display.getRefreshRate(), 60 si no se conoce
+    public UiFrameMonitor(MetricsRegistry registry, float refreshRateHz) {
+        this.choreographer = Choreographer.getInstance();
+        this.rendered = registry.counter(METRIC_FRAMES_RENDERED);
+        this.dropped = registry.counter(METRIC_FRAMES_DROPPED);
+        registry.rate(METRIC_FRAMES_RENDERED);
+        this.framePeriodNanos = (long) (1e9 / (refreshRateHz > 1f ? refreshRateHz : 60f));
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        // El primer cuadro después de arrancar no tiene con qué compararse
+        lastFrameNanos = 0;
+        choreographer.postFrameCallback(this);
+    }
+
+    public void stop() {
+        running = false;
+        choreographer.removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+        if (lastFrameNanos != 0) {
+            // Redondeado al periodo más cercano, el vsync no llega exacto
+            long periods = (frameTimeNanos - lastFrameNanos + framePeriodNanos / 2) / framePeriodNanos;
+            if (periods > 1) {
+                dropped.add(periods - 1);
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+        rendered.increment();
+        choreographer.postFrameCallback(this);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo define cómo se carga una secuencia de puntos en la ESP32 para que la ejecute con su propio
+reloj. Con ANGLE cada paso depende de la latencia de Bluetooth y de cuándo el teléfono programa el hilo.
+Con una secuencia, la app manda todo de una vez y después solo da órdenes de una línea: iniciar, pausar,
+reanudar y abortar.
+
+Cada punto i tiene un retraso en ms respecto al punto anterior (el primero respecto al START), entre 0 y
+MAX_DELAY_MILLIS, y un ángulo en centésimas de grado. Una secuencia tiene de 1 a MAX_WAYPOINTS puntos.
+Los puntos se agrupan en bloques de CHUNK_SIZE: el bloque k son los puntos [k*CHUNK_SIZE, (k+1)*CHUNK_SIZE).
+
+App -> ESP32, en texto o en binario según lo negociado con HELLO/PROTO:
+  BEGIN n        "SEQ:BEGIN,<n>"       trama SEQUENCE, secuencia = OP_BEGIN, valor = n
+                 Descarta la secuencia anterior y detiene la reproducción en curso.
+  punto i        "WP:<i>,<ms>,<centi>" dos tramas seguidas: WAYPOINT_TIME (secuencia = i & 0xFF, valor = ms)
+                                       y WAYPOINT_ANGLE (secuencia = i & 0xFF, valor = centi)
+  START          "SEQ:START"           trama SEQUENCE, OP_START. Solo con la secuencia completa.
+  PAUSE          "SEQ:PAUSE"           congela el tiempo de la secuencia, el servo se queda donde está.
+  RESUME         "SEQ:RESUME"          sigue desde donde se pausó con los mismos intervalos.
+  ABORT          "SEQ:ABORT"           detiene la reproducción o cancela una carga a medias. Una secuencia
+                                       completa se conserva y puede volver a iniciarse con START.
+
+ESP32 -> app:
+  ACK k          "SEQ_ACK:<k>"         trama SEQUENCE_STATUS, secuencia = STATUS_ACK, valor = k.
+                 Acumulativo: llegaron completos todos los bloques hasta k. Se manda al completar cada
+                 bloque (el último puede ser más corto) y también si llega repetido un bloque ya recibido,
+                 por si el ACK anterior se perdió.
+  NAK k          "SEQ_NAK:<k>"         llegó un punto fuera de orden: se descarta todo lo que sigue y la app
+                 reenvía desde el bloque k. Se manda una sola vez por hueco.
+  DONE n         "SEQ_DONE:<n>"        terminó la reproducción después de ejecutar n puntos.
+  REJECT op      "SEQ_REJECT:<op>"     no se pudo atender la orden op (START sin secuencia completa, n fuera
+                                       de rango, etc.).
+
+La app manda los bloques uno detrás de otro sin esperar, con hasta WINDOW_CHUNKS bloques sin confirmar
+(así un punto en vuelo nunca está a 256 o más del esperado y los 8 bits de secuencia alcanzan para
+ubicarlo). Si no llega un ACK a tiempo reenvía desde el primer bloque sin confirmar. Los ACK, NAK y
+REJECT se responden al recibir; DONE al terminar.
+ */
+
+import java.nio.charset.StandardCharsets;
+
+public final class WaypointProtocol {
+    public static final int MAX_WAYPOINTS = 1024;
+    public static final int MAX_DELAY_MILLIS = Short.MAX_VALUE;
+    public static final int CHUNK_SIZE = 16;
+    public static final int WINDOW_CHUNKS = 4;
+
+    // Órdenes, van en la secuencia de la trama SEQUENCE
+    public static final int OP_BEGIN = 1;
+    public static final int OP_START = 2;
+    public static final int OP_PAUSE = 3;
+    public static final int OP_RESUME = 4;
+    public static final int OP_ABORT = 5;
+
+    // Respuestas, van en la secuencia de la trama SEQUENCE_STATUS
+    public static final int STATUS_ACK = 1;
+    public static final int STATUS_NAK = 2;
+    public static final int STATUS_DONE = 3;
+    public static final int STATUS_REJECT = 4;
+
+    // Prefijos de las respuestas en texto, el número va después
+    public static final byte[] ACK_PREFIX = {'S', 'E', 'Q', '_', 'A', 'C', 'K', ':'};
+    public static final byte[] NAK_PREFIX = {'S', 'E', 'Q', '_', 'N', 'A', 'K', ':'};
+    public static final byte[] DONE_PREFIX = {'S', 'E', 'Q', '_', 'D', 'O', 'N', 'E', ':'};
+    public static final byte[] REJECT_PREFIX = {'S', 'E', 'Q', '_', 'R', 'E', 'J', 'E', 'C', 'T', ':'};
+
+    private static final String[] OP_NAMES = {null, "BEGIN", "START", "PAUSE", "RESUME", "ABORT"};
+
+    private WaypointProtocol() {
+    }
+
+    public static int chunkCount(int waypoints) {
+        return (waypoints + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    public static String opName(int op) {
+        return op > 0 && op < OP_NAMES.length ? OP_NAMES[op] : String.valueOf(op);
+    }
+
+    // Lanza IllegalArgumentException si la secuencia no puede enviarse tal cual
+    public static void validate(int[] delaysMillis, int[] centiDegrees) {
+        if (delaysMillis.length != centiDegrees.length) {
+            throw new IllegalArgumentException("Tiempos y ángulos de distinto tamaño");
+        }
+        if (delaysMillis.length < 1 || delaysMillis.length > MAX_WAYPOINTS) {
+            throw new IllegalArgumentException("Una secuencia tiene de 1 a " + MAX_WAYPOINTS + " puntos: " + delaysMillis.length);
+        }
+        for (int i = 0; i < delaysMillis.length; i++) {
+            if (delaysMillis[i] < 0 || delaysMillis[i] > MAX_DELAY_MILLIS) {
+                throw new IllegalArgumentException("Retraso fuera de rango en el punto " + i + ": " + delaysMillis[i]);
+            }
+            if (centiDegrees[i] < BinaryProtocol.MIN_CENTI_DEGREES || centiDegrees[i] > BinaryProtocol.MAX_CENTI_DEGREES) {
+                throw new IllegalArgumentException("Ángulo fuera de rango en el punto " + i + ": " + centiDegrees[i]);
+            }
+        }
+    }
+
+    // BEGIN, START, PAUSE, RESUME o ABORT. value solo se usa en BEGIN
+    public static byte[] encodeOp(int op, int value, boolean binary) {
+        if (binary) {
+            byte[] frame = new byte[BinaryProtocol.FRAME_SIZE];
+            BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_SEQUENCE, op, value, frame, 0);
+            return frame;
+        }
+        String line = "SEQ:" + opName(op) + (op == OP_BEGIN ? "," + value : "") + "\n";
+        return line.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Todos los puntos del bloque en un solo arreglo, para que salgan en una escritura
+    public static byte[] encodeChunk(int[] delaysMillis, int[] centiDegrees, int chunk, boolean binary) {
+        int from = chunk * CHUNK_SIZE;
+        int to = Math.min(from + CHUNK_SIZE, delaysMillis.length);
+        if (binary) {
+            byte[] frames = new byte[(to - from) * 2 * BinaryProtocol.FRAME_SIZE];
+            int offset = 0;
+            for (int i = from; i < to; i++) {
+                offset += BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_WAYPOINT_TIME, i, delaysMillis[i], frames, offset);
+                offset += BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_WAYPOINT_ANGLE, i, centiDegrees[i], frames, offset);
+            }
+            return frames;
+        }
+        StringBuilder lines = new StringBuilder((to - from) * 20);
+        for (int i = from; i < to; i++) {
+            lines.append("WP:").append(i).append(',').append(delaysMillis[i]).append(',').append(centiDegrees[i]).append('\n');
+        }
+        return lines.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Índice completo de un punto binario a partir de sus 8 bits y del índice que se espera
+    public static int resolveIndex(int sequence, int expected) {
+        return expected + (byte) (sequence - expected);
+    }
+}
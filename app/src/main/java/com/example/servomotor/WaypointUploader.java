@@ -0,0 +1,341 @@
+package com.example.servomotor;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Este archivo carga una secuencia de puntos en la ESP32 con el protocolo de WaypointProtocol y después la
+controla con órdenes de una sola línea. La carga va por bloques y sin esperar cada confirmación: se
+mandan hasta WINDOW_CHUNKS bloques seguidos y cada ACK abre lugar para el siguiente, así una secuencia
+de 1024 puntos cuesta unos pocos viajes de ida y vuelta en lugar de uno por punto.
+
+Recuperación (retroceso a N): un NAK o un ACK que no llega en ackTimeoutMillis hacen reenviar desde el
+primer bloque sin confirmar. Después de MAX_RETRIES intentos seguidos sin avance la carga falla. Un ACK
+repetido o viejo no hace nada.
+
+Estados: IDLE → UPLOADING → READY → PLAYING ⇄ PAUSED → READY (DONE o ABORT). Una carga nueva reemplaza a
+la anterior desde cualquier estado y si se pierde el enlace lo que estaba en curso pasa a FAILED. Los
+métodos están sincronizados: los llaman la UI, el hilo de lectura (respuestas) y el del tiempo límite.
+El Listener se llama con el candado tomado, solo debe pasar el aviso a otro hilo. No depende de Android.
+ */
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class WaypointUploader {
+    public static final long DEFAULT_ACK_TIMEOUT_MILLIS = 500;
+    public static final int MAX_RETRIES = 5;
+
+    public enum State {
+        IDLE,
+        UPLOADING,
+        READY,
+        PLAYING,
+        PAUSED,
+        FAILED
+    }
+
+    public interface Sink {
+        // Encola los bytes hacia la ESP32 sin bloquear, false si no se pudieron encolar
+        boolean submit(byte[] data);
+    }
+
+    public interface Listener {
+        void onStateChanged(State state);
+
+        // Puntos confirmados de la carga en curso
+        void onUploadProgress(int acknowledged, int total);
+
+        void onError(String error);
+    }
+
+    private final Sink sink;
+    private final ScheduledExecutorService scheduler;
+    private final Listener listener;
+    private volatile long ackTimeoutMillis = DEFAULT_ACK_TIMEOUT_MILLIS;
+
+    // Protegidos por this
+    private State state = State.IDLE;
+    private boolean binary;
+    private int[] delaysMillis = new int[0];
+    private int[] centiDegrees = new int[0];
+    private int chunkCount;
+    private int nextChunk;
+    private int ackedChunks;
+    private int retries;
+    private long[] chunkSentNanos = new long[0];
+    private ScheduledFuture<?> timeoutTask;
+    // Cambia con cada carga, así un tiempo límite agendado para una carga anterior no hace nada
+    private long generation;
+    private long uploadStartNanos;
+
+    private final LatencyHistogram ackLatencyHistogram = new LatencyHistogram();
+    private final LatencyHistogram uploadTimeHistogram = new LatencyHistogram();
+    private long uploadCount;
+    private long chunkSentCount;
+    private long retransmittedChunkCount;
+    private long nakCount;
+    private long timeoutCount;
+    private long completedPlaybackCount;
+
+    public WaypointUploader(Sink sink, ScheduledExecutorService scheduler, Listener listener) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    public void setAckTimeoutMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Tiempo límite inválido: " + millis);
+        }
+        ackTimeoutMillis = millis;
+    }
+
+    // Empieza a cargar la secuencia, reemplazando la que haya. binary según lo negociado en el enlace.
+    // Lanza IllegalArgumentException si la secuencia no cumple WaypointProtocol.validate
+    public synchronized void upload(int[] delaysMillis, int[] centiDegrees, boolean binary) {
+        WaypointProtocol.validate(delaysMillis, centiDegrees);
+        cancelTimeout();
+        generation++;
+        this.binary = binary;
+        this.delaysMillis = delaysMillis.clone();
+        this.centiDegrees = centiDegrees.clone();
+        chunkCount = WaypointProtocol.chunkCount(delaysMillis.length);
+        chunkSentNanos = new long[chunkCount];
+        nextChunk = 0;
+        ackedChunks = 0;
+        retries = 0;
+        uploadCount++;
+        uploadStartNanos = System.nanoTime();
+        setState(State.UPLOADING);
+
+        if (!sink.submit(WaypointProtocol.encodeOp(WaypointProtocol.OP_BEGIN, delaysMillis.length, binary))) {
+            fail("No se pudo iniciar la carga");
+            return;
+        }
+        sendWindow();
+    }
+
+    public synchronized boolean start() {
+        if (state != State.READY) return false;
+        return sendOp(WaypointProtocol.OP_START, State.PLAYING);
+    }
+
+    public synchronized boolean pause() {
+        if (state != State.PLAYING) return false;
+        return sendOp(WaypointProtocol.OP_PAUSE, State.PAUSED);
+    }
+
+    public synchronized boolean resume() {
+        if (state != State.PAUSED) return false;
+        return sendOp(WaypointProtocol.OP_RESUME, State.PLAYING);
+    }
+
+    // Detiene la reproducción (la secuencia queda cargada) o cancela la carga en curso
+    public synchronized boolean abort() {
+        if (state == State.PLAYING || state == State.PAUSED) {
+            return sendOp(WaypointProtocol.OP_ABORT, State.READY);
+        }
+        if (state == State.UPLOADING) {
+            cancelTimeout();
+            generation++;
+            return sendOp(WaypointProtocol.OP_ABORT, State.IDLE);
+        }
+        return false;
+    }
+
+    private boolean sendOp(int op, State next) {
+        if (!sink.submit(WaypointProtocol.encodeOp(op, 0, binary))) {
+            listener.onError("No se pudo enviar " + WaypointProtocol.opName(op));
+            return false;
+        }
+        setState(next);
+        return true;
+    }
+
+    // Desde el hilo de lectura del enlace
+    public synchronized void onStatus(int status, int value) {
+        switch (status) {
+            case WaypointProtocol.STATUS_ACK:
+                onChunkAck(value);
+                break;
+            case WaypointProtocol.STATUS_NAK:
+                if (state != State.UPLOADING || value < ackedChunks || value >= nextChunk) return;
+                nakCount++;
+                // Todo lo anterior a k ya llegó, se reenvía desde k
+                ackedChunks = value;
+                goBack();
+                break;
+            case WaypointProtocol.STATUS_DONE:
+                if (state == State.PLAYING || state == State.PAUSED) {
+                    completedPlaybackCount++;
+                    setState(State.READY);
+                }
+                break;
+            case WaypointProtocol.STATUS_REJECT:
+                fail("La ESP32 rechazó " + WaypointProtocol.opName(value));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onChunkAck(int chunk) {
+        if (state != State.UPLOADING || chunk < ackedChunks || chunk >= nextChunk) return;
+        long now = System.nanoTime();
+        if (chunkSentNanos[chunk] != 0) {
+            ackLatencyHistogram.recordNanos(now - chunkSentNanos[chunk]);
+        }
+        ackedChunks = chunk + 1;
+        retries = 0;
+        listener.onUploadProgress(Math.min(ackedChunks * WaypointProtocol.CHUNK_SIZE, delaysMillis.length), delaysMillis.length);
+
+        if (ackedChunks == chunkCount) {
+            cancelTimeout();
+            uploadTimeHistogram.recordNanos(now - uploadStartNanos);
+            setState(State.READY);
+            return;
+        }
+        sendWindow();
+    }
+
+    private void onAckTimeout(long expectedGeneration) {
+        synchronized (this) {
+            if (generation != expectedGeneration || state != State.UPLOADING) return;
+            timeoutTask = null;
+            timeoutCount++;
+            goBack();
+        }
+    }
+
+    // Retroceso a N: lo que estaba en vuelo después del primer bloque sin confirmar se vuelve a mandar
+    private void goBack() {
+        if (++retries > MAX_RETRIES) {
+            fail("Sin confirmación del bloque " + ackedChunks + " después de " + MAX_RETRIES + " reintentos");
+            return;
+        }
+        retransmittedChunkCount += nextChunk - ackedChunks;
+        for (int chunk = ackedChunks; chunk < nextChunk; chunk++) {
+            // Un bloque reenviado no se mide, no se sabe a cuál envío corresponde su ACK
+            chunkSentNanos[chunk] = 0;
+        }
+        nextChunk = ackedChunks;
+        sendWindow();
+    }
+
+    private void sendWindow() {
+        while (nextChunk < chunkCount && nextChunk - ackedChunks < WaypointProtocol.WINDOW_CHUNKS) {
+            byte[] chunk = WaypointProtocol.encodeChunk(delaysMillis, centiDegrees, nextChunk, binary);
+            if (!sink.submit(chunk)) {
+                // Cola llena, el tiempo límite lo vuelve a intentar
+                break;
+            }
+            if (retries == 0 && chunkSentNanos[nextChunk] == 0) {
+                chunkSentNanos[nextChunk] = System.nanoTime();
+            }
+            chunkSentCount++;
+            nextChunk++;
+        }
+        armTimeout();
+    }
+
+    private void armTimeout() {
+        cancelTimeout();
+        long expectedGeneration = generation;
+        timeoutTask = scheduler.schedule(() -> onAckTimeout(expectedGeneration), ackTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTimeout() {
+        if (timeoutTask != null) {
+            timeoutTask.cancel(false);
+            timeoutTask = null;
+        }
+    }
+
+    // El enlace se cerró: lo que estaba en curso en la ESP32 ya no se puede controlar desde aquí
+    public synchronized void onLinkLost() {
+        if (state == State.UPLOADING || state == State.PLAYING || state == State.PAUSED) {
+            fail("Se perdió la conexión");
+        } else if (state == State.READY) {
+            setState(State.IDLE);
+        }
+    }
+
+    private void fail(String reason) {
+        cancelTimeout();
+        generation++;
+        setState(State.FAILED);
+        listener.onError(reason);
+    }
+
+    private void setState(State next) {
+        if (state == next) return;
+        state = next;
+        listener.onStateChanged(next);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getWaypointCount() {
+        return delaysMillis.length;
+    }
+
+    // Duración de la secuencia cargada, suma de los retrasos
+    public synchronized long getDurationMillis() {
+        long total = 0;
+        for (int delay : delaysMillis) {
+            total += delay;
+        }
+        return total;
+    }
+
+    // Desde el envío de un bloque hasta su ACK, sin contar los reenviados
+    public LatencyHistogram getAckLatencyHistogram() {
+        return ackLatencyHistogram;
+    }
+
+    // Desde BEGIN hasta el ACK del último bloque
+    public LatencyHistogram getUploadTimeHistogram() {
+        return uploadTimeHistogram;
+    }
+
+    public synchronized long getUploadCount() {
+        return uploadCount;
+    }
+
+    public synchronized long getChunkSentCount() {
+        return chunkSentCount;
+    }
+
+    public synchronized long getRetransmittedChunkCount() {
+        return retransmittedChunkCount;
+    }
+
+    public synchronized long getNakCount() {
+        return nakCount;
+    }
+
+    public synchronized long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public synchronized long getCompletedPlaybackCount() {
+        return completedPlaybackCount;
+    }
+
+    public synchronized void resetStats() {
+        ackLatencyHistogram.reset();
+        uploadTimeHistogram.reset();
+        uploadCount = 0;
+        chunkSentCount = 0;
+        retransmittedChunkCount = 0;
+        nakCount = 0;
+        timeoutCount = 0;
+        completedPlaybackCount = 0;
+    }
+}
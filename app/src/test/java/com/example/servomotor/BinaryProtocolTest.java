@@ -0,0 +1,222 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryProtocolTest {
+
+    private final List<Float> positions = new ArrayList<>();
+    private final List<String> lines = new ArrayList<>();
+    private int negotiatedVersion = -1;
+    private int credits = 0;
+    private final List<Integer> acks = new ArrayList<>();
+    private final List<String> statuses = new ArrayList<>();
+    private int features = -1;
+    private final List<Float> batchAngles = new ArrayList<>();
+    private final List<Long> batchBases = new ArrayList<>();
+
+    private final ProtocolDecoder decoder = new ProtocolDecoder(new ProtocolDecoder.Listener() {
+        @Override
+        public void onPosition(float angle) {
+            positions.add(angle);
+        }
+
+        @Override
+        public void onLine(byte[] buffer, int offset, int length) {
+            lines.add(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+            negotiatedVersion = version;
+        }
+
+        @Override
+        public void onCredit(int granted) {
+            credits += granted;
+        }
+
+        @Override
+        public void onAck(int sequence) {
+            acks.add(sequence);
+        }
+
+        @Override
+        public void onSequenceStatus(int status, int value) {
+            statuses.add(status + ":" + value);
+        }
+
+        @Override
+        public void onFeatures(int accepted) {
+            features = accepted;
+        }
+
+        @Override
+        public void onPositionBatch(long baseMicros, int periodMicros, float[] angles, int count) {
+            batchBases.add(baseMicros);
+            for (int i = 0; i < count; i++) {
+                batchAngles.add(angles[i]);
+            }
+        }
+    });
+
+    private static byte[] positionFrame(int sequence, int centiDegrees) {
+        byte[] frame = new byte[BinaryProtocol.FRAME_SIZE];
+        BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_POSITION, sequence, centiDegrees, frame, 0);
+        return frame;
+    }
+
+    @Test
+    public void crc8_matchesReferenceValue() {
+        // Valor de referencia de CRC-8 (poly 0x07) para "123456789"
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xF4, BinaryProtocol.crc8(check, 0, check.length));
+    }
+
+    @Test
+    public void encodeDecode_roundTrip() {
+        byte[] frame = new byte[BinaryProtocol.FRAME_SIZE];
+        for (int value : new int[]{0, 4550, 18000, -1200, 40000}) {
+            BinaryProtocol.encodeAngle(7, value, frame, 0);
+            assertTrue(BinaryProtocol.isValidFrame(frame, 0));
+            assertEquals(Math.min(value, BinaryProtocol.MAX_CENTI_DEGREES), BinaryProtocol.decodeValue(frame, 0));
+        }
+    }
+
+    @Test
+    public void negotiation_switchesToBinaryMidRead() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write("POSITION:90\nPROTO:1\n".getBytes(StandardCharsets.US_ASCII));
+        stream.write(positionFrame(0, 4525));
+        byte[] second = positionFrame(1, 9000);
+        stream.write(second, 0, 2);
+        byte[] data = stream.toByteArray();
+
+        decoder.feed(data, 0, data.length);
+        decoder.feed(second, 2, second.length - 2);
+
+        assertTrue(decoder.isBinaryMode());
+        assertEquals(BinaryProtocol.VERSION, negotiatedVersion);
+        assertEquals(3, positions.size());
+        assertEquals(90f, positions.get(0), 0f);
+        assertEquals(45.25f, positions.get(1), 0.001f);
+        assertEquals(90f, positions.get(2), 0.001f);
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void corruptedFrame_isSkippedAndDecoderResyncs() {
+        List<Integer> values = new ArrayList<>();
+        BinaryFrameDecoder binary = new BinaryFrameDecoder((type, sequence, value) -> values.add(value));
+
+        byte[] bad = positionFrame(0, 1000);
+        bad[4] ^= 0x10;
+        byte[] good = positionFrame(1, 2000);
+
+        byte[] data = new byte[3 + bad.length + good.length];
+        data[0] = 'x';
+        data[1] = 'y';
+        data[2] = 'z';
+        System.arraycopy(bad, 0, data, 3, bad.length);
+        System.arraycopy(good, 0, data, 3 + bad.length, good.length);
+        binary.feed(data, 0, data.length);
+
+        assertEquals(1, values.size());
+        assertEquals(2000, (int) values.get(0));
+        assertEquals(1, binary.getMalformedCount());
+    }
+
+    @Test
+    public void unknownProtocolVersion_staysInText() {
+        byte[] data = "PROTO:9\nPOSITION:12\n".getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(data, 0, data.length);
+        assertFalse(decoder.isBinaryMode());
+        assertEquals(1, lines.size());
+        assertEquals(12f, positions.get(0), 0f);
+    }
+
+    @Test
+    public void creditsAndAcks_inTextAndBinary() {
+        byte[] text = "CREDIT:4\nACK\nCREDIT:0\nPROTO:1\n".getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(text, 0, text.length);
+        assertEquals(4, credits);
+        assertEquals(1, acks.size());
+        assertEquals(-1, (int) acks.get(0));
+        // CREDIT:0 no concede nada y queda como línea de texto
+        assertEquals(1, lines.size());
+
+        byte[] frames = new byte[BinaryProtocol.FRAME_SIZE * 2];
+        BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_CREDIT, 0, 2, frames, 0);
+        BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_ACK, 17, 0, frames, BinaryProtocol.FRAME_SIZE);
+        decoder.feed(frames, 0, frames.length);
+        assertEquals(6, credits);
+        assertEquals(17, (int) acks.get(1));
+        assertTrue(positions.isEmpty());
+    }
+
+    @Test
+    public void sequenceStatus_inTextAndBinary() {
+        byte[] text = "SEQ_ACK:0\nSEQ_NAK:3\nSEQ_DONE:40\nSEQ_REJECT:2\nSEQ_ACK:\nPROTO:1\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(text, 0, text.length);
+        assertEquals(Arrays.asList(
+                WaypointProtocol.STATUS_ACK + ":0",
+                WaypointProtocol.STATUS_NAK + ":3",
+                WaypointProtocol.STATUS_DONE + ":40",
+                WaypointProtocol.STATUS_REJECT + ":" + WaypointProtocol.OP_START), statuses);
+        // Sin número no es una respuesta
+        assertEquals(Collections.singletonList("SEQ_ACK:"), lines);
+
+        byte[] frame = new byte[BinaryProtocol.FRAME_SIZE];
+        BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_SEQUENCE_STATUS, WaypointProtocol.STATUS_ACK, 5, frame, 0);
+        decoder.feed(frame, 0, frame.length);
+        assertEquals(WaypointProtocol.STATUS_ACK + ":5", statuses.get(4));
+    }
+
+    @Test
+    public void batchFrames_deltaDecodeSplitAndResync() {
+        byte[] text = "PROTO:1\n".getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(text, 0, text.length);
+        byte[] features = new byte[BinaryProtocol.FRAME_SIZE];
+        BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_FEATURES, 0, BinaryProtocol.FEATURE_BATCH_TELEMETRY, features, 0);
+        decoder.feed(features, 0, features.length);
+        assertEquals(BinaryProtocol.FEATURE_BATCH_TELEMETRY, this.features);
+
+        // Saltos grandes en los dos sentidos y un tiempo base cerca de la vuelta de 32 bits
+        int[] centi = {9000, 9001, 8999, 9000, BinaryProtocol.MAX_CENTI_DEGREES, BinaryProtocol.MIN_CENTI_DEGREES, 0, -45};
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte[] batch = new byte[BinaryProtocol.MAX_BATCH_FRAME_SIZE];
+        int length = BinaryProtocol.encodeBatch(0xFFFFFFF0L, 1000, centi, 0, centi.length, batch, 0);
+        // Encabezado, base de 5 bytes, periodo de 2, diferencias de 1 a 3 bytes y CRC
+        assertEquals(3 + 5 + 2 + (3 + 1 + 1 + 1 + 3 + 3 + 3 + 1) + 1, length);
+        byte[] corrupted = batch.clone();
+        corrupted[8] ^= 0x01;
+        stream.write(corrupted, 0, length);
+        stream.write(batch, 0, length);
+        stream.write(positionFrame(0, 1234), 0, BinaryProtocol.FRAME_SIZE);
+        byte[] data = stream.toByteArray();
+
+        // De a un byte, como si cada lectura trajera uno solo
+        for (int i = 0; i < data.length; i++) {
+            decoder.feed(data, i, 1);
+        }
+
+        assertEquals(Collections.singletonList(0xFFFFFFF0L), batchBases);
+        assertEquals(centi.length, batchAngles.size());
+        for (int i = 0; i < centi.length; i++) {
+            assertEquals(BinaryProtocol.centiToDegrees(centi[i]), batchAngles.get(i), 0f);
+        }
+        assertEquals(Collections.singletonList(12.34f), positions);
+        assertEquals(1, decoder.getMalformedCount());
+        assertEquals(1, decoder.getBatchCount());
+        assertEquals(centi.length, decoder.getBatchSampleCount());
+    }
+}
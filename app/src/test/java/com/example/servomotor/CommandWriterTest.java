@@ -0,0 +1,178 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CommandWriterTest {
+
+    @Test
+    public void encodeAngle_matchesTextProtocol() {
+        byte[] buffer = new byte[CommandWriter.MAX_ANGLE_COMMAND_LENGTH];
+        for (int angle : new int[]{0, 7, 45, 90, 180, -15, Integer.MAX_VALUE}) {
+            int length = CommandWriter.encodeAngle(angle, buffer, 0);
+            assertEquals("ANGLE:" + angle + "\n", new String(buffer, 0, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void latestAngleWins_whileWriterIsBusy() throws Exception {
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        // El primer write se bloquea para simular un socket lento
+        OutputStream slowStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+                sink.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                firstWrite.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                sink.write(b, off, len);
+            }
+        };
+
+        CommandWriter writer = new CommandWriter(slowStream, null);
+        writer.start();
+        writer.submitAngle(10);
+        assertTrue(firstWrite.await(2, TimeUnit.SECONDS));
+
+        for (int angle = 11; angle <= 100; angle++) {
+            writer.submitAngle(angle);
+        }
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (writer.getSentCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        writer.stop();
+
+        assertEquals(2, writer.getSentCount());
+        assertEquals(89, writer.getCoalescedCount());
+        assertEquals("ANGLE:10\nANGLE:100\n", sink.toString("US-ASCII"));
+    }
+
+    @Test
+    public void backlogIsBounded() {
+        CommandWriter writer = new CommandWriter(new ByteArrayOutputStream(), null, 2);
+        // Sin arrancar el hilo la cola no se vacía
+        assertTrue(writer.submitFrame(new byte[]{1}));
+        assertTrue(writer.submitFrame(new byte[]{2}));
+        assertFalse(writer.submitFrame(new byte[]{3}));
+        assertEquals(1, writer.getDroppedCount());
+        assertEquals(2, writer.getBacklogSize());
+    }
+
+    @Test
+    public void tokenBucket_refillsAtRateUpToBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long now = 1_000_000_000L;
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+        // Una ficha cada 100 ms
+        assertEquals(100_000_000L, bucket.nanosUntilAvailable(now));
+        assertTrue(bucket.tryAcquire(now + 100_000_000L));
+        // Tras un segundo quieto no se acumulan más de 2
+        now += 1_100_000_000L;
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+    }
+
+    @Test
+    public void rateLimiter_mergesAnglesAndSendsLatest() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        CommandWriter writer = new CommandWriter(sink, null);
+        writer.setRateLimiter(new TokenBucket(20, 1));
+        writer.start();
+
+        // 50 ángulos en unos 100 ms, a 20 por segundo salen 3 o 4
+        for (int angle = 1; angle <= 50; angle++) {
+            writer.submitAngle(angle);
+            Thread.sleep(2);
+        }
+        long deadline = System.currentTimeMillis() + 2000;
+        while (writer.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        writer.stop();
+
+        String sent = sink.toString("US-ASCII");
+        assertTrue(sent.endsWith("ANGLE:50\n"));
+        assertTrue(writer.getSentAngleCount() <= 6);
+        assertTrue(writer.getRateLimitedCount() >= 1);
+        assertEquals(50, writer.getSentAngleCount() + writer.getCoalescedCount());
+        assertEquals(writer.getSentAngleCount(), writer.getQueueDelayHistogram().getCount());
+    }
+
+    @Test
+    public void credits_holdAnglesUntilAck() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        CommandWriter writer = new CommandWriter(sink, null);
+        writer.setCreditTimeoutNanos(TimeUnit.SECONDS.toNanos(10));
+        writer.start();
+        writer.addCredits(1);
+
+        writer.submitAngle(10);
+        waitForSent(writer, 1);
+        writer.submitAngle(11);
+        writer.submitAngle(12);
+        Thread.sleep(50);
+        // Sin crédito el 11 y el 12 se fusionan en el slot
+        assertEquals(1, writer.getSentAngleCount());
+        assertEquals(1, writer.getInFlightCount());
+        assertEquals(1, writer.getQueueDepth());
+        assertEquals(1, writer.getCreditStalledCount());
+
+        writer.onAck();
+        waitForSent(writer, 2);
+        writer.stop();
+        assertEquals("ANGLE:10\nANGLE:12\n", sink.toString("US-ASCII"));
+        assertEquals(1, writer.getInFlightCount());
+        assertEquals(0, writer.getCredits());
+    }
+
+    @Test
+    public void credits_lostAckTimesOut() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        CommandWriter writer = new CommandWriter(sink, null);
+        writer.setCreditTimeoutNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        writer.start();
+        writer.addCredits(1);
+
+        writer.submitAngle(10);
+        writer.submitAngle(20);
+        waitForSent(writer, 1);
+        writer.submitAngle(30);
+        // Nunca llega el ACK, a los 50 ms se presta un crédito
+        waitForSent(writer, 2);
+        writer.stop();
+        assertEquals(1, writer.getCreditTimeoutCount());
+        assertTrue(sink.toString("US-ASCII").endsWith("ANGLE:30\n"));
+    }
+
+    private static void waitForSent(CommandWriter writer, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (writer.getSentAngleCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(2);
+        }
+        assertEquals(count, writer.getSentAngleCount());
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConnectionStressTest {
+
+    private static class CountingListener implements ServoLink.Listener {
+        final AtomicInteger connected = new AtomicInteger();
+        final AtomicInteger disconnected = new AtomicInteger();
+
+        @Override
+        public void onConnected() {
+            connected.incrementAndGet();
+        }
+
+        @Override
+        public void onDisconnected() {
+            disconnected.incrementAndGet();
+        }
+
+        @Override
+        public void onPosition(float angle) {
+        }
+
+        @Override
+        public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+        }
+
+        @Override
+        public void onLine(String line) {
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+        }
+
+        @Override
+        public void onError(String error) {
+        }
+    }
+
+    private static class SupervisorListener extends CountingListener implements ConnectionSupervisor.Listener {
+        @Override
+        public void onStateChanged(ConnectionState state) {
+        }
+
+        @Override
+        public void onConnectFailed(Exception error, long retryDelayMillis) {
+        }
+    }
+
+    // Envuelve un extremo en memoria, cuenta los cierres y puede detener open() hasta que se le indique
+    private static class CountingTransport implements Transport {
+        final PipedTransport delegate;
+        final AtomicInteger closeCount = new AtomicInteger();
+        final CountDownLatch openEntered = new CountDownLatch(1);
+        final CountDownLatch openRelease;
+
+        CountingTransport(PipedTransport delegate, boolean holdOpen) {
+            this.delegate = delegate;
+            this.openRelease = new CountDownLatch(holdOpen ? 1 : 0);
+        }
+
+        @Override
+        public void open() throws IOException {
+            openEntered.countDown();
+            try {
+                openRelease.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrumpido");
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return delegate.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return delegate.getOutputStream();
+        }
+
+        @Override
+        public void close() {
+            closeCount.incrementAndGet();
+            delegate.close();
+        }
+
+        @Override
+        public String getName() {
+            return "Counting";
+        }
+    }
+
+    @Test
+    public void concurrentDisconnectNotifiesOnce() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            CountingTransport transport = new CountingTransport(PipedTransport.createPair()[0], false);
+            CountingListener listener = new CountingListener();
+            ServoLink link = new ServoLink(transport, listener);
+            link.setBinaryProtocolEnabled(false);
+            link.connect();
+
+            int threads = 8;
+            CountDownLatch go = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int i = 0; i < threads; i++) {
+                new Thread(() -> {
+                    try {
+                        go.await();
+                        link.disconnect();
+                    } catch (InterruptedException ignored) {
+                    }
+                    done.countDown();
+                }).start();
+            }
+            go.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            assertEquals(1, listener.disconnected.get());
+            assertEquals(1, transport.closeCount.get());
+            assertEquals(ServoLink.State.CLOSED, link.getState());
+        }
+    }
+
+    @Test
+    public void disconnectWhileOpeningCancelsConnect() throws Exception {
+        CountingTransport transport = new CountingTransport(PipedTransport.createPair()[0], true);
+        CountingListener listener = new CountingListener();
+        ServoLink link = new ServoLink(transport, listener);
+        link.setBinaryProtocolEnabled(false);
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread connector = new Thread(() -> {
+            try {
+                link.connect();
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        connector.start();
+
+        assertTrue(transport.openEntered.await(5, TimeUnit.SECONDS));
+        link.disconnect();
+        // open() termina con éxito después de la cancelación, connect() no debe dar el enlace por conectado
+        transport.openRelease.countDown();
+        connector.join(5000);
+
+        assertTrue(failure.get() instanceof IOException);
+        assertEquals(0, listener.connected.get());
+        assertEquals(0, listener.disconnected.get());
+        assertFalse(link.isConnected());
+    }
+
+    @Test
+    public void randomStartStopLeavesNoOpenLinks() throws Exception {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(4);
+        List<CountingTransport> transports = new CopyOnWriteArrayList<>();
+        List<ServoLink> links = new CopyOnWriteArrayList<>();
+        SupervisorListener listener = new SupervisorListener();
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(linkListener -> {
+            CountingTransport transport = new CountingTransport(PipedTransport.createPair()[0], false);
+            ServoLink link = new ServoLink(transport, linkListener, executor);
+            link.setBinaryProtocolEnabled(false);
+            synchronized (links) {
+                transports.add(transport);
+                links.add(link);
+            }
+            return link;
+        }, listener, new ReconnectPolicy(1, 5, 50, new Random(3)), executor);
+
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            long seed = i;
+            new Thread(() -> {
+                Random random = new Random(seed);
+                for (int j = 0; j < 300; j++) {
+                    if (random.nextBoolean()) {
+                        supervisor.start();
+                    } else {
+                        supervisor.stop();
+                    }
+                    if (random.nextInt(8) == 0) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        supervisor.stop();
+        assertEquals(ConnectionState.IDLE, supervisor.getState());
+
+        // Los intentos que ya estaban en curso terminan solos y deben cerrar su enlace
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        boolean allClosed = false;
+        while (!allClosed && System.nanoTime() < deadline) {
+            allClosed = true;
+            for (ServoLink link : links) {
+                if (link.getState() != ServoLink.State.CLOSED && link.getState() != ServoLink.State.NEW) {
+                    allClosed = false;
+                }
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(allClosed);
+        assertEquals(ConnectionState.IDLE, supervisor.getState());
+        assertNull(supervisor.getCurrentLink());
+        assertTrue(listener.disconnected.get() <= listener.connected.get());
+        for (int i = 0; i < transports.size(); i++) {
+            ServoLink.State state = links.get(i).getState();
+            if (state == ServoLink.State.CLOSED) {
+                assertTrue(transports.get(i).closeCount.get() >= 1);
+            }
+        }
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConnectionSupervisorTest {
+
+    private static class RecordingListener implements ConnectionSupervisor.Listener {
+        final BlockingQueue<ConnectionState> states = new LinkedBlockingQueue<>();
+        final AtomicInteger connected = new AtomicInteger();
+        volatile long lastRetryDelay = Long.MIN_VALUE;
+        final CountDownLatch gaveUp = new CountDownLatch(1);
+
+        @Override
+        public void onStateChanged(ConnectionState state) {
+            states.add(state);
+        }
+
+        @Override
+        public void onConnectFailed(Exception error, long retryDelayMillis) {
+            lastRetryDelay = retryDelayMillis;
+            if (retryDelayMillis < 0) {
+                gaveUp.countDown();
+            }
+        }
+
+        @Override
+        public void onConnected() {
+            connected.incrementAndGet();
+        }
+
+        @Override
+        public void onDisconnected() {
+        }
+
+        @Override
+        public void onPosition(float angle) {
+        }
+
+        @Override
+        public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+        }
+
+        @Override
+        public void onLine(String line) {
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+        }
+
+        @Override
+        public void onError(String error) {
+        }
+
+        void awaitState(ConnectionState expected) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < deadline) {
+                ConnectionState state = states.poll(100, TimeUnit.MILLISECONDS);
+                if (state == expected) return;
+            }
+            fail("No se llegó al estado " + expected);
+        }
+    }
+
+    // Un transporte cuyo open() no termina hasta que lo cierran, como un RFCOMM sin respuesta
+    private static class HangingTransport implements Transport {
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void open() throws IOException {
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Socket cerrado");
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        @Override
+        public String getName() {
+            return "Hanging";
+        }
+    }
+
+    private static ReconnectPolicy fastPolicy() {
+        return new ReconnectPolicy(5, 20, 50, new Random(11));
+    }
+
+    @Test
+    public void reconnectsAutomaticallyAfterLinkLoss() throws Exception {
+        BlockingQueue<PipedTransport> deviceEnds = new LinkedBlockingQueue<>();
+        RecordingListener listener = new RecordingListener();
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(linkListener -> {
+            PipedTransport[] pair = PipedTransport.createPair();
+            deviceEnds.add(pair[1]);
+            ServoLink link = new ServoLink(pair[0], linkListener);
+            link.setBinaryProtocolEnabled(false);
+            return link;
+        }, listener, fastPolicy());
+
+        supervisor.start();
+        listener.awaitState(ConnectionState.CONNECTED);
+
+        // La ESP32 se apaga: el supervisor reconecta sin intervención
+        deviceEnds.take().close();
+        listener.awaitState(ConnectionState.RECONNECTING);
+        listener.awaitState(ConnectionState.CONNECTED);
+
+        // onConnected se reenvía justo después del cambio de estado
+        long deadline = System.currentTimeMillis() + 2000;
+        while (listener.connected.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(2, listener.connected.get());
+        assertEquals(1, supervisor.getLinkLossCount());
+        assertEquals(2, supervisor.getConnectTimeHistogram().getCount());
+        assertEquals(1, supervisor.getRecoveryTimeHistogram().getCount());
+        assertTrue(supervisor.getCurrentLink().isConnected());
+
+        supervisor.shutdown();
+        assertEquals(ConnectionState.IDLE, supervisor.getState());
+    }
+
+    @Test
+    public void hangingConnectTimesOutAndGivesUp() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(
+                linkListener -> new ServoLink(new HangingTransport(), linkListener), listener, fastPolicy());
+        supervisor.setConnectTimeoutMillis(50);
+
+        supervisor.start();
+        assertTrue(listener.gaveUp.await(5, TimeUnit.SECONDS));
+
+        assertEquals(ConnectionSupervisor.INITIAL_CONNECT_ATTEMPTS, supervisor.getAttemptCount());
+        assertEquals(ConnectionSupervisor.INITIAL_CONNECT_ATTEMPTS, supervisor.getTimeoutCount());
+        assertEquals(ConnectionState.IDLE, supervisor.getState());
+        assertFalse(supervisor.isActive());
+        supervisor.shutdown();
+    }
+
+    @Test
+    public void stopCancelsPendingConnect() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(
+                linkListener -> new ServoLink(new HangingTransport(), linkListener), listener, fastPolicy());
+        supervisor.setConnectTimeoutMillis(60_000);
+
+        supervisor.start();
+        listener.awaitState(ConnectionState.CONNECTING);
+        while (supervisor.getCurrentLink() == null) {
+            Thread.sleep(1);
+        }
+
+        supervisor.stop();
+        assertEquals(ConnectionState.IDLE, supervisor.getState());
+        // El intento cancelado no cuenta como fallo ni agenda otro
+        Thread.sleep(100);
+        assertEquals(0, supervisor.getFailureCount());
+        assertEquals(1, supervisor.getAttemptCount());
+        supervisor.shutdown();
+    }
+
+    @Test
+    public void stopWhileConnectReturnsDoesNotReportConnected() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ConnectionSupervisor[] holder = new ConnectionSupervisor[1];
+        CountDownLatch linkConnected = new CountDownLatch(1);
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(linkListener -> {
+            PipedTransport[] pair = PipedTransport.createPair();
+            // stop() gana justo cuando el transporte ya abrió y connect() está por avisar
+            ServoLink link = new ServoLink(pair[0], new ServoLink.Listener() {
+                @Override
+                public void onConnected() {
+                    holder[0].stop();
+                    linkListener.onConnected();
+                    linkConnected.countDown();
+                }
+
+                @Override
+                public void onDisconnected() {
+                    linkListener.onDisconnected();
+                }
+
+                @Override
+                public void onPosition(float angle) {
+                }
+
+                @Override
+                public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+                }
+
+                @Override
+                public void onLine(String line) {
+                }
+
+                @Override
+                public void onBinaryNegotiated(int version) {
+                }
+
+                @Override
+                public void onError(String error) {
+                }
+            });
+            link.setBinaryProtocolEnabled(false);
+            return link;
+        }, listener, fastPolicy());
+        holder[0] = supervisor;
+
+        supervisor.start();
+        assertTrue(linkConnected.await(5, TimeUnit.SECONDS));
+
+        assertEquals(0, listener.connected.get());
+        assertFalse(listener.states.contains(ConnectionState.CONNECTED));
+        assertEquals(ConnectionState.IDLE, supervisor.getState());
+        assertEquals(0, supervisor.getConnectTimeHistogram().getCount());
+        supervisor.shutdown();
+    }
+}
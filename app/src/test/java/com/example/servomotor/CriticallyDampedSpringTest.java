@@ -0,0 +1,74 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CriticallyDampedSpringTest {
+    private static final long MS = 1_000_000L;
+
+    private static float runFor(CriticallyDampedSpring spring, long totalMs, long frameNanos) {
+        long elapsed = 0;
+        while (elapsed + frameNanos <= totalMs * MS) {
+            spring.step(frameNanos);
+            elapsed += frameNanos;
+        }
+        return spring.getValue();
+    }
+
+    @Test
+    public void positionDoesNotDependOnFrameRate() {
+        CriticallyDampedSpring at60 = new CriticallyDampedSpring(0);
+        CriticallyDampedSpring at120 = new CriticallyDampedSpring(0);
+        at60.setTarget(180);
+        at120.setTarget(180);
+
+        // 100 ms en cuadros de 60 Hz y de 120 Hz (sin redondeos de por medio)
+        float value60 = runFor(at60, 100, 100 * MS / 6);
+        float value120 = runFor(at120, 100, 100 * MS / 12);
+
+        assertEquals(value60, value120, 0.01f);
+        assertTrue(value60 > 0 && value60 < 180);
+    }
+
+    @Test
+    public void neverOvershootsAndSettlesExactly() {
+        CriticallyDampedSpring spring = new CriticallyDampedSpring(0);
+        spring.setTarget(90);
+
+        boolean settled = false;
+        for (int frame = 0; frame < 600 && !settled; frame++) {
+            settled = spring.step(16 * MS);
+            assertTrue(spring.getValue() <= 90f);
+        }
+        assertTrue(settled);
+        assertEquals(90f, spring.getValue(), 0f);
+        assertEquals(0f, spring.getVelocity(), 0f);
+    }
+
+    @Test
+    public void retargetKeepsPositionAndVelocity() {
+        CriticallyDampedSpring spring = new CriticallyDampedSpring(0);
+        spring.setTarget(180);
+        runFor(spring, 80, 16 * MS);
+
+        float value = spring.getValue();
+        float velocity = spring.getVelocity();
+        spring.setTarget(20);
+        assertEquals(value, spring.getValue(), 0f);
+        assertEquals(velocity, spring.getVelocity(), 0f);
+
+        // Un paso muy corto después del cambio casi no mueve la aguja
+        spring.step(MS / 10);
+        assertEquals(value, spring.getValue(), 0.1f);
+    }
+
+    @Test
+    public void settleTimeIsHonored() {
+        CriticallyDampedSpring spring = new CriticallyDampedSpring(0);
+        spring.setSettleTimeMs(200);
+        spring.setTarget(100);
+        runFor(spring, 200, MS);
+        assertEquals(100f, spring.getValue(), 1.5f);
+    }
+}
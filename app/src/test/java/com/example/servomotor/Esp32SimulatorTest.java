@@ -0,0 +1,216 @@
+package com.example.servomotor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class Esp32SimulatorTest {
+    private final Esp32Simulator simulator = new Esp32Simulator(42, 90f);
+    private ServoLink link;
+
+    private final AtomicLong positions = new AtomicLong();
+    private volatile float lastPosition = Float.NaN;
+    private final AtomicInteger negotiatedVersion = new AtomicInteger(-1);
+    private final CountDownLatch disconnected = new CountDownLatch(1);
+
+    private final ServoLink.Listener listener = new ServoLink.Listener() {
+        @Override
+        public void onConnected() {
+        }
+
+        @Override
+        public void onDisconnected() {
+            disconnected.countDown();
+        }
+
+        @Override
+        public void onPosition(float angle) {
+            lastPosition = angle;
+            positions.incrementAndGet();
+        }
+
+        @Override
+        public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+            for (int i = 0; i < count; i++) {
+                onPosition(angles[i]);
+            }
+        }
+
+        @Override
+        public void onLine(String line) {
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+            negotiatedVersion.set(version);
+        }
+
+        @Override
+        public void onError(String error) {
+        }
+    };
+
+    @After
+    public void tearDown() {
+        if (link != null) {
+            link.disconnect();
+        }
+        simulator.stop();
+    }
+
+    private ServoLink connect(Transport transport, boolean binary) throws Exception {
+        link = new ServoLink(transport, listener);
+        link.setBinaryProtocolEnabled(binary);
+        link.connect();
+        return link;
+    }
+
+    private static void waitUntil(long timeoutMillis, Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.met() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    @Test
+    public void servoFollowsCommandAtSlewRate() throws Exception {
+        simulator.setNoise(0f);
+        simulator.setDeadband(0f);
+        simulator.setTelemetryHz(200);
+        simulator.setSlewRate(300f);
+        simulator.start();
+        connect(simulator.connectPiped(), false);
+
+        long start = System.nanoTime();
+        link.sendAngle(180);
+        waitUntil(2000, () -> simulator.getPosition() >= 180f);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 90° a 300°/s son 300 ms
+        assertEquals(180f, simulator.getPosition(), 0.01f);
+        assertTrue("tardó " + elapsedMillis + " ms", elapsedMillis >= 280 && elapsedMillis < 1000);
+        waitUntil(1000, () -> lastPosition == 180f);
+        assertEquals(180f, lastPosition, 0f);
+        assertEquals(1, simulator.getCommandCount());
+
+        // Dentro de la banda muerta no se mueve
+        link.sendAngle(180);
+        simulator.setDeadband(2f);
+        link.sendAngle(179);
+        waitUntil(1000, () -> simulator.getCommandCount() == 3);
+        Thread.sleep(50);
+        assertEquals(180f, simulator.getPosition(), 0.01f);
+    }
+
+    @Test
+    public void binaryCreditsAndImpairedLinkAtHighRate() throws Exception {
+        simulator.setTelemetryHz(2000);
+        simulator.setBinarySupported(true);
+        simulator.setCreditWindow(4);
+        simulator.setLinkLatency(5, 5);
+        simulator.setSplitProbability(0.3f);
+        simulator.setMergeWindowMicros(500);
+        simulator.setDropProbability(0.05f);
+        simulator.start();
+        connect(simulator.connectPiped(), true);
+
+        waitUntil(2000, () -> negotiatedVersion.get() == BinaryProtocol.VERSION);
+        assertEquals(BinaryProtocol.VERSION, negotiatedVersion.get());
+
+        for (int angle = 0; angle <= 100; angle++) {
+            link.sendAngle(angle);
+            Thread.sleep(1);
+        }
+        waitUntil(3000, () -> simulator.getTarget() == 100f);
+        assertEquals(100f, simulator.getTarget(), 0f);
+
+        long before = positions.get();
+        Thread.sleep(500);
+        long received = positions.get() - before;
+        // Unas 950 por medio segundo (2 kHz con 5% perdidas), con margen para una máquina de CI cargada
+        assertTrue("recibidas " + received, received > 300);
+        assertEquals(0, link.getProtocolDecoder().getMalformedCount());
+        assertTrue(simulator.getWriteCount() < simulator.getSampleCount() + 10 * simulator.getCommandCount());
+        assertTrue(simulator.getDroppedSampleCount() > 0);
+
+        CommandWriter writer = link.getCommandWriter();
+        assertTrue(writer.isCreditFlowControlActive());
+        assertEquals(writer.getSentAngleCount(), simulator.getCommandCount());
+    }
+
+    @Test
+    public void batchTelemetryAtHighRate() throws Exception {
+        simulator.setTelemetryHz(5000);
+        simulator.setBinarySupported(true);
+        simulator.setBatchTelemetry(32);
+        simulator.setLinkLatency(5, 5);
+        simulator.setSplitProbability(0.3f);
+        simulator.setDropProbability(0.05f);
+        simulator.start();
+        TelemetryStore store = new TelemetryStore(4096);
+        link = new ServoLink(simulator.connectPiped(), listener);
+        link.setTelemetryStore(store);
+        link.connect();
+
+        waitUntil(2000, () -> link.isBatchTelemetryActive());
+        assertTrue(link.isBatchTelemetryActive());
+        Thread.sleep(100);
+        long positionsBefore = positions.get();
+        long bytesBefore = simulator.getBytesSent();
+        long samplesBefore = simulator.getSampleCount();
+        Thread.sleep(500);
+        long received = positions.get() - positionsBefore;
+        double bytesPerSample = (double) (simulator.getBytesSent() - bytesBefore) / (simulator.getSampleCount() - samplesBefore);
+
+        // Unas 2400 por medio segundo, con margen para una máquina de CI cargada
+        assertTrue("recibidas " + received, received > 800);
+        // Con ruido de 0.2° cada muestra ocupa 1 o 2 bytes, contra 6 de una trama POSITION
+        assertTrue("bytes por muestra " + bytesPerSample, bytesPerSample < 3);
+        assertEquals(0, link.getProtocolDecoder().getMalformedCount());
+        assertTrue(link.getProtocolDecoder().getBatchCount() > 0);
+        assertTrue(link.getLostBatchSampleCount() > 0);
+
+        // Cada muestra con su propio tiempo, en orden y separadas por el periodo dentro de un lote
+        long[] timestamps = new long[store.getCapacity() / 2];
+        float[] values = new float[timestamps.length];
+        int count = store.snapshot(timestamps, values);
+        int periodSteps = 0;
+        for (int i = 1; i < count; i++) {
+            long step = timestamps[i] - timestamps[i - 1];
+            assertTrue("muestra " + i + " retrocede " + step, step >= 0);
+            if (step == 200_000L) periodSteps++;
+        }
+        assertTrue("pasos de 200 µs " + periodSteps + " de " + count, periodSteps > count / 2);
+    }
+
+    @Test
+    public void dropoutAndTcpReconnect() throws Exception {
+        simulator.setTelemetryHz(100);
+        simulator.start();
+        int port = simulator.listen(0);
+        connect(new TcpTransport("127.0.0.1", port), false);
+        waitUntil(1000, () -> positions.get() > 5);
+        assertTrue(positions.get() > 5);
+
+        simulator.dropConnection();
+        assertTrue(disconnected.await(2, TimeUnit.SECONDS));
+
+        // El servo conserva su estado entre conexiones
+        link = new ServoLink(new TcpTransport("127.0.0.1", port), listener);
+        link.connect();
+        link.sendAngle(45);
+        waitUntil(2000, () -> lastPosition <= 46f);
+        assertEquals(45f, lastPosition, 1f);
+        assertEquals(2, simulator.getConnectionCount());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithBoundedError() {
+        long previousUpper = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long upper = LatencyHistogram.bucketUpperMicros(i);
+            assertTrue(upper > previousUpper);
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            assertEquals(i, LatencyHistogram.bucketIndex(previousUpper + 1));
+            // El ancho de la cubeta no pasa de 1/8 de su límite inferior
+            assertTrue(upper - previousUpper - 1 <= Math.max(0, (previousUpper + 1) / 8));
+            previousUpper = upper;
+        }
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_MICROS, previousUpper);
+    }
+
+    @Test
+    public void percentilesOfUniformDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms a 100 ms
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.recordNanos(ms * 1_000_000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000, histogram.getMaxMicros());
+        assertEquals(50_500, histogram.getMeanMicros(), 1);
+        assertEquals(50_000, histogram.getPercentileMicros(50), 50_000 / 8.0);
+        assertEquals(90_000, histogram.getPercentileMicros(90), 90_000 / 8.0);
+        assertEquals(99_000, histogram.getPercentileMicros(99), 99_000 / 8.0);
+        assertEquals(100_000, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(-5);
+        histogram.recordMicros(Long.MAX_VALUE / 2);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(1, histogram.getBucketSamples(0));
+        assertEquals(1, histogram.getBucketSamples(LatencyHistogram.BUCKET_COUNT - 1));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(99));
+        assertEquals("upper_us,count\n", histogram.toCsv());
+    }
+
+    @Test
+    public void trackerMatchesCommandWithTelemetry() {
+        LatencyTracker tracker = new LatencyTracker(new LatencyHistogram());
+        tracker.onTelemetry(0, 90);
+
+        // Comando a 120°, la posición llega a la tolerancia 40 ms después
+        tracker.onCommand(1_000_000, 120);
+        tracker.onTelemetry(21_000_000, 100);
+        tracker.onTelemetry(41_000_000, 119);
+        assertEquals(1, tracker.getHistogram().getCount());
+        assertEquals(40_000, tracker.getHistogram().getMaxMicros());
+
+        // Ya está en 119°: no hay nada que medir
+        tracker.onCommand(50_000_000, 120);
+        assertEquals(1, tracker.getSkippedCount());
+
+        // Un comando reemplazado por otro y uno que nunca se confirma
+        tracker.onCommand(60_000_000, 0);
+        tracker.onCommand(61_000_000, 180);
+        assertEquals(1, tracker.getSupersededCount());
+        tracker.onTelemetry(61_000_000 + LatencyTracker.DEFAULT_TIMEOUT_NANOS + 1, 150);
+        assertEquals(1, tracker.getTimedOutCount());
+        assertEquals(1, tracker.getHistogram().getCount());
+    }
+}
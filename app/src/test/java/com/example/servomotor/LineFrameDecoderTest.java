@@ -0,0 +1,78 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LineFrameDecoderTest {
+
+    private final List<Integer> positions = new ArrayList<>();
+    private final List<String> lines = new ArrayList<>();
+
+    private final LineFrameDecoder decoder = new LineFrameDecoder(new LineFrameDecoder.Listener() {
+        @Override
+        public void onPosition(int angle) {
+            positions.add(angle);
+        }
+
+        @Override
+        public void onLine(byte[] buffer, int offset, int length) {
+            lines.add(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+        }
+    });
+
+    private void feed(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void lineSplitAcrossReads_isReassembled() {
+        feed("POSI");
+        feed("TION:1");
+        feed("23\r\n");
+        assertEquals(1, positions.size());
+        assertEquals(123, (int) positions.get(0));
+    }
+
+    @Test
+    public void severalLinesInOneRead_areSeparated() {
+        feed("POSITION:10\nPOSITION:20\nREADY\nPOSITION:30\n");
+        assertEquals(3, positions.size());
+        assertEquals(30, (int) positions.get(2));
+        assertEquals(1, lines.size());
+        assertEquals("READY", lines.get(0));
+        assertEquals(4, decoder.getFrameCount());
+    }
+
+    @Test
+    public void malformedFrames_areCounted() {
+        feed("POSITION:\nPOSITION:12a\nPOSITION:99999999999\nPOSITION: -5\n");
+        assertEquals(1, positions.size());
+        assertEquals(-5, (int) positions.get(0));
+        assertEquals(3, decoder.getMalformedCount());
+    }
+
+    @Test
+    public void overlongLine_isDiscardedUntilNewline() {
+        LineFrameDecoder small = new LineFrameDecoder(new LineFrameDecoder.Listener() {
+            @Override
+            public void onPosition(int angle) {
+                positions.add(angle);
+            }
+
+            @Override
+            public void onLine(byte[] buffer, int offset, int length) {
+                fail("No debería entregar líneas truncadas");
+            }
+        }, 16);
+        byte[] bytes = "XXXXXXXXXXXXXXXXXXXXXXXXXXX\nPOSITION:7\n".getBytes(StandardCharsets.US_ASCII);
+        small.feed(bytes, 0, bytes.length);
+        assertEquals(1, small.getMalformedCount());
+        assertEquals(7, (int) positions.get(0));
+    }
+}
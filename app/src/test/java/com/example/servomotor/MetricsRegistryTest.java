@@ -0,0 +1,133 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void countersFromManyThreadsAndRates() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("link.bytes_in");
+        assertSame(counter, registry.counter("link.bytes_in"));
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                MetricsRegistry.Counter shared = registry.counter("link.bytes_in");
+                for (int i = 0; i < 100_000; i++) shared.increment();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(400_000, registry.getCount("link.bytes_in"));
+
+        // La tasa cuenta desde su creación y no se recalcula antes del intervalo mínimo
+        long start = System.nanoTime();
+        MetricsRegistry.Rate rate = registry.rate("link.bytes_in");
+        counter.add(500);
+        assertEquals(0, rate.sample(start + MetricsRegistry.MIN_RATE_INTERVAL_NANOS / 2), 0);
+        assertEquals(500, rate.sample(start + SECOND), 500 * 0.05);
+        counter.add(2000);
+        assertEquals(1000, rate.sample(start + 3 * SECOND), 1);
+
+        registry.reset();
+        assertEquals(0, counter.get());
+        assertEquals(0, rate.get(), 0);
+    }
+
+    @Test
+    public void jsonDumpIsOrderedAndEscaped() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("link.frames_out").add(3);
+        registry.counter("link.bytes_out").add(18);
+        int[] depth = {2};
+        registry.gauge("link.queue_depth", () -> depth[0]);
+        registry.gauge("raro\"nombre", () -> -1);
+        assertEquals(2, registry.readGauge("link.queue_depth"));
+        assertEquals(Long.MIN_VALUE, registry.readGauge("no.existe"));
+
+        String json = registry.toJson(System.nanoTime());
+        assertTrue(json, json.startsWith("{\"uptime_ms\":"));
+        assertTrue(json, json.endsWith(",\"counters\":{\"link.bytes_out\":18,\"link.frames_out\":3},"
+                + "\"gauges\":{\"link.queue_depth\":2,\"raro\\\"nombre\":-1},\"rates\":{}}"));
+
+        // El indicador se lee en cada consulta
+        depth[0] = 7;
+        assertTrue(registry.summary(System.nanoTime()).contains("link.queue_depth 7\n"));
+    }
+
+    @Test
+    public void linkCountsBothDirectionsAgainstSimulator() throws Exception {
+        Esp32Simulator simulator = new Esp32Simulator(9, 90f);
+        simulator.setTelemetryHz(500);
+        simulator.setBinarySupported(true);
+        simulator.setBatchTelemetry(16);
+        simulator.setSplitProbability(0.3f);
+        simulator.start();
+        MetricsRegistry registry = new MetricsRegistry();
+        ServoLink link = new ServoLink(simulator.connectPiped(), new ServoLink.Listener() {
+            @Override
+            public void onConnected() {
+            }
+
+            @Override
+            public void onDisconnected() {
+            }
+
+            @Override
+            public void onPosition(float angle) {
+            }
+
+            @Override
+            public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+            }
+
+            @Override
+            public void onLine(String line) {
+            }
+
+            @Override
+            public void onBinaryNegotiated(int version) {
+            }
+
+            @Override
+            public void onError(String error) {
+            }
+        });
+        link.setMetricsRegistry(registry);
+        try {
+            link.connect();
+            long deadline = System.currentTimeMillis() + 2000;
+            while (!link.isBatchTelemetryActive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            link.sendAngle(120);
+            Thread.sleep(300);
+
+            // Con el enlace congelado no sale nada más y la app termina de leer lo enviado
+            simulator.stall(2000);
+            Thread.sleep(50);
+            deadline = System.currentTimeMillis() + 1000;
+            while (registry.getCount(ServoLink.METRIC_BYTES_IN) != simulator.getBytesSent()
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(simulator.getBytesSent(), registry.getCount(ServoLink.METRIC_BYTES_IN));
+        } finally {
+            simulator.stop();
+            link.disconnect();
+        }
+
+        // HELLO:1 en texto, la trama FEATURES y el ANGLE binario
+        assertEquals(3, registry.getCount(CommandWriter.METRIC_FRAMES_OUT));
+        assertEquals(BinaryProtocol.HELLO_LINE.length + 2 * BinaryProtocol.FRAME_SIZE,
+                registry.getCount(CommandWriter.METRIC_BYTES_OUT));
+        long wakeups = registry.getCount(ServoLink.METRIC_READ_WAKEUPS);
+        assertTrue("lecturas " + wakeups, wakeups > 0 && wakeups <= simulator.getBytesSent());
+        assertTrue(registry.getCount(ServoLink.METRIC_FRAMES_IN) > 2);
+        assertEquals(0, registry.getCount(ServoLink.METRIC_PARSE_ERRORS));
+    }
+}
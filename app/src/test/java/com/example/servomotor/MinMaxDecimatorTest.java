@@ -0,0 +1,96 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MinMaxDecimatorTest {
+    // 10 columnas de 1000 ns, la gráfica mide 100 x 100 y representa valores de 0 a 100
+    private static final int COLUMNS = 10;
+    private static final long WINDOW = 10_000;
+
+    private static int build(MinMaxDecimator decimator, long now, float[] out) {
+        decimator.update(now);
+        return decimator.buildLines(now, 0, 0, 100, 100, 0, 100, out);
+    }
+
+    @Test
+    public void keepsPeaksOfEveryColumn() {
+        TelemetryStore store = new TelemetryStore(1024);
+        // Diez muestras por columna, cada columna con un pico distinto
+        for (int column = 0; column < COLUMNS; column++) {
+            for (int i = 0; i < 10; i++) {
+                float value = i == 5 ? 10 * column : 50;
+                store.append(column * 1000L + i * 100, value);
+            }
+        }
+
+        MinMaxDecimator decimator = new MinMaxDecimator(store, false);
+        decimator.configure(COLUMNS, WINDOW);
+        float[] out = new float[MinMaxDecimator.lineBufferSize(COLUMNS)];
+        int count = build(decimator, 9_999, out);
+
+        // Columna 3: segmento vertical de y(30) a y(50) en x = 35
+        boolean found = false;
+        for (int i = 0; i < count; i += 4) {
+            if (out[i] == 35 && out[i + 2] == 35 && out[i + 1] == 70 && out[i + 3] == 50) {
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void incrementalUpdateMatchesFullRescan() {
+        TelemetryStore store = new TelemetryStore(4096);
+        MinMaxDecimator incremental = new MinMaxDecimator(store, false);
+        incremental.configure(COLUMNS, WINDOW);
+        float[] outIncremental = new float[MinMaxDecimator.lineBufferSize(COLUMNS)];
+
+        long t = 0;
+        for (int frame = 0; frame < 50; frame++) {
+            for (int i = 0; i < 7; i++) {
+                store.append(t, (float) (50 + 40 * Math.sin(t / 700.0)));
+                t += 137;
+            }
+            build(incremental, t, outIncremental);
+        }
+
+        MinMaxDecimator fresh = new MinMaxDecimator(store, false);
+        fresh.configure(COLUMNS, WINDOW);
+        float[] outFresh = new float[outIncremental.length];
+
+        int countIncremental = build(incremental, t, outIncremental);
+        int countFresh = build(fresh, t, outFresh);
+        assertEquals(countFresh, countIncremental);
+        assertArrayEquals(Arrays.copyOf(outFresh, countFresh), Arrays.copyOf(outIncremental, countIncremental), 0f);
+    }
+
+    @Test
+    public void steppedSeriesHoldsValueFromBeforeWindow() {
+        TelemetryStore store = new TelemetryStore(16);
+        store.append(0, 20);
+        store.append(50_000, 80);
+
+        MinMaxDecimator decimator = new MinMaxDecimator(store, true);
+        decimator.configure(COLUMNS, WINDOW);
+        float[] out = new float[MinMaxDecimator.lineBufferSize(COLUMNS)];
+
+        // Ventana [45000, 55000): arranca en 20 y sube a 80 en x = 55
+        int count = build(decimator, 54_999, out);
+        assertArrayEquals(new float[]{
+                0, 80, 55, 80,
+                55, 80, 55, 20,
+                55, 20, 100, 20
+        }, Arrays.copyOf(out, count), 0f);
+    }
+
+    @Test
+    public void emptyStoreDrawsNothing() {
+        MinMaxDecimator decimator = new MinMaxDecimator(new TelemetryStore(16), true);
+        decimator.configure(COLUMNS, WINDOW);
+        assertEquals(0, build(decimator, 1_000_000, new float[MinMaxDecimator.lineBufferSize(COLUMNS)]));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MotionProfileTest {
+
+    @Test
+    public void trapezoidReachesCruiseVelocity() {
+        // 180°/s con 720°/s²: 0.25 s de rampa (22.5°) en cada extremo y 135° a velocidad constante
+        MotionProfile profile = new MotionProfile(MotionProfile.Shape.TRAPEZOIDAL, 0, 180, 180, 720);
+        assertEquals(0.25 + 0.75 + 0.25, profile.getDurationSeconds(), 1e-9);
+        assertEquals(180, profile.getPeakVelocity(), 1e-9);
+        assertEquals(22.5f, profile.positionAt(0.25), 1e-3f);
+        assertEquals(90f, profile.positionAt(0.625), 1e-3f);
+        assertEquals(180f, profile.velocityAt(0.5), 1e-3f);
+        assertEquals(180f, profile.positionAt(10), 0f);
+    }
+
+    @Test
+    public void shortMoveIsTriangular() {
+        MotionProfile profile = new MotionProfile(MotionProfile.Shape.TRAPEZOIDAL, 90, 80, 180, 720);
+        // 10° no alcanzan para llegar a 180°/s: pico de sqrt(10 * 720)
+        assertEquals(Math.sqrt(7200), profile.getPeakVelocity(), 1e-9);
+        assertEquals(85f, profile.positionAt(profile.getDurationSeconds() / 2), 1e-3f);
+        assertTrue(profile.velocityAt(0.05) < 0);
+    }
+
+    @Test
+    public void sCurveIsSmoothAndRespectsLimits() {
+        MotionProfile profile = new MotionProfile(MotionProfile.Shape.S_CURVE, 0, 135, 180, 720);
+        double duration = profile.getDurationSeconds();
+        double dt = 1e-4;
+        float previous = profile.positionAt(0);
+        double previousVelocity = 0;
+        for (double t = dt; t <= duration; t += dt) {
+            float position = profile.positionAt(t);
+            double velocity = profile.velocityAt(t);
+            assertTrue(position >= previous - 1e-4f);
+            assertTrue(velocity <= 180 + 1e-3);
+            // La aceleración discreta nunca pasa del límite, ni siquiera en los cambios de fase
+            assertTrue(Math.abs(velocity - previousVelocity) / dt <= 720 + 1);
+            previous = position;
+            previousVelocity = velocity;
+        }
+        assertEquals(0f, profile.velocityAt(1e-6), 1e-3f);
+        assertEquals(135f, profile.positionAt(duration), 0f);
+    }
+
+    @Test
+    public void streamerEndsExactlyOnTarget() throws Exception {
+        List<Float> setpoints = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        MotionProfile profile = new MotionProfile(MotionProfile.Shape.S_CURVE, 0, 45, 360, 1440);
+        SetpointStreamer streamer = new SetpointStreamer(angle -> {
+            synchronized (setpoints) {
+                setpoints.add(angle);
+            }
+            if (angle == 45f) {
+                done.countDown();
+            }
+        }, null);
+        streamer.setRateHz(200);
+        streamer.start(profile);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        synchronized (setpoints) {
+            assertEquals(0f, setpoints.get(0), 0f);
+            assertEquals(45f, setpoints.get(setpoints.size() - 1), 0f);
+            for (int i = 1; i < setpoints.size(); i++) {
+                assertTrue(setpoints.get(i) >= setpoints.get(i - 1));
+            }
+            // Un punto por periodo más el final, menos los plazos perdidos
+            long expected = (long) Math.ceil(profile.getDurationSeconds() * 200) + 1;
+            assertEquals(expected, setpoints.size() + streamer.getMissedDeadlineCount());
+        }
+        // El último punto llega al sink antes de que el hilo marque el movimiento como terminado
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (streamer.isMoving() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, streamer.getCompletedCount());
+        assertFalse(streamer.isMoving());
+    }
+
+    @Test
+    public void newMoveReplacesRunningOne() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        SetpointStreamer streamer = new SetpointStreamer(angle -> {
+            if (angle == -30f) {
+                done.countDown();
+            }
+        }, null);
+        streamer.setRateHz(100);
+        streamer.start(new MotionProfile(MotionProfile.Shape.TRAPEZOIDAL, 0, 180, 10, 10));
+        Thread.sleep(50);
+        streamer.start(new MotionProfile(MotionProfile.Shape.TRAPEZOIDAL, streamer.getLastSetpoint(), -30, 720, 7200));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, streamer.getCancelledCount());
+        assertEquals(1, streamer.getCompletedCount());
+    }
+}
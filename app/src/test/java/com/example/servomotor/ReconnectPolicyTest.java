@@ -0,0 +1,45 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReconnectPolicyTest {
+
+    @Test
+    public void delaysGrowExponentiallyWithinJitterBounds() {
+        ReconnectPolicy policy = new ReconnectPolicy(100, 1600, 10, new Random(1));
+        long expected = 100;
+        for (int i = 0; i < 8; i++) {
+            long delay = policy.nextDelayMillis();
+            long cap = Math.min(1600, expected);
+            assertTrue(delay >= cap / 2);
+            assertTrue(delay <= cap);
+            expected *= 2;
+        }
+    }
+
+    @Test
+    public void stopsAfterMaxAttemptsAndResets() {
+        ReconnectPolicy policy = new ReconnectPolicy(10, 100, 3, new Random(7));
+        assertTrue(policy.nextDelayMillis() >= 0);
+        assertTrue(policy.nextDelayMillis() >= 0);
+        assertTrue(policy.nextDelayMillis() >= 0);
+        assertEquals(-1, policy.nextDelayMillis());
+
+        policy.reset();
+        assertEquals(0, policy.getAttempt());
+        assertTrue(policy.nextDelayMillis() <= 10);
+    }
+
+    @Test
+    public void manyAttemptsDoNotOverflow() {
+        ReconnectPolicy policy = new ReconnectPolicy(1, 5000, Integer.MAX_VALUE, new Random(3));
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.nextDelayMillis();
+            assertTrue(delay >= 0 && delay <= 5000);
+        }
+    }
+}
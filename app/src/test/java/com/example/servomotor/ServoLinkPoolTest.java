@@ -0,0 +1,146 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ServoLinkPoolTest {
+
+    private static class NoopListener implements ServoLinkPool.Listener {
+        @Override
+        public void onChannelStateChanged(String channelId, ConnectionState state) {
+        }
+
+        @Override
+        public void onChannelPosition(String channelId, float angle) {
+        }
+
+        @Override
+        public void onChannelError(String channelId, String error) {
+        }
+    }
+
+    // Hace de ESP32: cada ANGLE recibido se reporta como POSITION y se guarda para la prueba
+    private static void startEchoDevice(PipedTransport device, BlockingQueue<String> received) {
+        Thread thread = new Thread(() -> {
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(device.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream out = device.getOutputStream();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("ANGLE:")) {
+                        received.add(line);
+                        out.write(("POSITION:" + line.substring(6) + "\n").getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                    }
+                }
+            } catch (Exception ignored) {
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void awaitConnected(ServoLinkPool pool, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.getConnectedCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, pool.getConnectedCount());
+    }
+
+    @Test
+    public void fanOutReachesEveryChannel() throws Exception {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(4);
+        ServoLinkPool pool = new ServoLinkPool(executor, new NoopListener());
+        pool.setBinaryProtocolEnabled(false);
+
+        String[] ids = {"A", "B", "C"};
+        Map<String, BlockingQueue<String>> received = new ConcurrentHashMap<>();
+        for (String id : ids) {
+            BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+            received.put(id, queue);
+            pool.addChannel(id, () -> {
+                PipedTransport[] pair = PipedTransport.createPair();
+                startEchoDevice(pair[1], queue);
+                return pair[0];
+            });
+        }
+        // Dos hilos por canal sobre los cuatro base
+        assertEquals(4 + 2 * ids.length, executor.getCorePoolSize());
+
+        pool.connectAll();
+        awaitConnected(pool, ids.length);
+
+        assertEquals(3, pool.sendSynchronized(ids, new float[]{10, 20, 30}));
+        assertEquals("ANGLE:10", received.get("A").poll(5, TimeUnit.SECONDS));
+        assertEquals("ANGLE:20", received.get("B").poll(5, TimeUnit.SECONDS));
+        assertEquals("ANGLE:30", received.get("C").poll(5, TimeUnit.SECONDS));
+
+        // Cada canal guarda su propia telemetría
+        ServoLinkPool.Channel channelB = pool.getChannel("B");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (channelB.getTelemetryStore().getWriteSequence() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(20f, channelB.getTelemetryStore().getLatestValue(), 0f);
+
+        List<ServoLinkPool.ChannelStats> stats = pool.snapshotStats();
+        assertEquals(3, stats.size());
+        for (ServoLinkPool.ChannelStats channelStats : stats) {
+            assertEquals(1, channelStats.commandsSent);
+            assertEquals(ConnectionState.CONNECTED, channelStats.state);
+        }
+
+        pool.shutdown();
+        assertEquals(0, pool.getChannelCount());
+        assertEquals(4, executor.getCorePoolSize());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void disconnectedChannelIsSkipped() throws Exception {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(4);
+        ServoLinkPool pool = new ServoLinkPool(executor, new NoopListener());
+        pool.setBinaryProtocolEnabled(false);
+
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        pool.addChannel("A", () -> {
+            PipedTransport[] pair = PipedTransport.createPair();
+            startEchoDevice(pair[1], received);
+            return pair[0];
+        });
+        pool.addChannel("B", () -> PipedTransport.createPair()[0]);
+        pool.getChannel("A").getSupervisor().start();
+        awaitConnected(pool, 1);
+
+        assertEquals(1, pool.broadcastAngle(45));
+        assertEquals("ANGLE:45", received.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, pool.sendSynchronized(new String[]{"B", "Z"}, new float[]{1, 2}));
+
+        try {
+            pool.addChannel("A", () -> PipedTransport.createPair()[0]);
+            fail("Se esperaba IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertTrue(pool.removeChannel("A"));
+        assertFalse(pool.removeChannel("A"));
+        assertEquals(4 + 2, executor.getCorePoolSize());
+        pool.shutdown();
+        executor.shutdownNow();
+    }
+}
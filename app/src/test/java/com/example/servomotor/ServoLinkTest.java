@@ -0,0 +1,207 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ServoLinkTest {
+
+    private static class RecordingListener implements ServoLink.Listener {
+        final AtomicInteger positions = new AtomicInteger();
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        volatile float lastPosition = Float.NaN;
+        volatile int expected = Integer.MAX_VALUE;
+        final CountDownLatch allPositions = new CountDownLatch(1);
+
+        @Override
+        public void onConnected() {
+        }
+
+        @Override
+        public void onDisconnected() {
+            disconnected.countDown();
+        }
+
+        @Override
+        public void onPosition(float angle) {
+            lastPosition = angle;
+            if (positions.incrementAndGet() == expected) {
+                allPositions.countDown();
+            }
+        }
+
+        @Override
+        public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+            for (int i = 0; i < count; i++) {
+                onPosition(angles[i]);
+            }
+        }
+
+        @Override
+        public void onLine(String line) {
+        }
+
+        @Override
+        public void onBinaryNegotiated(int version) {
+        }
+
+        @Override
+        public void onError(String error) {
+        }
+    }
+
+    // Lee del extremo "ESP32" hasta ver el comando esperado
+    private static void readFrame(InputStream in, byte[] frame) throws IOException {
+        int read = 0;
+        while (read < frame.length) {
+            read += in.read(frame, read, frame.length - read);
+        }
+    }
+
+    private static String readUntil(InputStream in, String expectedSuffix) throws IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!received.toString("US-ASCII").endsWith(expectedSuffix)) {
+            int n = in.read(buffer);
+            if (n < 0) break;
+            received.write(buffer, 0, n);
+        }
+        return received.toString("US-ASCII");
+    }
+
+    private static void streamPositions(OutputStream out, int count) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("POSITION:").append(i % 181).append('\n');
+        }
+        out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Test
+    public void pipedTransport_sendsCommandsAndReceivesTelemetry() throws Exception {
+        PipedTransport[] pair = PipedTransport.createPair();
+        RecordingListener listener = new RecordingListener();
+        listener.expected = 10_000;
+
+        ServoLink link = new ServoLink(pair[0], listener);
+        link.setBinaryProtocolEnabled(false);
+        link.connect();
+
+        for (int angle = 0; angle <= 180; angle++) {
+            link.sendAngle(angle);
+        }
+        String received = readUntil(pair[1].getInputStream(), "ANGLE:180\n");
+        assertTrue(received.endsWith("ANGLE:180\n"));
+        assertEquals(181, link.getCommandWriter().getSentCount() + link.getCommandWriter().getCoalescedCount());
+
+        streamPositions(pair[1].getOutputStream(), 10_000);
+        assertTrue(listener.allPositions.await(5, TimeUnit.SECONDS));
+        assertEquals(9_999 % 181, listener.lastPosition, 0f);
+
+        // El otro extremo cierra: el enlace lo detecta y avisa una sola vez
+        pair[1].close();
+        assertTrue(listener.disconnected.await(2, TimeUnit.SECONDS));
+        assertFalse(link.isConnected());
+    }
+
+    @Test
+    public void tcpTransport_loopback() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            RecordingListener listener = new RecordingListener();
+            listener.expected = 5_000;
+
+            ServoLink link = new ServoLink(new TcpTransport("127.0.0.1", server.getLocalPort()), listener);
+            link.setBinaryProtocolEnabled(false);
+            link.connect();
+
+            try (Socket device = server.accept()) {
+                link.sendAngle(42);
+                assertTrue(readUntil(device.getInputStream(), "ANGLE:42\n").endsWith("ANGLE:42\n"));
+
+                streamPositions(device.getOutputStream(), 5_000);
+                assertTrue(listener.allPositions.await(5, TimeUnit.SECONDS));
+            }
+
+            link.disconnect();
+            assertTrue(listener.disconnected.await(2, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void handshake_switchesWriterToBinary() throws Exception {
+        PipedTransport[] pair = PipedTransport.createPair();
+        RecordingListener listener = new RecordingListener();
+        ServoLink link = new ServoLink(pair[0], listener);
+        link.connect();
+
+        InputStream device = pair[1].getInputStream();
+        assertTrue(readUntil(device, "HELLO:1\n").endsWith("HELLO:1\n"));
+        pair[1].getOutputStream().write("PROTO:1\n".getBytes(StandardCharsets.US_ASCII));
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!link.getCommandWriter().isBinaryMode() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(link.getCommandWriter().isBinaryMode());
+
+        // Lo primero en binario es el pedido de telemetría por lotes
+        byte[] frame = new byte[BinaryProtocol.FRAME_SIZE];
+        readFrame(device, frame);
+        assertTrue(BinaryProtocol.isValidFrame(frame, 0));
+        assertEquals(BinaryProtocol.TYPE_FEATURES, frame[1] & 0xFF);
+        assertEquals(BinaryProtocol.FEATURE_BATCH_TELEMETRY, BinaryProtocol.decodeValue(frame, 0));
+        assertFalse(link.isBatchTelemetryActive());
+
+        link.sendAngleCenti(4550);
+        readFrame(device, frame);
+        assertTrue(BinaryProtocol.isValidFrame(frame, 0));
+        assertEquals(4550, BinaryProtocol.decodeValue(frame, 0));
+
+        link.disconnect();
+    }
+
+    @Test
+    public void ackWithoutCredit_doesNotThrottle() throws Exception {
+        PipedTransport[] pair = PipedTransport.createPair();
+        RecordingListener listener = new RecordingListener();
+        ServoLink link = new ServoLink(pair[0], listener);
+        link.setBinaryProtocolEnabled(false);
+        link.setCommandRateLimiter(null);
+        link.connect();
+        CommandWriter writer = link.getCommandWriter();
+
+        // Firmware que confirma cada ángulo pero nunca manda CREDIT
+        OutputStream device = pair[1].getOutputStream();
+        device.write("ACK\nACK\n".getBytes(StandardCharsets.US_ASCII));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (writer.getAckedCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, writer.getAckedCount());
+        assertFalse(writer.isCreditFlowControlActive());
+
+        // Sin ACK de por medio todos los ángulos salen seguidos
+        for (int angle = 1; angle <= 5; angle++) {
+            link.sendAngle(angle);
+            String expected = "ANGLE:" + angle + "\n";
+            assertTrue(readUntil(pair[1].getInputStream(), expected).endsWith(expected));
+        }
+        assertEquals(5, writer.getSentAngleCount());
+        assertEquals(0, writer.getCreditStalledCount());
+        assertEquals(0, writer.getInFlightCount());
+
+        link.disconnect();
+    }
+}
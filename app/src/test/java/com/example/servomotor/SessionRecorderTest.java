@@ -0,0 +1,128 @@
+package com.example.servomotor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SessionRecorderTest {
+    private ScheduledThreadPoolExecutor scheduler;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        file = File.createTempFile("session", ".srv");
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void roundTripFromTwoThreads() throws Exception {
+        // Bloques de 4096 registros: los 6000 pasan del primer bloque al segundo sin esperar a la tarea
+        SessionRecorder recorder = SessionRecorder.create(file, scheduler, 4096);
+        long base = System.nanoTime();
+        CountDownLatch done = new CountDownLatch(2);
+        for (int thread = 0; thread < 2; thread++) {
+            boolean commands = thread == 0;
+            new Thread(() -> {
+                for (int i = 0; i < 3000; i++) {
+                    if (commands) {
+                        recorder.recordCommand(base + i * 1000L, i % 180);
+                    } else {
+                        recorder.recordPosition(base + i * 1000L + 500, (i % 180) + 0.5f);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        recorder.close();
+        assertEquals(6000, recorder.getRecordCount());
+        assertEquals(0, recorder.getDroppedCount());
+        assertEquals(SessionRecorder.HEADER_SIZE + 6000L * SessionRecorder.RECORD_SIZE, file.length());
+
+        SessionReader reader = SessionReader.open(file);
+        assertTrue(reader.isCleanlyClosed());
+        assertEquals(6000, reader.getRecordCount());
+        assertEquals(3000, reader.countType(SessionRecorder.TYPE_COMMAND));
+        assertEquals(3000, reader.countType(SessionRecorder.TYPE_POSITION));
+        for (int i = 1; i < reader.getRecordCount(); i++) {
+            assertTrue(reader.getTimestampNanos(i) >= reader.getTimestampNanos(i - 1));
+        }
+        // Orden por tiempo: el comando i va antes de su posición i + 0.5
+        assertTrue(reader.isCommand(0));
+        assertEquals(0f, reader.getValue(0), 0f);
+        assertEquals(0.5f, reader.getValue(1), 0f);
+    }
+
+    @Test
+    public void recoversTruncatedTailAfterCrash() throws Exception {
+        SessionRecorder recorder = SessionRecorder.create(file, scheduler, 1024);
+        long base = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            recorder.recordPosition(base + i, i);
+        }
+        recorder.flush();
+
+        // Sin close(): el encabezado sigue en -1. Se corta a la mitad del registro 80, como si el
+        // proceso hubiera muerto escribiendo
+        long cut = SessionRecorder.HEADER_SIZE + 80L * SessionRecorder.RECORD_SIZE + 7;
+        File crashed = File.createTempFile("crashed", ".srv");
+        try {
+            try (RandomAccessFile source = new RandomAccessFile(file, "r");
+                 RandomAccessFile target = new RandomAccessFile(crashed, "rw")) {
+                byte[] bytes = new byte[(int) cut];
+                source.readFully(bytes);
+                target.write(bytes);
+            }
+
+            SessionReader reader = SessionReader.open(crashed);
+            assertFalse(reader.isCleanlyClosed());
+            assertEquals(80, reader.getRecordCount());
+            assertEquals(79f, reader.getValue(79), 0f);
+
+            assertEquals(80, SessionRecorder.recover(crashed));
+            assertEquals(SessionRecorder.HEADER_SIZE + 80L * SessionRecorder.RECORD_SIZE, crashed.length());
+            SessionReader repaired = SessionReader.open(crashed);
+            assertTrue(repaired.isCleanlyClosed());
+            assertEquals(80, repaired.getRecordCount());
+        } finally {
+            crashed.delete();
+        }
+        recorder.close();
+    }
+
+    @Test
+    public void skipsCorruptedRecordAndUnusedSpace() throws Exception {
+        SessionRecorder recorder = SessionRecorder.create(file, scheduler, 1024);
+        for (int i = 0; i < 10; i++) {
+            recorder.recordCommand(System.nanoTime(), i);
+        }
+        recorder.flush();
+
+        // Se daña el valor del registro 3 sin tocar la suma de verificación
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(SessionRecorder.HEADER_SIZE + 3L * SessionRecorder.RECORD_SIZE + 9);
+            raf.write(0x7F);
+        }
+
+        // El archivo todavía tiene los bloques preasignados vacíos detrás de los 10 registros
+        SessionReader reader = SessionReader.open(file);
+        assertEquals(9, reader.getRecordCount());
+        assertEquals(10, reader.getScannedRecords());
+        assertEquals(1, reader.getSkippedRecords());
+        recorder.close();
+    }
+}
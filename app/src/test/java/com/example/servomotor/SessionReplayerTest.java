@@ -0,0 +1,116 @@
+package com.example.servomotor;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SessionReplayerTest {
+    private static File file;
+    private static SessionReader session;
+
+    private static class RecordingSink implements SessionReplayer.Sink {
+        final List<Float> commands = new ArrayList<>();
+        final List<Float> positions = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile boolean completed;
+
+        @Override
+        public synchronized void onReplayCommand(long replayNanos, float angle) {
+            commands.add(angle);
+            times.add(replayNanos);
+        }
+
+        @Override
+        public synchronized void onReplayPosition(long replayNanos, float angle) {
+            positions.add(angle);
+            times.add(replayNanos);
+        }
+
+        @Override
+        public void onReplayFinished(boolean completed) {
+            this.completed = completed;
+            finished.countDown();
+        }
+    }
+
+    // 200 ms de sesión: un comando cada 20 ms y una posición cada 5 ms
+    @BeforeClass
+    public static void recordSession() throws Exception {
+        file = File.createTempFile("replay", ".srv");
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        SessionRecorder recorder = SessionRecorder.create(file, scheduler, 1024);
+        long base = System.nanoTime();
+        for (int ms = 0; ms < 200; ms += 5) {
+            long t = base + TimeUnit.MILLISECONDS.toNanos(ms);
+            if (ms % 20 == 0) {
+                recorder.recordCommand(t, ms);
+            }
+            recorder.recordPosition(t + 1000, ms * 0.5f);
+        }
+        recorder.close();
+        scheduler.shutdownNow();
+        session = SessionReader.open(file);
+    }
+
+    @AfterClass
+    public static void deleteSession() {
+        file.delete();
+    }
+
+    @Test
+    public void maxSpeedDeliversEverythingInOrder() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        SessionReplayer replayer = new SessionReplayer(sink, null);
+        replayer.start(session, SessionReplayer.MAX_SPEED);
+
+        assertTrue(sink.finished.await(5, TimeUnit.SECONDS));
+        assertTrue(sink.completed);
+        assertEquals(10, sink.commands.size());
+        assertEquals(40, sink.positions.size());
+        assertEquals(180f, sink.commands.get(9), 0f);
+        for (int i = 1; i < sink.times.size(); i++) {
+            assertTrue(sink.times.get(i) >= sink.times.get(i - 1));
+        }
+        assertEquals(50, replayer.getLastRunRecords());
+        // Sin esperas no debería acercarse a la duración original
+        assertTrue(replayer.getLastRunNanos() < TimeUnit.MILLISECONDS.toNanos(195));
+    }
+
+    @Test
+    public void acceleratedReplayKeepsRelativeTiming() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        SessionReplayer replayer = new SessionReplayer(sink, null);
+        replayer.start(session, 4f);
+
+        assertTrue(sink.finished.await(5, TimeUnit.SECONDS));
+        assertTrue(sink.completed);
+        // 195 ms de sesión a 4x: los plazos del primero al último quedan a ~48.75 ms
+        long span = sink.times.get(sink.times.size() - 1) - sink.times.get(0);
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(48_750), span, TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(replayer.getLastRunNanos() >= span);
+    }
+
+    @Test
+    public void stopEndsReplayEarly() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        SessionReplayer replayer = new SessionReplayer(sink, null);
+        replayer.start(session, 0.1f);
+        Thread.sleep(20);
+        replayer.stop();
+
+        assertTrue(sink.finished.await(5, TimeUnit.SECONDS));
+        assertFalse(sink.completed);
+        assertFalse(replayer.isRunning());
+        assertTrue(replayer.getLastRunRecords() < 50);
+    }
+}
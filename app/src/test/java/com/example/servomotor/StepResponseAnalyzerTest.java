@@ -0,0 +1,141 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.*;
+
+public class StepResponseAnalyzerTest {
+    private static final long MS = 1_000_000L;
+
+    // Rampa lineal de 0° a 100° en 100 ms que pasa a 110° y vuelve a 100° en otros 100 ms.
+    // Una muestra por milisegundo, con 20 ms de retraso antes de empezar a moverse
+    private static float response(long ms) {
+        if (ms < 20) return 0f;
+        if (ms < 120) return ms - 20f;
+        if (ms < 130) return 100f + (ms - 120f);
+        if (ms < 230) return 110f - (ms - 130f) / 10f;
+        return 100f;
+    }
+
+    private static void feedStep(StepResponseAnalyzer analyzer, long base, long durationMs) {
+        analyzer.onCommand(base, 100f);
+        for (long ms = 0; ms <= durationMs; ms++) {
+            analyzer.onPosition(base + ms * MS, response(ms));
+        }
+    }
+
+    @Test
+    public void measuresSettledStep() {
+        StepResponseAnalyzer analyzer = new StepResponseAnalyzer();
+        analyzer.onPosition(0, 0f);
+        feedStep(analyzer, MS, 600);
+        analyzer.finish();
+
+        StepResponseAnalyzer.StepResult step = analyzer.getLastResult();
+        assertEquals(StepResponseAnalyzer.Outcome.SETTLED, step.outcome);
+        // 50° a los 70 ms, del 10% (30 ms) al 90% (110 ms)
+        assertEquals(70 * MS, step.trackingLagNanos);
+        assertEquals(80 * MS, step.riseTimeNanos);
+        assertEquals(10f, step.overshootPercent, 0.01f);
+        // La banda es de 2°: se entra en 102° a los 210 ms y ya no se sale
+        assertEquals(210 * MS, step.settlingTimeNanos);
+        assertEquals(0f, step.steadyStateError, 0.1f);
+        assertEquals(1, analyzer.getSettledCount());
+        assertEquals(1, analyzer.getSettlingTimeHistogram().getCount());
+    }
+
+    @Test
+    public void newCommandSupersedesAndTimeoutLeavesUnsettled() {
+        StepResponseAnalyzer analyzer = new StepResponseAnalyzer();
+        analyzer.setMaxStepNanos(500 * MS);
+        analyzer.onPosition(0, 0f);
+        feedStep(analyzer, MS, 50);
+        // Otro escalón antes de llegar: el primero queda reemplazado
+        analyzer.onCommand(60 * MS, 0f);
+        assertEquals(StepResponseAnalyzer.Outcome.SUPERSEDED, analyzer.getLastResult().outcome);
+
+        // Un comando menor al escalón mínimo no abre otro
+        analyzer.onCommand(61 * MS, 1f);
+        assertEquals(1, analyzer.getStepCount());
+
+        // Nunca vuelve a 0°, al pasar el tiempo máximo el segundo escalón queda sin establecer
+        for (long ms = 60; ms < 700; ms += 10) {
+            analyzer.onPosition(ms * MS, 30f);
+        }
+        assertEquals(2, analyzer.getStepCount());
+        assertEquals(1, analyzer.getSupersededCount());
+        assertEquals(1, analyzer.getUnsettledCount());
+        assertEquals(0, analyzer.getSettledCount());
+    }
+
+    @Test
+    public void settledBelowNinetyPercentHasNoRiseTime() {
+        StepResponseAnalyzer analyzer = new StepResponseAnalyzer();
+        analyzer.onPosition(0, 0f);
+        // Escalón de 5° que se queda en 4,2°: 84% del recorrido pero dentro de la banda mínima de 1°
+        analyzer.onCommand(MS, 5f);
+        for (long ms = 1; ms <= 300; ms++) {
+            analyzer.onPosition(MS + ms * MS, Math.min(ms * 0.1f, 4.2f));
+        }
+        analyzer.finish();
+
+        StepResponseAnalyzer.StepResult step = analyzer.getLastResult();
+        assertEquals(StepResponseAnalyzer.Outcome.SETTLED, step.outcome);
+        assertEquals(-1, step.riseTimeNanos);
+        assertEquals(0, analyzer.getRiseTimeHistogram().getCount());
+        // Sí pasó por el 50% (2,5° a los 25 ms)
+        assertEquals(25 * MS, step.trackingLagNanos);
+        assertEquals(1, analyzer.getTrackingLagHistogram().getCount());
+        assertEquals(0.8f, step.steadyStateError, 0.01f);
+    }
+
+    @Test
+    public void analyzesRecordedSessionsInParallel() throws Exception {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        List<File> files = new ArrayList<>();
+        try {
+            for (int session = 0; session < 3; session++) {
+                File file = File.createTempFile("steps", ".srv");
+                files.add(file);
+                SessionRecorder recorder = SessionRecorder.create(file, scheduler, 1024);
+                long base = System.nanoTime() + MS;
+                recorder.recordPosition(base - MS, 0f);
+                // session + 1 escalones iguales, de ida y vuelta
+                for (int step = 0; step <= session; step++) {
+                    long stepBase = base + step * 1_000 * MS;
+                    boolean up = step % 2 == 0;
+                    recorder.recordCommand(stepBase, up ? 100f : 0f);
+                    for (long ms = 1; ms <= 600; ms++) {
+                        float angle = response(ms);
+                        recorder.recordPosition(stepBase + ms * MS, up ? angle : 100f - angle);
+                    }
+                }
+                recorder.close();
+            }
+            File missing = new File(files.get(0).getParentFile(), "no-existe.srv");
+            files.add(missing);
+
+            StepResponseAnalyzer total = StepResponseAnalyzer.analyzeSessions(files, pool);
+            assertEquals(3, total.getSessionCount());
+            assertEquals(6, total.getStepCount());
+            assertEquals(6, total.getSettledCount());
+            assertEquals(6, total.getRiseTimeHistogram().getCount());
+            assertEquals(10f, total.getMaxOvershootPercent(), 0.01f);
+            assertEquals(10.0, total.getMeanOvershootPercent(), 0.01);
+        } finally {
+            pool.shutdownNow();
+            scheduler.shutdownNow();
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TelemetryFilterTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void medianMatchesSortedWindow() {
+        TelemetryFilter.Median median = new TelemetryFilter.Median(5);
+        Random random = new Random(7);
+        float[] history = new float[200];
+        for (int i = 0; i < history.length; i++) {
+            // Valores repetidos a propósito para probar la búsqueda al sacar la muestra vieja
+            history[i] = random.nextInt(20);
+            float filtered = median.filter(i * MS, history[i]);
+
+            int from = Math.max(0, i - 4);
+            float[] window = Arrays.copyOfRange(history, from, i + 1);
+            Arrays.sort(window);
+            int middle = window.length / 2;
+            float expected = window.length % 2 == 1 ? window[middle] : (window[middle - 1] + window[middle]) / 2f;
+            assertEquals("muestra " + i, expected, filtered, 0f);
+        }
+
+        // Un pico aislado no pasa
+        median.reset();
+        for (int i = 0; i < 5; i++) median.filter(i * MS, 90f);
+        assertEquals(90f, median.filter(5 * MS, 180f), 0f);
+    }
+
+    @Test
+    public void smoothingStagesReduceNoiseAndFollowSteps() {
+        TelemetryFilter[] stages = {
+                new TelemetryFilter.Ema(20),
+                new TelemetryFilter.OneEuro(1.0, 0.05, 1.0),
+                new TelemetryFilter.Kalman(20, 1)
+        };
+        for (TelemetryFilter stage : stages) {
+            Random random = new Random(3);
+            // Ruido de 1° a 1 kHz sobre 90°
+            double rawSquares = 0, filteredSquares = 0;
+            for (int i = 0; i < 2000; i++) {
+                float noise = (float) random.nextGaussian();
+                float filtered = stage.filter(i * MS, 90f + noise);
+                if (i >= 1000) {
+                    rawSquares += noise * noise;
+                    filteredSquares += (filtered - 90f) * (filtered - 90f);
+                }
+            }
+            assertTrue(stage + ": " + filteredSquares + " contra " + rawSquares, filteredSquares < rawSquares / 4);
+
+            // Escalón a 150°: a los 200 ms ya debe estar cerca
+            float filtered = 0;
+            for (int i = 2000; i < 2200; i++) {
+                filtered = stage.filter(i * MS, 150f + (float) random.nextGaussian());
+            }
+            assertEquals(stage.toString(), 150f, filtered, 2f);
+        }
+    }
+
+    @Test
+    public void defaultChainHoldsStillAndSuppressesUpdates() {
+        TelemetryFilterChain chain = TelemetryFilterChain.createDefault();
+        assertEquals(3, chain.getStageCount());
+        Random random = new Random(11);
+        float last = Float.NaN;
+        int changes = 0;
+        for (int i = 0; i < 1000; i++) {
+            float filtered = chain.filter(i * MS, 45f + (float) random.nextGaussian() * 0.5f);
+            if (filtered != last) changes++;
+            last = filtered;
+        }
+        // Con el servo quieto casi ninguna muestra cambia lo que se muestra
+        assertTrue("cambios " + changes, changes < 20);
+        assertEquals(45f, last, TelemetryFilterChain.DEFAULT_DEADBAND + 0.2f);
+
+        // Después de reiniciar la primera muestra pasa tal cual
+        chain.reset();
+        assertEquals(120f, chain.filter(2000 * MS, 120f), 0f);
+
+        TelemetryFilter.Deadband deadband = new TelemetryFilter.Deadband(1f);
+        assertEquals(10f, deadband.filter(0, 10f), 0f);
+        assertEquals(10f, deadband.filter(MS, 10.9f), 0f);
+        assertEquals(11f, deadband.filter(2 * MS, 11f), 0f);
+    }
+}
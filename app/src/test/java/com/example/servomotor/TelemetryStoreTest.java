@@ -0,0 +1,143 @@
+package com.example.servomotor;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TelemetryStoreTest {
+
+    @Test
+    public void snapshot_returnsNewestSamplesOldestFirst() {
+        TelemetryStore store = new TelemetryStore(8);
+        for (int i = 0; i < 20; i++) {
+            store.append(i * 10L, i);
+        }
+        assertEquals(7, store.size());
+        assertEquals(19f, store.getLatestValue(), 0f);
+
+        long[] timestamps = new long[4];
+        float[] values = new float[4];
+        assertEquals(4, store.snapshot(timestamps, values));
+        assertArrayEquals(new float[]{16, 17, 18, 19}, values, 0f);
+        assertArrayEquals(new long[]{160, 170, 180, 190}, timestamps);
+    }
+
+    @Test
+    public void readRange_skipsOverwrittenSamples() {
+        TelemetryStore store = new TelemetryStore(8);
+        for (int i = 0; i < 20; i++) {
+            store.append(i, i);
+        }
+        long[] timestamps = new long[16];
+        float[] values = new float[16];
+        int count = store.readRange(0, 20, timestamps, values, 0);
+        assertEquals(7, count);
+        assertEquals(13f, values[0], 0f);
+        assertEquals(19f, values[6], 0f);
+    }
+
+    @Test
+    public void queryTimeRange_usesTimestamps() {
+        TelemetryStore store = new TelemetryStore(64);
+        for (int i = 0; i < 50; i++) {
+            store.append(1_000L * i, i);
+        }
+        long[] timestamps = new long[64];
+        float[] values = new float[64];
+        int count = store.queryTimeRange(10_000, 15_000, timestamps, values);
+        assertEquals(5, count);
+        assertEquals(10f, values[0], 0f);
+        assertEquals(14f, values[4], 0f);
+    }
+
+    @Test
+    public void concurrentReaders_neverSeeTornOrOutOfOrderSamples() throws Exception {
+        TelemetryStore store = new TelemetryStore(1024);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        // El valor siempre es igual al tiempo, si un lector mezcla muestras lo detecta
+        Thread writer = new Thread(() -> {
+            for (long i = 1; i <= 2_000_000; i++) {
+                store.append(i, i);
+            }
+            running.set(false);
+        });
+
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                long[] timestamps = new long[256];
+                float[] values = new float[256];
+                while (running.get()) {
+                    int count = store.snapshot(timestamps, values);
+                    for (int i = 0; i < count; i++) {
+                        if (values[i] != (float) timestamps[i]
+                                || (i > 0 && timestamps[i] != timestamps[i - 1] + 1)) {
+                            failure.compareAndSet(null, "Muestra inconsistente en " + timestamps[i]);
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread reader : readers) reader.start();
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) reader.join();
+
+        assertNull(failure.get());
+        assertEquals(2_000_000, store.getWriteSequence());
+    }
+
+    @Test
+    public void batchedWrites_neverReplaceSamplesReadersStillSee() throws Exception {
+        // Lotes de la mitad del buffer y lectores que copian el buffer entero: si el lote se publicara al
+        // final, la copia traería muestras nuevas en el lugar de las viejas
+        TelemetryStore store = new TelemetryStore(64);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            long[] timestamps = new long[32];
+            float[] values = new float[32];
+            long next = 1;
+            while (next <= 1_000_000) {
+                for (int i = 0; i < timestamps.length; i++, next++) {
+                    timestamps[i] = next;
+                    values[i] = next;
+                }
+                store.appendAll(timestamps, values, 0, timestamps.length);
+            }
+            running.set(false);
+        });
+
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                long[] timestamps = new long[64];
+                float[] values = new float[64];
+                while (running.get()) {
+                    int count = store.snapshot(timestamps, values);
+                    for (int i = 0; i < count; i++) {
+                        if (values[i] != (float) timestamps[i]
+                                || (i > 0 && timestamps[i] != timestamps[i - 1] + 1)) {
+                            failure.compareAndSet(null, "Muestra fuera de orden en " + timestamps[i]);
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread reader : readers) reader.start();
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) reader.join();
+
+        assertNull(failure.get());
+        assertEquals(1_000_000, store.getWriteSequence());
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.servomotor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.*;
+
+public class WaypointUploaderTest {
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final List<WaypointUploader.State> states = new CopyOnWriteArrayList<>();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+
+    private final WaypointUploader.Listener listener = new WaypointUploader.Listener() {
+        @Override
+        public void onStateChanged(WaypointUploader.State state) {
+            states.add(state);
+        }
+
+        @Override
+        public void onUploadProgress(int acknowledged, int total) {
+        }
+
+        @Override
+        public void onError(String error) {
+            errors.add(error);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private static int[] delays(int count, int millis) {
+        int[] delays = new int[count];
+        for (int i = 1; i < count; i++) delays[i] = millis;
+        return delays;
+    }
+
+    private static int[] ramp(int count) {
+        int[] centi = new int[count];
+        for (int i = 0; i < count; i++) centi[i] = i * 100;
+        return centi;
+    }
+
+    // Inicio de cada envío en texto: la orden completa o el primer punto del bloque ("WP:16,..." -> "WP:16")
+    private List<String> firstLines() {
+        List<String> firsts = new ArrayList<>();
+        for (String data : sent) {
+            firsts.add(data.substring(0, data.indexOf(data.startsWith("WP:") ? ',' : '\n')));
+        }
+        return firsts;
+    }
+
+    private static void waitUntil(long timeoutMillis, Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.met() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    @Test
+    public void pipelinesChunksAndGoesBackOnNak() {
+        WaypointUploader uploader = new WaypointUploader(
+                data -> sent.add(new String(data, StandardCharsets.US_ASCII)), scheduler, listener);
+        uploader.setAckTimeoutMillis(10_000);
+
+        // 100 puntos son 7 bloques, salen los 4 de la ventana sin esperar
+        uploader.upload(delays(100, 10), ramp(100), false);
+        assertEquals(WaypointUploader.State.UPLOADING, uploader.getState());
+        assertEquals(Arrays.asList("SEQ:BEGIN,100", "WP:0", "WP:16", "WP:32", "WP:48"), firstLines());
+        assertTrue(sent.get(1).startsWith("WP:0,0,0\nWP:1,10,100\n"));
+
+        uploader.onStatus(WaypointProtocol.STATUS_ACK, 0);
+        assertEquals("WP:64", firstLines().get(5));
+
+        // Se perdió algo del bloque 2: se reenvía desde ahí, lo que estaba en vuelo también
+        sent.clear();
+        uploader.onStatus(WaypointProtocol.STATUS_NAK, 2);
+        assertEquals(Arrays.asList("WP:32", "WP:48", "WP:64", "WP:80"), firstLines());
+        assertEquals(1, uploader.getNakCount());
+        assertEquals(3, uploader.getRetransmittedChunkCount());
+
+        // ACK acumulativo y uno viejo que no hace nada
+        uploader.onStatus(WaypointProtocol.STATUS_ACK, 5);
+        uploader.onStatus(WaypointProtocol.STATUS_ACK, 1);
+        uploader.onStatus(WaypointProtocol.STATUS_ACK, 6);
+        assertEquals(WaypointUploader.State.READY, uploader.getState());
+        assertEquals(1, uploader.getUploadTimeHistogram().getCount());
+
+        sent.clear();
+        assertTrue(uploader.start());
+        assertTrue(uploader.pause());
+        assertFalse(uploader.pause());
+        assertTrue(uploader.resume());
+        assertEquals(Arrays.asList("SEQ:START", "SEQ:PAUSE", "SEQ:RESUME"), firstLines());
+        uploader.onStatus(WaypointProtocol.STATUS_DONE, 100);
+        assertEquals(WaypointUploader.State.READY, uploader.getState());
+        assertEquals(1, uploader.getCompletedPlaybackCount());
+        assertEquals(990, uploader.getDurationMillis());
+
+        uploader.onLinkLost();
+        assertEquals(WaypointUploader.State.IDLE, uploader.getState());
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void failsAfterRetriesWithoutAck() throws Exception {
+        WaypointUploader uploader = new WaypointUploader(data -> true, scheduler, listener);
+        uploader.setAckTimeoutMillis(10);
+        uploader.upload(delays(20, 0), ramp(20), true);
+
+        waitUntil(2000, () -> uploader.getState() == WaypointUploader.State.FAILED);
+        assertEquals(WaypointUploader.State.FAILED, uploader.getState());
+        assertEquals(WaypointUploader.MAX_RETRIES + 1, uploader.getTimeoutCount());
+        // 2 bloques por intento
+        assertEquals(2 * (WaypointUploader.MAX_RETRIES + 1), uploader.getChunkSentCount());
+        assertEquals(1, errors.size());
+
+        try {
+            uploader.upload(new int[]{0, -1}, new int[]{0, 0}, true);
+            fail("Un retraso negativo no es válido");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void simulatorExecutesSequenceInTextAndBinary() throws Exception {
+        for (boolean binary : new boolean[]{false, true}) {
+            states.clear();
+            Esp32Simulator simulator = new Esp32Simulator(5, 0f);
+            simulator.setBinarySupported(binary);
+            simulator.setLinkLatency(5, 5);
+            simulator.setSplitProbability(0.3f);
+            simulator.setSlewRate(10_000f);
+            simulator.start();
+            ServoLink[] holder = new ServoLink[1];
+            WaypointUploader uploader = new WaypointUploader(data -> holder[0].submitFrame(data), scheduler, listener);
+            ServoLink link = new ServoLink(simulator.connectPiped(), new ServoLink.Listener() {
+                @Override
+                public void onConnected() {
+                }
+
+                @Override
+                public void onDisconnected() {
+                }
+
+                @Override
+                public void onPosition(float angle) {
+                }
+
+                @Override
+                public void onPositionBatch(long[] timestampsNanos, float[] angles, int count) {
+                }
+
+                @Override
+                public void onLine(String line) {
+                }
+
+                @Override
+                public void onBinaryNegotiated(int version) {
+                }
+
+                @Override
+                public void onError(String error) {
+                }
+            });
+            holder[0] = link;
+            link.setWaypointUploader(uploader);
+            link.setBinaryProtocolEnabled(binary);
+            try {
+                link.connect();
+                if (binary) {
+                    waitUntil(2000, () -> link.getCommandWriter().isBinaryMode());
+                    assertTrue(link.getCommandWriter().isBinaryMode());
+                }
+
+                // 300 puntos: varias vueltas de los 8 bits de secuencia en binario
+                int count = 300;
+                int[] centi = new int[count];
+                for (int i = 0; i < count; i++) centi[i] = (i % 181) * 100;
+                uploader.upload(delays(count, 1), centi, binary);
+                waitUntil(3000, () -> uploader.getState() == WaypointUploader.State.READY);
+                assertEquals("binario " + binary, WaypointUploader.State.READY, uploader.getState());
+                assertEquals(count, simulator.getLoadedWaypointCount());
+                assertEquals(0, simulator.getMalformedCount());
+
+                assertTrue(uploader.start());
+                waitUntil(3000, () -> states.get(states.size() - 1) == WaypointUploader.State.READY);
+                assertEquals(count, simulator.getExecutedWaypointCount());
+                assertEquals(centi[count - 1] / 100f, simulator.getTarget(), 0f);
+                assertEquals(1, uploader.getCompletedPlaybackCount());
+                assertEquals(0, uploader.getRetransmittedChunkCount());
+            } finally {
+                link.disconnect();
+                simulator.stop();
+            }
+        }
+    }
+}
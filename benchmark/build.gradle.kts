@@ -0,0 +1,55 @@
+// Módulo solo JVM con los benchmarks JMH de los caminos calientes de la app.
+// Ejecutar con: ./gradlew :benchmark:jmh
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// La app es un módulo Android y no se puede usar como dependencia desde la JVM, así que se compilan
+// aquí directamente las clases de la app que no dependen de Android. Si un benchmark necesita otra
+// clase pura de Java hay que agregarla a esta lista.
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/example/servomotor/BinaryFrameDecoder.java",
+                "com/example/servomotor/BinaryProtocol.java",
+                "com/example/servomotor/CommandWriter.java",
+                "com/example/servomotor/DialGeometry.java",
+                "com/example/servomotor/LatencyHistogram.java",
+                "com/example/servomotor/LineFrameDecoder.java",
+                "com/example/servomotor/MetricsRegistry.java",
+                "com/example/servomotor/MinMaxDecimator.java",
+                "com/example/servomotor/ProtocolDecoder.java",
+                "com/example/servomotor/SessionReader.java",
+                "com/example/servomotor/SessionRecorder.java",
+                "com/example/servomotor/StepResponseAnalyzer.java",
+                "com/example/servomotor/TelemetryFilter.java",
+                "com/example/servomotor/TelemetryFilterChain.java",
+                "com/example/servomotor/TelemetryStore.java",
+                "com/example/servomotor/TokenBucket.java",
+                "com/example/servomotor/WaypointProtocol.java"
+            )
+        }
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmhCore)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // Tasa de asignación por operación (gc.alloc.rate.norm), es lo que más importa en estos caminos
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,56 @@
+package com.example.servomotor.benchmark;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Mide lo que cuesta codificar un comando de ángulo, es decir lo que hace sendAngle por cada cambio del
+seekbar. Se compara la forma original (concatenar Strings y getBytes) con la codificación sin
+asignaciones de CommandWriter y con la trama binaria.
+ */
+
+import com.example.servomotor.BinaryProtocol;
+import com.example.servomotor.CommandWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandEncodingBenchmark {
+
+    private final byte[] buffer = new byte[CommandWriter.MAX_ANGLE_COMMAND_LENGTH];
+    private int angle = 0;
+
+    private int nextAngle() {
+        angle = angle == 180 ? 0 : angle + 1;
+        return angle;
+    }
+
+    @Benchmark
+    public byte[] stringConcat() {
+        String command = "ANGLE:" + nextAngle() + "\n";
+        return command.getBytes();
+    }
+
+    @Benchmark
+    public int textInPlace() {
+        int length = CommandWriter.encodeAngle(nextAngle(), buffer, 0);
+        return length + buffer[length - 2];
+    }
+
+    @Benchmark
+    public int binaryFrame() {
+        int length = BinaryProtocol.encodeAngle(angle, nextAngle() * 100, buffer, 0);
+        return length + buffer[length - 1];
+    }
+}
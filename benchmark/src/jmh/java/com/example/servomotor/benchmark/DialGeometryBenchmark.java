@@ -0,0 +1,68 @@
+package com.example.servomotor.benchmark;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Mide la trigonometría del tacómetro: las siete graduaciones con sus etiquetas y la punta de la aguja.
+perFrameGraduations es lo que hacía drawGraduations en cada cuadro antes de precalcular la geometría;
+layoutGraduations es lo que ahora se hace una sola vez en onSizeChanged. needle sigue siendo por cuadro.
+ */
+
+import com.example.servomotor.DialGeometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DialGeometryBenchmark {
+    private static final float START_ANGLE = 135;
+    private static final float SWEEP_ANGLE = 270;
+
+    private final float[] point = new float[4];
+    private final float[] tickLines = new float[DialGeometry.graduationCount(180f, 30) * 4];
+    private final float[] tickLabels = new float[DialGeometry.graduationCount(180f, 30) * 2];
+    private final float centerX = 540;
+    private final float centerY = 400;
+    private final float radius = 360;
+    private float needleValue = 0;
+
+    @Benchmark
+    public void perFrameGraduations(Blackhole blackhole) {
+        for (int i = 0; i <= 180; i += 30) {
+            float angle = DialGeometry.valueToDialDegrees(i, 180f, START_ANGLE, SWEEP_ANGLE);
+            DialGeometry.polarToCartesian(centerX, centerY, radius - 15, angle, point, 0);
+            DialGeometry.polarToCartesian(centerX, centerY, radius, angle, point, 2);
+            blackhole.consume(point[0] + point[1] + point[2] + point[3]);
+
+            DialGeometry.polarToCartesian(centerX, centerY, radius + 25, angle, point, 0);
+            blackhole.consume(String.valueOf(i));
+            blackhole.consume(point[1]);
+        }
+    }
+
+    @Benchmark
+    public int layoutGraduations() {
+        return DialGeometry.computeGraduations(centerX, centerY, 180f, 30, START_ANGLE, SWEEP_ANGLE,
+                radius - 15, radius, radius + 25, tickLines, tickLabels);
+    }
+
+    @Benchmark
+    public void needle(Blackhole blackhole) {
+        needleValue = needleValue >= 180 ? 0 : needleValue + 0.7f;
+        float angle = DialGeometry.valueToDialDegrees(needleValue, 180f, START_ANGLE, SWEEP_ANGLE);
+        DialGeometry.polarToCartesian(centerX, centerY, radius - 30, angle, point, 0);
+        blackhole.consume(point[0] + point[1]);
+    }
+}
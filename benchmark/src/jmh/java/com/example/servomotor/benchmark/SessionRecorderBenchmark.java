@@ -0,0 +1,67 @@
+package com.example.servomotor.benchmark;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Mide cuánto le cuesta al hilo de lectura grabar una posición en la sesión: reservar el lugar y escribir
+16 bytes en el archivo mapeado. Con dos hilos (lector y comandos) se mide la contención del contador.
+Los bloques son grandes para que ninguna medición caiga fuera de lo mapeado; cada iteración empieza en
+un archivo nuevo.
+ */
+
+import com.example.servomotor.SessionRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SessionRecorderBenchmark {
+    private static final int CHUNK_RECORDS = 1 << 23;
+
+    private ScheduledThreadPoolExecutor scheduler;
+    private File file;
+    private SessionRecorder recorder;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        file = File.createTempFile("bench", ".srv");
+        recorder = SessionRecorder.create(file, scheduler, CHUNK_RECORDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        recorder.close();
+        scheduler.shutdownNow();
+        file.delete();
+    }
+
+    @Benchmark
+    public void recordPosition() {
+        recorder.recordPosition(System.nanoTime(), 90.5f);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void recordPositionTwoThreads() {
+        recorder.recordPosition(System.nanoTime(), 90.5f);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.servomotor.benchmark;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Mide lo que el análisis de escalones le agrega al hilo de lectura por cada posición: un escalón de 90°
+cada 500 muestras y una respuesta sintética que sube, pasa el objetivo y se establece. Es lo mismo que
+paga cada muestra al analizar una sesión grabada.
+ */
+
+import com.example.servomotor.StepResponseAnalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StepResponseBenchmark {
+    private static final int SAMPLES_PER_STEP = 500;
+    private static final long SAMPLE_NANOS = 1_000_000L;
+
+    private final float[] response = new float[SAMPLES_PER_STEP];
+    private StepResponseAnalyzer analyzer;
+    private long now;
+    private int sample;
+    private boolean up;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < SAMPLES_PER_STEP; i++) {
+            // Segundo orden subamortiguado, 90° con sobrepaso cercano al 16%
+            double t = i / 40.0;
+            response[i] = (float) (90 * (1 - Math.exp(-t) * (Math.cos(1.8 * t) + 0.55 * Math.sin(1.8 * t))));
+        }
+        analyzer = new StepResponseAnalyzer();
+        analyzer.onPosition(0, 0f);
+    }
+
+    @Benchmark
+    public void onPosition() {
+        now += SAMPLE_NANOS;
+        if (sample == 0) {
+            up = !up;
+            analyzer.onCommand(now, up ? 90f : 0f);
+        }
+        float angle = response[sample];
+        analyzer.onPosition(now, up ? angle : 90f - angle);
+        sample = (sample + 1) % SAMPLES_PER_STEP;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.servomotor.benchmark;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Mide un cuadro de la gráfica de historial: procesar las muestras nuevas y generar los segmentos para
+1080 columnas. La telemetría llega a 100 Hz y la pantalla va a 60 Hz. Se compara una ventana de 10
+segundos contra una de una hora para comprobar que el costo por cuadro no depende del largo de la ventana.
+ */
+
+import com.example.servomotor.MinMaxDecimator;
+import com.example.servomotor.TelemetryStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StripChartBenchmark {
+    private static final int COLUMNS = 1080;
+    private static final long SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    @Param({"10", "3600"})
+    public int windowSeconds;
+
+    private TelemetryStore store;
+    private MinMaxDecimator decimator;
+    private final float[] lines = new float[MinMaxDecimator.lineBufferSize(COLUMNS)];
+    private long now;
+    private long nextSample;
+
+    @Setup
+    public void setup() {
+        store = new TelemetryStore();
+        long window = TimeUnit.SECONDS.toNanos(windowSeconds);
+        for (long t = 0; t < window; t += SAMPLE_NANOS) {
+            store.append(t, value(t));
+        }
+        now = window;
+        nextSample = window;
+
+        decimator = new MinMaxDecimator(store, false);
+        decimator.configure(COLUMNS, window);
+        decimator.update(now);
+    }
+
+    private static float value(long t) {
+        return (float) (90 + 80 * Math.sin(t / 3e8));
+    }
+
+    @Benchmark
+    public int frame() {
+        now += FRAME_NANOS;
+        while (nextSample <= now) {
+            store.append(nextSample, value(nextSample));
+            nextSample += SAMPLE_NANOS;
+        }
+        decimator.update(now);
+        return decimator.buildLines(now, 0, 0, COLUMNS, 400, 0, 180, lines);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.servomotor.benchmark;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Mide lo que el filtrado le agrega al hilo de lectura por cada posición, con la cadena por defecto y con
+cada etapa sola. La entrada es una señal de 90° con ruido gaussiano de 1° a 1 kHz, generada de antemano
+para no medir el generador. gc.alloc.rate.norm debe quedar en 0.
+ */
+
+import com.example.servomotor.TelemetryFilter;
+import com.example.servomotor.TelemetryFilterChain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TelemetryFilterBenchmark {
+    private static final int SAMPLES = 4096;
+    private static final long SAMPLE_NANOS = 1_000_000L;
+
+    @Param({"chain", "median", "oneEuro", "kalman"})
+    public String filterName;
+
+    private final float[] samples = new float[SAMPLES];
+    private TelemetryFilter filter;
+    private long now;
+    private int sample;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = 90f + (float) random.nextGaussian();
+        }
+        switch (filterName) {
+            case "median":
+                filter = new TelemetryFilter.Median(TelemetryFilterChain.DEFAULT_MEDIAN_WINDOW);
+                break;
+            case "oneEuro":
+                filter = new TelemetryFilter.OneEuro(TelemetryFilterChain.DEFAULT_MIN_CUTOFF_HZ,
+                        TelemetryFilterChain.DEFAULT_BETA, TelemetryFilterChain.DEFAULT_DERIVATIVE_CUTOFF_HZ);
+                break;
+            case "kalman":
+                filter = new TelemetryFilter.Kalman(20, 1);
+                break;
+            default:
+                filter = TelemetryFilterChain.createDefault();
+                break;
+        }
+    }
+
+    @Benchmark
+    public float filter() {
+        now += SAMPLE_NANOS;
+        float value = filter.filter(now, samples[sample]);
+        sample = (sample + 1) % SAMPLES;
+        return value;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.servomotor.benchmark;
+
+/*
+HECHO POR RODRIGO SOSA ROMERO
+GITHUB: https://github.com/05545
+ */
+
+/*
+Mide lo que cuesta interpretar la telemetría que llega de la ESP32, es decir lo que hacían el hilo de
+lectura y onDataReceived por cada mensaje. Cada operación procesa un bloque de lectura con varias
+líneas POSITION, como llegan cuando RFCOMM agrupa paquetes. batchDecoder procesa las mismas muestras en
+una sola trama de lote (telemetría por lotes).
+ */
+
+import com.example.servomotor.BinaryProtocol;
+import com.example.servomotor.LineFrameDecoder;
+import com.example.servomotor.ProtocolDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TelemetryParsingBenchmark {
+    private static final int LINES = 16;
+
+    private byte[] textChunk;
+    private byte[] binaryChunk;
+    private byte[] batchChunk;
+    private String[] separateLines;
+    private LineFrameDecoder lineDecoder;
+    private ProtocolDecoder binaryDecoder;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+
+        StringBuilder text = new StringBuilder();
+        separateLines = new String[LINES];
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        byte[] frame = new byte[BinaryProtocol.FRAME_SIZE];
+        for (int i = 0; i < LINES; i++) {
+            int angle = (i * 11) % 181;
+            separateLines[i] = "POSITION:" + angle + "\n";
+            text.append(separateLines[i]);
+            BinaryProtocol.encodeFrame(BinaryProtocol.TYPE_POSITION, i, angle * 100, frame, 0);
+            binary.write(frame, 0, frame.length);
+        }
+        textChunk = text.toString().getBytes(StandardCharsets.US_ASCII);
+        binaryChunk = binary.toByteArray();
+        int[] centi = new int[LINES];
+        for (int i = 0; i < LINES; i++) {
+            centi[i] = (i * 11) % 181 * 100;
+        }
+        byte[] batch = new byte[BinaryProtocol.MAX_BATCH_FRAME_SIZE];
+        int batchLength = BinaryProtocol.encodeBatch(123_456_789L, 1000, centi, 0, LINES, batch, 0);
+        batchChunk = new byte[batchLength];
+        System.arraycopy(batch, 0, batchChunk, 0, batchLength);
+
+        lineDecoder = new LineFrameDecoder(new LineFrameDecoder.Listener() {
+            @Override
+            public void onPosition(int angle) {
+                TelemetryParsingBenchmark.this.blackhole.consume(angle);
+            }
+
+            @Override
+            public void onLine(byte[] buffer, int offset, int length) {
+                TelemetryParsingBenchmark.this.blackhole.consume(length);
+            }
+        });
+
+        binaryDecoder = new ProtocolDecoder(new ProtocolDecoder.Listener() {
+            @Override
+            public void onPosition(float angle) {
+                TelemetryParsingBenchmark.this.blackhole.consume(angle);
+            }
+
+            @Override
+            public void onLine(byte[] buffer, int offset, int length) {
+                TelemetryParsingBenchmark.this.blackhole.consume(length);
+            }
+
+            @Override
+            public void onBinaryNegotiated(int version) {
+            }
+
+            @Override
+            public void onCredit(int credits) {
+            }
+
+            @Override
+            public void onAck(int sequence) {
+            }
+
+            @Override
+            public void onSequenceStatus(int status, int value) {
+            }
+
+            @Override
+            public void onFeatures(int features) {
+            }
+
+            @Override
+            public void onPositionBatch(long baseMicros, int periodMicros, float[] angles, int count) {
+                for (int i = 0; i < count; i++) {
+                    TelemetryParsingBenchmark.this.blackhole.consume(angles[i]);
+                }
+            }
+        });
+        byte[] proto = "PROTO:1\n".getBytes(StandardCharsets.US_ASCII);
+        binaryDecoder.feed(proto, 0, proto.length);
+    }
+
+    // Forma original: un String por lectura, trim, startsWith, substring y parseInt
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void stringParsing() {
+        for (String line : separateLines) {
+            byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+            String data = new String(bytes, 0, bytes.length).trim();
+            if (data.startsWith("POSITION:")) {
+                blackhole.consume(Integer.parseInt(data.substring(9)));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void lineDecoder() {
+        lineDecoder.feed(textChunk, 0, textChunk.length);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void binaryDecoder() {
+        binaryDecoder.feed(binaryChunk, 0, binaryChunk.length);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void batchDecoder() {
+        binaryDecoder.feed(batchChunk, 0, batchChunk.length);
+    }
+}
@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "ServoMotor"
 include(":app")
+include(":benchmark")